@@ -0,0 +1,442 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+/**
+ * Base class for the random-access lists of {@link ChunkedArrayList},
+ * storing elements in a spine of chunk arrays of type {@code T_ARR}.
+ * Chunk sizes grow geometrically from 16 up to a fixed maximum, after
+ * which every chunk has the maximum size, so that growth never copies
+ * elements, no chunk is large enough to be a humongous allocation, and
+ * the chunk and offset of an index are computed with a few shifts.
+ *
+ * @param <E> the type of elements in this list
+ * @param <T_ARR> the type of chunk arrays
+ * @param <T_CONS> the type of consumer accepting elements
+ * @since 1.8
+ */
+abstract class AbstractChunkedList<E, T_ARR, T_CONS>
+    extends AbstractList<E> implements RandomAccess {
+
+    /*
+     * Chunk 0 holds indices [0, 16), and chunk c in [1, GEOMETRIC_CHUNKS)
+     * holds [2^(c+3), 2^(c+4)), so the geometric chunks together hold
+     * the first MAX_CHUNK_SIZE indices.  Each later chunk holds the next
+     * MAX_CHUNK_SIZE indices.  Chunks are allocated on demand and never
+     * moved; only the (small) spine array is copied when it fills.
+     */
+
+    /** log2 of the size of the first chunk */
+    static final int MIN_CHUNK_POWER = 4;
+
+    /** log2 of the size of all chunks after the geometric ones */
+    static final int MAX_CHUNK_POWER = 14;
+
+    /** The maximum chunk size */
+    static final int MAX_CHUNK_SIZE = 1 << MAX_CHUNK_POWER;
+
+    /** The number of geometrically sized chunks */
+    static final int GEOMETRIC_CHUNKS = MAX_CHUNK_POWER - MIN_CHUNK_POWER + 1;
+
+    /** The largest supported size, as for ArrayList */
+    static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+    /** Initial spine size, enough for 256K elements */
+    static final int MIN_SPINE_SIZE = 32;
+
+    private static final Object[] EMPTY_SPINE = {};
+
+    /** The chunks; elements of type T_ARR */
+    Object[] spine = EMPTY_SPINE;
+
+    /** The number of allocated chunks */
+    int chunkCount;
+
+    /** The total length of the allocated chunks */
+    long capacity;
+
+    /** The number of elements */
+    int size;
+
+    AbstractChunkedList() {
+    }
+
+    AbstractChunkedList(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal Capacity: "+
+                                               initialCapacity);
+        ensureCapacity(initialCapacity);
+    }
+
+    /**
+     * Returns a new chunk array of the given length.
+     */
+    abstract T_ARR newChunk(int length);
+
+    /**
+     * Passes the elements of the given array in [from, to) to the
+     * consumer.
+     */
+    abstract void arrayForEach(T_ARR array, int from, int to, T_CONS consumer);
+
+    /**
+     * Clears (for reference chunks) elements in [from, to) of the given
+     * array so that they may be garbage collected.
+     */
+    void arrayClear(T_ARR array, int from, int to) {
+    }
+
+    /* ---------------- Indexing -------------- */
+
+    /** Returns the chunk holding the given index. */
+    static int chunkFor(int index) {
+        return (index < MAX_CHUNK_SIZE)
+            ? Math.max(0, 32 - MIN_CHUNK_POWER -
+                       Integer.numberOfLeadingZeros(index))
+            : GEOMETRIC_CHUNKS + ((index - MAX_CHUNK_SIZE) >>> MAX_CHUNK_POWER);
+    }
+
+    /** Returns the offset of the given index within chunk c. */
+    static int offsetIn(int index, int c) {
+        return (c == 0) ? index
+            : (c < GEOMETRIC_CHUNKS) ? index - (1 << (c + MIN_CHUNK_POWER - 1))
+            : index & (MAX_CHUNK_SIZE - 1);
+    }
+
+    /** Returns the length of chunk c. */
+    static int chunkSize(int c) {
+        return (c == 0) ? 1 << MIN_CHUNK_POWER
+            : (c < GEOMETRIC_CHUNKS) ? 1 << (c + MIN_CHUNK_POWER - 1)
+            : MAX_CHUNK_SIZE;
+    }
+
+    /** Returns the first index held by chunk c. */
+    static long chunkStart(int c) {
+        return (c == 0) ? 0L
+            : (c < GEOMETRIC_CHUNKS) ? 1L << (c + MIN_CHUNK_POWER - 1)
+            : MAX_CHUNK_SIZE + ((long)(c - GEOMETRIC_CHUNKS) << MAX_CHUNK_POWER);
+    }
+
+    @SuppressWarnings("unchecked")
+    final T_ARR chunk(int c) {
+        return (T_ARR)spine[c];
+    }
+
+    final void rangeCheck(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    final void rangeCheckForAdd(int index) {
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    private String outOfBoundsMsg(int index) {
+        return "Index: "+index+", Size: "+size;
+    }
+
+    /* ---------------- Capacity -------------- */
+
+    /**
+     * Increases the capacity of this list, if necessary, to hold at least
+     * the given number of elements.  Only new chunks are allocated;
+     * existing elements are never copied.
+     *
+     * @param minCapacity the desired minimum capacity
+     */
+    public void ensureCapacity(int minCapacity) {
+        ensureCapacity((long)minCapacity);
+    }
+
+    final void ensureCapacity(long minCapacity) {
+        if (minCapacity > capacity) {
+            if (minCapacity > MAX_SIZE)
+                throw new OutOfMemoryError();
+            while (capacity < minCapacity) {
+                if (chunkCount == spine.length)
+                    spine = Arrays.copyOf(spine, Math.max(MIN_SPINE_SIZE,
+                                                          chunkCount << 1));
+                int n = chunkSize(chunkCount);
+                spine[chunkCount++] = newChunk(n);
+                capacity += n;
+            }
+        }
+    }
+
+    /**
+     * Releases chunks that hold no elements.
+     */
+    public void trimToSize() {
+        modCount++;
+        int keep = (size == 0) ? 0 : chunkFor(size - 1) + 1;
+        if (keep < chunkCount) {
+            Arrays.fill(spine, keep, chunkCount, null);
+            chunkCount = keep;
+            capacity = (keep == 0) ? 0L : chunkStart(keep);
+        }
+        if (keep == 0)
+            spine = EMPTY_SPINE;
+        else if (spine.length > Math.max(MIN_SPINE_SIZE, keep << 1))
+            spine = Arrays.copyOf(spine, keep);
+    }
+
+    /**
+     * Returns the index of a new slot appended to the list, allocating a
+     * chunk if necessary.  Does not update modCount.
+     */
+    final int grow() {
+        int s = size;
+        if (s >= capacity)
+            ensureCapacity(s + 1L);
+        size = s + 1;
+        return s;
+    }
+
+    /* ---------------- Bulk movement -------------- */
+
+    /**
+     * Copies the len elements starting at index src to index dst,
+     * correctly handling overlapping ranges.  Both ranges must lie within
+     * the allocated capacity.
+     */
+    final void moveRange(int src, int dst, int len) {
+        if (len <= 0 || src == dst)
+            return;
+        if (dst < src) {
+            while (len > 0) {
+                int sc = chunkFor(src), so = offsetIn(src, sc);
+                int dc = chunkFor(dst), dof = offsetIn(dst, dc);
+                int n = Math.min(len, Math.min(chunkSize(sc) - so,
+                                               chunkSize(dc) - dof));
+                System.arraycopy(spine[sc], so, spine[dc], dof, n);
+                src += n;
+                dst += n;
+                len -= n;
+            }
+        }
+        else {
+            int se = src + len, de = dst + len;
+            while (len > 0) {
+                int sc = chunkFor(se - 1), so = offsetIn(se - 1, sc) + 1;
+                int dc = chunkFor(de - 1), dof = offsetIn(de - 1, dc) + 1;
+                int n = Math.min(len, Math.min(so, dof));
+                System.arraycopy(spine[sc], so - n, spine[dc], dof - n, n);
+                se -= n;
+                de -= n;
+                len -= n;
+            }
+        }
+    }
+
+    /**
+     * Copies the elements in [from, to) into the given array (of the chunk
+     * array type, or an Object array for reference lists) at offset pos.
+     */
+    final void copyTo(int from, int to, Object array, int pos) {
+        while (from < to) {
+            int c = chunkFor(from), o = offsetIn(from, c);
+            int n = Math.min(to - from, chunkSize(c) - o);
+            System.arraycopy(spine[c], o, array, pos, n);
+            from += n;
+            pos += n;
+        }
+    }
+
+    /**
+     * Copies len elements of the given array starting at pos into this
+     * list starting at index from, which must lie within capacity.
+     */
+    final void copyFrom(Object array, int pos, int from, int len) {
+        int to = from + len;
+        while (from < to) {
+            int c = chunkFor(from), o = offsetIn(from, c);
+            int n = Math.min(to - from, chunkSize(c) - o);
+            System.arraycopy(array, pos, spine[c], o, n);
+            from += n;
+            pos += n;
+        }
+    }
+
+    /** Clears elements in [from, to). */
+    final void clearRange(int from, int to) {
+        while (from < to) {
+            int c = chunkFor(from), o = offsetIn(from, c);
+            int n = Math.min(to - from, chunkSize(c) - o);
+            arrayClear(chunk(c), o, o + n);
+            from += n;
+        }
+    }
+
+    /**
+     * Passes the elements in [from, to) to the consumer, checking for
+     * concurrent modification once done.
+     */
+    final void forEachInRange(int from, int to, T_CONS consumer) {
+        Objects.requireNonNull(consumer);
+        int mc = modCount;
+        while (from < to) {
+            int c = chunkFor(from), o = offsetIn(from, c);
+            int n = Math.min(to - from, chunkSize(c) - o);
+            arrayForEach(chunk(c), o, o + n, consumer);
+            from += n;
+        }
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+    }
+
+    /* ---------------- List operations -------------- */
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all of the elements from this list, releasing all but the
+     * first chunk.
+     */
+    public void clear() {
+        modCount++;
+        if (chunkCount > 0) {
+            clearRange(0, Math.min(size, chunkSize(0)));
+            Arrays.fill(spine, 1, chunkCount, null);
+            chunkCount = 1;
+            capacity = chunkSize(0);
+        }
+        size = 0;
+    }
+
+    /**
+     * Removes from this list all of the elements whose index is between
+     * {@code fromIndex}, inclusive, and {@code toIndex}, exclusive,
+     * moving succeeding elements chunk by chunk.
+     */
+    protected void removeRange(int fromIndex, int toIndex) {
+        modCount++;
+        int s = size;
+        moveRange(toIndex, fromIndex, s - toIndex);
+        int newSize = s - (toIndex - fromIndex);
+        clearRange(newSize, s);
+        size = newSize;
+    }
+
+    /**
+     * Opens a gap of n slots at the given index, returning the index.
+     */
+    final int openGap(int index, int n) {
+        rangeCheckForAdd(index);
+        modCount++;
+        int s = size;
+        ensureCapacity((long)s + n);
+        moveRange(index, index + n, s - index);
+        size = s + n;
+        return index;
+    }
+
+    /**
+     * Closes the slot at the given index, which must be in range.
+     */
+    final void closeGap(int index) {
+        modCount++;
+        int s = size - 1;
+        moveRange(index + 1, index, s - index);
+        clearRange(s, s + 1);
+        size = s;
+    }
+
+    /* ---------------- Spliterators -------------- */
+
+    /**
+     * Base of index-range spliterators over these lists, late-binding
+     * like those of ArrayList, and splitting at chunk boundaries where
+     * possible.
+     */
+    abstract static class BaseSpliterator<E, T_ARR, T_CONS> {
+        final AbstractChunkedList<E, T_ARR, T_CONS> list;
+        int index;            // current index, modified on advance/split
+        int fence;            // -1 until used; then one past last index
+        int expectedModCount; // initialized when fence set
+
+        BaseSpliterator(AbstractChunkedList<E, T_ARR, T_CONS> list,
+                        int origin, int fence, int expectedModCount) {
+            this.list = list;
+            this.index = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        final int getFence() {
+            int hi;
+            if ((hi = fence) < 0) {
+                expectedModCount = list.modCount;
+                hi = fence = list.size;
+            }
+            return hi;
+        }
+
+        /**
+         * Returns the index at which to split, or -1 if too small; prefers
+         * the start of the chunk holding the midpoint.
+         */
+        final int splitPoint() {
+            int lo = index, hi = getFence(), mid = (lo + hi) >>> 1;
+            if (lo >= mid)
+                return -1;
+            int c = chunkFor(mid);
+            long start = chunkStart(c);
+            return (start > lo) ? (int)start : mid;
+        }
+
+        public boolean tryAdvance(T_CONS action) {
+            int hi = getFence(), i = index;
+            if (i < hi) {
+                index = i + 1;
+                list.forEachInRange(i, i + 1, action);
+                if (list.modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                return true;
+            }
+            return false;
+        }
+
+        public void forEachRemaining(T_CONS action) {
+            int hi = getFence(), i = index;
+            index = hi;
+            list.forEachInRange(i, hi, action);
+            if (list.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        public long estimateSize() {
+            return (long)(getFence() - index);
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED |
+                Spliterator.SUBSIZED;
+        }
+    }
+}
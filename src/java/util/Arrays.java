@@ -36,6 +36,9 @@ import java.util.function.IntToDoubleFunction;
 import java.util.function.IntToLongFunction;
 import java.util.function.IntUnaryOperator;
 import java.util.function.LongBinaryOperator;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 import java.util.function.UnaryOperator;
 import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
@@ -963,6 +966,464 @@ public class Arrays {
                  MIN_ARRAY_SORT_GRAN : g).invoke();
     }
 
+    /**
+     * Sorts the specified array into ascending numerical order.
+     *
+     * @implNote The sorting algorithm is a parallel least-significant-digit
+     * radix sort.  The range is divided into blocks that are processed in
+     * parallel, and the elements are distributed by successive eight-bit
+     * digits of their keys between the array and a working array of the
+     * same length, skipping digits that are the same in all elements.  The
+     * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
+     * execute any parallel tasks.  It is usually faster than {@link
+     * #parallelSort(int[]) parallelSort} on large arrays of uniformly
+     * distributed values, but takes time proportional to the array length
+     * even if it is already sorted.
+     * If the length of the range is less than the minimum granularity of
+     * {@code parallelSort}, then it is sorted using the appropriate {@link
+     * Arrays#sort(int[]) Arrays.sort} method.
+     *
+     * @param a the array to be sorted
+     *
+     * @since 1.8
+     */
+    public static void parallelRadixSort(int[] a) {
+        int n = a.length;
+        if (n <= MIN_ARRAY_SORT_GRAN ||
+            ForkJoinPool.getCommonPoolParallelism() == 1)
+            DualPivotQuicksort.sort(a, 0, n - 1, null, 0, 0);
+        else
+            ParallelRadixSort.sort(a, 0, n, null, 0);
+    }
+
+    /**
+     * Sorts the specified range of the array into ascending numerical order.
+     * The range to be sorted extends from the index {@code fromIndex},
+     * inclusive, to the index {@code toIndex}, exclusive. If
+     * {@code fromIndex == toIndex}, the range to be sorted is empty.
+     *
+     * @implNote The sorting algorithm is a parallel least-significant-digit
+     * radix sort.  The range is divided into blocks that are processed in
+     * parallel, and the elements are distributed by successive eight-bit
+     * digits of their keys between the array and a working array of the
+     * same length, skipping digits that are the same in all elements.  The
+     * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
+     * execute any parallel tasks.  It is usually faster than {@link
+     * #parallelSort(int[]) parallelSort} on large arrays of uniformly
+     * distributed values, but takes time proportional to the array length
+     * even if it is already sorted.
+     * If the length of the range is less than the minimum granularity of
+     * {@code parallelSort}, then it is sorted using the appropriate {@link
+     * Arrays#sort(int[]) Arrays.sort} method.
+     *
+     * @param a the array to be sorted
+     * @param fromIndex the index of the first element, inclusive, to be sorted
+     * @param toIndex the index of the last element, exclusive, to be sorted
+     *
+     * @throws IllegalArgumentException if {@code fromIndex > toIndex}
+     * @throws ArrayIndexOutOfBoundsException
+     *     if {@code fromIndex < 0} or {@code toIndex > a.length}
+     *
+     * @since 1.8
+     */
+    public static void parallelRadixSort(int[] a, int fromIndex, int toIndex) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        int n = toIndex - fromIndex;
+        if (n <= MIN_ARRAY_SORT_GRAN ||
+            ForkJoinPool.getCommonPoolParallelism() == 1)
+            DualPivotQuicksort.sort(a, fromIndex, toIndex - 1, null, 0, 0);
+        else
+            ParallelRadixSort.sort(a, fromIndex, toIndex, null, 0);
+    }
+
+    /**
+     * Sorts the specified array into ascending numerical order, applying
+     * the same rearrangement to the specified array of indices.  That is,
+     * if the element at position {@code i} ends up at position {@code j},
+     * then {@code indices[j]} holds the value that was at {@code
+     * indices[i]}.  If {@code indices} initially holds {@code 0, 1, ...,
+     * a.length - 1}, it afterwards holds, for each position of the sorted
+     * array, the original position of its element, which may be used to
+     * reorder data associated with the elements.  This sort is
+     * <i>stable</i>: the indices of equal elements retain their relative
+     * order.
+     *
+     * @implNote The sorting algorithm is a parallel least-significant-digit
+     * radix sort.  The range is divided into blocks that are processed in
+     * parallel, and the elements are distributed by successive eight-bit
+     * digits of their keys between the array and a working array of the
+     * same length, skipping digits that are the same in all elements.  The
+     * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
+     * execute any parallel tasks.  It is usually faster than {@link
+     * #parallelSort(int[]) parallelSort} on large arrays of uniformly
+     * distributed values, but takes time proportional to the array length
+     * even if it is already sorted.
+     *
+     * @param a the array to be sorted
+     * @param indices the array to be permuted along with {@code a}
+     *
+     * @throws IllegalArgumentException if the arrays differ in length
+     *
+     * @since 1.8
+     */
+    public static void parallelRadixSort(int[] a, int[] indices) {
+        if (indices.length != a.length)
+            throw new IllegalArgumentException("indices.length(" +
+                indices.length + ") != a.length(" + a.length + ")");
+        ParallelRadixSort.sort(a, 0, a.length, indices, 0);
+    }
+
+    /**
+     * Sorts the specified array into ascending numerical order.
+     *
+     * @implNote The sorting algorithm is a parallel least-significant-digit
+     * radix sort.  The range is divided into blocks that are processed in
+     * parallel, and the elements are distributed by successive eight-bit
+     * digits of their keys between the array and a working array of the
+     * same length, skipping digits that are the same in all elements.  The
+     * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
+     * execute any parallel tasks.  It is usually faster than {@link
+     * #parallelSort(long[]) parallelSort} on large arrays of uniformly
+     * distributed values, but takes time proportional to the array length
+     * even if it is already sorted.
+     * If the length of the range is less than the minimum granularity of
+     * {@code parallelSort}, then it is sorted using the appropriate {@link
+     * Arrays#sort(long[]) Arrays.sort} method.
+     *
+     * @param a the array to be sorted
+     *
+     * @since 1.8
+     */
+    public static void parallelRadixSort(long[] a) {
+        int n = a.length;
+        if (n <= MIN_ARRAY_SORT_GRAN ||
+            ForkJoinPool.getCommonPoolParallelism() == 1)
+            DualPivotQuicksort.sort(a, 0, n - 1, null, 0, 0);
+        else
+            ParallelRadixSort.sort(a, 0, n, null, 0);
+    }
+
+    /**
+     * Sorts the specified range of the array into ascending numerical order.
+     * The range to be sorted extends from the index {@code fromIndex},
+     * inclusive, to the index {@code toIndex}, exclusive. If
+     * {@code fromIndex == toIndex}, the range to be sorted is empty.
+     *
+     * @implNote The sorting algorithm is a parallel least-significant-digit
+     * radix sort.  The range is divided into blocks that are processed in
+     * parallel, and the elements are distributed by successive eight-bit
+     * digits of their keys between the array and a working array of the
+     * same length, skipping digits that are the same in all elements.  The
+     * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
+     * execute any parallel tasks.  It is usually faster than {@link
+     * #parallelSort(long[]) parallelSort} on large arrays of uniformly
+     * distributed values, but takes time proportional to the array length
+     * even if it is already sorted.
+     * If the length of the range is less than the minimum granularity of
+     * {@code parallelSort}, then it is sorted using the appropriate {@link
+     * Arrays#sort(long[]) Arrays.sort} method.
+     *
+     * @param a the array to be sorted
+     * @param fromIndex the index of the first element, inclusive, to be sorted
+     * @param toIndex the index of the last element, exclusive, to be sorted
+     *
+     * @throws IllegalArgumentException if {@code fromIndex > toIndex}
+     * @throws ArrayIndexOutOfBoundsException
+     *     if {@code fromIndex < 0} or {@code toIndex > a.length}
+     *
+     * @since 1.8
+     */
+    public static void parallelRadixSort(long[] a, int fromIndex, int toIndex) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        int n = toIndex - fromIndex;
+        if (n <= MIN_ARRAY_SORT_GRAN ||
+            ForkJoinPool.getCommonPoolParallelism() == 1)
+            DualPivotQuicksort.sort(a, fromIndex, toIndex - 1, null, 0, 0);
+        else
+            ParallelRadixSort.sort(a, fromIndex, toIndex, null, 0);
+    }
+
+    /**
+     * Sorts the specified array into ascending numerical order, applying
+     * the same rearrangement to the specified array of indices.  That is,
+     * if the element at position {@code i} ends up at position {@code j},
+     * then {@code indices[j]} holds the value that was at {@code
+     * indices[i]}.  If {@code indices} initially holds {@code 0, 1, ...,
+     * a.length - 1}, it afterwards holds, for each position of the sorted
+     * array, the original position of its element, which may be used to
+     * reorder data associated with the elements.  This sort is
+     * <i>stable</i>: the indices of equal elements retain their relative
+     * order.
+     *
+     * @implNote The sorting algorithm is a parallel least-significant-digit
+     * radix sort.  The range is divided into blocks that are processed in
+     * parallel, and the elements are distributed by successive eight-bit
+     * digits of their keys between the array and a working array of the
+     * same length, skipping digits that are the same in all elements.  The
+     * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
+     * execute any parallel tasks.  It is usually faster than {@link
+     * #parallelSort(long[]) parallelSort} on large arrays of uniformly
+     * distributed values, but takes time proportional to the array length
+     * even if it is already sorted.
+     *
+     * @param a the array to be sorted
+     * @param indices the array to be permuted along with {@code a}
+     *
+     * @throws IllegalArgumentException if the arrays differ in length
+     *
+     * @since 1.8
+     */
+    public static void parallelRadixSort(long[] a, int[] indices) {
+        if (indices.length != a.length)
+            throw new IllegalArgumentException("indices.length(" +
+                indices.length + ") != a.length(" + a.length + ")");
+        ParallelRadixSort.sort(a, 0, a.length, indices, 0);
+    }
+
+    /**
+     * Sorts the specified array into ascending numerical order.
+     *
+     * <p>Values are ordered as by {@link Float#compare}: {@code -0.0f}
+     * is treated as less than {@code 0.0f} and {@code Float.NaN} is
+     * considered greater than any other value.  Any NaN values in the sorted
+     * range are replaced by the canonical {@code Float.NaN}.
+     *
+     * @implNote The sorting algorithm is a parallel least-significant-digit
+     * radix sort.  The range is divided into blocks that are processed in
+     * parallel, and the elements are distributed by successive eight-bit
+     * digits of their keys between the array and a working array of the
+     * same length, skipping digits that are the same in all elements.  The
+     * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
+     * execute any parallel tasks.  It is usually faster than {@link
+     * #parallelSort(float[]) parallelSort} on large arrays of uniformly
+     * distributed values, but takes time proportional to the array length
+     * even if it is already sorted.
+     * If the length of the range is less than the minimum granularity of
+     * {@code parallelSort}, then it is sorted using the appropriate {@link
+     * Arrays#sort(float[]) Arrays.sort} method.
+     *
+     * @param a the array to be sorted
+     *
+     * @since 1.8
+     */
+    public static void parallelRadixSort(float[] a) {
+        int n = a.length;
+        if (n <= MIN_ARRAY_SORT_GRAN ||
+            ForkJoinPool.getCommonPoolParallelism() == 1)
+            DualPivotQuicksort.sort(a, 0, n - 1, null, 0, 0);
+        else
+            ParallelRadixSort.sort(a, 0, n, null, 0);
+    }
+
+    /**
+     * Sorts the specified range of the array into ascending numerical order.
+     * The range to be sorted extends from the index {@code fromIndex},
+     * inclusive, to the index {@code toIndex}, exclusive. If
+     * {@code fromIndex == toIndex}, the range to be sorted is empty.
+     *
+     * <p>Values are ordered as by {@link Float#compare}: {@code -0.0f}
+     * is treated as less than {@code 0.0f} and {@code Float.NaN} is
+     * considered greater than any other value.  Any NaN values in the sorted
+     * range are replaced by the canonical {@code Float.NaN}.
+     *
+     * @implNote The sorting algorithm is a parallel least-significant-digit
+     * radix sort.  The range is divided into blocks that are processed in
+     * parallel, and the elements are distributed by successive eight-bit
+     * digits of their keys between the array and a working array of the
+     * same length, skipping digits that are the same in all elements.  The
+     * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
+     * execute any parallel tasks.  It is usually faster than {@link
+     * #parallelSort(float[]) parallelSort} on large arrays of uniformly
+     * distributed values, but takes time proportional to the array length
+     * even if it is already sorted.
+     * If the length of the range is less than the minimum granularity of
+     * {@code parallelSort}, then it is sorted using the appropriate {@link
+     * Arrays#sort(float[]) Arrays.sort} method.
+     *
+     * @param a the array to be sorted
+     * @param fromIndex the index of the first element, inclusive, to be sorted
+     * @param toIndex the index of the last element, exclusive, to be sorted
+     *
+     * @throws IllegalArgumentException if {@code fromIndex > toIndex}
+     * @throws ArrayIndexOutOfBoundsException
+     *     if {@code fromIndex < 0} or {@code toIndex > a.length}
+     *
+     * @since 1.8
+     */
+    public static void parallelRadixSort(float[] a, int fromIndex, int toIndex) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        int n = toIndex - fromIndex;
+        if (n <= MIN_ARRAY_SORT_GRAN ||
+            ForkJoinPool.getCommonPoolParallelism() == 1)
+            DualPivotQuicksort.sort(a, fromIndex, toIndex - 1, null, 0, 0);
+        else
+            ParallelRadixSort.sort(a, fromIndex, toIndex, null, 0);
+    }
+
+    /**
+     * Sorts the specified array into ascending numerical order, applying
+     * the same rearrangement to the specified array of indices.  That is,
+     * if the element at position {@code i} ends up at position {@code j},
+     * then {@code indices[j]} holds the value that was at {@code
+     * indices[i]}.  If {@code indices} initially holds {@code 0, 1, ...,
+     * a.length - 1}, it afterwards holds, for each position of the sorted
+     * array, the original position of its element, which may be used to
+     * reorder data associated with the elements.  This sort is
+     * <i>stable</i>: the indices of equal elements retain their relative
+     * order.
+     *
+     * <p>Values are ordered as by {@link Float#compare}: {@code -0.0f}
+     * is treated as less than {@code 0.0f} and {@code Float.NaN} is
+     * considered greater than any other value.  Any NaN values in the sorted
+     * range are replaced by the canonical {@code Float.NaN}.
+     *
+     * @implNote The sorting algorithm is a parallel least-significant-digit
+     * radix sort.  The range is divided into blocks that are processed in
+     * parallel, and the elements are distributed by successive eight-bit
+     * digits of their keys between the array and a working array of the
+     * same length, skipping digits that are the same in all elements.  The
+     * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
+     * execute any parallel tasks.  It is usually faster than {@link
+     * #parallelSort(float[]) parallelSort} on large arrays of uniformly
+     * distributed values, but takes time proportional to the array length
+     * even if it is already sorted.
+     *
+     * @param a the array to be sorted
+     * @param indices the array to be permuted along with {@code a}
+     *
+     * @throws IllegalArgumentException if the arrays differ in length
+     *
+     * @since 1.8
+     */
+    public static void parallelRadixSort(float[] a, int[] indices) {
+        if (indices.length != a.length)
+            throw new IllegalArgumentException("indices.length(" +
+                indices.length + ") != a.length(" + a.length + ")");
+        ParallelRadixSort.sort(a, 0, a.length, indices, 0);
+    }
+
+    /**
+     * Sorts the specified array into ascending numerical order.
+     *
+     * <p>Values are ordered as by {@link Double#compare}: {@code -0.0d}
+     * is treated as less than {@code 0.0d} and {@code Double.NaN} is
+     * considered greater than any other value.  Any NaN values in the sorted
+     * range are replaced by the canonical {@code Double.NaN}.
+     *
+     * @implNote The sorting algorithm is a parallel least-significant-digit
+     * radix sort.  The range is divided into blocks that are processed in
+     * parallel, and the elements are distributed by successive eight-bit
+     * digits of their keys between the array and a working array of the
+     * same length, skipping digits that are the same in all elements.  The
+     * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
+     * execute any parallel tasks.  It is usually faster than {@link
+     * #parallelSort(double[]) parallelSort} on large arrays of uniformly
+     * distributed values, but takes time proportional to the array length
+     * even if it is already sorted.
+     * If the length of the range is less than the minimum granularity of
+     * {@code parallelSort}, then it is sorted using the appropriate {@link
+     * Arrays#sort(double[]) Arrays.sort} method.
+     *
+     * @param a the array to be sorted
+     *
+     * @since 1.8
+     */
+    public static void parallelRadixSort(double[] a) {
+        int n = a.length;
+        if (n <= MIN_ARRAY_SORT_GRAN ||
+            ForkJoinPool.getCommonPoolParallelism() == 1)
+            DualPivotQuicksort.sort(a, 0, n - 1, null, 0, 0);
+        else
+            ParallelRadixSort.sort(a, 0, n, null, 0);
+    }
+
+    /**
+     * Sorts the specified range of the array into ascending numerical order.
+     * The range to be sorted extends from the index {@code fromIndex},
+     * inclusive, to the index {@code toIndex}, exclusive. If
+     * {@code fromIndex == toIndex}, the range to be sorted is empty.
+     *
+     * <p>Values are ordered as by {@link Double#compare}: {@code -0.0d}
+     * is treated as less than {@code 0.0d} and {@code Double.NaN} is
+     * considered greater than any other value.  Any NaN values in the sorted
+     * range are replaced by the canonical {@code Double.NaN}.
+     *
+     * @implNote The sorting algorithm is a parallel least-significant-digit
+     * radix sort.  The range is divided into blocks that are processed in
+     * parallel, and the elements are distributed by successive eight-bit
+     * digits of their keys between the array and a working array of the
+     * same length, skipping digits that are the same in all elements.  The
+     * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
+     * execute any parallel tasks.  It is usually faster than {@link
+     * #parallelSort(double[]) parallelSort} on large arrays of uniformly
+     * distributed values, but takes time proportional to the array length
+     * even if it is already sorted.
+     * If the length of the range is less than the minimum granularity of
+     * {@code parallelSort}, then it is sorted using the appropriate {@link
+     * Arrays#sort(double[]) Arrays.sort} method.
+     *
+     * @param a the array to be sorted
+     * @param fromIndex the index of the first element, inclusive, to be sorted
+     * @param toIndex the index of the last element, exclusive, to be sorted
+     *
+     * @throws IllegalArgumentException if {@code fromIndex > toIndex}
+     * @throws ArrayIndexOutOfBoundsException
+     *     if {@code fromIndex < 0} or {@code toIndex > a.length}
+     *
+     * @since 1.8
+     */
+    public static void parallelRadixSort(double[] a, int fromIndex, int toIndex) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        int n = toIndex - fromIndex;
+        if (n <= MIN_ARRAY_SORT_GRAN ||
+            ForkJoinPool.getCommonPoolParallelism() == 1)
+            DualPivotQuicksort.sort(a, fromIndex, toIndex - 1, null, 0, 0);
+        else
+            ParallelRadixSort.sort(a, fromIndex, toIndex, null, 0);
+    }
+
+    /**
+     * Sorts the specified array into ascending numerical order, applying
+     * the same rearrangement to the specified array of indices.  That is,
+     * if the element at position {@code i} ends up at position {@code j},
+     * then {@code indices[j]} holds the value that was at {@code
+     * indices[i]}.  If {@code indices} initially holds {@code 0, 1, ...,
+     * a.length - 1}, it afterwards holds, for each position of the sorted
+     * array, the original position of its element, which may be used to
+     * reorder data associated with the elements.  This sort is
+     * <i>stable</i>: the indices of equal elements retain their relative
+     * order.
+     *
+     * <p>Values are ordered as by {@link Double#compare}: {@code -0.0d}
+     * is treated as less than {@code 0.0d} and {@code Double.NaN} is
+     * considered greater than any other value.  Any NaN values in the sorted
+     * range are replaced by the canonical {@code Double.NaN}.
+     *
+     * @implNote The sorting algorithm is a parallel least-significant-digit
+     * radix sort.  The range is divided into blocks that are processed in
+     * parallel, and the elements are distributed by successive eight-bit
+     * digits of their keys between the array and a working array of the
+     * same length, skipping digits that are the same in all elements.  The
+     * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
+     * execute any parallel tasks.  It is usually faster than {@link
+     * #parallelSort(double[]) parallelSort} on large arrays of uniformly
+     * distributed values, but takes time proportional to the array length
+     * even if it is already sorted.
+     *
+     * @param a the array to be sorted
+     * @param indices the array to be permuted along with {@code a}
+     *
+     * @throws IllegalArgumentException if the arrays differ in length
+     *
+     * @since 1.8
+     */
+    public static void parallelRadixSort(double[] a, int[] indices) {
+        if (indices.length != a.length)
+            throw new IllegalArgumentException("indices.length(" +
+                indices.length + ") != a.length(" + a.length + ")");
+        ParallelRadixSort.sort(a, 0, a.length, indices, 0);
+    }
+
     /**
      * Sorts the specified array of objects into ascending order, according
      * to the {@linkplain Comparable natural ordering} of its elements.
@@ -1089,7 +1550,11 @@ public class Arrays {
      * Arrays#sort(Object[]) Arrays.sort} method. The algorithm requires a
      * working space no greater than the size of the original array. The
      * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
-     * execute any parallel tasks.
+     * execute any parallel tasks.  If the comparator was obtained from
+     * {@link Comparator#comparingInt}, {@link Comparator#comparingLong} or
+     * {@link Comparator#comparingDouble}, then the array is instead sorted
+     * as by {@link #parallelSortByInt(Object[], ToIntFunction)
+     * parallelSortByInt} and its analogues.
      *
      * @param <T> the class of the objects to be sorted
      * @param a the array to be sorted
@@ -1111,7 +1576,7 @@ public class Arrays {
         if (n <= MIN_ARRAY_SORT_GRAN ||
             (p = ForkJoinPool.getCommonPoolParallelism()) == 1)
             TimSort.sort(a, 0, n, cmp, null, 0, 0);
-        else
+        else if (!ParallelRadixSort.sortByKey(a, 0, n, cmp))
             new ArraysParallelSortHelpers.FJObject.Sorter<T>
                 (null, a,
                  (T[])Array.newInstance(a.getClass().getComponentType(), n),
@@ -1141,7 +1606,11 @@ public class Arrays {
      * Arrays#sort(Object[]) Arrays.sort} method. The algorithm requires a working
      * space no greater than the size of the specified range of the original
      * array. The {@link ForkJoinPool#commonPool() ForkJoin common pool} is
-     * used to execute any parallel tasks.
+     * used to execute any parallel tasks.  If the comparator was obtained
+     * from {@link Comparator#comparingInt}, {@link Comparator#comparingLong}
+     * or {@link Comparator#comparingDouble}, then the range is instead
+     * sorted as by {@link #parallelSortByInt(Object[], int, int,
+     * ToIntFunction) parallelSortByInt} and its analogues.
      *
      * @param <T> the class of the objects to be sorted
      * @param a the array to be sorted
@@ -1172,7 +1641,7 @@ public class Arrays {
         if (n <= MIN_ARRAY_SORT_GRAN ||
             (p = ForkJoinPool.getCommonPoolParallelism()) == 1)
             TimSort.sort(a, fromIndex, toIndex, cmp, null, 0, 0);
-        else
+        else if (!ParallelRadixSort.sortByKey(a, fromIndex, toIndex, cmp))
             new ArraysParallelSortHelpers.FJObject.Sorter<T>
                 (null, a,
                  (T[])Array.newInstance(a.getClass().getComponentType(), n),
@@ -1180,6 +1649,276 @@ public class Arrays {
                  MIN_ARRAY_SORT_GRAN : g, cmp).invoke();
     }
 
+    /**
+     * Sorts the specified array of objects into ascending order of the
+     * {@code int} keys extracted from them by the specified function,
+     * as compared by {@link Integer#compare}.  The result is the same as that of
+     * {@code parallelSort(a, Comparator.comparingInt(keyExtractor))}, but
+     * the key of each element is extracted only once.
+     *
+     * <p>This sort is guaranteed to be <i>stable</i>:  elements with equal
+     * keys will not be reordered as a result of the sort.
+     *
+     * @implNote The int keys of the elements are extracted into an array,
+     * once per element, which is sorted together with the positions of
+     * the elements as by {@link #parallelRadixSort(int[], int[])
+     * parallelRadixSort}; the elements are then moved to the positions of
+     * their keys.  The algorithm requires working space for the keys,
+     * positions and elements of the sorted range.  If the length of the
+     * range is less than the minimum granularity of {@code parallelSort},
+     * then it is sorted using the appropriate {@link Arrays#sort(Object[],
+     * Comparator) Arrays.sort} method.  The {@link ForkJoinPool#commonPool()
+     * ForkJoin common pool} is used to execute any parallel tasks.
+     *
+     * @param <T> the class of the objects to be sorted
+     * @param a the array to be sorted
+     * @param keyExtractor the function used to extract the sort key
+     * @throws NullPointerException if the key extractor is null
+     *
+     * @since 1.8
+     */
+    public static <T> void parallelSortByInt(T[] a,
+                                             ToIntFunction<? super T> keyExtractor) {
+        Objects.requireNonNull(keyExtractor);
+        int n = a.length;
+        if (n <= MIN_ARRAY_SORT_GRAN ||
+            ForkJoinPool.getCommonPoolParallelism() == 1)
+            TimSort.sort(a, 0, n,
+                         Comparator.comparingInt(keyExtractor),
+                         null, 0, 0);
+        else
+            ParallelRadixSort.sortByInt(a, 0, n, keyExtractor);
+    }
+
+    /**
+     * Sorts the specified range of the specified array of objects into
+     * ascending order of the {@code int} keys extracted from them by the
+     * specified function, as compared by {@link Integer#compare}.  The range to be
+     * sorted extends from index {@code fromIndex}, inclusive, to index
+     * {@code toIndex}, exclusive.  (If {@code fromIndex==toIndex}, the
+     * range to be sorted is empty.)
+     *
+     * <p>This sort is guaranteed to be <i>stable</i>:  elements with equal
+     * keys will not be reordered as a result of the sort.
+     *
+     * @implNote The int keys of the elements are extracted into an array,
+     * once per element, which is sorted together with the positions of
+     * the elements as by {@link #parallelRadixSort(int[], int[])
+     * parallelRadixSort}; the elements are then moved to the positions of
+     * their keys.  The algorithm requires working space for the keys,
+     * positions and elements of the sorted range.  If the length of the
+     * range is less than the minimum granularity of {@code parallelSort},
+     * then it is sorted using the appropriate {@link Arrays#sort(Object[],
+     * Comparator) Arrays.sort} method.  The {@link ForkJoinPool#commonPool()
+     * ForkJoin common pool} is used to execute any parallel tasks.
+     *
+     * @param <T> the class of the objects to be sorted
+     * @param a the array to be sorted
+     * @param fromIndex the index of the first element (inclusive) to be
+     *        sorted
+     * @param toIndex the index of the last element (exclusive) to be sorted
+     * @param keyExtractor the function used to extract the sort key
+     * @throws IllegalArgumentException if {@code fromIndex > toIndex}
+     * @throws ArrayIndexOutOfBoundsException if {@code fromIndex < 0} or
+     *         {@code toIndex > a.length}
+     * @throws NullPointerException if the key extractor is null
+     *
+     * @since 1.8
+     */
+    public static <T> void parallelSortByInt(T[] a, int fromIndex, int toIndex,
+                                             ToIntFunction<? super T> keyExtractor) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        Objects.requireNonNull(keyExtractor);
+        int n = toIndex - fromIndex;
+        if (n <= MIN_ARRAY_SORT_GRAN ||
+            ForkJoinPool.getCommonPoolParallelism() == 1)
+            TimSort.sort(a, fromIndex, toIndex,
+                         Comparator.comparingInt(keyExtractor),
+                         null, 0, 0);
+        else
+            ParallelRadixSort.sortByInt(a, fromIndex, toIndex, keyExtractor);
+    }
+
+    /**
+     * Sorts the specified array of objects into ascending order of the
+     * {@code long} keys extracted from them by the specified function,
+     * as compared by {@link Long#compare}.  The result is the same as that of
+     * {@code parallelSort(a, Comparator.comparingLong(keyExtractor))}, but
+     * the key of each element is extracted only once.
+     *
+     * <p>This sort is guaranteed to be <i>stable</i>:  elements with equal
+     * keys will not be reordered as a result of the sort.
+     *
+     * @implNote The long keys of the elements are extracted into an array,
+     * once per element, which is sorted together with the positions of
+     * the elements as by {@link #parallelRadixSort(long[], int[])
+     * parallelRadixSort}; the elements are then moved to the positions of
+     * their keys.  The algorithm requires working space for the keys,
+     * positions and elements of the sorted range.  If the length of the
+     * range is less than the minimum granularity of {@code parallelSort},
+     * then it is sorted using the appropriate {@link Arrays#sort(Object[],
+     * Comparator) Arrays.sort} method.  The {@link ForkJoinPool#commonPool()
+     * ForkJoin common pool} is used to execute any parallel tasks.
+     *
+     * @param <T> the class of the objects to be sorted
+     * @param a the array to be sorted
+     * @param keyExtractor the function used to extract the sort key
+     * @throws NullPointerException if the key extractor is null
+     *
+     * @since 1.8
+     */
+    public static <T> void parallelSortByLong(T[] a,
+                                              ToLongFunction<? super T> keyExtractor) {
+        Objects.requireNonNull(keyExtractor);
+        int n = a.length;
+        if (n <= MIN_ARRAY_SORT_GRAN ||
+            ForkJoinPool.getCommonPoolParallelism() == 1)
+            TimSort.sort(a, 0, n,
+                         Comparator.comparingLong(keyExtractor),
+                         null, 0, 0);
+        else
+            ParallelRadixSort.sortByLong(a, 0, n, keyExtractor);
+    }
+
+    /**
+     * Sorts the specified range of the specified array of objects into
+     * ascending order of the {@code long} keys extracted from them by the
+     * specified function, as compared by {@link Long#compare}.  The range to be
+     * sorted extends from index {@code fromIndex}, inclusive, to index
+     * {@code toIndex}, exclusive.  (If {@code fromIndex==toIndex}, the
+     * range to be sorted is empty.)
+     *
+     * <p>This sort is guaranteed to be <i>stable</i>:  elements with equal
+     * keys will not be reordered as a result of the sort.
+     *
+     * @implNote The long keys of the elements are extracted into an array,
+     * once per element, which is sorted together with the positions of
+     * the elements as by {@link #parallelRadixSort(long[], int[])
+     * parallelRadixSort}; the elements are then moved to the positions of
+     * their keys.  The algorithm requires working space for the keys,
+     * positions and elements of the sorted range.  If the length of the
+     * range is less than the minimum granularity of {@code parallelSort},
+     * then it is sorted using the appropriate {@link Arrays#sort(Object[],
+     * Comparator) Arrays.sort} method.  The {@link ForkJoinPool#commonPool()
+     * ForkJoin common pool} is used to execute any parallel tasks.
+     *
+     * @param <T> the class of the objects to be sorted
+     * @param a the array to be sorted
+     * @param fromIndex the index of the first element (inclusive) to be
+     *        sorted
+     * @param toIndex the index of the last element (exclusive) to be sorted
+     * @param keyExtractor the function used to extract the sort key
+     * @throws IllegalArgumentException if {@code fromIndex > toIndex}
+     * @throws ArrayIndexOutOfBoundsException if {@code fromIndex < 0} or
+     *         {@code toIndex > a.length}
+     * @throws NullPointerException if the key extractor is null
+     *
+     * @since 1.8
+     */
+    public static <T> void parallelSortByLong(T[] a, int fromIndex, int toIndex,
+                                              ToLongFunction<? super T> keyExtractor) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        Objects.requireNonNull(keyExtractor);
+        int n = toIndex - fromIndex;
+        if (n <= MIN_ARRAY_SORT_GRAN ||
+            ForkJoinPool.getCommonPoolParallelism() == 1)
+            TimSort.sort(a, fromIndex, toIndex,
+                         Comparator.comparingLong(keyExtractor),
+                         null, 0, 0);
+        else
+            ParallelRadixSort.sortByLong(a, fromIndex, toIndex, keyExtractor);
+    }
+
+    /**
+     * Sorts the specified array of objects into ascending order of the
+     * {@code double} keys extracted from them by the specified function,
+     * as compared by {@link Double#compare}.  The result is the same as that of
+     * {@code parallelSort(a, Comparator.comparingDouble(keyExtractor))}, but
+     * the key of each element is extracted only once.
+     *
+     * <p>This sort is guaranteed to be <i>stable</i>:  elements with equal
+     * keys will not be reordered as a result of the sort.
+     *
+     * @implNote The double keys of the elements are extracted into an array,
+     * once per element, which is sorted together with the positions of
+     * the elements as by {@link #parallelRadixSort(double[], int[])
+     * parallelRadixSort}; the elements are then moved to the positions of
+     * their keys.  The algorithm requires working space for the keys,
+     * positions and elements of the sorted range.  If the length of the
+     * range is less than the minimum granularity of {@code parallelSort},
+     * then it is sorted using the appropriate {@link Arrays#sort(Object[],
+     * Comparator) Arrays.sort} method.  The {@link ForkJoinPool#commonPool()
+     * ForkJoin common pool} is used to execute any parallel tasks.
+     *
+     * @param <T> the class of the objects to be sorted
+     * @param a the array to be sorted
+     * @param keyExtractor the function used to extract the sort key
+     * @throws NullPointerException if the key extractor is null
+     *
+     * @since 1.8
+     */
+    public static <T> void parallelSortByDouble(T[] a,
+                                                ToDoubleFunction<? super T> keyExtractor) {
+        Objects.requireNonNull(keyExtractor);
+        int n = a.length;
+        if (n <= MIN_ARRAY_SORT_GRAN ||
+            ForkJoinPool.getCommonPoolParallelism() == 1)
+            TimSort.sort(a, 0, n,
+                         Comparator.comparingDouble(keyExtractor),
+                         null, 0, 0);
+        else
+            ParallelRadixSort.sortByDouble(a, 0, n, keyExtractor);
+    }
+
+    /**
+     * Sorts the specified range of the specified array of objects into
+     * ascending order of the {@code double} keys extracted from them by the
+     * specified function, as compared by {@link Double#compare}.  The range to be
+     * sorted extends from index {@code fromIndex}, inclusive, to index
+     * {@code toIndex}, exclusive.  (If {@code fromIndex==toIndex}, the
+     * range to be sorted is empty.)
+     *
+     * <p>This sort is guaranteed to be <i>stable</i>:  elements with equal
+     * keys will not be reordered as a result of the sort.
+     *
+     * @implNote The double keys of the elements are extracted into an array,
+     * once per element, which is sorted together with the positions of
+     * the elements as by {@link #parallelRadixSort(double[], int[])
+     * parallelRadixSort}; the elements are then moved to the positions of
+     * their keys.  The algorithm requires working space for the keys,
+     * positions and elements of the sorted range.  If the length of the
+     * range is less than the minimum granularity of {@code parallelSort},
+     * then it is sorted using the appropriate {@link Arrays#sort(Object[],
+     * Comparator) Arrays.sort} method.  The {@link ForkJoinPool#commonPool()
+     * ForkJoin common pool} is used to execute any parallel tasks.
+     *
+     * @param <T> the class of the objects to be sorted
+     * @param a the array to be sorted
+     * @param fromIndex the index of the first element (inclusive) to be
+     *        sorted
+     * @param toIndex the index of the last element (exclusive) to be sorted
+     * @param keyExtractor the function used to extract the sort key
+     * @throws IllegalArgumentException if {@code fromIndex > toIndex}
+     * @throws ArrayIndexOutOfBoundsException if {@code fromIndex < 0} or
+     *         {@code toIndex > a.length}
+     * @throws NullPointerException if the key extractor is null
+     *
+     * @since 1.8
+     */
+    public static <T> void parallelSortByDouble(T[] a, int fromIndex, int toIndex,
+                                                ToDoubleFunction<? super T> keyExtractor) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        Objects.requireNonNull(keyExtractor);
+        int n = toIndex - fromIndex;
+        if (n <= MIN_ARRAY_SORT_GRAN ||
+            ForkJoinPool.getCommonPoolParallelism() == 1)
+            TimSort.sort(a, fromIndex, toIndex,
+                         Comparator.comparingDouble(keyExtractor),
+                         null, 0, 0);
+        else
+            ParallelRadixSort.sortByDouble(a, fromIndex, toIndex, keyExtractor);
+    }
+
     /*
      * Sorting of complex type arrays.
      */
@@ -0,0 +1,1876 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * A B+tree based {@link NavigableMap} implementation.
+ * The map is sorted according to the {@linkplain Comparable natural
+ * ordering} of its keys, or by a {@link Comparator} provided at map
+ * creation time, depending on which constructor is used.
+ *
+ * <p>Unlike {@link TreeMap}, which allocates a node per mapping, this
+ * implementation keeps the keys and values of up to 64 adjacent
+ * mappings in the arrays of a single leaf node, and links the leaves in
+ * key order.  Lookups visit a few wide nodes rather than a long chain of
+ * small ones, and iteration over a range of keys, as well as {@link
+ * #forEach forEach} and {@link #replaceAll replaceAll}, scan the leaf
+ * arrays sequentially.  This implementation provides guaranteed log(n)
+ * time cost for the {@code containsKey}, {@code get}, {@code put} and
+ * {@code remove} operations.  Mappings inserted in ascending key order
+ * fill their leaves completely.
+ *
+ * <p>Note that the ordering maintained by this map, like any sorted map,
+ * and whether or not an explicit comparator is provided, must be
+ * <em>consistent with {@code equals}</em> if this sorted map is to
+ * correctly implement the {@code Map} interface.  (See {@code Comparable}
+ * or {@code Comparator} for a precise definition of <em>consistent with
+ * equals</em>.)
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * If multiple threads access a map concurrently, and at least one of the
+ * threads modifies the map structurally, it <em>must</em> be synchronized
+ * externally.  (A structural modification is any operation that adds or
+ * deletes one or more mappings; merely changing the value associated
+ * with an existing key is not a structural modification.)  See {@link
+ * java.util.concurrent.ConcurrentBTreeMap} for a concurrent variant.
+ *
+ * <p>The iterators returned by the {@code iterator} method of the
+ * collections returned by all of this class's "collection view methods"
+ * are <em>fail-fast</em>: if the map is structurally modified at any time
+ * after the iterator is created, in any way except through the iterator's
+ * own {@code remove} method, the iterator will throw a {@link
+ * ConcurrentModificationException}.  Fail-fast iterators throw {@code
+ * ConcurrentModificationException} on a best-effort basis, and should be
+ * used only to detect bugs.
+ *
+ * <p>The entries returned by the iterators of the entry set views write
+ * through to this map when their {@code setValue} method is called.  All
+ * other {@code Map.Entry} pairs returned by methods in this class and its
+ * views represent snapshots of mappings at the time they were produced,
+ * and do <strong>not</strong> support the {@code Entry.setValue} method.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ *
+ * @see TreeMap
+ * @see java.util.concurrent.ConcurrentBTreeMap
+ * @since 1.8
+ */
+public class BTreeMap<K,V>
+    extends AbstractMap<K,V>
+    implements NavigableMap<K,V>, Cloneable, java.io.Serializable
+{
+    /*
+     * Implementation overview.
+     *
+     * All mappings are held in leaves, each holding up to MAX keys
+     * and values in parallel arrays, in ascending key order, and
+     * doubly linked to its neighbours.  Inner nodes hold up to MAX
+     * children and one fewer separator keys: all keys in child i are
+     * at least keys[i-1] and less than keys[i].  Separators are copies
+     * of keys that were the first keys of leaves when those leaves were
+     * split off; they are not updated when mappings are removed, which
+     * keeps them valid bounds.
+     *
+     * Insertions into a full node split it in two, adding a separator
+     * and child to its parent, possibly splitting it in turn, and
+     * growing a new root when the old root splits.  Nodes normally
+     * split evenly, but a node that overflows by an insertion at the
+     * end of the map keeps all but the last of its entries (or, for
+     * inner nodes, all but the last two of its children), so that
+     * ascending insertions fill nodes completely.  Removals leaving a
+     * node with fewer than MIN entries (or children) borrow one from
+     * a sibling that has more than MIN of them, and otherwise merge
+     * the node with that sibling, possibly in turn leaving the parent
+     * with too few children.  A root with a single child is replaced
+     * by that child.  This keeps all leaves but an empty root
+     * non-empty, so the neighbours of any key are found in the leaf
+     * the key would be in, or in the leaf next to it.
+     *
+     * The root leaf of a small map starts with small arrays which are
+     * grown as needed; all others are allocated at full size.
+     *
+     * Insertions and removals record the nodes they pass through, and
+     * the indices of the children taken, in the path and slots arrays,
+     * so that nodes may be split or rebalanced bottom-up.
+     *
+     * Lookups never modify the map, which is relied upon by
+     * ConcurrentBTreeMap, whose readers traverse it without locking
+     * and then check that no writer intervened.
+     */
+
+    /** The maximum number of entries of a leaf and of children of an inner node */
+    static final int MAX = 64;
+
+    /** The number of entries or children below which a node is rebalanced */
+    static final int MIN = MAX >>> 1;
+
+    /** The initial capacity of the root leaf */
+    static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * The comparator used to maintain order in this map, or
+     * null if it uses the natural ordering of its keys.
+     *
+     * @serial
+     */
+    private final Comparator<? super K> comparator;
+
+    private transient Node root;
+
+    /** The first and last leaves */
+    private transient Leaf head, tail;
+
+    /** The number of levels of inner nodes */
+    private transient int height;
+
+    /**
+     * The number of entries in the tree
+     */
+    private transient int size;
+
+    /**
+     * The number of structural modifications to the tree.
+     */
+    private transient int modCount;
+
+    /** The inner nodes visited by the current insertion or removal */
+    private transient Inner[] path;
+
+    /** The indices of the children taken at each node in path */
+    private transient int[] slots;
+
+    static class Node {
+        /** The number of keys */
+        int n;
+        Object[] keys;
+    }
+
+    static final class Leaf extends Node {
+        Object[] vals;
+        Leaf prev, next;
+        Leaf(int capacity) {
+            keys = new Object[capacity];
+            vals = new Object[capacity];
+        }
+    }
+
+    static final class Inner extends Node {
+        final Node[] kids = new Node[MAX + 1];
+        Inner() {
+            keys = new Object[MAX];
+        }
+    }
+
+    /**
+     * A position of a mapping: the leaf holding it and its index.
+     */
+    static final class Pos {
+        final Leaf leaf;
+        final int index;
+        Pos(Leaf leaf, int index) {
+            this.leaf = leaf;
+            this.index = index;
+        }
+        Object key() { return leaf.keys[index]; }
+        Object value() { return leaf.vals[index]; }
+    }
+
+    /**
+     * Constructs a new, empty map, using the natural ordering of its
+     * keys.  All keys inserted into the map must implement the {@link
+     * Comparable} interface, and must be <em>mutually comparable</em>.
+     */
+    public BTreeMap() {
+        comparator = null;
+        initialize();
+    }
+
+    /**
+     * Constructs a new, empty map, ordered according to the given
+     * comparator.
+     *
+     * @param comparator the comparator that will be used to order this map.
+     *        If {@code null}, the {@linkplain Comparable natural
+     *        ordering} of the keys will be used.
+     */
+    public BTreeMap(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+        initialize();
+    }
+
+    /**
+     * Constructs a new map containing the same mappings as the given
+     * map, ordered according to the <em>natural ordering</em> of its keys.
+     *
+     * @param  m the map whose mappings are to be placed in this map
+     * @throws ClassCastException if the keys in m are not {@link Comparable},
+     *         or are not mutually comparable
+     * @throws NullPointerException if the specified map is null
+     */
+    public BTreeMap(Map<? extends K, ? extends V> m) {
+        comparator = null;
+        initialize();
+        putAll(m);
+    }
+
+    /**
+     * Constructs a new map containing the same mappings and using the
+     * same ordering as the specified sorted map.
+     *
+     * @param  m the sorted map whose mappings are to be placed in this map,
+     *         and whose comparator is to be used to sort this map
+     * @throws NullPointerException if the specified map is null
+     */
+    public BTreeMap(SortedMap<K, ? extends V> m) {
+        comparator = m.comparator();
+        initialize();
+        putAll(m);
+    }
+
+    private void initialize() {
+        root = head = tail = new Leaf(INITIAL_CAPACITY);
+        height = 0;
+        size = 0;
+    }
+
+    /**
+     * Compares two keys using the correct comparison method for this map.
+     */
+    @SuppressWarnings("unchecked")
+    final int compare(Object k1, Object k2) {
+        return comparator == null ? ((Comparable<? super K>)k1).compareTo((K)k2)
+            : comparator.compare((K)k1, (K)k2);
+    }
+
+    /**
+     * Searches the keys of the given node for the given key, returning
+     * its index if present, else (-(insertion point) - 1).
+     */
+    @SuppressWarnings("unchecked")
+    final int search(Node x, Object key) {
+        Object[] ks = x.keys;
+        int lo = 0, hi = x.n - 1;
+        Comparator<? super K> cpr = comparator;
+        if (cpr == null) {
+            if (key == null)
+                throw new NullPointerException();
+            Comparable<Object> k = (Comparable<Object>)key;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = k.compareTo(ks[mid]);
+                if (c > 0)
+                    lo = mid + 1;
+                else if (c < 0)
+                    hi = mid - 1;
+                else
+                    return mid;
+            }
+        }
+        else {
+            K k = (K)key;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = cpr.compare(k, (K)ks[mid]);
+                if (c > 0)
+                    lo = mid + 1;
+                else if (c < 0)
+                    hi = mid - 1;
+                else
+                    return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * Returns the index of the child of p whose keys span the given key.
+     */
+    final int childIndex(Inner p, Object key) {
+        int i = search(p, key);
+        return (i >= 0) ? i + 1 : -(i + 1);
+    }
+
+    /**
+     * Returns the leaf whose keys span the given key.
+     */
+    final Leaf leafFor(Object key) {
+        Node x = root;
+        while (x instanceof Inner) {
+            Inner p = (Inner)x;
+            x = p.kids[childIndex(p, key)];
+        }
+        return (Leaf)x;
+    }
+
+    /* ---------------- Positions -------------- */
+
+    /*
+     * Relations for findNear, as in ConcurrentSkipListMap.
+     */
+    static final int EQ = 1;
+    static final int LT = 2;
+    static final int GT = 0; // Actually checked as !LT
+
+    /**
+     * Returns the position of the mapping for the given key, or null.
+     */
+    final Pos getPos(Object key) {
+        Leaf l = leafFor(key);
+        int i = search(l, key);
+        return (i >= 0) ? new Pos(l, i) : null;
+    }
+
+    /**
+     * Returns the position of the mapping whose key is closest to the
+     * given key satisfying the given relation, or null if there is
+     * none.
+     *
+     * @param key the key
+     * @param rel the relation -- OR'ed combination of EQ, LT, GT
+     */
+    final Pos findNear(Object key, int rel) {
+        Leaf l = leafFor(key);
+        int i = search(l, key);
+        if (i >= 0) {
+            if ((rel & EQ) != 0)
+                return new Pos(l, i);
+            i = ((rel & LT) != 0) ? i - 1 : i + 1;
+        }
+        else {
+            i = -(i + 1);
+            if ((rel & LT) != 0)
+                --i;
+        }
+        if (i < 0) {
+            if ((l = l.prev) == null)
+                return null;
+            i = l.n - 1;
+        }
+        else if (i >= l.n) {
+            if ((l = l.next) == null)
+                return null;
+            i = 0;
+        }
+        return new Pos(l, i);
+    }
+
+    final Pos firstPos() {
+        Leaf l = head;
+        return (l.n == 0) ? null : new Pos(l, 0);
+    }
+
+    final Pos lastPos() {
+        Leaf l = tail;
+        return (l.n == 0) ? null : new Pos(l, l.n - 1);
+    }
+
+    /**
+     * Returns a snapshot of the mapping at the given position, or null.
+     */
+    @SuppressWarnings("unchecked")
+    static <K,V> Map.Entry<K,V> exportEntry(Pos p) {
+        return (p == null) ? null :
+            new AbstractMap.SimpleImmutableEntry<>((K)p.key(), (V)p.value());
+    }
+
+    /**
+     * Returns the key at the given position, or null if none.
+     */
+    @SuppressWarnings("unchecked")
+    static <K> K keyOrNull(Pos p) {
+        return (p == null) ? null : (K)p.key();
+    }
+
+    /**
+     * Returns the key at the given position, or throws
+     * NoSuchElementException if none.
+     */
+    @SuppressWarnings("unchecked")
+    static <K> K key(Pos p) {
+        if (p == null)
+            throw new NoSuchElementException();
+        return (K)p.key();
+    }
+
+    /* ---------------- Query Operations -------------- */
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if this map contains a mapping for the specified
+     * key.
+     *
+     * @param key key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the
+     *         specified key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public boolean containsKey(Object key) {
+        return search(leafFor(key), key) >= 0;
+    }
+
+    /**
+     * Returns {@code true} if this map maps one or more keys to the
+     * specified value.  This operation requires time linear in the map
+     * size.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if a mapping to {@code value} exists;
+     *         {@code false} otherwise
+     */
+    public boolean containsValue(Object value) {
+        for (Leaf l = head; l != null; l = l.next) {
+            Object[] vs = l.vals;
+            for (int i = 0, n = l.n; i < n; ++i) {
+                if (Objects.equals(value, vs[i]))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or {@code null} if this map contains no mapping for the key.
+     *
+     * <p>A return value of {@code null} does not <em>necessarily</em>
+     * indicate that the map contains no mapping for the key; it's also
+     * possible that the map explicitly maps the key to {@code null}.
+     * The {@link #containsKey containsKey} operation may be used to
+     * distinguish these two cases.
+     *
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Leaf l = leafFor(key);
+        int i = search(l, key);
+        return (i >= 0) ? (V)l.vals[i] : null;
+    }
+
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    /**
+     * @throws NoSuchElementException {@inheritDoc}
+     */
+    public K firstKey() {
+        return key(firstPos());
+    }
+
+    /**
+     * @throws NoSuchElementException {@inheritDoc}
+     */
+    public K lastKey() {
+        return key(lastPos());
+    }
+
+    /* ---------------- Modification Operations -------------- */
+
+    /**
+     * Ensures that the path arrays can hold the current height.
+     */
+    private void preparePath() {
+        Inner[] p = path;
+        if (p == null || p.length < height) {
+            int len = height + 4;
+            path = new Inner[len];
+            slots = new int[len];
+        }
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old
+     * value is replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     *
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}.
+     *         (A {@code null} return can also indicate that the map
+     *         previously associated {@code null} with {@code key}.)
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        if (size == 0)
+            compare(key, key); // type (and possibly null) check
+        preparePath();
+        Inner[] path = this.path;
+        int[] slots = this.slots;
+        Node x = root;
+        int h = 0;
+        while (x instanceof Inner) {
+            Inner p = (Inner)x;
+            int s = childIndex(p, key);
+            path[h] = p;
+            slots[h++] = s;
+            x = p.kids[s];
+        }
+        Leaf l = (Leaf)x;
+        int i = search(l, key);
+        if (i >= 0) {
+            Object oldValue = l.vals[i];
+            l.vals[i] = value;
+            return (V)oldValue;
+        }
+        i = -(i + 1);
+        int n = l.n;
+        if (n == l.keys.length) {
+            int cap = Math.min(n << 1, MAX + 1);
+            l.keys = Arrays.copyOf(l.keys, cap);
+            l.vals = Arrays.copyOf(l.vals, cap);
+        }
+        System.arraycopy(l.keys, i, l.keys, i + 1, n - i);
+        System.arraycopy(l.vals, i, l.vals, i + 1, n - i);
+        l.keys[i] = key;
+        l.vals[i] = value;
+        l.n = ++n;
+        ++size;
+        ++modCount;
+        if (n > MAX)
+            split(l, i == n - 1 && l.next == null, h);
+        return null;
+    }
+
+    /**
+     * Splits the given overfull leaf, and then any of its ancestors that
+     * become overfull in turn.
+     *
+     * @param l the leaf
+     * @param append true if the entry causing the split was added
+     *        at the end of the map
+     * @param h the number of ancestors of l in path
+     */
+    private void split(Leaf l, boolean append, int h) {
+        int n = l.n, k = append ? MAX : n >>> 1, m = n - k;
+        Leaf r = new Leaf(MAX + 1);
+        System.arraycopy(l.keys, k, r.keys, 0, m);
+        System.arraycopy(l.vals, k, r.vals, 0, m);
+        Arrays.fill(l.keys, k, n, null);
+        Arrays.fill(l.vals, k, n, null);
+        l.n = k;
+        r.n = m;
+        Leaf next = l.next;
+        r.prev = l;
+        r.next = next;
+        if (next == null)
+            tail = r;
+        else
+            next.prev = r;
+        l.next = r;
+
+        Object sep = r.keys[0];
+        Node right = r;
+        Inner[] path = this.path;
+        int[] slots = this.slots;
+        while (h > 0) {
+            Inner p = path[--h];
+            int s = slots[h], pn = p.n;
+            System.arraycopy(p.keys, s, p.keys, s + 1, pn - s);
+            System.arraycopy(p.kids, s + 1, p.kids, s + 2, pn - s);
+            p.keys[s] = sep;
+            p.kids[s + 1] = right;
+            p.n = ++pn;
+            if (pn < MAX)
+                return;
+            // p has MAX + 1 children; keep c of them
+            int c = (append && s == pn - 1) ? MAX - 1 : (pn + 1) >>> 1;
+            int rn = pn - c;
+            Inner q = new Inner();
+            sep = p.keys[c - 1];
+            System.arraycopy(p.keys, c, q.keys, 0, rn);
+            System.arraycopy(p.kids, c, q.kids, 0, rn + 1);
+            Arrays.fill(p.keys, c - 1, pn, null);
+            Arrays.fill(p.kids, c, pn + 1, null);
+            p.n = c - 1;
+            q.n = rn;
+            right = q;
+        }
+        Inner newRoot = new Inner();
+        newRoot.keys[0] = sep;
+        newRoot.kids[0] = root;
+        newRoot.kids[1] = right;
+        newRoot.n = 1;
+        root = newRoot;
+        ++height;
+    }
+
+    /**
+     * Removes the mapping for this key from this map if present.
+     *
+     * @param  key key for which mapping should be removed
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}.
+     *         (A {@code null} return can also indicate that the map
+     *         previously associated {@code null} with {@code key}.)
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public V remove(Object key) {
+        return removeKey(key);
+    }
+
+    /**
+     * Implements remove, for use also by views and iterators.
+     */
+    @SuppressWarnings("unchecked")
+    final V removeKey(Object key) {
+        preparePath();
+        Inner[] path = this.path;
+        int[] slots = this.slots;
+        Node x = root;
+        int h = 0;
+        while (x instanceof Inner) {
+            Inner p = (Inner)x;
+            int s = childIndex(p, key);
+            path[h] = p;
+            slots[h++] = s;
+            x = p.kids[s];
+        }
+        Leaf l = (Leaf)x;
+        int i = search(l, key);
+        if (i < 0)
+            return null;
+        Object oldValue = l.vals[i];
+        int n = l.n - 1;
+        System.arraycopy(l.keys, i + 1, l.keys, i, n - i);
+        System.arraycopy(l.vals, i + 1, l.vals, i, n - i);
+        l.keys[n] = null;
+        l.vals[n] = null;
+        l.n = n;
+        --size;
+        ++modCount;
+        while (h > 0 && n < MIN) {
+            Inner p = path[--h];
+            rebalance(p, slots[h]);
+            n = p.n + 1;
+        }
+        Node r = root;
+        if (r instanceof Inner && r.n == 0) {
+            root = ((Inner)r).kids[0];
+            --height;
+        }
+        return (V)oldValue;
+    }
+
+    /**
+     * Returns the number of entries of a leaf, or children of an
+     * inner node.
+     */
+    static int width(Node x) {
+        return (x instanceof Leaf) ? x.n : x.n + 1;
+    }
+
+    /**
+     * Rebalances the child at index s of p, which has too few entries
+     * or children, with a sibling.
+     */
+    private void rebalance(Inner p, int s) {
+        if (s > 0) {
+            if (width(p.kids[s - 1]) > MIN)
+                borrowFromLeft(p, s);
+            else
+                merge(p, s - 1);
+        }
+        else {
+            if (width(p.kids[1]) > MIN)
+                borrowFromRight(p, 0);
+            else
+                merge(p, 0);
+        }
+    }
+
+    /**
+     * Moves the last entry or child of child s - 1 of p to child s.
+     */
+    private static void borrowFromLeft(Inner p, int s) {
+        Node c = p.kids[s], left = p.kids[s - 1];
+        int cn = c.n, ln = left.n - 1;
+        System.arraycopy(c.keys, 0, c.keys, 1, cn);
+        if (c instanceof Leaf) {
+            Leaf lc = (Leaf)c, ll = (Leaf)left;
+            System.arraycopy(lc.vals, 0, lc.vals, 1, cn);
+            lc.keys[0] = ll.keys[ln];
+            lc.vals[0] = ll.vals[ln];
+            ll.keys[ln] = null;
+            ll.vals[ln] = null;
+            p.keys[s - 1] = lc.keys[0];
+        }
+        else {
+            Inner ic = (Inner)c, il = (Inner)left;
+            System.arraycopy(ic.kids, 0, ic.kids, 1, cn + 1);
+            ic.keys[0] = p.keys[s - 1];
+            ic.kids[0] = il.kids[ln + 1];
+            p.keys[s - 1] = il.keys[ln];
+            il.keys[ln] = null;
+            il.kids[ln + 1] = null;
+        }
+        c.n = cn + 1;
+        left.n = ln;
+    }
+
+    /**
+     * Moves the first entry or child of child s + 1 of p to child s.
+     */
+    private static void borrowFromRight(Inner p, int s) {
+        Node c = p.kids[s], right = p.kids[s + 1];
+        int cn = c.n, rn = right.n - 1;
+        if (c instanceof Leaf) {
+            Leaf lc = (Leaf)c, lr = (Leaf)right;
+            lc.keys[cn] = lr.keys[0];
+            lc.vals[cn] = lr.vals[0];
+            System.arraycopy(lr.keys, 1, lr.keys, 0, rn);
+            System.arraycopy(lr.vals, 1, lr.vals, 0, rn);
+            lr.keys[rn] = null;
+            lr.vals[rn] = null;
+            p.keys[s] = lr.keys[0];
+        }
+        else {
+            Inner ic = (Inner)c, ir = (Inner)right;
+            ic.keys[cn] = p.keys[s];
+            ic.kids[cn + 1] = ir.kids[0];
+            p.keys[s] = ir.keys[0];
+            System.arraycopy(ir.keys, 1, ir.keys, 0, rn);
+            System.arraycopy(ir.kids, 1, ir.kids, 0, rn + 1);
+            ir.keys[rn] = null;
+            ir.kids[rn + 1] = null;
+        }
+        c.n = cn + 1;
+        right.n = rn;
+    }
+
+    /**
+     * Merges child j + 1 of p into child j, removing it from p.
+     */
+    private void merge(Inner p, int j) {
+        Node left = p.kids[j], right = p.kids[j + 1];
+        int ln = left.n, rn = right.n;
+        if (left instanceof Leaf) {
+            Leaf ll = (Leaf)left, lr = (Leaf)right;
+            System.arraycopy(lr.keys, 0, ll.keys, ln, rn);
+            System.arraycopy(lr.vals, 0, ll.vals, ln, rn);
+            ll.n = ln + rn;
+            Leaf next = lr.next;
+            ll.next = next;
+            if (next == null)
+                tail = ll;
+            else
+                next.prev = ll;
+        }
+        else {
+            Inner il = (Inner)left, ir = (Inner)right;
+            il.keys[ln] = p.keys[j];
+            System.arraycopy(ir.keys, 0, il.keys, ln + 1, rn);
+            System.arraycopy(ir.kids, 0, il.kids, ln + 1, rn + 1);
+            il.n = ln + 1 + rn;
+        }
+        int pn = p.n - 1;
+        System.arraycopy(p.keys, j + 1, p.keys, j, pn - j);
+        System.arraycopy(p.kids, j + 2, p.kids, j + 1, pn - j);
+        p.keys[pn] = null;
+        p.kids[pn + 1] = null;
+        p.n = pn;
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     * The map will be empty after this call returns.
+     */
+    public void clear() {
+        modCount++;
+        initialize();
+    }
+
+    /**
+     * Returns a shallow copy of this {@code BTreeMap} instance. (The keys and
+     * values themselves are not cloned.)
+     *
+     * @return a shallow copy of this map
+     */
+    @SuppressWarnings("unchecked")
+    public Object clone() {
+        BTreeMap<K,V> clone;
+        try {
+            clone = (BTreeMap<K,V>) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+
+        // Put clone into "virgin" state (except for comparator)
+        clone.initialize();
+        clone.modCount = 0;
+        clone.path = null;
+        clone.slots = null;
+        clone.entrySet = null;
+        clone.navigableKeySet = null;
+        clone.descendingMap = null;
+
+        // Initialize clone with our mappings, in ascending order
+        for (Leaf l = head; l != null; l = l.next) {
+            for (int i = 0, n = l.n; i < n; ++i)
+                clone.put((K)l.keys[i], (V)l.vals[i]);
+        }
+        return clone;
+    }
+
+    // NavigableMap API methods
+
+    public Map.Entry<K,V> firstEntry() {
+        return exportEntry(firstPos());
+    }
+
+    public Map.Entry<K,V> lastEntry() {
+        return exportEntry(lastPos());
+    }
+
+    public Map.Entry<K,V> pollFirstEntry() {
+        Pos p = firstPos();
+        Map.Entry<K,V> result = exportEntry(p);
+        if (p != null)
+            removeKey(p.key());
+        return result;
+    }
+
+    public Map.Entry<K,V> pollLastEntry() {
+        Pos p = lastPos();
+        Map.Entry<K,V> result = exportEntry(p);
+        if (p != null)
+            removeKey(p.key());
+        return result;
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> lowerEntry(K key) {
+        return exportEntry(findNear(key, LT));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K lowerKey(K key) {
+        return keyOrNull(findNear(key, LT));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> floorEntry(K key) {
+        return exportEntry(findNear(key, LT|EQ));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K floorKey(K key) {
+        return keyOrNull(findNear(key, LT|EQ));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> ceilingEntry(K key) {
+        return exportEntry(findNear(key, GT|EQ));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K ceilingKey(K key) {
+        return keyOrNull(findNear(key, GT|EQ));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> higherEntry(K key) {
+        return exportEntry(findNear(key, GT));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K higherKey(K key) {
+        return keyOrNull(findNear(key, GT));
+    }
+
+    // Views
+
+    /**
+     * Fields initialized to contain an instance of the entry set view
+     * the first time this view is requested.  Views are stateless, so
+     * there's no reason to create more than one.
+     */
+    private transient EntrySet entrySet;
+    private transient KeySet<K> navigableKeySet;
+    private transient NavigableMap<K,V> descendingMap;
+
+    /**
+     * Returns a {@link NavigableSet} view of the keys contained in this map.
+     * The set's iterator returns the keys in ascending order.  The set is
+     * backed by the map, so changes to the map are reflected in the set,
+     * and vice-versa.  The set supports element removal, which removes the
+     * corresponding mapping from the map, via the {@code Iterator.remove},
+     * {@code Set.remove}, {@code removeAll}, {@code retainAll}, and {@code
+     * clear} operations.  It does not support the {@code add} or {@code
+     * addAll} operations.
+     */
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    public NavigableSet<K> navigableKeySet() {
+        KeySet<K> nks = navigableKeySet;
+        return (nks != null) ? nks : (navigableKeySet = new KeySet<>(this));
+    }
+
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    /**
+     * Returns a {@link Collection} view of the values contained in this map.
+     * The collection's iterator returns the values in ascending order
+     * of the corresponding keys.  The collection is backed by the map, so
+     * changes to the map are reflected in the collection, and vice-versa.
+     * The collection supports element removal, which removes the
+     * corresponding mapping from the map, via the {@code Iterator.remove},
+     * {@code Collection.remove}, {@code removeAll}, {@code retainAll} and
+     * {@code clear} operations.  It does not support the {@code add} or
+     * {@code addAll} operations.
+     */
+    public Collection<V> values() {
+        Collection<V> vs = values;
+        return (vs != null) ? vs : (values = new Values());
+    }
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this map.
+     * The set's iterator returns the entries in ascending key order.  The
+     * set is backed by the map, so changes to the map are reflected in
+     * the set, and vice-versa.  The set supports element removal, which
+     * removes the corresponding mapping from the map, via the {@code
+     * Iterator.remove}, {@code Set.remove}, {@code removeAll}, {@code
+     * retainAll} and {@code clear} operations.  It does not support the
+     * {@code add} or {@code addAll} operations.
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        EntrySet es = entrySet;
+        return (es != null) ? es : (entrySet = new EntrySet());
+    }
+
+    public NavigableMap<K, V> descendingMap() {
+        NavigableMap<K, V> km = descendingMap;
+        return (km != null) ? km :
+            (descendingMap = new SubMap<>(this, true, null, true,
+                                          true, null, true, true));
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} or {@code toKey} is
+     *         null and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public NavigableMap<K,V> subMap(K fromKey, boolean fromInclusive,
+                                    K toKey,   boolean toInclusive) {
+        return new SubMap<>(this, false, fromKey, fromInclusive,
+                            false, toKey, toInclusive, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code toKey} is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public NavigableMap<K,V> headMap(K toKey, boolean inclusive) {
+        return new SubMap<>(this, true, null, true,
+                            false, toKey, inclusive, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public NavigableMap<K,V> tailMap(K fromKey, boolean inclusive) {
+        return new SubMap<>(this, false, fromKey, inclusive,
+                            true, null, true, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} or {@code toKey} is
+     *         null and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public SortedMap<K,V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code toKey} is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public SortedMap<K,V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public SortedMap<K,V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = modCount;
+        for (Leaf l = head; l != null; l = l.next) {
+            Object[] ks = l.keys, vs = l.vals;
+            for (int i = 0, n = l.n; i < n; ++i) {
+                action.accept((K)ks[i], (V)vs[i]);
+                if (expectedModCount != modCount)
+                    throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        int expectedModCount = modCount;
+        for (Leaf l = head; l != null; l = l.next) {
+            Object[] ks = l.keys, vs = l.vals;
+            for (int i = 0, n = l.n; i < n; ++i) {
+                vs[i] = function.apply((K)ks[i], (V)vs[i]);
+                if (expectedModCount != modCount)
+                    throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    // View class support
+
+    class Values extends AbstractCollection<V> {
+        public Iterator<V> iterator() {
+            return new ValueIterator(firstPos(), null, false);
+        }
+
+        public int size() {
+            return BTreeMap.this.size();
+        }
+
+        public boolean contains(Object o) {
+            return BTreeMap.this.containsValue(o);
+        }
+
+        public void clear() {
+            BTreeMap.this.clear();
+        }
+    }
+
+    class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return new EntryIterator(firstPos(), null, false);
+        }
+
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+            Pos p = getPos(entry.getKey());
+            return p != null && Objects.equals(p.value(), entry.getValue());
+        }
+
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+            Object key = entry.getKey();
+            Pos p = getPos(key);
+            if (p != null && Objects.equals(p.value(), entry.getValue())) {
+                removeKey(key);
+                return true;
+            }
+            return false;
+        }
+
+        public int size() {
+            return BTreeMap.this.size();
+        }
+
+        public void clear() {
+            BTreeMap.this.clear();
+        }
+    }
+
+    /*
+     * Unlike Values and EntrySet, the KeySet class is static,
+     * delegating to a NavigableMap to allow use by SubMaps.
+     */
+
+    Iterator<K> keyIterator() {
+        return new KeyIterator(firstPos(), null, false);
+    }
+
+    Iterator<K> descendingKeyIterator() {
+        return new KeyIterator(lastPos(), null, true);
+    }
+
+    static final class KeySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+        private final NavigableMap<E, ?> m;
+        KeySet(NavigableMap<E,?> map) { m = map; }
+
+        public Iterator<E> iterator() {
+            if (m instanceof BTreeMap)
+                return ((BTreeMap<E,?>)m).keyIterator();
+            else
+                return ((BTreeMap.SubMap<E,?>)m).keyIterator();
+        }
+
+        public Iterator<E> descendingIterator() {
+            if (m instanceof BTreeMap)
+                return ((BTreeMap<E,?>)m).descendingKeyIterator();
+            else
+                return ((BTreeMap.SubMap<E,?>)m).descendingKeyIterator();
+        }
+
+        public int size() { return m.size(); }
+        public boolean isEmpty() { return m.isEmpty(); }
+        public boolean contains(Object o) { return m.containsKey(o); }
+        public void clear() { m.clear(); }
+        public E lower(E e) { return m.lowerKey(e); }
+        public E floor(E e) { return m.floorKey(e); }
+        public E ceiling(E e) { return m.ceilingKey(e); }
+        public E higher(E e) { return m.higherKey(e); }
+        public E first() { return m.firstKey(); }
+        public E last() { return m.lastKey(); }
+        public Comparator<? super E> comparator() { return m.comparator(); }
+        public E pollFirst() {
+            Map.Entry<E,?> e = m.pollFirstEntry();
+            return (e == null) ? null : e.getKey();
+        }
+        public E pollLast() {
+            Map.Entry<E,?> e = m.pollLastEntry();
+            return (e == null) ? null : e.getKey();
+        }
+        public boolean remove(Object o) {
+            int oldSize = size();
+            m.remove(o);
+            return size() != oldSize;
+        }
+        public NavigableSet<E> subSet(E fromElement, boolean fromInclusive,
+                                      E toElement,   boolean toInclusive) {
+            return new KeySet<>(m.subMap(fromElement, fromInclusive,
+                                          toElement,   toInclusive));
+        }
+        public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+            return new KeySet<>(m.headMap(toElement, inclusive));
+        }
+        public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+            return new KeySet<>(m.tailMap(fromElement, inclusive));
+        }
+        public SortedSet<E> subSet(E fromElement, E toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+        public SortedSet<E> headSet(E toElement) {
+            return headSet(toElement, false);
+        }
+        public SortedSet<E> tailSet(E fromElement) {
+            return tailSet(fromElement, true);
+        }
+        public NavigableSet<E> descendingSet() {
+            return new KeySet<>(m.descendingMap());
+        }
+    }
+
+    /**
+     * Base class for BTreeMap Iterators, stepping through the leaves in
+     * either direction, and stopping at the bound of a SubMap if given.
+     */
+    abstract class PrivateIterator<T> implements Iterator<T> {
+        /** The leaf holding the next mapping, or null if none */
+        Leaf next;
+        int nextIndex;
+        /** The leaf holding the last mapping returned, or null */
+        Leaf last;
+        int lastIndex;
+        final SubMap<K,V> range;
+        final boolean descending;
+        int expectedModCount;
+
+        PrivateIterator(Pos first, SubMap<K,V> range, boolean descending) {
+            this.range = range;
+            this.descending = descending;
+            expectedModCount = modCount;
+            if (first != null && !beyond(first.key())) {
+                next = first.leaf;
+                nextIndex = first.index;
+            }
+        }
+
+        /**
+         * Returns true if the key is past the end of the range.
+         */
+        final boolean beyond(Object key) {
+            return range != null &&
+                (descending ? range.tooLow(key) : range.tooHigh(key));
+        }
+
+        public final boolean hasNext() {
+            return next != null;
+        }
+
+        /**
+         * Advances past the next mapping, recording its position as the
+         * last one returned.
+         */
+        final void advance() {
+            Leaf l = next;
+            if (l == null)
+                throw new NoSuchElementException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            int i = lastIndex = nextIndex;
+            last = l;
+            if (descending) {
+                if (--i < 0 && (l = l.prev) != null)
+                    i = l.n - 1;
+            }
+            else if (++i >= l.n) {
+                l = l.next;
+                i = 0;
+            }
+            if (l != null && beyond(l.keys[i]))
+                l = null;
+            next = l;
+            nextIndex = i;
+        }
+
+        public void remove() {
+            Leaf l = last;
+            if (l == null)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            last = null;
+            Object key = l.keys[lastIndex];
+            if (next == null)
+                removeKey(key);
+            else {
+                // Removal may restructure the leaves; relocate the next key
+                Object nextKey = next.keys[nextIndex];
+                removeKey(key);
+                Leaf nl = leafFor(nextKey);
+                next = nl;
+                nextIndex = search(nl, nextKey);
+            }
+            expectedModCount = modCount;
+        }
+    }
+
+    final class EntryIterator extends PrivateIterator<Map.Entry<K,V>> {
+        EntryIterator(Pos first, SubMap<K,V> range, boolean descending) {
+            super(first, range, descending);
+        }
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K,V> next() {
+            advance();
+            return new Entry((K)last.keys[lastIndex], (V)last.vals[lastIndex]);
+        }
+    }
+
+    final class ValueIterator extends PrivateIterator<V> {
+        ValueIterator(Pos first, SubMap<K,V> range, boolean descending) {
+            super(first, range, descending);
+        }
+        @SuppressWarnings("unchecked")
+        public V next() {
+            advance();
+            return (V)last.vals[lastIndex];
+        }
+    }
+
+    final class KeyIterator extends PrivateIterator<K> {
+        KeyIterator(Pos first, SubMap<K,V> range, boolean descending) {
+            super(first, range, descending);
+        }
+        @SuppressWarnings("unchecked")
+        public K next() {
+            advance();
+            return (K)last.keys[lastIndex];
+        }
+    }
+
+    /**
+     * An entry returned by the entry iterators, whose setValue writes
+     * through to the map.
+     */
+    @SuppressWarnings("serial") // Not statically typed as Serializable
+    final class Entry extends AbstractMap.SimpleEntry<K,V> {
+        Entry(K key, V value) {
+            super(key, value);
+        }
+        public V setValue(V value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    // SubMaps
+
+    /**
+     * A view of a range of the map, in either direction.  Bounds are
+     * always expressed, and checked, in the ascending order of the
+     * backing map, as in TreeMap.NavigableSubMap.
+     */
+    static final class SubMap<K,V> extends AbstractMap<K,V>
+        implements NavigableMap<K,V>, java.io.Serializable {
+        private static final long serialVersionUID = -3254578429731853062L;
+
+        /**
+         * The backing map.
+         */
+        final BTreeMap<K,V> m;
+
+        /**
+         * Endpoints are represented as triples (fromStart, lo,
+         * loInclusive) and (toEnd, hi, hiInclusive). If fromStart is
+         * true, then the low (absolute) bound is the start of the
+         * backing map, and the other values are ignored. Otherwise,
+         * if loInclusive is true, lo is the inclusive bound, else lo
+         * is the exclusive bound. Similarly for the upper bound.
+         */
+        final K lo, hi;
+        final boolean fromStart, toEnd;
+        final boolean loInclusive, hiInclusive;
+
+        /** True if this view is in descending order */
+        final boolean descending;
+
+        // Lazily initialized view holders
+        private transient KeySet<K> keySetView;
+        private transient Set<Map.Entry<K,V>> entrySetView;
+        private transient Collection<V> valuesView;
+
+        SubMap(BTreeMap<K,V> m,
+               boolean fromStart, K lo, boolean loInclusive,
+               boolean toEnd,     K hi, boolean hiInclusive,
+               boolean descending) {
+            if (!fromStart && !toEnd) {
+                if (m.compare(lo, hi) > 0)
+                    throw new IllegalArgumentException("fromKey > toKey");
+            } else {
+                if (!fromStart) // type check
+                    m.compare(lo, lo);
+                if (!toEnd)
+                    m.compare(hi, hi);
+            }
+
+            this.m = m;
+            this.fromStart = fromStart;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.toEnd = toEnd;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        // internal utilities
+
+        final boolean tooLow(Object key) {
+            if (!fromStart) {
+                int c = m.compare(key, lo);
+                if (c < 0 || (c == 0 && !loInclusive))
+                    return true;
+            }
+            return false;
+        }
+
+        final boolean tooHigh(Object key) {
+            if (!toEnd) {
+                int c = m.compare(key, hi);
+                if (c > 0 || (c == 0 && !hiInclusive))
+                    return true;
+            }
+            return false;
+        }
+
+        final boolean inRange(Object key) {
+            return !tooLow(key) && !tooHigh(key);
+        }
+
+        final boolean inClosedRange(Object key) {
+            return (fromStart || m.compare(key, lo) >= 0)
+                && (toEnd || m.compare(hi, key) >= 0);
+        }
+
+        final boolean inRange(Object key, boolean inclusive) {
+            return inclusive ? inRange(key) : inClosedRange(key);
+        }
+
+        /*
+         * Absolute versions of relation operations, returning
+         * positions in ascending order of the backing map.
+         */
+
+        final Pos absLowest() {
+            Pos p = (fromStart ? m.firstPos() :
+                     m.findNear(lo, loInclusive ? GT|EQ : GT));
+            return (p == null || tooHigh(p.key())) ? null : p;
+        }
+
+        final Pos absHighest() {
+            Pos p = (toEnd ? m.lastPos() :
+                     m.findNear(hi, hiInclusive ? LT|EQ : LT));
+            return (p == null || tooLow(p.key())) ? null : p;
+        }
+
+        final Pos absCeiling(Object key) {
+            if (tooLow(key))
+                return absLowest();
+            Pos p = m.findNear(key, GT|EQ);
+            return (p == null || tooHigh(p.key())) ? null : p;
+        }
+
+        final Pos absHigher(Object key) {
+            if (tooLow(key))
+                return absLowest();
+            Pos p = m.findNear(key, GT);
+            return (p == null || tooHigh(p.key())) ? null : p;
+        }
+
+        final Pos absFloor(Object key) {
+            if (tooHigh(key))
+                return absHighest();
+            Pos p = m.findNear(key, LT|EQ);
+            return (p == null || tooLow(p.key())) ? null : p;
+        }
+
+        final Pos absLower(Object key) {
+            if (tooHigh(key))
+                return absHighest();
+            Pos p = m.findNear(key, LT);
+            return (p == null || tooLow(p.key())) ? null : p;
+        }
+
+        /*
+         * Relation operations in the order of this view.
+         */
+
+        final Pos lowest() {
+            return descending ? absHighest() : absLowest();
+        }
+
+        final Pos highest() {
+            return descending ? absLowest() : absHighest();
+        }
+
+        final Pos ceiling(Object key) {
+            return descending ? absFloor(key) : absCeiling(key);
+        }
+
+        final Pos higher(Object key) {
+            return descending ? absLower(key) : absHigher(key);
+        }
+
+        final Pos floor(Object key) {
+            return descending ? absCeiling(key) : absFloor(key);
+        }
+
+        final Pos lower(Object key) {
+            return descending ? absHigher(key) : absLower(key);
+        }
+
+        final Map.Entry<K,V> pollEntry(Pos p) {
+            Map.Entry<K,V> result = exportEntry(p);
+            if (p != null)
+                m.removeKey(p.key());
+            return result;
+        }
+
+        Iterator<K> keyIterator() {
+            return m.new KeyIterator(lowest(), this, descending);
+        }
+
+        Iterator<K> descendingKeyIterator() {
+            return m.new KeyIterator(highest(), this, !descending);
+        }
+
+        // public methods
+
+        public boolean isEmpty() {
+            return (fromStart && toEnd) ? m.isEmpty() : absLowest() == null;
+        }
+
+        public int size() {
+            if (fromStart && toEnd)
+                return m.size();
+            Pos p = absLowest(), q;
+            if (p == null || (q = absHighest()) == null)
+                return 0;
+            int count = q.index + 1 - p.index;
+            for (Leaf l = p.leaf; l != q.leaf; l = l.next)
+                count += l.n;
+            return count;
+        }
+
+        public final boolean containsKey(Object key) {
+            return inRange(key) && m.containsKey(key);
+        }
+
+        public final V put(K key, V value) {
+            if (!inRange(key))
+                throw new IllegalArgumentException("key out of range");
+            return m.put(key, value);
+        }
+
+        public final V get(Object key) {
+            return !inRange(key) ? null :  m.get(key);
+        }
+
+        public final V remove(Object key) {
+            return !inRange(key) ? null : m.removeKey(key);
+        }
+
+        public Comparator<? super K> comparator() {
+            return descending ? Collections.reverseOrder(m.comparator())
+                : m.comparator();
+        }
+
+        public final Map.Entry<K,V> ceilingEntry(K key) {
+            return exportEntry(ceiling(key));
+        }
+
+        public final K ceilingKey(K key) {
+            return keyOrNull(ceiling(key));
+        }
+
+        public final Map.Entry<K,V> higherEntry(K key) {
+            return exportEntry(higher(key));
+        }
+
+        public final K higherKey(K key) {
+            return keyOrNull(higher(key));
+        }
+
+        public final Map.Entry<K,V> floorEntry(K key) {
+            return exportEntry(floor(key));
+        }
+
+        public final K floorKey(K key) {
+            return keyOrNull(floor(key));
+        }
+
+        public final Map.Entry<K,V> lowerEntry(K key) {
+            return exportEntry(lower(key));
+        }
+
+        public final K lowerKey(K key) {
+            return keyOrNull(lower(key));
+        }
+
+        public final K firstKey() {
+            return key(lowest());
+        }
+
+        public final K lastKey() {
+            return key(highest());
+        }
+
+        public final Map.Entry<K,V> firstEntry() {
+            return exportEntry(lowest());
+        }
+
+        public final Map.Entry<K,V> lastEntry() {
+            return exportEntry(highest());
+        }
+
+        public final Map.Entry<K,V> pollFirstEntry() {
+            return pollEntry(lowest());
+        }
+
+        public final Map.Entry<K,V> pollLastEntry() {
+            return pollEntry(highest());
+        }
+
+        public NavigableMap<K,V> subMap(K fromKey, boolean fromInclusive,
+                                        K toKey,   boolean toInclusive) {
+            if (!inRange(fromKey, fromInclusive))
+                throw new IllegalArgumentException("fromKey out of range");
+            if (!inRange(toKey, toInclusive))
+                throw new IllegalArgumentException("toKey out of range");
+            if (descending)
+                return new SubMap<>(m, false, toKey, toInclusive,
+                                    false, fromKey, fromInclusive, true);
+            return new SubMap<>(m, false, fromKey, fromInclusive,
+                                false, toKey, toInclusive, false);
+        }
+
+        public NavigableMap<K,V> headMap(K toKey, boolean inclusive) {
+            if (!inRange(toKey, inclusive))
+                throw new IllegalArgumentException("toKey out of range");
+            if (descending)
+                return new SubMap<>(m, false, toKey, inclusive,
+                                    toEnd, hi, hiInclusive, true);
+            return new SubMap<>(m, fromStart, lo, loInclusive,
+                                false, toKey, inclusive, false);
+        }
+
+        public NavigableMap<K,V> tailMap(K fromKey, boolean inclusive) {
+            if (!inRange(fromKey, inclusive))
+                throw new IllegalArgumentException("fromKey out of range");
+            if (descending)
+                return new SubMap<>(m, fromStart, lo, loInclusive,
+                                    false, fromKey, inclusive, true);
+            return new SubMap<>(m, false, fromKey, inclusive,
+                                toEnd, hi, hiInclusive, false);
+        }
+
+        public final SortedMap<K,V> subMap(K fromKey, K toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        public final SortedMap<K,V> headMap(K toKey) {
+            return headMap(toKey, false);
+        }
+
+        public final SortedMap<K,V> tailMap(K fromKey) {
+            return tailMap(fromKey, true);
+        }
+
+        public NavigableMap<K,V> descendingMap() {
+            return new SubMap<>(m, fromStart, lo, loInclusive,
+                                toEnd, hi, hiInclusive, !descending);
+        }
+
+        public final Set<K> keySet() {
+            return navigableKeySet();
+        }
+
+        public final NavigableSet<K> navigableKeySet() {
+            KeySet<K> nksv = keySetView;
+            return (nksv != null) ? nksv : (keySetView = new KeySet<>(this));
+        }
+
+        public NavigableSet<K> descendingKeySet() {
+            return descendingMap().navigableKeySet();
+        }
+
+        public Collection<V> values() {
+            Collection<V> vs = valuesView;
+            return (vs != null) ? vs : (valuesView = new SubMapValues());
+        }
+
+        public Set<Map.Entry<K,V>> entrySet() {
+            Set<Map.Entry<K,V>> es = entrySetView;
+            return (es != null) ? es : (entrySetView = new SubMapEntrySet());
+        }
+
+        final class SubMapValues extends AbstractCollection<V> {
+            public Iterator<V> iterator() {
+                return m.new ValueIterator(lowest(), SubMap.this, descending);
+            }
+            public int size() {
+                return SubMap.this.size();
+            }
+            public boolean isEmpty() {
+                return SubMap.this.isEmpty();
+            }
+        }
+
+        final class SubMapEntrySet extends AbstractSet<Map.Entry<K,V>> {
+            public Iterator<Map.Entry<K,V>> iterator() {
+                return m.new EntryIterator(lowest(), SubMap.this, descending);
+            }
+
+            public int size() {
+                return SubMap.this.size();
+            }
+
+            public boolean isEmpty() {
+                return SubMap.this.isEmpty();
+            }
+
+            public boolean contains(Object o) {
+                if (!(o instanceof Map.Entry))
+                    return false;
+                Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+                Object key = entry.getKey();
+                if (!inRange(key))
+                    return false;
+                Pos p = m.getPos(key);
+                return p != null &&
+                    Objects.equals(p.value(), entry.getValue());
+            }
+
+            public boolean remove(Object o) {
+                if (!(o instanceof Map.Entry))
+                    return false;
+                Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+                Object key = entry.getKey();
+                if (!inRange(key))
+                    return false;
+                Pos p = m.getPos(key);
+                if (p != null && Objects.equals(p.value(), entry.getValue())) {
+                    m.removeKey(key);
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    private static final long serialVersionUID = -8153478932620347108L;
+
+    /**
+     * Save the state of the {@code BTreeMap} instance to a stream (i.e.,
+     * serialize it).
+     *
+     * @serialData The <em>size</em> of the BTreeMap (the number of key-value
+     *             mappings) is emitted (int), followed by the key (Object)
+     *             and value (Object) for each key-value mapping represented
+     *             by the BTreeMap. The key-value mappings are emitted in
+     *             key-order (as determined by the BTreeMap's Comparator,
+     *             or by the keys' natural ordering if the BTreeMap has no
+     *             Comparator).
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+        // Write out the Comparator and any hidden stuff
+        s.defaultWriteObject();
+
+        // Write out size (number of Mappings)
+        s.writeInt(size);
+
+        // Write out keys and values (alternating)
+        for (Leaf l = head; l != null; l = l.next) {
+            for (int i = 0, n = l.n; i < n; ++i) {
+                s.writeObject(l.keys[i]);
+                s.writeObject(l.vals[i]);
+            }
+        }
+    }
+
+    /**
+     * Reconstitute the {@code BTreeMap} instance from a stream (i.e.,
+     * deserialize it).
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(final java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        // Read in the Comparator and any hidden stuff
+        s.defaultReadObject();
+
+        initialize();
+
+        // Read in size
+        int n = s.readInt();
+        if (n < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + n);
+
+        // Read in keys and values, which were written in ascending order
+        for (int i = 0; i < n; ++i)
+            put((K)s.readObject(), (V)s.readObject());
+    }
+}
@@ -0,0 +1,963 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Resizable-array implementation of the {@code List} interface storing its
+ * elements in a sequence of arrays ("chunks") rather than in one array.
+ * When an {@link ArrayList} grows, it copies its whole backing array into
+ * one half again as large; for lists of tens of millions of elements this
+ * means transient copies of hundreds of megabytes, allocated as a single
+ * huge object.  A {@code ChunkedArrayList} instead grows by allocating a
+ * new chunk, never copying existing elements, and no chunk holds more than
+ * 16384 elements, so every allocation is small.
+ *
+ * <p>Like {@code ArrayList}, this class supports constant-time positional
+ * access, and is marked {@link RandomAccess}: the chunk holding an index is
+ * computed with a few shift operations.  Insertion and removal at other
+ * than the end of the list take time proportional to the number of
+ * succeeding elements.  The list's {@link #spliterator} reports exact sizes
+ * and splits along chunk boundaries, so it is well suited to parallel
+ * streams.
+ *
+ * <p>The nested classes {@link OfInt}, {@link OfLong} and {@link OfDouble}
+ * are lists of primitive values with the same structure, storing elements
+ * unboxed and offering primitive accessors and streams.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * As for {@code ArrayList}, if multiple threads access an instance
+ * concurrently and at least one modifies the list structurally, it must be
+ * synchronized externally.  Its iterators and spliterators are
+ * <a href="ArrayList.html#fail-fast"><i>fail-fast</i></a>.
+ *
+ * @param <E> the type of elements in this list
+ * @see ArrayList
+ * @since 1.8
+ */
+public class ChunkedArrayList<E>
+    extends AbstractChunkedList<E, Object[], Consumer<? super E>> {
+
+    /**
+     * Constructs an empty list.
+     */
+    public ChunkedArrayList() {
+    }
+
+    /**
+     * Constructs an empty list able to hold the specified number of
+     * elements without allocating.
+     *
+     * @param  initialCapacity  the initial capacity of the list
+     * @throws IllegalArgumentException if the specified initial capacity
+     *         is negative
+     */
+    public ChunkedArrayList(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    /**
+     * Constructs a list containing the elements of the specified
+     * collection, in the order they are returned by its iterator.
+     *
+     * @param c the collection whose elements are to be placed into this list
+     * @throws NullPointerException if the specified collection is null
+     */
+    public ChunkedArrayList(Collection<? extends E> c) {
+        addAll(c);
+    }
+
+    @Override
+    Object[] newChunk(int length) {
+        return new Object[length];
+    }
+
+    @Override
+    void arrayForEach(Object[] array, int from, int to,
+                      Consumer<? super E> consumer) {
+        for (int i = from; i < to; i++)
+            consumer.accept(elementAt(array, i));
+    }
+
+    @Override
+    void arrayClear(Object[] array, int from, int to) {
+        Arrays.fill(array, from, to, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> E elementAt(Object[] a, int i) {
+        return (E) a[i];
+    }
+
+    /**
+     * Returns the element at the specified position in this list.
+     *
+     * @param  index index of the element to return
+     * @return the element at the specified position in this list
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public E get(int index) {
+        rangeCheck(index);
+        int c = chunkFor(index);
+        return elementAt(chunk(c), offsetIn(index, c));
+    }
+
+    /**
+     * Replaces the element at the specified position in this list with
+     * the specified element.
+     *
+     * @param index index of the element to replace
+     * @param element element to be stored at the specified position
+     * @return the element previously at the specified position
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public E set(int index, E element) {
+        rangeCheck(index);
+        int c = chunkFor(index), o = offsetIn(index, c);
+        Object[] a = chunk(c);
+        E oldValue = elementAt(a, o);
+        a[o] = element;
+        return oldValue;
+    }
+
+    /**
+     * Appends the specified element to the end of this list.
+     *
+     * @param e element to be appended to this list
+     * @return {@code true} (as specified by {@link Collection#add})
+     */
+    public boolean add(E e) {
+        modCount++;
+        int i = grow(), c = chunkFor(i);
+        chunk(c)[offsetIn(i, c)] = e;
+        return true;
+    }
+
+    /**
+     * Inserts the specified element at the specified position in this
+     * list, shifting succeeding elements to the right.
+     *
+     * @param index index at which the specified element is to be inserted
+     * @param element element to be inserted
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public void add(int index, E element) {
+        int i = openGap(index, 1), c = chunkFor(i);
+        chunk(c)[offsetIn(i, c)] = element;
+    }
+
+    /**
+     * Removes the element at the specified position in this list,
+     * shifting succeeding elements to the left.
+     *
+     * @param index the index of the element to be removed
+     * @return the element that was removed from the list
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public E remove(int index) {
+        E oldValue = get(index);
+        closeGap(index);
+        return oldValue;
+    }
+
+    /**
+     * Appends all of the elements in the specified collection to the end
+     * of this list, in the order that they are returned by the specified
+     * collection's iterator.
+     *
+     * @param c collection containing elements to be added to this list
+     * @return {@code true} if this list changed as a result of the call
+     * @throws NullPointerException if the specified collection is null
+     */
+    public boolean addAll(Collection<? extends E> c) {
+        return addAll(size, c);
+    }
+
+    /**
+     * Inserts all of the elements in the specified collection into this
+     * list, starting at the specified position.
+     *
+     * @param index index at which to insert the first element from the
+     *              specified collection
+     * @param c collection containing elements to be added to this list
+     * @return {@code true} if this list changed as a result of the call
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     * @throws NullPointerException if the specified collection is null
+     */
+    public boolean addAll(int index, Collection<? extends E> c) {
+        Object[] a = c.toArray();
+        int n = a.length;
+        openGap(index, n);
+        copyFrom(a, 0, index, n);
+        return n != 0;
+    }
+
+    /**
+     * Returns an array containing all of the elements in this list in
+     * proper sequence (from first to last element).
+     *
+     * @return an array containing all of the elements in this list
+     */
+    public Object[] toArray() {
+        Object[] a = new Object[size];
+        copyTo(0, size, a, 0);
+        return a;
+    }
+
+    /**
+     * Returns an array containing all of the elements in this list in
+     * proper sequence (from first to last element); the runtime type of
+     * the returned array is that of the specified array.
+     *
+     * @param a the array into which the elements of the list are to
+     *          be stored, if it is big enough; otherwise, a new array of the
+     *          same runtime type is allocated for this purpose.
+     * @return an array containing the elements of the list
+     * @throws ArrayStoreException if the runtime type of the specified array
+     *         is not a supertype of the runtime type of every element in
+     *         this list
+     * @throws NullPointerException if the specified array is null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        int s = size;
+        if (a.length < s)
+            a = (T[])java.lang.reflect.Array.newInstance(
+                a.getClass().getComponentType(), s);
+        copyTo(0, s, a, 0);
+        if (a.length > s)
+            a[s] = null;
+        return a;
+    }
+
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        forEachInRange(0, size, action);
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<E> operator) {
+        Objects.requireNonNull(operator);
+        final int expectedModCount = modCount;
+        for (int c = 0, i = 0, s = size; i < s; c++) {
+            Object[] a = chunk(c);
+            for (int o = 0, n = Math.min(a.length, s - i); o < n; o++)
+                a[o] = operator.apply(elementAt(a, o));
+            i += a.length;
+        }
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+        modCount++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void sort(Comparator<? super E> c) {
+        final int expectedModCount = modCount;
+        Object[] a = toArray();
+        Arrays.sort(a, (Comparator<Object>)c);
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+        copyFrom(a, 0, 0, a.length);
+        modCount++;
+    }
+
+    /**
+     * Creates a <em><a href="Spliterator.html#binding">late-binding</a></em>
+     * and <em>fail-fast</em> {@link Spliterator} over the elements in this
+     * list, splitting along chunk boundaries.
+     *
+     * <p>The {@code Spliterator} reports {@link Spliterator#SIZED},
+     * {@link Spliterator#SUBSIZED}, and {@link Spliterator#ORDERED}.
+     *
+     * @return a {@code Spliterator} over the elements in this list
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new ChunkSpliterator<E>(this, 0, -1, 0);
+    }
+
+    static final class ChunkSpliterator<E>
+        extends BaseSpliterator<E, Object[], Consumer<? super E>>
+        implements Spliterator<E> {
+        ChunkSpliterator(ChunkedArrayList<E> list, int origin, int fence,
+                         int expectedModCount) {
+            super(list, origin, fence, expectedModCount);
+        }
+
+        public ChunkSpliterator<E> trySplit() {
+            int lo = index, mid = splitPoint();
+            return (mid < 0) ? null :
+                new ChunkSpliterator<E>((ChunkedArrayList<E>)list, lo,
+                                        index = mid, expectedModCount);
+        }
+    }
+
+    /**
+     * A {@code ChunkedArrayList} of {@code int} values, stored unboxed.
+     * The {@code List<Integer>} methods box and unbox; the primitive
+     * accessors, {@link #forEachInt(IntConsumer)}, {@link #spliterator} and
+     * {@link #intStream} do not.
+     *
+     * @since 1.8
+     */
+    public static class OfInt
+        extends AbstractChunkedList<Integer, int[], IntConsumer> {
+
+        /**
+         * Constructs an empty list.
+         */
+        public OfInt() {
+        }
+
+        /**
+         * Constructs an empty list able to hold the specified number of
+         * elements without allocating.
+         *
+         * @param  initialCapacity  the initial capacity of the list
+         * @throws IllegalArgumentException if the specified initial
+         *         capacity is negative
+         */
+        public OfInt(int initialCapacity) {
+            super(initialCapacity);
+        }
+
+        @Override
+        int[] newChunk(int length) {
+            return new int[length];
+        }
+
+        @Override
+        void arrayForEach(int[] array, int from, int to, IntConsumer consumer) {
+            for (int i = from; i < to; i++)
+                consumer.accept(array[i]);
+        }
+
+        /**
+         * Returns the element at the specified position in this list.
+         *
+         * @param index index of the element to return
+         * @return the element at the specified position in this list
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public int getInt(int index) {
+            rangeCheck(index);
+            int c = chunkFor(index);
+            return chunk(c)[offsetIn(index, c)];
+        }
+
+        /**
+         * Replaces the element at the specified position in this list.
+         *
+         * @param index index of the element to replace
+         * @param value value to be stored at the specified position
+         * @return the element previously at the specified position
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public int setInt(int index, int value) {
+            rangeCheck(index);
+            int c = chunkFor(index), o = offsetIn(index, c);
+            int[] a = chunk(c);
+            int oldValue = a[o];
+            a[o] = value;
+            return oldValue;
+        }
+
+        /**
+         * Appends the specified value to the end of this list.
+         *
+         * @param value value to be appended to this list
+         */
+        public void addInt(int value) {
+            modCount++;
+            int i = grow(), c = chunkFor(i);
+            chunk(c)[offsetIn(i, c)] = value;
+        }
+
+        /**
+         * Inserts the specified value at the specified position in this
+         * list, shifting succeeding elements to the right.
+         *
+         * @param index index at which the value is to be inserted
+         * @param value value to be inserted
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public void addInt(int index, int value) {
+            int i = openGap(index, 1), c = chunkFor(i);
+            chunk(c)[offsetIn(i, c)] = value;
+        }
+
+        /**
+         * Removes the element at the specified position in this list,
+         * shifting succeeding elements to the left.
+         *
+         * @param index the index of the element to be removed
+         * @return the element that was removed from the list
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public int removeIntAt(int index) {
+            int oldValue = getInt(index);
+            closeGap(index);
+            return oldValue;
+        }
+
+        public Integer get(int index) {
+            return getInt(index);
+        }
+
+        public Integer set(int index, Integer element) {
+            return setInt(index, element);
+        }
+
+        public boolean add(Integer element) {
+            addInt(element);
+            return true;
+        }
+
+        public void add(int index, Integer element) {
+            addInt(index, element);
+        }
+
+        public Integer remove(int index) {
+            return removeIntAt(index);
+        }
+
+        /**
+         * Returns an array containing all of the elements in this list in
+         * proper sequence.
+         *
+         * @return an array containing all of the elements in this list
+         */
+        public int[] toIntArray() {
+            int[] a = new int[size];
+            copyTo(0, size, a, 0);
+            return a;
+        }
+
+        /**
+         * Sorts this list into ascending numerical order.
+         */
+        public void sort() {
+            int[] a = toIntArray();
+            Arrays.sort(a);
+            copyFrom(a, 0, 0, a.length);
+            modCount++;
+        }
+
+        /**
+         * Performs the given action for each element of this list, in
+         * order.
+         *
+         * @param action the action to be performed for each element
+         * @throws NullPointerException if the specified action is null
+         */
+        public void forEachInt(IntConsumer action) {
+            forEachInRange(0, size, action);
+        }
+
+        @Override
+        public void forEach(Consumer<? super Integer> action) {
+            if (action instanceof IntConsumer)
+                forEachInt((IntConsumer)action);
+            else
+                forEachInRange(0, size, action::accept);
+        }
+
+        /**
+         * Creates a <em>late-binding</em> and <em>fail-fast</em>
+         * {@link Spliterator.OfInt} over the elements in this list,
+         * reporting {@link Spliterator#SIZED}, {@link Spliterator#SUBSIZED},
+         * and {@link Spliterator#ORDERED}.
+         *
+         * @return a {@code Spliterator.OfInt} over the elements in this list
+         */
+        @Override
+        public Spliterator.OfInt spliterator() {
+            return new IntChunkSpliterator(this, 0, -1, 0);
+        }
+
+        /**
+         * Returns a sequential {@code IntStream} with this list as its
+         * source.
+         *
+         * @return a sequential {@code IntStream} over the elements in this
+         *         list
+         */
+        public IntStream intStream() {
+            return StreamSupport.intStream(spliterator(), false);
+        }
+
+        static final class IntChunkSpliterator
+            extends BaseSpliterator<Integer, int[], IntConsumer>
+            implements Spliterator.OfInt {
+            IntChunkSpliterator(ChunkedArrayList.OfInt list, int origin,
+                                int fence, int expectedModCount) {
+                super(list, origin, fence, expectedModCount);
+            }
+
+            public IntChunkSpliterator trySplit() {
+                int lo = index, mid = splitPoint();
+                return (mid < 0) ? null :
+                    new IntChunkSpliterator((ChunkedArrayList.OfInt)list,
+                                            lo, index = mid, expectedModCount);
+            }
+        }
+    }
+
+    /**
+     * A {@code ChunkedArrayList} of {@code long} values, stored unboxed.
+     * The {@code List<Long>} methods box and unbox; the primitive
+     * accessors, {@link #forEachLong(LongConsumer)}, {@link #spliterator} and
+     * {@link #longStream} do not.
+     *
+     * @since 1.8
+     */
+    public static class OfLong
+        extends AbstractChunkedList<Long, long[], LongConsumer> {
+
+        /**
+         * Constructs an empty list.
+         */
+        public OfLong() {
+        }
+
+        /**
+         * Constructs an empty list able to hold the specified number of
+         * elements without allocating.
+         *
+         * @param  initialCapacity  the initial capacity of the list
+         * @throws IllegalArgumentException if the specified initial
+         *         capacity is negative
+         */
+        public OfLong(int initialCapacity) {
+            super(initialCapacity);
+        }
+
+        @Override
+        long[] newChunk(int length) {
+            return new long[length];
+        }
+
+        @Override
+        void arrayForEach(long[] array, int from, int to, LongConsumer consumer) {
+            for (int i = from; i < to; i++)
+                consumer.accept(array[i]);
+        }
+
+        /**
+         * Returns the element at the specified position in this list.
+         *
+         * @param index index of the element to return
+         * @return the element at the specified position in this list
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public long getLong(int index) {
+            rangeCheck(index);
+            int c = chunkFor(index);
+            return chunk(c)[offsetIn(index, c)];
+        }
+
+        /**
+         * Replaces the element at the specified position in this list.
+         *
+         * @param index index of the element to replace
+         * @param value value to be stored at the specified position
+         * @return the element previously at the specified position
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public long setLong(int index, long value) {
+            rangeCheck(index);
+            int c = chunkFor(index), o = offsetIn(index, c);
+            long[] a = chunk(c);
+            long oldValue = a[o];
+            a[o] = value;
+            return oldValue;
+        }
+
+        /**
+         * Appends the specified value to the end of this list.
+         *
+         * @param value value to be appended to this list
+         */
+        public void addLong(long value) {
+            modCount++;
+            int i = grow(), c = chunkFor(i);
+            chunk(c)[offsetIn(i, c)] = value;
+        }
+
+        /**
+         * Inserts the specified value at the specified position in this
+         * list, shifting succeeding elements to the right.
+         *
+         * @param index index at which the value is to be inserted
+         * @param value value to be inserted
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public void addLong(int index, long value) {
+            int i = openGap(index, 1), c = chunkFor(i);
+            chunk(c)[offsetIn(i, c)] = value;
+        }
+
+        /**
+         * Removes the element at the specified position in this list,
+         * shifting succeeding elements to the left.
+         *
+         * @param index the index of the element to be removed
+         * @return the element that was removed from the list
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public long removeLongAt(int index) {
+            long oldValue = getLong(index);
+            closeGap(index);
+            return oldValue;
+        }
+
+        public Long get(int index) {
+            return getLong(index);
+        }
+
+        public Long set(int index, Long element) {
+            return setLong(index, element);
+        }
+
+        public boolean add(Long element) {
+            addLong(element);
+            return true;
+        }
+
+        public void add(int index, Long element) {
+            addLong(index, element);
+        }
+
+        public Long remove(int index) {
+            return removeLongAt(index);
+        }
+
+        /**
+         * Returns an array containing all of the elements in this list in
+         * proper sequence.
+         *
+         * @return an array containing all of the elements in this list
+         */
+        public long[] toLongArray() {
+            long[] a = new long[size];
+            copyTo(0, size, a, 0);
+            return a;
+        }
+
+        /**
+         * Sorts this list into ascending numerical order.
+         */
+        public void sort() {
+            long[] a = toLongArray();
+            Arrays.sort(a);
+            copyFrom(a, 0, 0, a.length);
+            modCount++;
+        }
+
+        /**
+         * Performs the given action for each element of this list, in
+         * order.
+         *
+         * @param action the action to be performed for each element
+         * @throws NullPointerException if the specified action is null
+         */
+        public void forEachLong(LongConsumer action) {
+            forEachInRange(0, size, action);
+        }
+
+        @Override
+        public void forEach(Consumer<? super Long> action) {
+            if (action instanceof LongConsumer)
+                forEachLong((LongConsumer)action);
+            else
+                forEachInRange(0, size, action::accept);
+        }
+
+        /**
+         * Creates a <em>late-binding</em> and <em>fail-fast</em>
+         * {@link Spliterator.OfLong} over the elements in this list,
+         * reporting {@link Spliterator#SIZED}, {@link Spliterator#SUBSIZED},
+         * and {@link Spliterator#ORDERED}.
+         *
+         * @return a {@code Spliterator.OfLong} over the elements in this list
+         */
+        @Override
+        public Spliterator.OfLong spliterator() {
+            return new LongChunkSpliterator(this, 0, -1, 0);
+        }
+
+        /**
+         * Returns a sequential {@code LongStream} with this list as its
+         * source.
+         *
+         * @return a sequential {@code LongStream} over the elements in this
+         *         list
+         */
+        public LongStream longStream() {
+            return StreamSupport.longStream(spliterator(), false);
+        }
+
+        static final class LongChunkSpliterator
+            extends BaseSpliterator<Long, long[], LongConsumer>
+            implements Spliterator.OfLong {
+            LongChunkSpliterator(ChunkedArrayList.OfLong list, int origin,
+                                 int fence, int expectedModCount) {
+                super(list, origin, fence, expectedModCount);
+            }
+
+            public LongChunkSpliterator trySplit() {
+                int lo = index, mid = splitPoint();
+                return (mid < 0) ? null :
+                    new LongChunkSpliterator((ChunkedArrayList.OfLong)list,
+                                             lo, index = mid, expectedModCount);
+            }
+        }
+    }
+
+    /**
+     * A {@code ChunkedArrayList} of {@code double} values, stored unboxed.
+     * The {@code List<Double>} methods box and unbox; the primitive
+     * accessors, {@link #forEachDouble(DoubleConsumer)}, {@link #spliterator}
+     * and {@link #doubleStream} do not.
+     *
+     * @since 1.8
+     */
+    public static class OfDouble
+        extends AbstractChunkedList<Double, double[], DoubleConsumer> {
+
+        /**
+         * Constructs an empty list.
+         */
+        public OfDouble() {
+        }
+
+        /**
+         * Constructs an empty list able to hold the specified number of
+         * elements without allocating.
+         *
+         * @param  initialCapacity  the initial capacity of the list
+         * @throws IllegalArgumentException if the specified initial
+         *         capacity is negative
+         */
+        public OfDouble(int initialCapacity) {
+            super(initialCapacity);
+        }
+
+        @Override
+        double[] newChunk(int length) {
+            return new double[length];
+        }
+
+        @Override
+        void arrayForEach(double[] array, int from, int to,
+                          DoubleConsumer consumer) {
+            for (int i = from; i < to; i++)
+                consumer.accept(array[i]);
+        }
+
+        /**
+         * Returns the element at the specified position in this list.
+         *
+         * @param index index of the element to return
+         * @return the element at the specified position in this list
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public double getDouble(int index) {
+            rangeCheck(index);
+            int c = chunkFor(index);
+            return chunk(c)[offsetIn(index, c)];
+        }
+
+        /**
+         * Replaces the element at the specified position in this list.
+         *
+         * @param index index of the element to replace
+         * @param value value to be stored at the specified position
+         * @return the element previously at the specified position
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public double setDouble(int index, double value) {
+            rangeCheck(index);
+            int c = chunkFor(index), o = offsetIn(index, c);
+            double[] a = chunk(c);
+            double oldValue = a[o];
+            a[o] = value;
+            return oldValue;
+        }
+
+        /**
+         * Appends the specified value to the end of this list.
+         *
+         * @param value value to be appended to this list
+         */
+        public void addDouble(double value) {
+            modCount++;
+            int i = grow(), c = chunkFor(i);
+            chunk(c)[offsetIn(i, c)] = value;
+        }
+
+        /**
+         * Inserts the specified value at the specified position in this
+         * list, shifting succeeding elements to the right.
+         *
+         * @param index index at which the value is to be inserted
+         * @param value value to be inserted
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public void addDouble(int index, double value) {
+            int i = openGap(index, 1), c = chunkFor(i);
+            chunk(c)[offsetIn(i, c)] = value;
+        }
+
+        /**
+         * Removes the element at the specified position in this list,
+         * shifting succeeding elements to the left.
+         *
+         * @param index the index of the element to be removed
+         * @return the element that was removed from the list
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public double removeDoubleAt(int index) {
+            double oldValue = getDouble(index);
+            closeGap(index);
+            return oldValue;
+        }
+
+        public Double get(int index) {
+            return getDouble(index);
+        }
+
+        public Double set(int index, Double element) {
+            return setDouble(index, element);
+        }
+
+        public boolean add(Double element) {
+            addDouble(element);
+            return true;
+        }
+
+        public void add(int index, Double element) {
+            addDouble(index, element);
+        }
+
+        public Double remove(int index) {
+            return removeDoubleAt(index);
+        }
+
+        /**
+         * Returns an array containing all of the elements in this list in
+         * proper sequence.
+         *
+         * @return an array containing all of the elements in this list
+         */
+        public double[] toDoubleArray() {
+            double[] a = new double[size];
+            copyTo(0, size, a, 0);
+            return a;
+        }
+
+        /**
+         * Sorts this list into ascending numerical order, as by
+         * {@link Arrays#sort(double[])}.
+         */
+        public void sort() {
+            double[] a = toDoubleArray();
+            Arrays.sort(a);
+            copyFrom(a, 0, 0, a.length);
+            modCount++;
+        }
+
+        /**
+         * Performs the given action for each element of this list, in
+         * order.
+         *
+         * @param action the action to be performed for each element
+         * @throws NullPointerException if the specified action is null
+         */
+        public void forEachDouble(DoubleConsumer action) {
+            forEachInRange(0, size, action);
+        }
+
+        @Override
+        public void forEach(Consumer<? super Double> action) {
+            if (action instanceof DoubleConsumer)
+                forEachDouble((DoubleConsumer)action);
+            else
+                forEachInRange(0, size, action::accept);
+        }
+
+        /**
+         * Creates a <em>late-binding</em> and <em>fail-fast</em>
+         * {@link Spliterator.OfDouble} over the elements in this list,
+         * reporting {@link Spliterator#SIZED}, {@link Spliterator#SUBSIZED},
+         * and {@link Spliterator#ORDERED}.
+         *
+         * @return a {@code Spliterator.OfDouble} over the elements in this
+         *         list
+         */
+        @Override
+        public Spliterator.OfDouble spliterator() {
+            return new DoubleChunkSpliterator(this, 0, -1, 0);
+        }
+
+        /**
+         * Returns a sequential {@code DoubleStream} with this list as its
+         * source.
+         *
+         * @return a sequential {@code DoubleStream} over the elements in
+         *         this list
+         */
+        public DoubleStream doubleStream() {
+            return StreamSupport.doubleStream(spliterator(), false);
+        }
+
+        static final class DoubleChunkSpliterator
+            extends BaseSpliterator<Double, double[], DoubleConsumer>
+            implements Spliterator.OfDouble {
+            DoubleChunkSpliterator(ChunkedArrayList.OfDouble list, int origin,
+                                   int fence, int expectedModCount) {
+                super(list, origin, fence, expectedModCount);
+            }
+
+            public DoubleChunkSpliterator trySplit() {
+                int lo = index, mid = splitPoint();
+                return (mid < 0) ? null :
+                    new DoubleChunkSpliterator((ChunkedArrayList.OfDouble)list,
+                                               lo, index = mid, expectedModCount);
+            }
+        }
+    }
+}
@@ -0,0 +1,875 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A hash table mapping primitive {@code int} keys to object values.  This
+ * class is a primitive specialization of {@link HashMap} for {@code int}
+ * keys; it avoids boxing keys on every access and does not allocate a
+ * node object per mapping.
+ *
+ * <p>The implementation uses open addressing with linear probing over a
+ * flat {@code int[]} of keys and a parallel {@code Object[]} of values.
+ * The key {@code 0} is used internally to mark free slots and is
+ * therefore held outside the tables.  Deletion shifts back
+ * possibly-colliding entries rather than leaving tombstones, as in
+ * {@link IdentityHashMap}.
+ *
+ * <p>This map permits {@code null} values.  As in {@link HashMap}, a return
+ * value of {@code null} from {@link #get} does not necessarily indicate
+ * that the map contains no mapping for the key; {@link #containsKey} may
+ * be used to distinguish the two cases.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * If multiple threads access a map concurrently, and at least one of the
+ * threads modifies the map structurally, it <i>must</i> be synchronized
+ * externally.  The spliterators returned by this class are
+ * <i>fail-fast</i>.
+ *
+ * @param <V> the type of mapped values
+ * @see HashMap
+ * @see LongObjectHashMap
+ * @since 1.8
+ */
+public class IntObjectHashMap<V> implements Cloneable {
+
+    /**
+     * The default initial capacity - MUST be a power of two.
+     */
+    static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+     * The maximum capacity of the tables.  Must be a power of two.
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * The load factor used when none specified in constructor.
+     */
+    static final float DEFAULT_LOAD_FACTOR = 0.5f;
+
+    /**
+     * The key value marking a free slot in {@link #keys}.
+     */
+    static final int FREE_KEY = 0;
+
+    /**
+     * The key table; a slot holding {@link #FREE_KEY} is empty.  Length
+     * MUST always be a power of two.
+     */
+    int[] keys;
+
+    /**
+     * The value table, parallel to {@link #keys}.
+     */
+    Object[] values;
+
+    /**
+     * Whether the key {@code 0} is present.
+     */
+    boolean hasFreeKey;
+
+    /**
+     * The value mapped to the key {@code 0}, if {@link #hasFreeKey}.
+     */
+    Object freeKeyValue;
+
+    /**
+     * The number of key-value mappings contained in this map.
+     */
+    int size;
+
+    /**
+     * The number of times this map has been structurally modified.
+     */
+    transient int modCount;
+
+    /**
+     * The next size value at which to resize (capacity * load factor).
+     */
+    int threshold;
+
+    /**
+     * The load factor for the hash table.
+     */
+    final float loadFactor;
+
+    /**
+     * Constructs an empty map with the default initial capacity (16) and
+     * the default load factor (0.5).
+     */
+    public IntObjectHashMap() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty map with the specified initial capacity and the
+     * default load factor (0.5).
+     *
+     * @param  initialCapacity the initial capacity
+     * @throws IllegalArgumentException if the initial capacity is negative
+     */
+    public IntObjectHashMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty map with the specified initial capacity and load
+     * factor.
+     *
+     * @param  initialCapacity the initial capacity
+     * @param  loadFactor      the load factor, strictly between 0 and 1
+     * @throws IllegalArgumentException if the initial capacity is negative
+     *         or the load factor is not strictly between 0 and 1
+     */
+    public IntObjectHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                                               initialCapacity);
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                                               loadFactor);
+        this.loadFactor = loadFactor;
+        int cap = tableSizeFor(
+            (int)Math.min((double)MAXIMUM_CAPACITY,
+                          Math.ceil(initialCapacity / (double)loadFactor)));
+        keys = new int[cap];
+        values = new Object[cap];
+        threshold = (int)(cap * loadFactor);
+    }
+
+    /**
+     * Returns a power of two table size for the given desired capacity.
+     */
+    static int tableSizeFor(int c) {
+        return LongLongHashMap.tableSizeFor(c);
+    }
+
+    /**
+     * Spreads the bits of a key by multiplying by the 32-bit golden ratio
+     * and folding the high half down, so that arithmetic sequences of keys
+     * do not collide in the low bits used for indexing.
+     */
+    static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the slot holding the given non-free key, or the complement
+     * of the free slot at which it would be inserted.
+     */
+    final int slotFor(int key) {
+        int[] ks = keys;
+        int mask = ks.length - 1;
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            int k = ks[i];
+            if (k == key)
+                return i;
+            if (k == FREE_KEY)
+                return ~i;
+        }
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if this map contains no key-value mappings.
+     *
+     * @return {@code true} if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns {@code true} if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key the key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the key
+     */
+    public boolean containsKey(int key) {
+        return (key == FREE_KEY) ? hasFreeKey : slotFor(key) >= 0;
+    }
+
+    /**
+     * Returns {@code true} if this map maps one or more keys to the
+     * specified value.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if this map maps one or more keys to the value
+     */
+    public boolean containsValue(Object value) {
+        if (hasFreeKey && Objects.equals(freeKeyValue, value))
+            return true;
+        int[] ks = keys;
+        Object[] vs = values;
+        for (int i = 0; i < ks.length; ++i) {
+            if (ks[i] != FREE_KEY && Objects.equals(vs[i], value))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code null} if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value mapped to the key, or {@code null}
+     */
+    public V get(int key) {
+        return getOrDefault(key, null);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code defaultValue} if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @param defaultValue the default mapping of the key
+     * @return the value mapped to the key, or {@code defaultValue}
+     */
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(int key, V defaultValue) {
+        if (key == FREE_KEY)
+            return hasFreeKey ? (V)freeKeyValue : defaultValue;
+        int[] ks = keys;
+        int mask = ks.length - 1;
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            int k = ks[i];
+            if (k == key)
+                return (V)values[i];
+            if (k == FREE_KEY)
+                return defaultValue;
+        }
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old
+     * value is replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (key == FREE_KEY) {
+            Object old = freeKeyValue;
+            freeKeyValue = value;
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                ++modCount;
+                ++size;
+            }
+            return (V)old;
+        }
+        int i = slotFor(key);
+        if (i >= 0) {
+            Object old = values[i];
+            values[i] = value;
+            return (V)old;
+        }
+        insertAt(~i, key, value);
+        return null;
+    }
+
+    /**
+     * If the specified key is not already associated with a value (or is
+     * mapped to {@code null}) associates it with the given value and
+     * returns {@code null}, else returns the current value.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the specified key, or
+     *         {@code null} if there was no mapping for the key
+     */
+    public V putIfAbsent(int key, V value) {
+        V v = get(key);
+        if (v == null)
+            v = put(key, value);
+        return v;
+    }
+
+    /**
+     * Inserts a new mapping at the given free slot, resizing afterwards
+     * if the threshold has been exceeded.
+     */
+    private void insertAt(int i, int key, Object value) {
+        keys[i] = key;
+        values[i] = value;
+        ++modCount;
+        if (++size > threshold)
+            resize();
+    }
+
+    /**
+     * Removes the mapping for the specified key from this map if present.
+     *
+     * @param  key key whose mapping is to be removed from the map
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey)
+                return null;
+            Object old = freeKeyValue;
+            hasFreeKey = false;
+            freeKeyValue = null;
+            ++modCount;
+            --size;
+            return (V)old;
+        }
+        int i = slotFor(key);
+        if (i < 0)
+            return null;
+        Object old = values[i];
+        ++modCount;
+        --size;
+        closeDeletion(i);
+        return (V)old;
+    }
+
+    /**
+     * Empties the given slot and shifts back possibly-colliding entries
+     * following it.
+     *
+     * @param d the index of the slot to vacate
+     */
+    private void closeDeletion(int d) {
+        // Adapted from Knuth Section 6.4 Algorithm R
+        int[] ks = keys;
+        Object[] vs = values;
+        int mask = ks.length - 1;
+        int k;
+        for (int i = (d + 1) & mask; (k = ks[i]) != FREE_KEY;
+             i = (i + 1) & mask) {
+            int r = hash(k) & mask;
+            if ((i < r && (r <= d || d <= i)) || (r <= d && d <= i)) {
+                ks[d] = k;
+                vs[d] = vs[i];
+                d = i;
+            }
+        }
+        ks[d] = FREE_KEY;
+        vs[d] = null;
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        ++modCount;
+        Arrays.fill(keys, FREE_KEY);
+        Arrays.fill(values, null);
+        hasFreeKey = false;
+        freeKeyValue = null;
+        size = 0;
+    }
+
+    /**
+     * Doubles the table capacity and rehashes all entries.
+     */
+    final void resize() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        int oldCap = oldKeys.length;
+        if (oldCap >= MAXIMUM_CAPACITY) {
+            if (size >= MAXIMUM_CAPACITY - 1)
+                throw new IllegalStateException("Capacity exhausted.");
+            threshold = MAXIMUM_CAPACITY - 1;
+            return;
+        }
+        int newCap = oldCap << 1, mask = newCap - 1;
+        int[] ks = new int[newCap];
+        Object[] vs = new Object[newCap];
+        for (int j = 0; j < oldCap; ++j) {
+            int k = oldKeys[j];
+            if (k != FREE_KEY) {
+                int i = hash(k) & mask;
+                while (ks[i] != FREE_KEY)
+                    i = (i + 1) & mask;
+                ks[i] = k;
+                vs[i] = oldValues[j];
+            }
+        }
+        keys = ks;
+        values = vs;
+        threshold = (int)(newCap * loadFactor);
+    }
+
+    /**
+     * If the specified key is not already associated with a value (or is
+     * mapped to {@code null}), attempts to compute its value using the
+     * given mapping function and enters it into this map unless
+     * {@code null}.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param mappingFunction the function to compute a value
+     * @return the current (existing or computed) value associated with
+     *         the specified key, or null if the computed value is null
+     * @throws NullPointerException if the mappingFunction is null
+     * @throws ConcurrentModificationException if it is detected that the
+     *         mapping function modified this map
+     */
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(int key,
+                             IntFunction<? extends V> mappingFunction) {
+        if (mappingFunction == null)
+            throw new NullPointerException();
+        if (key == FREE_KEY) {
+            V v = (V)freeKeyValue;
+            if (v == null && (v = mappingFunction.apply(key)) != null)
+                put(FREE_KEY, v);
+            return v;
+        }
+        int i = slotFor(key);
+        V v;
+        if (i >= 0 && (v = (V)values[i]) != null)
+            return v;
+        int mc = modCount;
+        v = mappingFunction.apply(key);
+        if (mc != modCount)
+            throw new ConcurrentModificationException();
+        if (v != null) {
+            if (i >= 0)
+                values[i] = v;
+            else
+                insertAt(~i, key, v);
+        }
+        return v;
+    }
+
+    /**
+     * If the specified key is not already associated with a value or is
+     * associated with null, associates it with the given non-null value.
+     * Otherwise, replaces the associated value with the results of the
+     * given remapping function, or removes if the result is {@code null}.
+     *
+     * @param key key with which the resulting value is to be associated
+     * @param value the non-null value to be merged with the existing value
+     * @param remappingFunction the function to recompute a value if present
+     * @return the new value associated with the specified key, or null if
+     *         no value is associated with the key
+     * @throws NullPointerException if the value or remappingFunction is null
+     * @throws ConcurrentModificationException if it is detected that the
+     *         remapping function modified this map
+     */
+    @SuppressWarnings("unchecked")
+    public V merge(int key, V value,
+                   BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        if (value == null || remappingFunction == null)
+            throw new NullPointerException();
+        if (key == FREE_KEY) {
+            V old = (V)freeKeyValue;
+            V v = (old == null) ? value : remappingFunction.apply(old, value);
+            if (v == null)
+                remove(FREE_KEY);
+            else
+                put(FREE_KEY, v);
+            return v;
+        }
+        int i = slotFor(key);
+        if (i < 0) {
+            insertAt(~i, key, value);
+            return value;
+        }
+        V old = (V)values[i];
+        if (old == null)
+            return (V)(values[i] = value);
+        int mc = modCount;
+        V v = remappingFunction.apply(old, value);
+        if (mc != modCount)
+            throw new ConcurrentModificationException();
+        if (v == null) {
+            ++modCount;
+            --size;
+            closeDeletion(i);
+        }
+        else
+            values[i] = v;
+        return v;
+    }
+
+    /**
+     * Performs the given action for each key-value mapping in this map.
+     *
+     * @param action the action to be performed for each mapping
+     * @throws NullPointerException if the specified action is null
+     * @throws ConcurrentModificationException if a mapping is added or
+     *         removed during iteration
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> action) {
+        if (action == null)
+            throw new NullPointerException();
+        int mc = modCount;
+        if (hasFreeKey)
+            action.accept(FREE_KEY, (V)freeKeyValue);
+        int[] ks = keys;
+        Object[] vs = values;
+        for (int i = 0; i < ks.length && mc == modCount; ++i) {
+            int k = ks[i];
+            if (k != FREE_KEY)
+                action.accept(k, (V)vs[i]);
+        }
+        if (mc != modCount)
+            throw new ConcurrentModificationException();
+    }
+
+    /**
+     * Returns a {@link Spliterator.OfInt} over the keys of this map.  The
+     * spliterator reports {@link Spliterator#SIZED} (until split) and
+     * {@link Spliterator#DISTINCT}, and is fail-fast.
+     *
+     * @return a spliterator over the keys of this map
+     */
+    public Spliterator.OfInt keySpliterator() {
+        return new KeySpliterator<>(this, 0, -1, 0, 0);
+    }
+
+    /**
+     * Returns a {@link Spliterator} over the values of this map.  The
+     * spliterator reports {@link Spliterator#SIZED} (until split) and is
+     * fail-fast.
+     *
+     * @return a spliterator over the values of this map
+     */
+    public Spliterator<V> valueSpliterator() {
+        return new ValueSpliterator<>(this, 0, -1, 0, 0);
+    }
+
+    /**
+     * Returns a sequential {@link IntStream} over the keys of this map.
+     *
+     * @return a stream of the keys of this map
+     */
+    public IntStream keyStream() {
+        return StreamSupport.intStream(keySpliterator(), false);
+    }
+
+    /**
+     * Returns a sequential {@link Stream} over the values of this map.
+     *
+     * @return a stream of the values of this map
+     */
+    public Stream<V> valueStream() {
+        return StreamSupport.stream(valueSpliterator(), false);
+    }
+
+    /**
+     * Returns a shallow copy of this map: the values themselves are not
+     * cloned.
+     *
+     * @return a shallow copy of this map
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public IntObjectHashMap<V> clone() {
+        IntObjectHashMap<V> result;
+        try {
+            result = (IntObjectHashMap<V>)super.clone();
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError(e);
+        }
+        result.keys = keys.clone();
+        result.values = values.clone();
+        result.modCount = 0;
+        return result;
+    }
+
+    /**
+     * Compares the specified object with this map for equality.  Returns
+     * {@code true} if the given object is also a {@code IntObjectHashMap}
+     * and the two maps represent the same mappings.
+     *
+     * @param o object to be compared for equality with this map
+     * @return {@code true} if the specified object is equal to this map
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof IntObjectHashMap))
+            return false;
+        IntObjectHashMap<?> m = (IntObjectHashMap<?>)o;
+        if (m.size != size || m.hasFreeKey != hasFreeKey ||
+            (hasFreeKey && !Objects.equals(m.freeKeyValue, freeKeyValue)))
+            return false;
+        int[] ks = keys;
+        Object[] vs = values;
+        for (int i = 0; i < ks.length; ++i) {
+            int k = ks[i];
+            if (k != FREE_KEY) {
+                int j = m.slotFor(k);
+                if (j < 0 || !Objects.equals(m.values[j], vs[i]))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash code value for this map, defined as the sum of
+     * {@code Integer.hashCode(key) ^ Objects.hashCode(value)} over its
+     * mappings, consistent with {@link Map#hashCode} for the boxed
+     * equivalent.
+     *
+     * @return the hash code value for this map
+     */
+    @Override
+    public int hashCode() {
+        int h = hasFreeKey ? Objects.hashCode(freeKeyValue) : 0;
+        int[] ks = keys;
+        Object[] vs = values;
+        for (int i = 0; i < ks.length; ++i) {
+            int k = ks[i];
+            if (k != FREE_KEY)
+                h += Integer.hashCode(k) ^ Objects.hashCode(vs[i]);
+        }
+        return h;
+    }
+
+    /**
+     * Returns a string representation of this map, in the same form as
+     * {@link AbstractMap#toString}.
+     *
+     * @return a string representation of this map
+     */
+    @Override
+    public String toString() {
+        StringJoiner sj = new StringJoiner(", ", "{", "}");
+        forEach((k, v) -> sj.add(k + "=" + (v == this ? "(this Map)" : v)));
+        return sj.toString();
+    }
+
+    /**
+     * Represents an operation that accepts a {@code int} key and its
+     * value and returns no result.
+     *
+     * @param <V> the type of values
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        /**
+         * Performs this operation on the given mapping.
+         *
+         * @param key the key
+         * @param value the value
+         */
+        void accept(int key, V value);
+    }
+
+    /* ------------------------------------------------------------ */
+    // spliterators
+
+    /**
+     * Base of key and value spliterators.  Slot indices run from 0 to the
+     * table length, with the extra index equal to the table length
+     * standing for the free key.
+     */
+    static class IntObjectSpliterator<V> {
+        final IntObjectHashMap<V> map;
+        int index;              // current index, modified on advance/split
+        int fence;              // one past last index, or -1 until first use
+        int est;                // size estimate
+        int expectedModCount;   // for comodification checks
+
+        IntObjectSpliterator(IntObjectHashMap<V> m, int origin, int fence,
+                              int est, int expectedModCount) {
+            this.map = m;
+            this.index = origin;
+            this.fence = fence;
+            this.est = est;
+            this.expectedModCount = expectedModCount;
+        }
+
+        final int getFence() { // initialize fence and size on first use
+            int hi;
+            if ((hi = fence) < 0) {
+                IntObjectHashMap<V> m = map;
+                est = m.size;
+                expectedModCount = m.modCount;
+                hi = fence = m.keys.length + 1;
+            }
+            return hi;
+        }
+
+        /**
+         * Advances to the next occupied slot, returning its index, or -1
+         * if there is none.
+         */
+        final int advance() {
+            IntObjectHashMap<V> m = map;
+            int[] ks = m.keys;
+            int hi = getFence();
+            if (m.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            while (index < hi) {
+                int i = index++;
+                if (i == ks.length ? m.hasFreeKey : ks[i] != FREE_KEY)
+                    return i;
+            }
+            return -1;
+        }
+
+        public final long estimateSize() {
+            getFence(); // force init
+            return (long) est;
+        }
+    }
+
+    static final class KeySpliterator<V>
+        extends IntObjectSpliterator<V>
+        implements Spliterator.OfInt {
+        KeySpliterator(IntObjectHashMap<V> m, int origin, int fence, int est,
+                       int expectedModCount) {
+            super(m, origin, fence, est, expectedModCount);
+        }
+
+        public KeySpliterator<V> trySplit() {
+            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            return (lo >= mid) ? null :
+                new KeySpliterator<>(map, lo, index = mid, est >>>= 1,
+                                     expectedModCount);
+        }
+
+        public boolean tryAdvance(IntConsumer action) {
+            if (action == null)
+                throw new NullPointerException();
+            int i = advance();
+            if (i < 0)
+                return false;
+            int[] ks = map.keys;
+            action.accept(i == ks.length ? FREE_KEY : ks[i]);
+            if (map.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            return true;
+        }
+
+        public void forEachRemaining(IntConsumer action) {
+            if (action == null)
+                throw new NullPointerException();
+            IntObjectHashMap<V> m = map;
+            int hi = getFence(), mc = expectedModCount, i = index;
+            int[] ks = m.keys;
+            if (m.modCount != mc)
+                throw new ConcurrentModificationException();
+            index = hi;
+            for (int last = Math.min(hi, ks.length); i < last; ++i) {
+                int k = ks[i];
+                if (k != FREE_KEY)
+                    action.accept(k);
+            }
+            if (hi > ks.length && i <= ks.length && m.hasFreeKey)
+                action.accept(FREE_KEY);
+            if (m.modCount != mc)
+                throw new ConcurrentModificationException();
+        }
+
+        public int characteristics() {
+            return (fence < 0 || est == map.size ? Spliterator.SIZED : 0) |
+                Spliterator.DISTINCT | Spliterator.NONNULL;
+        }
+    }
+
+    static final class ValueSpliterator<V>
+        extends IntObjectSpliterator<V>
+        implements Spliterator<V> {
+        ValueSpliterator(IntObjectHashMap<V> m, int origin, int fence, int est,
+                         int expectedModCount) {
+            super(m, origin, fence, est, expectedModCount);
+        }
+
+        public ValueSpliterator<V> trySplit() {
+            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            return (lo >= mid) ? null :
+                new ValueSpliterator<>(map, lo, index = mid, est >>>= 1,
+                                       expectedModCount);
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super V> action) {
+            if (action == null)
+                throw new NullPointerException();
+            int i = advance();
+            if (i < 0)
+                return false;
+            IntObjectHashMap<V> m = map;
+            action.accept((V)(i == m.keys.length ? m.freeKeyValue : m.values[i]));
+            if (m.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super V> action) {
+            if (action == null)
+                throw new NullPointerException();
+            IntObjectHashMap<V> m = map;
+            int hi = getFence(), mc = expectedModCount, i = index;
+            int[] ks = m.keys;
+            Object[] vs = m.values;
+            if (m.modCount != mc)
+                throw new ConcurrentModificationException();
+            index = hi;
+            for (int last = Math.min(hi, ks.length); i < last; ++i) {
+                if (ks[i] != FREE_KEY)
+                    action.accept((V)vs[i]);
+            }
+            if (hi > ks.length && i <= ks.length && m.hasFreeKey)
+                action.accept((V)m.freeKeyValue);
+            if (m.modCount != mc)
+                throw new ConcurrentModificationException();
+        }
+
+        public int characteristics() {
+            return (fence < 0 || est == map.size ? Spliterator.SIZED : 0);
+        }
+    }
+}
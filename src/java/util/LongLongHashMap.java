@@ -0,0 +1,813 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+import java.util.function.LongUnaryOperator;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A hash table mapping primitive {@code long} keys to primitive
+ * {@code long} values.  This class is a primitive specialization of
+ * {@link HashMap} for the case in which both keys and values are
+ * {@code long}s; it avoids boxing on every access and does not allocate
+ * a node object per mapping.
+ *
+ * <p>The implementation uses open addressing with linear probing over two
+ * parallel flat arrays, one holding the keys and one holding the values.
+ * The key {@code 0} is used internally to mark free slots and is
+ * therefore held outside the tables.  Deletion does not leave tombstones:
+ * possibly-colliding entries following a removed slot are shifted back,
+ * as in {@link IdentityHashMap}.
+ *
+ * <p>Methods that return a {@code long} value for a key that may be absent
+ * ({@link #put}, {@link #remove}) return {@code 0} when there was no
+ * mapping; use {@link #containsKey} or {@link #getOrDefault} to
+ * distinguish an absent key from one mapped to {@code 0}.
+ *
+ * <p>This class offers constant-time performance for the basic operations
+ * ({@code get}, {@code put}, {@code remove}) assuming a reasonably
+ * distributed set of keys.  <strong>Note that this implementation is not
+ * synchronized.</strong> If multiple threads access a map concurrently,
+ * and at least one of the threads modifies the map structurally, it
+ * <i>must</i> be synchronized externally.
+ *
+ * <p>The spliterators returned by {@link #keySpliterator} and
+ * {@link #valueSpliterator} are <i>fail-fast</i>, in the same sense as the
+ * iterators of {@link HashMap}.
+ *
+ * @see HashMap
+ * @see LongObjectHashMap
+ * @since 1.8
+ */
+public class LongLongHashMap implements Cloneable {
+
+    /**
+     * The default initial capacity - MUST be a power of two.
+     */
+    static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+     * The maximum capacity of the tables.  Must be a power of two.
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * The load factor used when none specified in constructor.  Open
+     * addressing degrades faster than chaining as the table fills, so the
+     * default is lower than that of {@link HashMap}.
+     */
+    static final float DEFAULT_LOAD_FACTOR = 0.5f;
+
+    /**
+     * The key value marking a free slot in {@link #keys}.
+     */
+    static final long FREE_KEY = 0L;
+
+    /**
+     * The key table; a slot holding {@link #FREE_KEY} is empty.  Length
+     * MUST always be a power of two.
+     */
+    long[] keys;
+
+    /**
+     * The value table, parallel to {@link #keys}.
+     */
+    long[] values;
+
+    /**
+     * Whether the key {@code 0} is present.
+     */
+    boolean hasFreeKey;
+
+    /**
+     * The value mapped to the key {@code 0}, if {@link #hasFreeKey}.
+     */
+    long freeKeyValue;
+
+    /**
+     * The number of key-value mappings contained in this map.
+     */
+    int size;
+
+    /**
+     * The number of times this map has been structurally modified.  This
+     * field is used to make the spliterators fail-fast.
+     */
+    transient int modCount;
+
+    /**
+     * The next size value at which to resize (capacity * load factor).
+     */
+    int threshold;
+
+    /**
+     * The load factor for the hash table.
+     */
+    final float loadFactor;
+
+    /**
+     * Constructs an empty map with the default initial capacity (16) and
+     * the default load factor (0.5).
+     */
+    public LongLongHashMap() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty map with the specified initial capacity and the
+     * default load factor (0.5).
+     *
+     * @param  initialCapacity the initial capacity
+     * @throws IllegalArgumentException if the initial capacity is negative
+     */
+    public LongLongHashMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty map with the specified initial capacity and load
+     * factor.
+     *
+     * @param  initialCapacity the initial capacity
+     * @param  loadFactor      the load factor, strictly between 0 and 1
+     * @throws IllegalArgumentException if the initial capacity is negative
+     *         or the load factor is not strictly between 0 and 1
+     */
+    public LongLongHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                                               initialCapacity);
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                                               loadFactor);
+        this.loadFactor = loadFactor;
+        int cap = tableSizeFor((int)Math.min((double)MAXIMUM_CAPACITY,
+                                             Math.ceil(initialCapacity / (double)loadFactor)));
+        keys = new long[cap];
+        values = new long[cap];
+        threshold = (int)(cap * loadFactor);
+    }
+
+    /**
+     * Returns a power of two table size for the given desired capacity.
+     */
+    static int tableSizeFor(int c) {
+        int n = -1 >>> Integer.numberOfLeadingZeros(Math.max(c, 2) - 1);
+        return (n < 0) ? 2 : (n >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY : n + 1;
+    }
+
+    /**
+     * Spreads the bits of a key so that keys differing only in their high
+     * bits, or forming arithmetic sequences, do not collide in the low
+     * bits used for indexing.  Multiplies by the 64-bit golden ratio and
+     * folds the high half down.
+     */
+    static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+    /**
+     * Returns the slot holding the given non-free key, or the complement
+     * of the free slot at which it would be inserted.
+     */
+    final int slotFor(long key) {
+        long[] ks = keys;
+        int mask = ks.length - 1;
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            long k = ks[i];
+            if (k == key)
+                return i;
+            if (k == FREE_KEY)
+                return ~i;
+        }
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if this map contains no key-value mappings.
+     *
+     * @return {@code true} if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns {@code true} if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key the key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the key
+     */
+    public boolean containsKey(long key) {
+        return (key == FREE_KEY) ? hasFreeKey : slotFor(key) >= 0;
+    }
+
+    /**
+     * Returns {@code true} if this map maps one or more keys to the
+     * specified value.  This operation requires time linear in the
+     * capacity of the map.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if this map maps one or more keys to the value
+     */
+    public boolean containsValue(long value) {
+        if (hasFreeKey && freeKeyValue == value)
+            return true;
+        long[] ks = keys, vs = values;
+        for (int i = 0; i < ks.length; ++i) {
+            if (ks[i] != FREE_KEY && vs[i] == value)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code defaultValue} if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @param defaultValue the value to return if the key is absent
+     * @return the value mapped to the key, or {@code defaultValue}
+     */
+    public long getOrDefault(long key, long defaultValue) {
+        if (key == FREE_KEY)
+            return hasFreeKey ? freeKeyValue : defaultValue;
+        long[] ks = keys;
+        int mask = ks.length - 1;
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            long k = ks[i];
+            if (k == key)
+                return values[i];
+            if (k == FREE_KEY)
+                return defaultValue;
+        }
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code 0} if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value mapped to the key, or {@code 0}
+     */
+    public long get(long key) {
+        return getOrDefault(key, 0L);
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old
+     * value is replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with {@code key}, or
+     *         {@code 0} if there was no mapping for {@code key}
+     */
+    public long put(long key, long value) {
+        if (key == FREE_KEY) {
+            long old = freeKeyValue;
+            freeKeyValue = value;
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                ++modCount;
+                ++size;
+                return 0L;
+            }
+            return old;
+        }
+        int i = slotFor(key);
+        if (i >= 0) {
+            long old = values[i];
+            values[i] = value;
+            return old;
+        }
+        insertAt(~i, key, value);
+        return 0L;
+    }
+
+    /**
+     * Inserts a new mapping at the given free slot, resizing afterwards
+     * if the threshold has been exceeded.
+     */
+    private void insertAt(int i, long key, long value) {
+        keys[i] = key;
+        values[i] = value;
+        ++modCount;
+        if (++size > threshold)
+            resize();
+    }
+
+    /**
+     * Copies all of the mappings from the specified map to this map.
+     *
+     * @param m mappings to be stored in this map
+     * @throws NullPointerException if the specified map is null
+     */
+    public void putAll(LongLongHashMap m) {
+        if (m.hasFreeKey)
+            put(FREE_KEY, m.freeKeyValue);
+        long[] ks = m.keys, vs = m.values;
+        for (int i = 0; i < ks.length; ++i) {
+            long k = ks[i];
+            if (k != FREE_KEY)
+                put(k, vs[i]);
+        }
+    }
+
+    /**
+     * Removes the mapping for the specified key from this map if present.
+     *
+     * @param  key key whose mapping is to be removed from the map
+     * @return the previous value associated with {@code key}, or
+     *         {@code 0} if there was no mapping for {@code key}
+     */
+    public long remove(long key) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey)
+                return 0L;
+            long old = freeKeyValue;
+            hasFreeKey = false;
+            freeKeyValue = 0L;
+            ++modCount;
+            --size;
+            return old;
+        }
+        int i = slotFor(key);
+        if (i < 0)
+            return 0L;
+        long old = values[i];
+        ++modCount;
+        --size;
+        closeDeletion(i);
+        return old;
+    }
+
+    /**
+     * Empties the given slot and shifts back possibly-colliding entries
+     * following it, preserving the linear-probe invariant required by
+     * lookups.
+     *
+     * @param d the index of the slot to vacate
+     */
+    private void closeDeletion(int d) {
+        // Adapted from Knuth Section 6.4 Algorithm R
+        long[] ks = keys, vs = values;
+        int mask = ks.length - 1;
+        long k;
+        for (int i = (d + 1) & mask; (k = ks[i]) != FREE_KEY;
+             i = (i + 1) & mask) {
+            int r = hash(k) & mask;
+            if ((i < r && (r <= d || d <= i)) || (r <= d && d <= i)) {
+                ks[d] = k;
+                vs[d] = vs[i];
+                d = i;
+            }
+        }
+        ks[d] = FREE_KEY;
+        vs[d] = 0L;
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        ++modCount;
+        Arrays.fill(keys, FREE_KEY);
+        Arrays.fill(values, 0L);
+        hasFreeKey = false;
+        freeKeyValue = 0L;
+        size = 0;
+    }
+
+    /**
+     * Doubles the table capacity and rehashes all entries.
+     */
+    final void resize() {
+        long[] oldKeys = keys, oldValues = values;
+        int oldCap = oldKeys.length;
+        if (oldCap >= MAXIMUM_CAPACITY) {
+            if (size >= MAXIMUM_CAPACITY - 1)
+                throw new IllegalStateException("Capacity exhausted.");
+            threshold = MAXIMUM_CAPACITY - 1;
+            return;
+        }
+        int newCap = oldCap << 1, mask = newCap - 1;
+        long[] ks = new long[newCap], vs = new long[newCap];
+        for (int j = 0; j < oldCap; ++j) {
+            long k = oldKeys[j];
+            if (k != FREE_KEY) {
+                int i = hash(k) & mask;
+                while (ks[i] != FREE_KEY)
+                    i = (i + 1) & mask;
+                ks[i] = k;
+                vs[i] = oldValues[j];
+            }
+        }
+        keys = ks;
+        values = vs;
+        threshold = (int)(newCap * loadFactor);
+    }
+
+    /**
+     * If the specified key is not already associated with a value,
+     * attempts to compute its value using the given mapping function and
+     * enters it into this map.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param mappingFunction the function to compute a value
+     * @return the current (existing or computed) value associated with
+     *         the specified key
+     * @throws NullPointerException if the mappingFunction is null
+     * @throws ConcurrentModificationException if it is detected that the
+     *         mapping function modified this map
+     */
+    public long computeIfAbsent(long key, LongUnaryOperator mappingFunction) {
+        if (mappingFunction == null)
+            throw new NullPointerException();
+        if (key == FREE_KEY) {
+            if (!hasFreeKey)
+                put(FREE_KEY, mappingFunction.applyAsLong(key));
+            return freeKeyValue;
+        }
+        int i = slotFor(key);
+        if (i >= 0)
+            return values[i];
+        int mc = modCount;
+        long v = mappingFunction.applyAsLong(key);
+        if (mc != modCount)
+            throw new ConcurrentModificationException();
+        insertAt(~i, key, v);
+        return v;
+    }
+
+    /**
+     * If the specified key is not already associated with a value,
+     * associates it with the given value.  Otherwise, replaces the
+     * associated value with the results of the given remapping function.
+     * This method may be used to combine multiple mapped values for a key;
+     * for example, {@code map.merge(key, 1L, Long::sum)} counts occurrences.
+     *
+     * @param key key with which the resulting value is to be associated
+     * @param value the value to use if absent
+     * @param remappingFunction the function to recompute a value if present
+     * @return the new value associated with the specified key
+     * @throws NullPointerException if the remappingFunction is null
+     */
+    public long merge(long key, long value,
+                      LongBinaryOperator remappingFunction) {
+        if (remappingFunction == null)
+            throw new NullPointerException();
+        if (key == FREE_KEY) {
+            long v = hasFreeKey ?
+                remappingFunction.applyAsLong(freeKeyValue, value) : value;
+            put(FREE_KEY, v);
+            return v;
+        }
+        int i = slotFor(key);
+        if (i >= 0)
+            return values[i] = remappingFunction.applyAsLong(values[i], value);
+        insertAt(~i, key, value);
+        return value;
+    }
+
+    /**
+     * Adds the given delta to the value associated with the specified key,
+     * treating an absent key as mapped to {@code 0}.  Equivalent to
+     * {@code merge(key, delta, Long::sum)} without the indirection.
+     *
+     * @param key the key whose value is to be incremented
+     * @param delta the amount to add
+     * @return the new value associated with the specified key
+     */
+    public long addTo(long key, long delta) {
+        if (key == FREE_KEY) {
+            long v = hasFreeKey ? freeKeyValue + delta : delta;
+            put(FREE_KEY, v);
+            return v;
+        }
+        int i = slotFor(key);
+        if (i >= 0)
+            return values[i] += delta;
+        insertAt(~i, key, delta);
+        return delta;
+    }
+
+    /**
+     * Performs the given action for each key-value mapping in this map.
+     *
+     * @param action the action to be performed for each mapping
+     * @throws NullPointerException if the specified action is null
+     * @throws ConcurrentModificationException if a mapping is added or
+     *         removed during iteration
+     */
+    public void forEach(EntryConsumer action) {
+        if (action == null)
+            throw new NullPointerException();
+        int mc = modCount;
+        if (hasFreeKey)
+            action.accept(FREE_KEY, freeKeyValue);
+        long[] ks = keys, vs = values;
+        for (int i = 0; i < ks.length && mc == modCount; ++i) {
+            long k = ks[i];
+            if (k != FREE_KEY)
+                action.accept(k, vs[i]);
+        }
+        if (mc != modCount)
+            throw new ConcurrentModificationException();
+    }
+
+    /**
+     * Replaces each value with the result of invoking the given function
+     * on that entry's key and value.
+     *
+     * @param function the function to apply to each entry
+     * @throws NullPointerException if the specified function is null
+     */
+    public void replaceAll(LongBinaryOperator function) {
+        if (function == null)
+            throw new NullPointerException();
+        if (hasFreeKey)
+            freeKeyValue = function.applyAsLong(FREE_KEY, freeKeyValue);
+        long[] ks = keys, vs = values;
+        for (int i = 0; i < ks.length; ++i) {
+            long k = ks[i];
+            if (k != FREE_KEY)
+                vs[i] = function.applyAsLong(k, vs[i]);
+        }
+    }
+
+    /**
+     * Returns a {@link Spliterator.OfLong} over the keys of this map.  The
+     * spliterator reports {@link Spliterator#SIZED} (until split) and
+     * {@link Spliterator#DISTINCT}, and is fail-fast.
+     *
+     * @return a spliterator over the keys of this map
+     */
+    public Spliterator.OfLong keySpliterator() {
+        return new LongLongSpliterator(this, 0, -1, 0, 0, true);
+    }
+
+    /**
+     * Returns a {@link Spliterator.OfLong} over the values of this map.
+     * The spliterator reports {@link Spliterator#SIZED} (until split) and
+     * is fail-fast.
+     *
+     * @return a spliterator over the values of this map
+     */
+    public Spliterator.OfLong valueSpliterator() {
+        return new LongLongSpliterator(this, 0, -1, 0, 0, false);
+    }
+
+    /**
+     * Returns a sequential {@link LongStream} over the keys of this map.
+     *
+     * @return a stream of the keys of this map
+     */
+    public LongStream keyStream() {
+        return StreamSupport.longStream(keySpliterator(), false);
+    }
+
+    /**
+     * Returns a sequential {@link LongStream} over the values of this map.
+     *
+     * @return a stream of the values of this map
+     */
+    public LongStream valueStream() {
+        return StreamSupport.longStream(valueSpliterator(), false);
+    }
+
+    /**
+     * Returns a shallow copy of this map.
+     *
+     * @return a copy of this map
+     */
+    @Override
+    public LongLongHashMap clone() {
+        LongLongHashMap result;
+        try {
+            result = (LongLongHashMap)super.clone();
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError(e);
+        }
+        result.keys = keys.clone();
+        result.values = values.clone();
+        result.modCount = 0;
+        return result;
+    }
+
+    /**
+     * Compares the specified object with this map for equality.  Returns
+     * {@code true} if the given object is also a {@code LongLongHashMap}
+     * and the two maps represent the same mappings.
+     *
+     * @param o object to be compared for equality with this map
+     * @return {@code true} if the specified object is equal to this map
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof LongLongHashMap))
+            return false;
+        LongLongHashMap m = (LongLongHashMap)o;
+        if (m.size != size || m.hasFreeKey != hasFreeKey ||
+            (hasFreeKey && m.freeKeyValue != freeKeyValue))
+            return false;
+        long[] ks = keys, vs = values;
+        for (int i = 0; i < ks.length; ++i) {
+            long k = ks[i];
+            if (k != FREE_KEY) {
+                int j = m.slotFor(k);
+                if (j < 0 || m.values[j] != vs[i])
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash code value for this map, defined as the sum of
+     * {@code Long.hashCode(key) ^ Long.hashCode(value)} over its mappings,
+     * consistent with {@link Map#hashCode} for the boxed equivalent.
+     *
+     * @return the hash code value for this map
+     */
+    @Override
+    public int hashCode() {
+        int h = hasFreeKey ? Long.hashCode(freeKeyValue) : 0;
+        long[] ks = keys, vs = values;
+        for (int i = 0; i < ks.length; ++i) {
+            long k = ks[i];
+            if (k != FREE_KEY)
+                h += Long.hashCode(k) ^ Long.hashCode(vs[i]);
+        }
+        return h;
+    }
+
+    /**
+     * Returns a string representation of this map, in the same form as
+     * {@link AbstractMap#toString}.
+     *
+     * @return a string representation of this map
+     */
+    @Override
+    public String toString() {
+        StringJoiner sj = new StringJoiner(", ", "{", "}");
+        forEach((k, v) -> sj.add(k + "=" + v));
+        return sj.toString();
+    }
+
+    /**
+     * Represents an operation that accepts a {@code long} key and its
+     * {@code long} value and returns no result.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        /**
+         * Performs this operation on the given mapping.
+         *
+         * @param key the key
+         * @param value the value
+         */
+        void accept(long key, long value);
+    }
+
+    /**
+     * Spliterator over the keys or values of a LongLongHashMap.  Slot
+     * indices run from 0 to the table length, with the extra index equal to
+     * the table length standing for the free key.
+     */
+    static final class LongLongSpliterator implements Spliterator.OfLong {
+        final LongLongHashMap map;
+        final boolean keys;     // true for keys, false for values
+        int index;              // current index, modified on advance/split
+        int fence;              // one past last index, or -1 until first use
+        int est;                // size estimate
+        int expectedModCount;   // for comodification checks
+
+        LongLongSpliterator(LongLongHashMap m, int origin, int fence, int est,
+                            int expectedModCount, boolean keys) {
+            this.map = m;
+            this.index = origin;
+            this.fence = fence;
+            this.est = est;
+            this.expectedModCount = expectedModCount;
+            this.keys = keys;
+        }
+
+        final int getFence() { // initialize fence and size on first use
+            int hi;
+            if ((hi = fence) < 0) {
+                LongLongHashMap m = map;
+                est = m.size;
+                expectedModCount = m.modCount;
+                hi = fence = m.keys.length + 1;
+            }
+            return hi;
+        }
+
+        public LongLongSpliterator trySplit() {
+            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            return (lo >= mid) ? null :
+                new LongLongSpliterator(map, lo, index = mid, est >>>= 1,
+                                        expectedModCount, keys);
+        }
+
+        public boolean tryAdvance(LongConsumer action) {
+            if (action == null)
+                throw new NullPointerException();
+            LongLongHashMap m = map;
+            long[] ks = m.keys;
+            int hi = getFence();
+            if (m.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            while (index < hi) {
+                int i = index++;
+                long e;
+                if (i == ks.length) {
+                    if (!m.hasFreeKey)
+                        continue;
+                    e = keys ? FREE_KEY : m.freeKeyValue;
+                }
+                else if (ks[i] == FREE_KEY)
+                    continue;
+                else
+                    e = keys ? ks[i] : m.values[i];
+                action.accept(e);
+                if (m.modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                return true;
+            }
+            return false;
+        }
+
+        public void forEachRemaining(LongConsumer action) {
+            if (action == null)
+                throw new NullPointerException();
+            LongLongHashMap m = map;
+            int hi = getFence(), mc = expectedModCount, i = index;
+            long[] ks = m.keys, vs = m.values;
+            if (m.modCount != mc)
+                throw new ConcurrentModificationException();
+            index = hi;
+            int last = Math.min(hi, ks.length);
+            for (; i < last; ++i) {
+                long k = ks[i];
+                if (k != FREE_KEY)
+                    action.accept(keys ? k : vs[i]);
+            }
+            if (hi > ks.length && i <= ks.length && m.hasFreeKey)
+                action.accept(keys ? FREE_KEY : m.freeKeyValue);
+            if (m.modCount != mc)
+                throw new ConcurrentModificationException();
+        }
+
+        public long estimateSize() {
+            getFence(); // force init
+            return (long) est;
+        }
+
+        public int characteristics() {
+            return (fence < 0 || est == map.size ? Spliterator.SIZED : 0) |
+                (keys ? Spliterator.DISTINCT : 0) | Spliterator.NONNULL;
+        }
+    }
+}
@@ -0,0 +1,578 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.io.Serializable;
+import java.lang.invoke.SerializedLambda;
+import java.lang.reflect.Method;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Parallel least-significant-digit radix sorts of int and long keys,
+ * optionally permuting an int payload array along with the keys.  Float
+ * and double keys are sorted by mapping their bits to ints and longs
+ * ordered as by {@link Float#compare} and {@link Double#compare}.
+ * Objects are sorted by primitive keys extracted from them by sorting
+ * the keys along with the positions of the objects, and then moving
+ * the objects to the positions of their keys.
+ *
+ * <p>Each pass distributes the keys by one eight-bit digit, from least
+ * to most significant, between the key array and a buffer of the same
+ * size.  The range is divided into blocks, one or a few per worker
+ * thread; each pass counts the digits of each block in parallel,
+ * computes from the counts where each block's keys of each digit are to
+ * go, and then moves each block's keys in parallel.  As the moves are
+ * stable, the keys end up sorted after the last pass.  Passes for
+ * digits that are the same in all keys are skipped, as determined by a
+ * single counting pass over all digits before sorting.
+ *
+ * All exposed methods are package-private, designed to be invoked
+ * from public methods (in class Arrays) after performing any
+ * necessary array bounds checks.
+ *
+ * @since 1.8
+ */
+final class ParallelRadixSort {
+
+    /**
+     * Prevents instantiation.
+     */
+    private ParallelRadixSort() {}
+
+    /** Bits per digit */
+    static final int DIGIT_BITS = 8;
+
+    /** Number of distinct digit values */
+    static final int RADIX = 1 << DIGIT_BITS;
+
+    static final int DIGIT_MASK = RADIX - 1;
+
+    /** Minimum number of keys per block */
+    static final int MIN_BLOCK = 1 << 14;
+
+    /**
+     * Returns the number of blocks into which to divide n keys.
+     */
+    static int blocksFor(int n) {
+        int p = ForkJoinPool.getCommonPoolParallelism();
+        return Math.max(1, Math.min(p << 1, n / MIN_BLOCK));
+    }
+
+    /**
+     * Applies the action to each block index in [0, blocks), in
+     * parallel if there are several.
+     */
+    static void forEachBlock(int blocks, IntConsumer action) {
+        if (blocks == 1)
+            action.accept(0);
+        else
+            new BlockTask(null, action, 0, blocks).invoke();
+    }
+
+    @SuppressWarnings("serial")
+    static final class BlockTask extends CountedCompleter<Void> {
+        final IntConsumer action;
+        final int lo, hi;
+        BlockTask(CountedCompleter<?> par, IntConsumer action, int lo, int hi) {
+            super(par);
+            this.action = action;
+            this.lo = lo;
+            this.hi = hi;
+        }
+        public final void compute() {
+            int l = lo, h = hi;
+            while (h - l > 1) {
+                int mid = (l + h) >>> 1;
+                addToPendingCount(1);
+                new BlockTask(this, action, mid, h).fork();
+                h = mid;
+            }
+            action.accept(l);
+            propagateCompletion();
+        }
+    }
+
+    /**
+     * Computes, for each block, the position in the destination of its
+     * first key of each digit, into offsets, from the per-block digit
+     * counts held in the same array.  The destination holds all keys of
+     * digit 0 (block by block), then all keys of digit 1, and so on.
+     */
+    static void prefixSums(int[][] offsets, int digitStart) {
+        int sum = 0;
+        for (int d = 0; d < RADIX; ++d) {
+            for (int[] o : offsets) {
+                int c = o[digitStart + d];
+                o[digitStart + d] = sum;
+                sum += c;
+            }
+        }
+    }
+
+    /* ---------------- int keys -------------- */
+
+    /**
+     * Sorts a[from, to) into ascending signed order, permuting
+     * payload[pFrom, pFrom + (to - from)) identically if non-null.
+     */
+    static void sort(int[] a, int from, int to, int[] payload, int pFrom) {
+        final int n = to - from;
+        if (n < 2)
+            return;
+        final int blocks = blocksFor(n);
+        final int blockSize = (n + blocks - 1) / blocks;
+        final int passes = Integer.SIZE / DIGIT_BITS;
+
+        // Count all digits once to find passes that would not move keys
+        final int[][] all = new int[blocks][RADIX * passes];
+        forEachBlock(blocks, b -> {
+            int[] c = all[b];
+            int lo = from + b * blockSize, hi = Math.min(to, lo + blockSize);
+            for (int i = lo; i < hi; ++i) {
+                int k = a[i];
+                for (int p = 0, s = 0; p < passes; ++p, s += DIGIT_BITS)
+                    ++c[p * RADIX + digit(k, s, p == passes - 1)];
+            }
+        });
+
+        int[] buf = null, pbuf = null;
+        int[] src = a, dst, psrc = payload, pdst;
+        int srcOff = from, psrcOff = pFrom;
+        for (int p = 0; p < passes; ++p) {
+            if (isTrivial(all, p * RADIX, n))
+                continue;
+            if (buf == null) {
+                buf = new int[n];
+                if (payload != null)
+                    pbuf = new int[n];
+            }
+            dst = (src == a) ? buf : a;
+            pdst = (psrc == payload) ? pbuf : payload;
+            int dstOff = (src == a) ? 0 : from;
+            int pdstOff = (psrc == payload) ? 0 : pFrom;
+            pass(src, srcOff, dst, dstOff, psrc, psrcOff, pdst, pdstOff,
+                 n, blocks, blockSize, p * DIGIT_BITS, p == passes - 1);
+            src = dst;
+            srcOff = dstOff;
+            psrc = pdst;
+            psrcOff = pdstOff;
+        }
+        if (src != a)
+            copyBack(src, a, from, psrc, payload, pFrom, n, blocks, blockSize);
+    }
+
+    static int digit(int k, int shift, boolean top) {
+        int d = (k >>> shift) & DIGIT_MASK;
+        return top ? d ^ (RADIX >>> 1) : d;     // order sign bit
+    }
+
+    static boolean isTrivial(int[][] counts, int digitStart, int n) {
+        for (int d = 0; d < RADIX; ++d) {
+            int c = 0;
+            for (int[] cs : counts)
+                c += cs[digitStart + d];
+            if (c != 0)
+                return c == n;
+        }
+        return true;
+    }
+
+    private static void pass(int[] src, int srcOff, int[] dst, int dstOff,
+                             int[] psrc, int psrcOff, int[] pdst, int pdstOff,
+                             int n, int blocks, int blockSize,
+                             int shift, boolean top) {
+        final int[][] offsets = new int[blocks][RADIX];
+        forEachBlock(blocks, b -> {
+            int[] c = offsets[b];
+            int lo = srcOff + b * blockSize;
+            int hi = Math.min(srcOff + n, lo + blockSize);
+            for (int i = lo; i < hi; ++i)
+                ++c[digit(src[i], shift, top)];
+        });
+        prefixSums(offsets, 0);
+        forEachBlock(blocks, b -> {
+            int[] o = offsets[b];
+            int lo = b * blockSize, hi = Math.min(n, lo + blockSize);
+            if (psrc == null) {
+                for (int i = lo; i < hi; ++i) {
+                    int k = src[srcOff + i];
+                    dst[dstOff + o[digit(k, shift, top)]++] = k;
+                }
+            }
+            else {
+                for (int i = lo; i < hi; ++i) {
+                    int k = src[srcOff + i];
+                    int j = o[digit(k, shift, top)]++;
+                    dst[dstOff + j] = k;
+                    pdst[pdstOff + j] = psrc[psrcOff + i];
+                }
+            }
+        });
+    }
+
+    private static void copyBack(int[] src, int[] a, int from,
+                                 int[] psrc, int[] payload, int pFrom,
+                                 int n, int blocks, int blockSize) {
+        forEachBlock(blocks, b -> {
+            int lo = b * blockSize, len = Math.min(n, lo + blockSize) - lo;
+            if (len > 0) {
+                System.arraycopy(src, lo, a, from + lo, len);
+                if (payload != null)
+                    System.arraycopy(psrc, lo, payload, pFrom + lo, len);
+            }
+        });
+    }
+
+    /* ---------------- long keys -------------- */
+
+    /**
+     * Sorts a[from, to) into ascending signed order, permuting
+     * payload[pFrom, pFrom + (to - from)) identically if non-null.
+     */
+    static void sort(long[] a, int from, int to, int[] payload, int pFrom) {
+        final int n = to - from;
+        if (n < 2)
+            return;
+        final int blocks = blocksFor(n);
+        final int blockSize = (n + blocks - 1) / blocks;
+        final int passes = Long.SIZE / DIGIT_BITS;
+
+        final int[][] all = new int[blocks][RADIX * passes];
+        forEachBlock(blocks, b -> {
+            int[] c = all[b];
+            int lo = from + b * blockSize, hi = Math.min(to, lo + blockSize);
+            for (int i = lo; i < hi; ++i) {
+                long k = a[i];
+                for (int p = 0, s = 0; p < passes; ++p, s += DIGIT_BITS)
+                    ++c[p * RADIX + digit(k, s, p == passes - 1)];
+            }
+        });
+
+        long[] buf = null, src = a, dst;
+        int[] pbuf = null, psrc = payload, pdst;
+        int srcOff = from, psrcOff = pFrom;
+        for (int p = 0; p < passes; ++p) {
+            if (isTrivial(all, p * RADIX, n))
+                continue;
+            if (buf == null) {
+                buf = new long[n];
+                if (payload != null)
+                    pbuf = new int[n];
+            }
+            dst = (src == a) ? buf : a;
+            pdst = (psrc == payload) ? pbuf : payload;
+            int dstOff = (src == a) ? 0 : from;
+            int pdstOff = (psrc == payload) ? 0 : pFrom;
+            pass(src, srcOff, dst, dstOff, psrc, psrcOff, pdst, pdstOff,
+                 n, blocks, blockSize, p * DIGIT_BITS, p == passes - 1);
+            src = dst;
+            srcOff = dstOff;
+            psrc = pdst;
+            psrcOff = pdstOff;
+        }
+        if (src != a)
+            copyBack(src, a, from, psrc, payload, pFrom, n, blocks, blockSize);
+    }
+
+    static int digit(long k, int shift, boolean top) {
+        int d = (int)(k >>> shift) & DIGIT_MASK;
+        return top ? d ^ (RADIX >>> 1) : d;     // order sign bit
+    }
+
+    private static void pass(long[] src, int srcOff, long[] dst, int dstOff,
+                             int[] psrc, int psrcOff, int[] pdst, int pdstOff,
+                             int n, int blocks, int blockSize,
+                             int shift, boolean top) {
+        final int[][] offsets = new int[blocks][RADIX];
+        forEachBlock(blocks, b -> {
+            int[] c = offsets[b];
+            int lo = srcOff + b * blockSize;
+            int hi = Math.min(srcOff + n, lo + blockSize);
+            for (int i = lo; i < hi; ++i)
+                ++c[digit(src[i], shift, top)];
+        });
+        prefixSums(offsets, 0);
+        forEachBlock(blocks, b -> {
+            int[] o = offsets[b];
+            int lo = b * blockSize, hi = Math.min(n, lo + blockSize);
+            if (psrc == null) {
+                for (int i = lo; i < hi; ++i) {
+                    long k = src[srcOff + i];
+                    dst[dstOff + o[digit(k, shift, top)]++] = k;
+                }
+            }
+            else {
+                for (int i = lo; i < hi; ++i) {
+                    long k = src[srcOff + i];
+                    int j = o[digit(k, shift, top)]++;
+                    dst[dstOff + j] = k;
+                    pdst[pdstOff + j] = psrc[psrcOff + i];
+                }
+            }
+        });
+    }
+
+    private static void copyBack(long[] src, long[] a, int from,
+                                 int[] psrc, int[] payload, int pFrom,
+                                 int n, int blocks, int blockSize) {
+        forEachBlock(blocks, b -> {
+            int lo = b * blockSize, len = Math.min(n, lo + blockSize) - lo;
+            if (len > 0) {
+                System.arraycopy(src, lo, a, from + lo, len);
+                if (payload != null)
+                    System.arraycopy(psrc, lo, payload, pFrom + lo, len);
+            }
+        });
+    }
+
+    /* ---------------- float and double keys -------------- */
+
+    /**
+     * Maps float bits to ints whose signed order is that of
+     * Float.compare: negative values have their magnitude bits
+     * inverted.  The mapping is its own inverse.
+     */
+    static int orderedBits(int bits) {
+        return bits ^ ((bits >> 31) & Integer.MAX_VALUE);
+    }
+
+    static long orderedBits(long bits) {
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * Sorts a[from, to) into the order of Float.compare, permuting
+     * payload[pFrom, ...) identically if non-null.  NaNs are replaced
+     * by the canonical NaN.
+     */
+    static void sort(float[] a, int from, int to, int[] payload, int pFrom) {
+        final int n = to - from;
+        if (n < 2)
+            return;
+        final int blocks = blocksFor(n);
+        final int blockSize = (n + blocks - 1) / blocks;
+        final int[] keys = new int[n];
+        forEachBlock(blocks, b -> {
+            int lo = b * blockSize, hi = Math.min(n, lo + blockSize);
+            for (int i = lo; i < hi; ++i)
+                keys[i] = orderedBits(Float.floatToIntBits(a[from + i]));
+        });
+        sort(keys, 0, n, payload, pFrom);
+        forEachBlock(blocks, b -> {
+            int lo = b * blockSize, hi = Math.min(n, lo + blockSize);
+            for (int i = lo; i < hi; ++i)
+                a[from + i] = Float.intBitsToFloat(orderedBits(keys[i]));
+        });
+    }
+
+    /**
+     * Sorts a[from, to) into the order of Double.compare, permuting
+     * payload[pFrom, ...) identically if non-null.  NaNs are replaced
+     * by the canonical NaN.
+     */
+    static void sort(double[] a, int from, int to, int[] payload, int pFrom) {
+        final int n = to - from;
+        if (n < 2)
+            return;
+        final int blocks = blocksFor(n);
+        final int blockSize = (n + blocks - 1) / blocks;
+        final long[] keys = new long[n];
+        forEachBlock(blocks, b -> {
+            int lo = b * blockSize, hi = Math.min(n, lo + blockSize);
+            for (int i = lo; i < hi; ++i)
+                keys[i] = orderedBits(Double.doubleToLongBits(a[from + i]));
+        });
+        sort(keys, 0, n, payload, pFrom);
+        forEachBlock(blocks, b -> {
+            int lo = b * blockSize, hi = Math.min(n, lo + blockSize);
+            for (int i = lo; i < hi; ++i)
+                a[from + i] = Double.longBitsToDouble(orderedBits(keys[i]));
+        });
+    }
+
+    /* ---------------- objects by extracted keys -------------- */
+
+    /**
+     * Signatures of the lambda bodies of the comparators returned by
+     * Comparator.comparingInt, comparingLong and comparingDouble, each
+     * taking the captured key extractor and the two objects compared.
+     */
+    private static final String INT_KEY_COMPARE =
+        "(Ljava/util/function/ToIntFunction;Ljava/lang/Object;Ljava/lang/Object;)I";
+    private static final String LONG_KEY_COMPARE =
+        "(Ljava/util/function/ToLongFunction;Ljava/lang/Object;Ljava/lang/Object;)I";
+    private static final String DOUBLE_KEY_COMPARE =
+        "(Ljava/util/function/ToDoubleFunction;Ljava/lang/Object;Ljava/lang/Object;)I";
+
+    /**
+     * Sorts a[from, to) by the key comparator, if it is one of those
+     * returned by Comparator.comparingInt, comparingLong or
+     * comparingDouble, returning false without sorting otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> boolean sortByKey(T[] a, int from, int to,
+                                 Comparator<? super T> cmp) {
+        SerializedLambda form = serializedForm(cmp);
+        if (form == null ||
+            !"java/util/Comparator".equals(form.getImplClass()) ||
+            form.getCapturedArgCount() != 1)
+            return false;
+        String sig = form.getImplMethodSignature();
+        Object f = form.getCapturedArg(0);
+        if (INT_KEY_COMPARE.equals(sig))
+            sortByInt(a, from, to, (ToIntFunction<? super T>)f);
+        else if (LONG_KEY_COMPARE.equals(sig))
+            sortByLong(a, from, to, (ToLongFunction<? super T>)f);
+        else if (DOUBLE_KEY_COMPARE.equals(sig))
+            sortByDouble(a, from, to, (ToDoubleFunction<? super T>)f);
+        else
+            return false;
+        return true;
+    }
+
+    /**
+     * Returns the serialized form of cmp if it is a serializable lambda
+     * defined in Comparator, else null.  The key comparators are such
+     * lambdas, whose serialized form names the lambda body and holds
+     * the captured key extractor; they are recognized this way rather
+     * than by class so that their serialized form stays as it was.
+     */
+    private static SerializedLambda serializedForm(Comparator<?> cmp) {
+        Class<?> c = cmp.getClass();
+        if (!(cmp instanceof Serializable) || !c.isSynthetic() ||
+            !c.getName().startsWith("java.util.Comparator$$Lambda$"))
+            return null;
+        try {
+            Method m = c.getDeclaredMethod("writeReplace");
+            AccessController.doPrivileged(new PrivilegedAction<Void>() {
+                public Void run() {
+                    m.setAccessible(true);
+                    return null;
+                }
+            });
+            Object r = m.invoke(cmp);
+            return (r instanceof SerializedLambda) ? (SerializedLambda)r : null;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stably sorts a[from, to) into ascending order of the int keys
+     * extracted by f.
+     */
+    static <T> void sortByInt(T[] a, int from, int to, ToIntFunction<? super T> f) {
+        final int n = to - from;
+        if (n < 2)
+            return;
+        final int blocks = blocksFor(n);
+        final int blockSize = (n + blocks - 1) / blocks;
+        final int[] keys = new int[n], indices = new int[n];
+        forEachBlock(blocks, b -> {
+            int lo = b * blockSize, hi = Math.min(n, lo + blockSize);
+            for (int i = lo; i < hi; ++i) {
+                keys[i] = f.applyAsInt(a[from + i]);
+                indices[i] = i;
+            }
+        });
+        sort(keys, 0, n, indices, 0);
+        permute(a, from, indices, blocks, blockSize);
+    }
+
+    /**
+     * Stably sorts a[from, to) into ascending order of the long keys
+     * extracted by f.
+     */
+    static <T> void sortByLong(T[] a, int from, int to, ToLongFunction<? super T> f) {
+        final int n = to - from;
+        if (n < 2)
+            return;
+        final int blocks = blocksFor(n);
+        final int blockSize = (n + blocks - 1) / blocks;
+        final long[] keys = new long[n];
+        final int[] indices = new int[n];
+        forEachBlock(blocks, b -> {
+            int lo = b * blockSize, hi = Math.min(n, lo + blockSize);
+            for (int i = lo; i < hi; ++i) {
+                keys[i] = f.applyAsLong(a[from + i]);
+                indices[i] = i;
+            }
+        });
+        sort(keys, 0, n, indices, 0);
+        permute(a, from, indices, blocks, blockSize);
+    }
+
+    /**
+     * Stably sorts a[from, to) into the order of Double.compare of the
+     * double keys extracted by f.
+     */
+    static <T> void sortByDouble(T[] a, int from, int to, ToDoubleFunction<? super T> f) {
+        final int n = to - from;
+        if (n < 2)
+            return;
+        final int blocks = blocksFor(n);
+        final int blockSize = (n + blocks - 1) / blocks;
+        final long[] keys = new long[n];
+        final int[] indices = new int[n];
+        forEachBlock(blocks, b -> {
+            int lo = b * blockSize, hi = Math.min(n, lo + blockSize);
+            for (int i = lo; i < hi; ++i) {
+                keys[i] = orderedBits(Double.doubleToLongBits
+                                      (f.applyAsDouble(a[from + i])));
+                indices[i] = i;
+            }
+        });
+        sort(keys, 0, n, indices, 0);
+        permute(a, from, indices, blocks, blockSize);
+    }
+
+    /**
+     * Moves the element at a[from + indices[i]] to a[from + i], for all i.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> void permute(T[] a, int from, int[] indices,
+                                    int blocks, int blockSize) {
+        final int n = indices.length;
+        final Object[] src = new Object[n];
+        forEachBlock(blocks, b -> {
+            int lo = b * blockSize, len = Math.min(n, lo + blockSize) - lo;
+            if (len > 0)
+                System.arraycopy(a, from + lo, src, lo, len);
+        });
+        forEachBlock(blocks, b -> {
+            int lo = b * blockSize, hi = Math.min(n, lo + blockSize);
+            for (int i = lo; i < hi; ++i)
+                a[from + i] = (T)src[indices[i]];
+        });
+    }
+}
@@ -0,0 +1,782 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * An immutable {@link Map} whose modifying operations return a new map,
+ * sharing all but a logarithmic number of nodes with this one.  Where a
+ * copy-on-write snapshot such as
+ * {@code Collections.unmodifiableMap(new HashMap<>(m))} costs time and
+ * space proportional to the size of the map for every update,
+ * {@link #with} and {@link #without} take time and allocate space
+ * proportional to log<sub>32</sub> of the size, so each version may be
+ * published and read freely while later versions are derived from it.
+ *
+ * <p>The map is a <em>hash array mapped trie</em>: each level of the trie
+ * consumes five bits of the (spread) hash code of a key, and each node
+ * holds a bitmap of which of its 32 positions are occupied by entries
+ * and which by child nodes, followed by a compact array of just those
+ * entries and children.  Keys whose hash codes are entirely equal are
+ * kept in a collision node searched linearly.  After a removal, nodes
+ * left holding a single entry are merged into their parents, so that
+ * the trie is the same for equal maps however they were built.
+ *
+ * <p>All of the {@code Map} read operations are supported; the
+ * {@code Map} mutators, including those of the collection views, throw
+ * {@link UnsupportedOperationException}.  The iteration order is
+ * unspecified.  The spliterators of the map views split along the nodes
+ * of the trie, which makes them suited to parallel streams.  Null keys
+ * and values are not permitted.  Instances are immutable, and so may be
+ * shared safely between threads.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ * @see PersistentHashSet
+ * @see PersistentVector
+ * @since 1.8
+ */
+public final class PersistentHashMap<K,V> extends AbstractMap<K,V> {
+
+    /** Number of hash bits consumed by each level of the trie */
+    static final int BITS = 5;
+
+    static final int MASK = (1 << BITS) - 1;
+
+    /** Shift at and beyond which all hash bits are consumed */
+    static final int HASH_BITS = 32;
+
+    /** Maximum depth of nested nodes, counting the root */
+    static final int MAX_DEPTH = (HASH_BITS + BITS - 1) / BITS + 1;
+
+    static final Object[] EMPTY_ARRAY = {};
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentHashMap EMPTY =
+        new PersistentHashMap<>(new BitmapNode<>(0, 0, EMPTY_ARRAY), 0);
+
+    final Node<K,V> root;
+    final int size;
+
+    PersistentHashMap(Node<K,V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the empty map.
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K,V> PersistentHashMap<K,V> empty() {
+        return (PersistentHashMap<K,V>)EMPTY;
+    }
+
+    /**
+     * Returns a map containing the mappings of the given map.
+     *
+     * @param m the map whose mappings are to be placed in the new map
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     * @return a map with the same mappings as {@code m}
+     * @throws NullPointerException if the map, or any of its keys or
+     *         values, is null
+     */
+    @SuppressWarnings("unchecked")
+    public static <K,V> PersistentHashMap<K,V> copyOf(
+        Map<? extends K, ? extends V> m) {
+        if (m instanceof PersistentHashMap)
+            return (PersistentHashMap<K,V>)m;
+        return PersistentHashMap.<K,V>empty().withAll(m);
+    }
+
+    /* ---------------- Hashing -------------- */
+
+    /**
+     * Spreads higher bits of the hash code into the lower ones, which
+     * select positions at the top levels of the trie, as HashMap does.
+     */
+    static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    static int mask(int hash, int shift) {
+        return (hash >>> shift) & MASK;
+    }
+
+    static int bitpos(int hash, int shift) {
+        return 1 << mask(hash, shift);
+    }
+
+    /**
+     * Records the effect of an update or removal.
+     */
+    static final class Change<V> {
+        boolean modified;       // size changed
+        V oldValue;             // replaced or removed value
+    }
+
+    /* ---------------- Nodes -------------- */
+
+    /**
+     * A trie node.  The content array holds payloadArity() key-value
+     * pairs, followed by nodeArity() child nodes.
+     */
+    abstract static class Node<K,V> {
+        abstract V find(Object key, int hash, int shift);
+        abstract Node<K,V> updated(K key, V value, int hash, int shift,
+                                   Change<V> change);
+        abstract Node<K,V> removed(Object key, int hash, int shift,
+                                   Change<V> change);
+        abstract int payloadArity();
+        abstract int nodeArity();
+        abstract Object[] content();
+
+        @SuppressWarnings("unchecked")
+        final K keyAt(int i) {
+            return (K)content()[i << 1];
+        }
+
+        @SuppressWarnings("unchecked")
+        final V valueAt(int i) {
+            return (V)content()[(i << 1) + 1];
+        }
+
+        /**
+         * Performs the given action on each mapping of this subtree.
+         */
+        @SuppressWarnings("unchecked")
+        final void forEach(BiConsumer<? super K, ? super V> action) {
+            Object[] c = content();
+            int p = payloadArity() << 1;
+            for (int i = 0; i < p; i += 2)
+                action.accept((K)c[i], (V)c[i + 1]);
+            for (int i = p; i < c.length; ++i)
+                ((Node<K,V>)c[i]).forEach(action);
+        }
+    }
+
+    /**
+     * A node holding entries and child nodes at positions given by the
+     * dataMap and nodeMap bitmaps.  Child nodes are stored in reverse
+     * order at the end of the content array.
+     */
+    static final class BitmapNode<K,V> extends Node<K,V> {
+        final int dataMap;
+        final int nodeMap;
+        final Object[] content;
+
+        BitmapNode(int dataMap, int nodeMap, Object[] content) {
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.content = content;
+        }
+
+        static int index(int map, int bit) {
+            return Integer.bitCount(map & (bit - 1));
+        }
+
+        int payloadArity() { return Integer.bitCount(dataMap); }
+        int nodeArity()    { return Integer.bitCount(nodeMap); }
+        Object[] content() { return content; }
+
+        @SuppressWarnings("unchecked")
+        Node<K,V> nodeAt(int bit) {
+            return (Node<K,V>)content[content.length - 1 - index(nodeMap, bit)];
+        }
+
+        @SuppressWarnings("unchecked")
+        V find(Object key, int hash, int shift) {
+            int bit = bitpos(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int i = index(dataMap, bit) << 1;
+                return key.equals(content[i]) ? (V)content[i + 1] : null;
+            }
+            if ((nodeMap & bit) != 0)
+                return nodeAt(bit).find(key, hash, shift + BITS);
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        Node<K,V> updated(K key, V value, int hash, int shift,
+                          Change<V> change) {
+            int bit = bitpos(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int i = index(dataMap, bit) << 1;
+                Object k = content[i];
+                if (key.equals(k)) {
+                    V v = (V)content[i + 1];
+                    if (v == value)
+                        return this;
+                    change.oldValue = v;
+                    Object[] c = content.clone();
+                    c[i + 1] = value;
+                    return new BitmapNode<K,V>(dataMap, nodeMap, c);
+                }
+                change.modified = true;
+                Node<K,V> sub = mergeTwo((K)k, (V)content[i + 1], hash(k),
+                                         key, value, hash, shift + BITS);
+                return migrateToNode(bit, sub);
+            }
+            if ((nodeMap & bit) != 0) {
+                Node<K,V> sub = nodeAt(bit);
+                Node<K,V> n = sub.updated(key, value, hash, shift + BITS,
+                                          change);
+                return (n == sub) ? this : setNode(bit, n);
+            }
+            change.modified = true;
+            int i = index(dataMap, bit) << 1;
+            Object[] c = new Object[content.length + 2];
+            System.arraycopy(content, 0, c, 0, i);
+            c[i] = key;
+            c[i + 1] = value;
+            System.arraycopy(content, i, c, i + 2, content.length - i);
+            return new BitmapNode<K,V>(dataMap | bit, nodeMap, c);
+        }
+
+        @SuppressWarnings("unchecked")
+        Node<K,V> removed(Object key, int hash, int shift, Change<V> change) {
+            int bit = bitpos(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int i = index(dataMap, bit) << 1;
+                if (!key.equals(content[i]))
+                    return this;
+                change.modified = true;
+                change.oldValue = (V)content[i + 1];
+                if (shift != 0 && content.length == 4 && nodeMap == 0) {
+                    // Leave a single-entry node positioned for the root,
+                    // to be merged into the parent
+                    int j = 2 - i;
+                    return new BitmapNode<K,V>(
+                        bitpos(hash, 0), 0,
+                        new Object[] { content[j], content[j + 1] });
+                }
+                Object[] c = new Object[content.length - 2];
+                System.arraycopy(content, 0, c, 0, i);
+                System.arraycopy(content, i + 2, c, i, content.length - i - 2);
+                return new BitmapNode<K,V>(dataMap ^ bit, nodeMap, c);
+            }
+            if ((nodeMap & bit) != 0) {
+                Node<K,V> sub = nodeAt(bit);
+                Node<K,V> n = sub.removed(key, hash, shift + BITS, change);
+                if (n == sub)
+                    return this;
+                if (n.nodeArity() == 0 && n.payloadArity() == 1) {
+                    if (dataMap == 0 && content.length == 1)
+                        return n; // propagate single entry upwards
+                    return migrateToInline(bit, n.keyAt(0), n.valueAt(0));
+                }
+                return setNode(bit, n);
+            }
+            return this;
+        }
+
+        private Node<K,V> setNode(int bit, Node<K,V> n) {
+            Object[] c = content.clone();
+            c[content.length - 1 - index(nodeMap, bit)] = n;
+            return new BitmapNode<K,V>(dataMap, nodeMap, c);
+        }
+
+        /** Replaces the entry at bit with the given node. */
+        private Node<K,V> migrateToNode(int bit, Node<K,V> n) {
+            int oldIndex = index(dataMap, bit) << 1;
+            int newIndex = content.length - 2 - index(nodeMap, bit);
+            Object[] c = new Object[content.length - 1];
+            System.arraycopy(content, 0, c, 0, oldIndex);
+            System.arraycopy(content, oldIndex + 2, c, oldIndex,
+                             newIndex - oldIndex);
+            c[newIndex] = n;
+            System.arraycopy(content, newIndex + 2, c, newIndex + 1,
+                             content.length - newIndex - 2);
+            return new BitmapNode<K,V>(dataMap ^ bit, nodeMap | bit, c);
+        }
+
+        /** Replaces the node at bit with the given entry. */
+        private Node<K,V> migrateToInline(int bit, K key, V value) {
+            int oldIndex = content.length - 1 - index(nodeMap, bit);
+            int newIndex = index(dataMap, bit) << 1;
+            Object[] c = new Object[content.length + 1];
+            System.arraycopy(content, 0, c, 0, newIndex);
+            c[newIndex] = key;
+            c[newIndex + 1] = value;
+            System.arraycopy(content, newIndex, c, newIndex + 2,
+                             oldIndex - newIndex);
+            System.arraycopy(content, oldIndex + 1, c, oldIndex + 2,
+                             content.length - oldIndex - 1);
+            return new BitmapNode<K,V>(dataMap | bit, nodeMap ^ bit, c);
+        }
+    }
+
+    /**
+     * A node holding entries whose keys have equal hashes, once all hash
+     * bits have been consumed.
+     */
+    static final class CollisionNode<K,V> extends Node<K,V> {
+        final int hash;
+        final Object[] content;
+
+        CollisionNode(int hash, Object[] content) {
+            this.hash = hash;
+            this.content = content;
+        }
+
+        int payloadArity() { return content.length >>> 1; }
+        int nodeArity()    { return 0; }
+        Object[] content() { return content; }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < content.length; i += 2) {
+                if (key.equals(content[i]))
+                    return i;
+            }
+            return -1;
+        }
+
+        @SuppressWarnings("unchecked")
+        V find(Object key, int hash, int shift) {
+            int i;
+            return (hash == this.hash && (i = indexOf(key)) >= 0) ?
+                (V)content[i + 1] : null;
+        }
+
+        @SuppressWarnings("unchecked")
+        Node<K,V> updated(K key, V value, int hash, int shift,
+                          Change<V> change) {
+            int i = indexOf(key);
+            Object[] c;
+            if (i >= 0) {
+                V v = (V)content[i + 1];
+                if (v == value)
+                    return this;
+                change.oldValue = v;
+                c = content.clone();
+                c[i + 1] = value;
+            }
+            else {
+                change.modified = true;
+                c = Arrays.copyOf(content, content.length + 2);
+                c[content.length] = key;
+                c[content.length + 1] = value;
+            }
+            return new CollisionNode<K,V>(hash, c);
+        }
+
+        @SuppressWarnings("unchecked")
+        Node<K,V> removed(Object key, int hash, int shift, Change<V> change) {
+            int i = indexOf(key);
+            if (i < 0)
+                return this;
+            change.modified = true;
+            change.oldValue = (V)content[i + 1];
+            if (content.length == 4) {
+                int j = 2 - i;
+                return new BitmapNode<K,V>(
+                    bitpos(hash, 0), 0,
+                    new Object[] { content[j], content[j + 1] });
+            }
+            Object[] c = new Object[content.length - 2];
+            System.arraycopy(content, 0, c, 0, i);
+            System.arraycopy(content, i + 2, c, i, content.length - i - 2);
+            return new CollisionNode<K,V>(hash, c);
+        }
+    }
+
+    /**
+     * Returns a node holding the two given (distinct) entries.
+     */
+    static <K,V> Node<K,V> mergeTwo(K k0, V v0, int h0, K k1, V v1, int h1,
+                                    int shift) {
+        if (shift >= HASH_BITS)
+            return new CollisionNode<K,V>(h0, new Object[] { k0, v0, k1, v1 });
+        int m0 = mask(h0, shift), m1 = mask(h1, shift);
+        if (m0 != m1) {
+            Object[] c = (m0 < m1) ?
+                new Object[] { k0, v0, k1, v1 } :
+                new Object[] { k1, v1, k0, v0 };
+            return new BitmapNode<K,V>((1 << m0) | (1 << m1), 0, c);
+        }
+        Node<K,V> sub = mergeTwo(k0, v0, h0, k1, v1, h1, shift + BITS);
+        return new BitmapNode<K,V>(0, 1 << m0, new Object[] { sub });
+    }
+
+    /* ---------------- Persistent operations -------------- */
+
+    /**
+     * Returns a map with the mappings of this map, and the given key
+     * mapped to the given value.  Returns this map if the key is already
+     * mapped to the same value.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return a map with the given mapping
+     * @throws NullPointerException if the key or value is null
+     */
+    public PersistentHashMap<K,V> with(K key, V value) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        Change<V> change = new Change<V>();
+        Node<K,V> r = root.updated(key, value, hash(key), 0, change);
+        return (r == root) ? this :
+            new PersistentHashMap<K,V>(r, change.modified ? size + 1 : size);
+    }
+
+    /**
+     * Returns a map with the mappings of this map and of the given map,
+     * the latter taking precedence.
+     *
+     * @param m mappings to be added
+     * @return a map with the mappings of both maps
+     * @throws NullPointerException if the map, or any of its keys or
+     *         values, is null
+     */
+    public PersistentHashMap<K,V> withAll(Map<? extends K, ? extends V> m) {
+        Node<K,V> r = root;
+        int s = size;
+        Change<V> change = new Change<V>();
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+            K k = e.getKey();
+            V v = e.getValue();
+            if (k == null || v == null)
+                throw new NullPointerException();
+            change.modified = false;
+            r = r.updated(k, v, hash(k), 0, change);
+            if (change.modified)
+                ++s;
+        }
+        return (r == root) ? this : new PersistentHashMap<K,V>(r, s);
+    }
+
+    /**
+     * Returns a map with the mappings of this map except any for the
+     * given key.  Returns this map if the key is not mapped.
+     *
+     * @param key key whose mapping is to be absent
+     * @return a map without a mapping for the key
+     * @throws NullPointerException if the key is null
+     */
+    public PersistentHashMap<K,V> without(Object key) {
+        Change<V> change = new Change<V>();
+        Node<K,V> r = root.removed(key, hash(key), 0, change);
+        return (r == root) ? this : new PersistentHashMap<K,V>(r, size - 1);
+    }
+
+    /* ---------------- Map operations -------------- */
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public V get(Object key) {
+        return (key == null) ? null : root.find(key, hash(key), 0);
+    }
+
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    public V getOrDefault(Object key, V defaultValue) {
+        V v;
+        return ((v = get(key)) != null) ? v : defaultValue;
+    }
+
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        root.forEach(action);
+    }
+
+    /* ---------------- Views -------------- */
+
+    static final int KEYS = 0, VALUES = 1, ENTRIES = 2;
+
+    private transient Set<K> keySet;
+    private transient Collection<V> values;
+    private transient Set<Map.Entry<K,V>> entrySet;
+
+    public Set<K> keySet() {
+        Set<K> ks;
+        return (ks = keySet) != null ? ks : (keySet = new KeySet());
+    }
+
+    public Collection<V> values() {
+        Collection<V> vs;
+        return (vs = values) != null ? vs : (values = new Values());
+    }
+
+    public Set<Map.Entry<K,V>> entrySet() {
+        Set<Map.Entry<K,V>> es;
+        return (es = entrySet) != null ? es : (entrySet = new EntrySet());
+    }
+
+    final class KeySet extends AbstractSet<K> {
+        public int size()                 { return size; }
+        public boolean contains(Object o) { return containsKey(o); }
+        public Iterator<K> iterator() {
+            return new TrieIterator<K,V,K>(root, KEYS);
+        }
+        public Spliterator<K> spliterator() {
+            return new TrieSpliterator<K,V,K>(root, KEYS, size);
+        }
+        public void forEach(Consumer<? super K> action) {
+            Objects.requireNonNull(action);
+            root.forEach((k, v) -> action.accept(k));
+        }
+    }
+
+    final class Values extends AbstractCollection<V> {
+        public int size() { return size; }
+        public Iterator<V> iterator() {
+            return new TrieIterator<K,V,V>(root, VALUES);
+        }
+        public Spliterator<V> spliterator() {
+            return new TrieSpliterator<K,V,V>(root, VALUES, size);
+        }
+        public void forEach(Consumer<? super V> action) {
+            Objects.requireNonNull(action);
+            root.forEach((k, v) -> action.accept(v));
+        }
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+        public int size() { return size; }
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            Object v = e.getValue();
+            return v != null && v.equals(get(e.getKey()));
+        }
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return new TrieIterator<K,V,Map.Entry<K,V>>(root, ENTRIES);
+        }
+        public Spliterator<Map.Entry<K,V>> spliterator() {
+            return new TrieSpliterator<K,V,Map.Entry<K,V>>(root, ENTRIES,
+                                                           size);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T element(Object[] content, int i, int mode) {
+        switch (mode) {
+        case KEYS:
+            return (T)content[i];
+        case VALUES:
+            return (T)content[i + 1];
+        default:
+            return (T)new AbstractMap.SimpleImmutableEntry<Object,Object>(
+                content[i], content[i + 1]);
+        }
+    }
+
+    /**
+     * Depth-first iterator over a subtree, keeping a stack of the
+     * content arrays of nodes whose children remain to be visited.
+     */
+    static final class TrieIterator<K,V,T> implements Iterator<T> {
+        final int mode;
+        final Object[][] stack = new Object[MAX_DEPTH][];
+        final int[] cursors = new int[MAX_DEPTH];
+        int depth = -1;
+        Object[] data;          // content of current node
+        int dataIndex, dataEnd; // remaining payload pairs in data
+
+        TrieIterator(Node<K,V> root, int mode) {
+            this.mode = mode;
+            push(root);
+        }
+
+        private void push(Node<?,?> n) {
+            Object[] c = n.content();
+            int p = n.payloadArity() << 1;
+            data = c;
+            dataIndex = 0;
+            dataEnd = p;
+            if (p < c.length) {
+                stack[++depth] = c;
+                cursors[depth] = p;
+            }
+        }
+
+        public boolean hasNext() {
+            while (dataIndex >= dataEnd) {
+                if (depth < 0)
+                    return false;
+                Object[] c = stack[depth];
+                int i = cursors[depth];
+                if (i < c.length) {
+                    cursors[depth] = i + 1;
+                    push((Node<?,?>)c[i]);
+                }
+                else
+                    stack[depth--] = null;
+            }
+            return true;
+        }
+
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            int i = dataIndex;
+            dataIndex = i + 2;
+            return element(data, i, mode);
+        }
+    }
+
+    /**
+     * Spliterator over a sequence of payload pairs followed by a range of
+     * subtrees, splitting off half of the subtrees, or descending into a
+     * single remaining subtree to split its children.
+     */
+    static final class TrieSpliterator<K,V,T> implements Spliterator<T> {
+        final int mode;
+        Object[] data;          // array holding payload pairs
+        int dataIndex, dataEnd;
+        Object[] nodes;         // array holding subtrees
+        int nodeIndex, nodeEnd;
+        TrieIterator<K,V,T> current; // iterator over a started subtree
+        long est;
+        boolean exact;
+
+        TrieSpliterator(Node<K,V> root, int mode, int size) {
+            this.mode = mode;
+            Object[] c = root.content();
+            int p = root.payloadArity() << 1;
+            this.data = this.nodes = c;
+            this.dataEnd = this.nodeIndex = p;
+            this.nodeEnd = c.length;
+            this.est = size;
+            this.exact = true;
+        }
+
+        TrieSpliterator(int mode, Object[] nodes, int nodeIndex, int nodeEnd,
+                        long est) {
+            this.mode = mode;
+            this.data = this.nodes = nodes;
+            this.dataIndex = this.dataEnd = nodeIndex;
+            this.nodeIndex = nodeIndex;
+            this.nodeEnd = nodeEnd;
+            this.est = est;
+        }
+
+        public TrieSpliterator<K,V,T> trySplit() {
+            if (current != null)
+                return null;
+            for (;;) {
+                int n = nodeEnd - nodeIndex;
+                if (n >= 2) {
+                    int mid = nodeIndex + (n >>> 1);
+                    TrieSpliterator<K,V,T> s = new TrieSpliterator<K,V,T>(
+                        mode, nodes, nodeIndex, mid, est >>>= 1);
+                    nodeIndex = mid;
+                    exact = false;
+                    return s;
+                }
+                if (n == 0 || dataIndex < dataEnd)
+                    return null;
+                // Descend into the only remaining subtree
+                Node<?,?> x = (Node<?,?>)nodes[nodeIndex];
+                Object[] c = x.content();
+                int p = x.payloadArity() << 1;
+                data = nodes = c;
+                dataIndex = 0;
+                dataEnd = nodeIndex = p;
+                nodeEnd = c.length;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            for (int i = dataIndex, e = dataEnd; i < e; i += 2)
+                action.accept(element(data, i, mode));
+            dataIndex = dataEnd;
+            TrieIterator<K,V,T> it;
+            if ((it = current) != null) {
+                current = null;
+                while (it.hasNext())
+                    action.accept(it.next());
+            }
+            Object[] ns = nodes;
+            int i = nodeIndex, e = nodeEnd;
+            nodeIndex = e;
+            BiConsumer<Object,Object> a;
+            switch (mode) {
+            case KEYS:
+                a = (k, v) -> action.accept((T)k);
+                break;
+            case VALUES:
+                a = (k, v) -> action.accept((T)v);
+                break;
+            default:
+                a = (k, v) -> action.accept(
+                    (T)new AbstractMap.SimpleImmutableEntry<Object,Object>(k, v));
+            }
+            for (; i < e; ++i)
+                ((Node<Object,Object>)ns[i]).forEach(a);
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            for (;;) {
+                int i;
+                if ((i = dataIndex) < dataEnd) {
+                    dataIndex = i + 2;
+                    action.accept(element(data, i, mode));
+                    return true;
+                }
+                TrieIterator<K,V,T> it;
+                if ((it = current) != null && it.hasNext()) {
+                    action.accept(it.next());
+                    return true;
+                }
+                current = null;
+                if (nodeIndex >= nodeEnd)
+                    return false;
+                current = new TrieIterator<K,V,T>(
+                    (Node<K,V>)nodes[nodeIndex++], mode);
+            }
+        }
+
+        public long estimateSize() {
+            return est;
+        }
+
+        public int characteristics() {
+            return (exact ? Spliterator.SIZED : 0) | Spliterator.DISTINCT |
+                Spliterator.IMMUTABLE | Spliterator.NONNULL;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.util.function.Consumer;
+
+/**
+ * An immutable {@link Set} whose modifying operations return a new set,
+ * sharing structure with this one.  This class is backed by a
+ * {@link PersistentHashMap}, so {@link #with} and {@link #without} take
+ * time and allocate space proportional to log<sub>32</sub> of the size
+ * of the set.
+ *
+ * <p>The {@code Set} mutators throw {@link UnsupportedOperationException}.
+ * The iteration order is unspecified, and the {@link #spliterator} splits
+ * along the nodes of the underlying trie.  Null elements are not
+ * permitted.  Instances are immutable, and so may be shared safely
+ * between threads.
+ *
+ * @param <E> the type of elements maintained by this set
+ * @see PersistentHashMap
+ * @since 1.8
+ */
+public final class PersistentHashSet<E> extends AbstractSet<E> {
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentHashSet EMPTY =
+        new PersistentHashSet<>(PersistentHashMap.empty());
+
+    // Dummy value to associate with an Object in the backing Map
+    private static final Boolean PRESENT = Boolean.TRUE;
+
+    private final PersistentHashMap<E,Boolean> map;
+
+    private PersistentHashSet(PersistentHashMap<E,Boolean> map) {
+        this.map = map;
+    }
+
+    /**
+     * Returns the empty set.
+     *
+     * @param <E> the type of elements
+     * @return the empty set
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentHashSet<E> empty() {
+        return (PersistentHashSet<E>)EMPTY;
+    }
+
+    /**
+     * Returns a set containing the elements of the given collection.
+     *
+     * @param c the collection whose elements are to be placed in the set
+     * @param <E> the type of elements
+     * @return a set with the elements of {@code c}
+     * @throws NullPointerException if the collection, or any of its
+     *         elements, is null
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentHashSet<E> copyOf(Collection<? extends E> c) {
+        if (c instanceof PersistentHashSet)
+            return (PersistentHashSet<E>)c;
+        return PersistentHashSet.<E>empty().withAll(c);
+    }
+
+    /**
+     * Returns a set with the elements of this set and the given element.
+     * Returns this set if it already contains the element.
+     *
+     * @param e element to be present
+     * @return a set containing the element
+     * @throws NullPointerException if the element is null
+     */
+    public PersistentHashSet<E> with(E e) {
+        PersistentHashMap<E,Boolean> m = map.with(e, PRESENT);
+        return (m == map) ? this : new PersistentHashSet<E>(m);
+    }
+
+    /**
+     * Returns a set with the elements of this set and of the given
+     * collection.
+     *
+     * @param c elements to be present
+     * @return a set containing the elements of both
+     * @throws NullPointerException if the collection, or any of its
+     *         elements, is null
+     */
+    public PersistentHashSet<E> withAll(Collection<? extends E> c) {
+        PersistentHashMap<E,Boolean> m = map;
+        for (E e : c)
+            m = m.with(e, PRESENT);
+        return (m == map) ? this : new PersistentHashSet<E>(m);
+    }
+
+    /**
+     * Returns a set with the elements of this set except the given
+     * element.  Returns this set if it does not contain the element.
+     *
+     * @param o element to be absent
+     * @return a set not containing the element
+     * @throws NullPointerException if the element is null
+     */
+    public PersistentHashSet<E> without(Object o) {
+        PersistentHashMap<E,Boolean> m = map.without(o);
+        return (m == map) ? this : new PersistentHashSet<E>(m);
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    public boolean contains(Object o) {
+        return map.containsKey(o);
+    }
+
+    public Iterator<E> iterator() {
+        return map.keySet().iterator();
+    }
+
+    public Spliterator<E> spliterator() {
+        return map.keySet().spliterator();
+    }
+
+    public void forEach(Consumer<? super E> action) {
+        map.keySet().forEach(action);
+    }
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.util.function.Consumer;
+
+/**
+ * An immutable {@link List} whose modifying operations return a new list,
+ * sharing all but a logarithmic number of nodes with this one.  Where
+ * {@link java.util.concurrent.CopyOnWriteArrayList} copies its whole
+ * array on every write, {@link #plus}, {@link #with(int, Object)} and
+ * {@link #withoutLast} take time and allocate space proportional to
+ * log<sub>32</sub> of the size of the list (and appends are amortized
+ * over a 32-element tail), while {@link #get} takes time proportional to
+ * log<sub>32</sub> of the size, with no more than seven levels.
+ *
+ * <p>The list is a 32-way trie of arrays, indexed by successive five-bit
+ * digits of the element index, whose last (partial) leaf is kept apart
+ * as a tail so that appends rarely touch the trie.  Insertion and removal
+ * other than at the end are not supported directly; they may be
+ * performed by building a new list, in linear time.
+ *
+ * <p>All of the {@code List} read operations are supported; the
+ * {@code List} mutators throw {@link UnsupportedOperationException}.
+ * The {@link #spliterator} splits along leaf and node boundaries of the
+ * trie.  Null elements are permitted.  Instances are immutable, and so
+ * may be shared safely between threads.
+ *
+ * @param <E> the type of elements in this list
+ * @see PersistentHashMap
+ * @since 1.8
+ */
+public final class PersistentVector<E> extends AbstractList<E>
+    implements RandomAccess {
+
+    static final int BITS = 5;
+    static final int WIDTH = 1 << BITS;
+    static final int MASK = WIDTH - 1;
+
+    /** The largest supported size */
+    static final int MAX_SIZE = Integer.MAX_VALUE - WIDTH;
+
+    static final Object[] EMPTY_ARRAY = {};
+    static final Object[] EMPTY_NODE = new Object[WIDTH];
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentVector EMPTY =
+        new PersistentVector<>(0, BITS, EMPTY_NODE, EMPTY_ARRAY);
+
+    final int size;
+    final int shift;        // level of root; BITS when root holds leaves
+    final Object[] root;
+    final Object[] tail;    // elements from tailOffset(), length size-tailOffset()
+
+    PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    /**
+     * Returns the empty list.
+     *
+     * @param <E> the type of elements
+     * @return the empty list
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>)EMPTY;
+    }
+
+    /**
+     * Returns a list containing the elements of the given collection, in
+     * the order they are returned by its iterator.
+     *
+     * @param c the collection whose elements are to be placed in the list
+     * @param <E> the type of elements
+     * @return a list with the elements of {@code c}
+     * @throws NullPointerException if the collection is null
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> copyOf(Collection<? extends E> c) {
+        if (c instanceof PersistentVector)
+            return (PersistentVector<E>)c;
+        return PersistentVector.<E>empty().plusAll(c);
+    }
+
+    /* ---------------- Trie mechanics -------------- */
+
+    /** Index of the first element held in the tail. */
+    final int tailOffset() {
+        return (size < WIDTH) ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    /** Returns the leaf array holding the given (valid) index. */
+    final Object[] leafFor(int index) {
+        if (index >= tailOffset())
+            return tail;
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS)
+            node = (Object[])node[(index >>> level) & MASK];
+        return node;
+    }
+
+    static Object[] newPath(int level, Object[] node) {
+        if (level == 0)
+            return node;
+        Object[] ret = new Object[WIDTH];
+        ret[0] = newPath(level - BITS, node);
+        return ret;
+    }
+
+    /**
+     * Returns a copy of the given parent with the full tail leaf added
+     * as the leaf holding indices from count - WIDTH.
+     */
+    static Object[] pushTail(int count, int level, Object[] parent,
+                             Object[] leaf) {
+        int i = ((count - 1) >>> level) & MASK;
+        Object[] ret = parent.clone();
+        Object[] child;
+        ret[i] = (level == BITS) ? leaf :
+            ((child = (Object[])parent[i]) != null) ?
+            pushTail(count, level - BITS, child, leaf) :
+            newPath(level - BITS, leaf);
+        return ret;
+    }
+
+    /**
+     * Returns a vector of the given size whose tail, holding WIDTH
+     * elements, has been moved into the trie, leaving an empty tail.
+     * The result is used only transiently, to be given a new tail.
+     */
+    static <E> PersistentVector<E> pushedTail(int size, int shift,
+                                              Object[] root, Object[] tail) {
+        Object[] r;
+        int s = shift;
+        if ((size >>> BITS) > (1 << shift)) {  // root overflow
+            r = new Object[WIDTH];
+            r[0] = root;
+            r[1] = newPath(shift, tail);
+            s += BITS;
+        }
+        else
+            r = pushTail(size, shift, root, tail);
+        return new PersistentVector<E>(size, s, r, EMPTY_ARRAY);
+    }
+
+    static Object[] doWith(int level, Object[] node, int i, Object e) {
+        Object[] ret = node.clone();
+        if (level == 0)
+            ret[i & MASK] = e;
+        else {
+            int j = (i >>> level) & MASK;
+            ret[j] = doWith(level - BITS, (Object[])node[j], i, e);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a copy of the given node without the leaf holding index
+     * count - 2 and above, or null if the node becomes empty.
+     */
+    static Object[] popTail(int count, int level, Object[] node) {
+        int i = ((count - 2) >>> level) & MASK;
+        if (level > BITS) {
+            Object[] child = popTail(count, level - BITS, (Object[])node[i]);
+            if (child == null && i == 0)
+                return null;
+            Object[] ret = node.clone();
+            ret[i] = child;
+            return ret;
+        }
+        if (i == 0)
+            return null;
+        Object[] ret = node.clone();
+        ret[i] = null;
+        return ret;
+    }
+
+    /* ---------------- Persistent operations -------------- */
+
+    /**
+     * Returns a list with the elements of this list followed by the given
+     * element.
+     *
+     * @param e element to be appended
+     * @return a list with the element appended
+     */
+    public PersistentVector<E> plus(E e) {
+        int s = size;
+        Object[] t = tail;
+        if (t.length < WIDTH) {
+            Object[] nt = Arrays.copyOf(t, t.length + 1);
+            nt[t.length] = e;
+            return new PersistentVector<E>(s + 1, shift, root, nt);
+        }
+        PersistentVector<E> v = pushedTail(s, shift, root, t);
+        return new PersistentVector<E>(s + 1, v.shift, v.root,
+                                       new Object[] { e });
+    }
+
+    /**
+     * Returns a list with the elements of this list followed by those of
+     * the given collection, in the order they are returned by its
+     * iterator.
+     *
+     * @param c elements to be appended
+     * @return a list with the elements appended
+     * @throws NullPointerException if the collection is null
+     */
+    public PersistentVector<E> plusAll(Collection<? extends E> c) {
+        Object[] a = c.toArray();
+        if (a.length == 0)
+            return this;
+        if (size > MAX_SIZE - a.length)
+            throw new OutOfMemoryError();
+        int s = size, sh = shift;
+        Object[] r = root, t = tail;
+        for (int i = 0; i < a.length; ) {
+            if (t.length == WIDTH) {
+                PersistentVector<E> v = pushedTail(s, sh, r, t);
+                sh = v.shift;
+                r = v.root;
+                t = EMPTY_ARRAY;
+            }
+            int n = Math.min(WIDTH - t.length, a.length - i);
+            Object[] nt = Arrays.copyOf(t, t.length + n);
+            System.arraycopy(a, i, nt, t.length, n);
+            t = nt;
+            i += n;
+            s += n;
+        }
+        return new PersistentVector<E>(s, sh, r, t);
+    }
+
+    /**
+     * Returns a list with the elements of this list, except that the
+     * element at the given position is replaced with the given element.
+     *
+     * @param index index of the element to replace
+     * @param element element to be stored at the specified position
+     * @return a list with the element replaced
+     * @throws IndexOutOfBoundsException if the index is out of range
+     *         ({@code index < 0 || index >= size()})
+     */
+    public PersistentVector<E> with(int index, E element) {
+        rangeCheck(index);
+        if (index >= tailOffset()) {
+            Object[] nt = tail.clone();
+            nt[index & MASK] = element;
+            return new PersistentVector<E>(size, shift, root, nt);
+        }
+        return new PersistentVector<E>(size, shift,
+                                       doWith(shift, root, index, element),
+                                       tail);
+    }
+
+    /**
+     * Returns a list with the elements of this list except the last.
+     *
+     * @return a list without the last element
+     * @throws NoSuchElementException if this list is empty
+     */
+    public PersistentVector<E> withoutLast() {
+        int s = size;
+        if (s == 0)
+            throw new NoSuchElementException();
+        if (s == 1)
+            return empty();
+        if (tail.length > 1)
+            return new PersistentVector<E>(s - 1, shift, root,
+                                           Arrays.copyOf(tail, tail.length - 1));
+        Object[] nt = leafFor(s - 2);
+        Object[] r = popTail(s, shift, root);
+        int sh = shift;
+        if (r == null)
+            r = EMPTY_NODE;
+        if (sh > BITS && r[1] == null) {
+            r = (Object[])r[0];
+            sh -= BITS;
+        }
+        return new PersistentVector<E>(s - 1, sh, r, nt);
+    }
+
+    /* ---------------- List operations -------------- */
+
+    private void rangeCheck(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        rangeCheck(index);
+        return (E)leafFor(index)[index & MASK];
+    }
+
+    public Object[] toArray() {
+        Object[] a = new Object[size];
+        for (int i = 0; i < size; i += WIDTH) {
+            Object[] leaf = leafFor(i);
+            System.arraycopy(leaf, 0, a, i, Math.min(WIDTH, size - i));
+        }
+        return a;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        for (int i = 0; i < size; i += WIDTH) {
+            Object[] leaf = leafFor(i);
+            for (int j = 0, n = Math.min(WIDTH, size - i); j < n; ++j)
+                action.accept((E)leaf[j]);
+        }
+    }
+
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    /**
+     * Iterator caching the current leaf.
+     */
+    final class Itr implements Iterator<E> {
+        int cursor;
+        Object[] leaf;
+
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            int i = cursor;
+            if (i >= size)
+                throw new NoSuchElementException();
+            if ((i & MASK) == 0 || leaf == null)
+                leaf = leafFor(i);
+            cursor = i + 1;
+            return (E)leaf[i & MASK];
+        }
+    }
+
+    /**
+     * Returns a {@link Spliterator} over the elements in this list,
+     * reporting {@link Spliterator#SIZED}, {@link Spliterator#SUBSIZED},
+     * {@link Spliterator#ORDERED} and {@link Spliterator#IMMUTABLE}, and
+     * splitting at the largest trie node boundary within its range.
+     *
+     * @return a {@code Spliterator} over the elements in this list
+     */
+    public Spliterator<E> spliterator() {
+        return new VectorSpliterator<E>(this, 0, size);
+    }
+
+    static final class VectorSpliterator<E> implements Spliterator<E> {
+        final PersistentVector<E> vector;
+        int index;
+        final int fence;
+
+        VectorSpliterator(PersistentVector<E> vector, int origin, int fence) {
+            this.vector = vector;
+            this.index = origin;
+            this.fence = fence;
+        }
+
+        public VectorSpliterator<E> trySplit() {
+            int lo = index, hi = fence, mid = (lo + hi) >>> 1;
+            if (mid <= lo)
+                return null;
+            // Round mid down to the largest node boundary above lo
+            for (int b = vector.shift + BITS; b >= BITS; b -= BITS) {
+                int m = (mid >>> b) << b;
+                if (m > lo) {
+                    mid = m;
+                    break;
+                }
+            }
+            index = mid;
+            return new VectorSpliterator<E>(vector, lo, mid);
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            int i = index;
+            if (i >= fence)
+                return false;
+            index = i + 1;
+            action.accept((E)vector.leafFor(i)[i & MASK]);
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            int i = index, hi = fence;
+            index = hi;
+            while (i < hi) {
+                Object[] leaf = vector.leafFor(i);
+                int end = Math.min(hi, (i | MASK) + 1);
+                for (int j = i & MASK; i < end; ++i, ++j)
+                    action.accept((E)leaf[j]);
+            }
+        }
+
+        public long estimateSize() {
+            return (long)(fence - index);
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED |
+                Spliterator.SUBSIZED | Spliterator.IMMUTABLE;
+        }
+    }
+}
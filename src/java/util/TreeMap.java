@@ -26,6 +26,9 @@
 package java.util;
 
 import java.io.Serializable;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
@@ -1020,6 +1023,165 @@ public class TreeMap<K,V>
         }
     }
 
+    // Parallel bulk operations
+
+    /*
+     * These methods mirror those of ConcurrentHashMap, running in the
+     * ForkJoinPool common pool, with tasks splitting the tree into
+     * subtrees: a task forks the right subtree of its root, handles the
+     * root itself, and continues with the left subtree.  As the tree is
+     * balanced, this divides the work roughly in half at each step.
+     * The map must not be structurally modified while an operation is
+     * in progress; doing so results (on a best-effort basis) in
+     * ConcurrentModificationException.  Elements are not processed in
+     * key order, and functions are applied concurrently by several
+     * threads, so must be safe for such use, and must not modify the map.
+     */
+
+    /**
+     * Computes initial batch value for bulk tasks, as in
+     * ConcurrentHashMap.  The returned value is approximately exp2 of
+     * the number of times (minus one) to split task by two before
+     * executing leaf action.
+     */
+    final int batchFor(long b) {
+        long n;
+        if (b == Long.MAX_VALUE || (n = size) <= 1L || n < b)
+            return 0;
+        int sp = ForkJoinPool.getCommonPoolParallelism() << 2; // slack of 4
+        return (b <= 0L || (n /= b) >= sp) ? sp : (int)n;
+    }
+
+    /**
+     * Performs the given action for each (key, value), in parallel if
+     * the map has at least {@code parallelismThreshold} mappings.
+     *
+     * @param parallelismThreshold the (estimated) number of elements
+     * needed for this operation to be executed in parallel
+     * @param action the action, which may be invoked concurrently
+     * @throws NullPointerException if the action is null
+     * @throws ConcurrentModificationException if the map is structurally
+     * modified during the operation
+     * @since 1.8
+     */
+    public void forEach(long parallelismThreshold,
+                        BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        int mc = modCount;
+        new ForEachMappingTask<K,V>
+            (null, batchFor(parallelismThreshold), root, action,
+             null).invoke();
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+    }
+
+    /**
+     * Returns a non-null result from applying the given search
+     * function on each (key, value), or null if none.  Upon
+     * success, further element processing is suppressed and the
+     * results of any other parallel invocations of the search
+     * function are ignored.
+     *
+     * @param parallelismThreshold the (estimated) number of elements
+     * needed for this operation to be executed in parallel
+     * @param searchFunction a function returning a non-null
+     * result on success, else null
+     * @param <U> the return type of the search function
+     * @return a non-null result from applying the given search
+     * function on each (key, value), or null if none
+     * @throws NullPointerException if the search function is null
+     * @throws ConcurrentModificationException if the map is structurally
+     * modified during the operation
+     * @since 1.8
+     */
+    public <U> U search(long parallelismThreshold,
+                        BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        Objects.requireNonNull(searchFunction);
+        int mc = modCount;
+        U u = new SearchMappingsTask<K,V,U>
+            (null, batchFor(parallelismThreshold), root, searchFunction,
+             new AtomicReference<U>()).invoke();
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+        return u;
+    }
+
+    /**
+     * Returns the result of accumulating the given transformation
+     * of all (key, value) pairs using the given reducer to
+     * combine values, or null if none.
+     *
+     * @param parallelismThreshold the (estimated) number of elements
+     * needed for this operation to be executed in parallel
+     * @param transformer a function returning the transformation
+     * for an element, or null if there is no transformation (in
+     * which case it is not combined)
+     * @param reducer a commutative associative combining function
+     * @param <U> the return type of the transformer
+     * @return the result of accumulating the given transformation
+     * of all (key, value) pairs
+     * @throws NullPointerException if the transformer or reducer is null
+     * @throws ConcurrentModificationException if the map is structurally
+     * modified during the operation
+     * @since 1.8
+     */
+    public <U> U reduce(long parallelismThreshold,
+                        BiFunction<? super K, ? super V, ? extends U> transformer,
+                        BiFunction<? super U, ? super U, ? extends U> reducer) {
+        Objects.requireNonNull(transformer);
+        Objects.requireNonNull(reducer);
+        int mc = modCount;
+        U u = new MapReduceMappingsTask<K,V,U>
+            (null, batchFor(parallelismThreshold), root, null,
+             transformer, reducer).invoke();
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+        return u;
+    }
+
+    /**
+     * Returns the result of accumulating all non-null values using the
+     * given reducer to combine values, or null if none.
+     *
+     * @param parallelismThreshold the (estimated) number of elements
+     * needed for this operation to be executed in parallel
+     * @param reducer a commutative associative combining function
+     * @return the result of accumulating all non-null values
+     * @throws NullPointerException if the reducer is null
+     * @throws ConcurrentModificationException if the map is structurally
+     * modified during the operation
+     * @since 1.8
+     */
+    public V reduceValues(long parallelismThreshold,
+                          BiFunction<? super V, ? super V, ? extends V> reducer) {
+        return reduce(parallelismThreshold, (k, v) -> v, reducer);
+    }
+
+    /**
+     * Replaces each entry's value with the result of invoking the given
+     * function on that entry, in parallel if the map has at least
+     * {@code parallelismThreshold} mappings.
+     *
+     * @param parallelismThreshold the (estimated) number of elements
+     * needed for this operation to be executed in parallel
+     * @param function the function to apply to each entry, which may be
+     * invoked concurrently
+     * @throws NullPointerException if the function is null
+     * @throws ConcurrentModificationException if the map is structurally
+     * modified during the operation
+     * @since 1.8
+     */
+    public void replaceAll(long parallelismThreshold,
+                           BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        int mc = modCount;
+        new ForEachMappingTask<K,V>
+            (null, batchFor(parallelismThreshold), root, null,
+             function).invoke();
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+    }
+
     // View class support
 
     class Values extends AbstractCollection<V> {
@@ -3012,4 +3174,200 @@ public class TreeMap<K,V>
             }
         }
     }
+
+    // Parallel bulk tasks
+
+    /**
+     * Base class for bulk tasks, each traversing the subtree rooted at
+     * top, after splitting off right subtrees while batch is positive.
+     */
+    @SuppressWarnings("serial")
+    abstract static class BulkTask<K,V,R> extends CountedCompleter<R> {
+        Entry<K,V> top;
+        int batch;              // split control
+
+        BulkTask(BulkTask<K,V,?> par, int b, Entry<K,V> top) {
+            super(par);
+            this.batch = b;
+            this.top = top;
+        }
+
+        /**
+         * Returns the root of a subtree to fork, or null if no further
+         * split should be made.  If non-null, top is then the root of the
+         * remaining subtree, whose root must be handled by the caller
+         * before calling split again.
+         */
+        final Entry<K,V> split() {
+            Entry<K,V> t;
+            return (batch > 0 && (t = top) != null && t.right != null) ?
+                t.right : null;
+        }
+
+        /**
+         * Returns the first entry, in key order, of the subtree rooted at p.
+         */
+        static <K,V> Entry<K,V> firstIn(Entry<K,V> p) {
+            if (p != null)
+                while (p.left != null)
+                    p = p.left;
+            return p;
+        }
+
+        /**
+         * Returns the successor of e within the subtree rooted at t, or
+         * null if e is its last entry.
+         */
+        static <K,V> Entry<K,V> nextIn(Entry<K,V> e, Entry<K,V> t) {
+            if (e.right != null)
+                return firstIn(e.right);
+            for (Entry<K,V> p; e != t; e = p) {
+                if ((p = e.parent).left == e)
+                    return p;
+            }
+            return null;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class ForEachMappingTask<K,V>
+        extends BulkTask<K,V,Void> {
+        final BiConsumer<? super K, ? super V> action;
+        final BiFunction<? super K, ? super V, ? extends V> function;
+        ForEachMappingTask
+            (BulkTask<K,V,?> p, int b, Entry<K,V> t,
+             BiConsumer<? super K, ? super V> action,
+             BiFunction<? super K, ? super V, ? extends V> function) {
+            super(p, b, t);
+            this.action = action;
+            this.function = function;
+        }
+        private void apply(Entry<K,V> e) {
+            if (function != null)
+                e.value = function.apply(e.key, e.value);
+            else
+                action.accept(e.key, e.value);
+        }
+        public final void compute() {
+            if (action != null || function != null) {
+                for (Entry<K,V> r; (r = split()) != null; ) {
+                    addToPendingCount(1);
+                    new ForEachMappingTask<K,V>
+                        (this, batch >>>= 1, r, action, function).fork();
+                    apply(top);
+                    top = top.left;
+                }
+                Entry<K,V> t = top;
+                for (Entry<K,V> e = firstIn(t); e != null; e = nextIn(e, t))
+                    apply(e);
+                propagateCompletion();
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class SearchMappingsTask<K,V,U>
+        extends BulkTask<K,V,U> {
+        final BiFunction<? super K, ? super V, ? extends U> searchFunction;
+        final AtomicReference<U> result;
+        SearchMappingsTask
+            (BulkTask<K,V,?> p, int b, Entry<K,V> t,
+             BiFunction<? super K, ? super V, ? extends U> searchFunction,
+             AtomicReference<U> result) {
+            super(p, b, t);
+            this.searchFunction = searchFunction; this.result = result;
+        }
+        public final U getRawResult() { return result.get(); }
+        private boolean found(Entry<K,V> e) {
+            U u;
+            if ((u = searchFunction.apply(e.key, e.value)) == null)
+                return false;
+            if (result.compareAndSet(null, u))
+                quietlyCompleteRoot();
+            return true;
+        }
+        public final void compute() {
+            final AtomicReference<U> result;
+            if (searchFunction != null && (result = this.result) != null) {
+                for (Entry<K,V> r; (r = split()) != null; ) {
+                    if (result.get() != null)
+                        return;
+                    addToPendingCount(1);
+                    new SearchMappingsTask<K,V,U>
+                        (this, batch >>>= 1, r, searchFunction,
+                         result).fork();
+                    if (found(top))
+                        return;
+                    top = top.left;
+                }
+                Entry<K,V> t = top;
+                for (Entry<K,V> e = firstIn(t); ; e = nextIn(e, t)) {
+                    if (result.get() != null)
+                        break;
+                    if (e == null) {
+                        propagateCompletion();
+                        break;
+                    }
+                    if (found(e))
+                        break;
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class MapReduceMappingsTask<K,V,U>
+        extends BulkTask<K,V,U> {
+        final BiFunction<? super K, ? super V, ? extends U> transformer;
+        final BiFunction<? super U, ? super U, ? extends U> reducer;
+        U result;
+        MapReduceMappingsTask<K,V,U> rights, nextRight;
+        MapReduceMappingsTask
+            (BulkTask<K,V,?> p, int b, Entry<K,V> t,
+             MapReduceMappingsTask<K,V,U> nextRight,
+             BiFunction<? super K, ? super V, ? extends U> transformer,
+             BiFunction<? super U, ? super U, ? extends U> reducer) {
+            super(p, b, t); this.nextRight = nextRight;
+            this.transformer = transformer;
+            this.reducer = reducer;
+        }
+        public final U getRawResult() { return result; }
+        private U accumulate(U r, Entry<K,V> e) {
+            U u;
+            return ((u = transformer.apply(e.key, e.value)) == null) ? r :
+                (r == null) ? u : reducer.apply(r, u);
+        }
+        public final void compute() {
+            final BiFunction<? super U, ? super U, ? extends U> reducer;
+            if (transformer != null && (reducer = this.reducer) != null) {
+                U r = null;
+                for (Entry<K,V> s; (s = split()) != null; ) {
+                    addToPendingCount(1);
+                    (rights = new MapReduceMappingsTask<K,V,U>
+                     (this, batch >>>= 1, s, rights, transformer,
+                      reducer)).fork();
+                    r = accumulate(r, top);
+                    top = top.left;
+                }
+                Entry<K,V> t = top;
+                for (Entry<K,V> e = firstIn(t); e != null; e = nextIn(e, t))
+                    r = accumulate(r, e);
+                result = r;
+                CountedCompleter<?> c;
+                for (c = firstComplete(); c != null; c = c.nextComplete()) {
+                    @SuppressWarnings("unchecked")
+                    MapReduceMappingsTask<K,V,U>
+                        m = (MapReduceMappingsTask<K,V,U>)c,
+                        s = m.rights;
+                    while (s != null) {
+                        U tr, sr;
+                        if ((sr = s.result) != null)
+                            m.result = (((tr = m.result) == null) ? sr :
+                                        reducer.apply(tr, sr));
+                        s = m.rights = s.nextRight;
+                    }
+                }
+            }
+        }
+    }
 }
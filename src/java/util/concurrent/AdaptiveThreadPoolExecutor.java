@@ -0,0 +1,492 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link ThreadPoolExecutor} that adjusts its core pool size at
+ * run time, between a minimum and the maximum pool size, in response
+ * to the throughput it measures.  This relieves applications from
+ * choosing a fixed core pool size that suits only some loads: a pool
+ * executing CPU-bound tasks settles near the smallest size that
+ * attains its best throughput, while a pool whose tasks block
+ * acquires threads to keep queued tasks moving.
+ *
+ * <p><b>Sizing.</b> The core pool size of this executor is its
+ * current <em>target</em> size.  Once per sampling interval (by
+ * default, {@value #DEFAULT_SAMPLE_INTERVAL_MILLIS} milliseconds), the
+ * executor computes the rate at which tasks completed during the
+ * interval and adjusts the target by one of the following rules,
+ * applied in order:
+ *
+ * <ol>
+ *
+ * <li> If tasks are queued while some of the threads executing tasks
+ * are {@linkplain Thread.State#BLOCKED blocked} or {@linkplain
+ * Thread.State#WAITING waiting}, the target is increased by the
+ * number of such threads not already compensated for by an earlier
+ * increase, so that workers remaining blocked across intervals add
+ * threads only once.  Note that threads blocked in I/O are
+ * usually reported as {@linkplain Thread.State#RUNNABLE runnable},
+ * and are not detected as blocked.
+ *
+ * <li> If no tasks are queued and fewer threads than the target are
+ * executing tasks, the target is decreased by one.
+ *
+ * <li> Otherwise, the target <em>climbs</em> on throughput: if the
+ * last adjustment improved throughput, the target moves one more
+ * step in the same direction; if it worsened throughput, the target
+ * moves one step back; and if throughput did not change
+ * significantly, the target is decreased by one, as the additional
+ * thread was of no use.  Without a previous adjustment, the target
+ * is increased by one.
+ *
+ * </ol>
+ *
+ * The target never leaves the range between the {@linkplain
+ * #getMinimumPoolSize minimum pool size} and the {@linkplain
+ * #getMaximumPoolSize maximum pool size}.  New threads are started
+ * upon an increase only as needed to execute queued tasks, and upon a
+ * decrease, excess threads terminate when they have been idle for
+ * the keep-alive time, as with {@link #setCorePoolSize}.  A call to
+ * {@code setCorePoolSize} sets the target from which the executor
+ * continues adjusting.  If core threads are {@linkplain
+ * #allowCoreThreadTimeOut(boolean) allowed to time out}, threads
+ * also terminate when idle below the target, which then bounds the
+ * number of threads started for queued tasks.  When a bounded queue
+ * is full, threads are added up to the maximum pool size regardless
+ * of the target, as in {@code ThreadPoolExecutor}.
+ *
+ * <p>Sizing decisions are made by threads submitting tasks to this
+ * executor, in {@link #execute}, upon the first submission after the
+ * end of each sampling interval, so no additional thread is used,
+ * and an executor receiving no tasks retains its last target.  The
+ * decisions made may be monitored through the {@linkplain #getMXBean
+ * management interface} of this executor.
+ *
+ * @since 1.8
+ * @see AdaptiveThreadPoolExecutorMXBean
+ * @see Executors#newAdaptiveThreadPool(int, int)
+ */
+public class AdaptiveThreadPoolExecutor extends ThreadPoolExecutor {
+
+    /*
+     * The controller runs under sizingLock, which submitters acquire
+     * with tryLock once nextSampleTime has passed, so at most one
+     * submitter per interval does any work beyond reading the clock.
+     * Sampling uses the locked statistics methods of
+     * ThreadPoolExecutor, which is cheap at this frequency, and adds
+     * no cost to task execution.  The hill climbing state is the
+     * direction of the last throughput-driven adjustment (0 if the
+     * last sample made none, or made one for another cause) and the
+     * throughput measured during the preceding interval.  The
+     * number of blocked workers already compensated for is retained
+     * separately, and falls with the blocked count, so that only
+     * newly blocked workers raise the target.
+     */
+
+    /**
+     * The default sampling interval, in milliseconds.
+     */
+    public static final long DEFAULT_SAMPLE_INTERVAL_MILLIS = 500L;
+
+    /**
+     * The relative change in throughput regarded as significant.
+     */
+    private static final double THRESHOLD = 0.05;
+
+    /** Lock held while sampling and while changing pool size bounds */
+    private final ReentrantLock sizingLock = new ReentrantLock();
+
+    /** The minimum target size */
+    private volatile int minimumPoolSize;
+
+    /** The sampling interval in nanoseconds */
+    private volatile long sampleInterval;
+
+    /** The time at which the current sampling interval ends */
+    private volatile long nextSampleTime;
+
+    // Hill climbing state, guarded by sizingLock
+    private long lastSampleTime;
+    private long lastCompletedCount;
+    private double lastThroughput;
+    private int direction;
+    private int compensated;
+
+    // Reported values, written under sizingLock
+    private volatile double throughput;
+    private volatile int blockedCount;
+    private volatile long throughputIncreases;
+    private volatile long throughputDecreases;
+    private volatile long starvationIncreases;
+    private volatile long idleDecreases;
+    private volatile String lastAdjustment;
+
+    /**
+     * Creates a new {@code AdaptiveThreadPoolExecutor} with the given
+     * initial parameters, the default thread factory and rejected
+     * execution handler.
+     *
+     * @param minimumPoolSize the minimum number of threads to keep in
+     *        the pool, which is also the initial target size
+     * @param maximumPoolSize the maximum number of threads to allow in
+     *        the pool
+     * @param keepAliveTime when the number of threads is greater than
+     *        the target, this is the maximum time that excess idle
+     *        threads will wait for new tasks before terminating.
+     * @param unit the time unit for the {@code keepAliveTime} argument
+     * @param workQueue the queue to use for holding tasks before they
+     *        are executed.  This queue will hold only the {@code
+     *        Runnable} tasks submitted by the {@code execute} method.
+     * @throws IllegalArgumentException if one of the following holds:<br>
+     *         {@code minimumPoolSize < 0}<br>
+     *         {@code keepAliveTime < 0}<br>
+     *         {@code maximumPoolSize <= 0}<br>
+     *         {@code maximumPoolSize < minimumPoolSize}
+     * @throws NullPointerException if {@code workQueue} is null
+     */
+    public AdaptiveThreadPoolExecutor(int minimumPoolSize,
+                                      int maximumPoolSize,
+                                      long keepAliveTime,
+                                      TimeUnit unit,
+                                      BlockingQueue<Runnable> workQueue) {
+        this(minimumPoolSize, maximumPoolSize, keepAliveTime, unit,
+             workQueue, Executors.defaultThreadFactory(),
+             new AbortPolicy());
+    }
+
+    /**
+     * Creates a new {@code AdaptiveThreadPoolExecutor} with the given
+     * initial parameters and the default rejected execution handler.
+     *
+     * @param minimumPoolSize the minimum number of threads to keep in
+     *        the pool, which is also the initial target size
+     * @param maximumPoolSize the maximum number of threads to allow in
+     *        the pool
+     * @param keepAliveTime when the number of threads is greater than
+     *        the target, this is the maximum time that excess idle
+     *        threads will wait for new tasks before terminating.
+     * @param unit the time unit for the {@code keepAliveTime} argument
+     * @param workQueue the queue to use for holding tasks before they
+     *        are executed.  This queue will hold only the {@code
+     *        Runnable} tasks submitted by the {@code execute} method.
+     * @param threadFactory the factory to use when the executor
+     *        creates a new thread
+     * @throws IllegalArgumentException if one of the following holds:<br>
+     *         {@code minimumPoolSize < 0}<br>
+     *         {@code keepAliveTime < 0}<br>
+     *         {@code maximumPoolSize <= 0}<br>
+     *         {@code maximumPoolSize < minimumPoolSize}
+     * @throws NullPointerException if {@code workQueue}
+     *         or {@code threadFactory} is null
+     */
+    public AdaptiveThreadPoolExecutor(int minimumPoolSize,
+                                      int maximumPoolSize,
+                                      long keepAliveTime,
+                                      TimeUnit unit,
+                                      BlockingQueue<Runnable> workQueue,
+                                      ThreadFactory threadFactory) {
+        this(minimumPoolSize, maximumPoolSize, keepAliveTime, unit,
+             workQueue, threadFactory, new AbortPolicy());
+    }
+
+    /**
+     * Creates a new {@code AdaptiveThreadPoolExecutor} with the given
+     * initial parameters.
+     *
+     * @param minimumPoolSize the minimum number of threads to keep in
+     *        the pool, which is also the initial target size
+     * @param maximumPoolSize the maximum number of threads to allow in
+     *        the pool
+     * @param keepAliveTime when the number of threads is greater than
+     *        the target, this is the maximum time that excess idle
+     *        threads will wait for new tasks before terminating.
+     * @param unit the time unit for the {@code keepAliveTime} argument
+     * @param workQueue the queue to use for holding tasks before they
+     *        are executed.  This queue will hold only the {@code
+     *        Runnable} tasks submitted by the {@code execute} method.
+     * @param threadFactory the factory to use when the executor
+     *        creates a new thread
+     * @param handler the handler to use when execution is blocked
+     *        because the thread bounds and queue capacities are reached
+     * @throws IllegalArgumentException if one of the following holds:<br>
+     *         {@code minimumPoolSize < 0}<br>
+     *         {@code keepAliveTime < 0}<br>
+     *         {@code maximumPoolSize <= 0}<br>
+     *         {@code maximumPoolSize < minimumPoolSize}
+     * @throws NullPointerException if {@code workQueue}
+     *         or {@code threadFactory} or {@code handler} is null
+     */
+    public AdaptiveThreadPoolExecutor(int minimumPoolSize,
+                                      int maximumPoolSize,
+                                      long keepAliveTime,
+                                      TimeUnit unit,
+                                      BlockingQueue<Runnable> workQueue,
+                                      ThreadFactory threadFactory,
+                                      RejectedExecutionHandler handler) {
+        super(minimumPoolSize, maximumPoolSize, keepAliveTime, unit,
+              workQueue, threadFactory, handler);
+        this.minimumPoolSize = minimumPoolSize;
+        this.sampleInterval =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_SAMPLE_INTERVAL_MILLIS);
+        long now = System.nanoTime();
+        this.lastSampleTime = now;
+        this.nextSampleTime = now + sampleInterval;
+    }
+
+    /**
+     * Executes the given task sometime in the future, as specified by
+     * {@link ThreadPoolExecutor#execute}, and then adjusts the target
+     * pool size if the current sampling interval has ended.
+     *
+     * @param command the task to execute
+     * @throws RejectedExecutionException at discretion of
+     *         {@code RejectedExecutionHandler}, if the task
+     *         cannot be accepted for execution
+     * @throws NullPointerException if {@code command} is null
+     */
+    public void execute(Runnable command) {
+        super.execute(command);
+        if (System.nanoTime() - nextSampleTime >= 0L)
+            trySample();
+    }
+
+    /**
+     * Adjusts the target size unless another thread is doing so or
+     * the interval has not ended.
+     */
+    private void trySample() {
+        final ReentrantLock lock = this.sizingLock;
+        if (lock.tryLock()) {
+            try {
+                long now = System.nanoTime();
+                if (now - nextSampleTime >= 0L)
+                    sample(now);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Ends the current sampling interval, adjusting the target size
+     * as described in the class documentation.  Call only while
+     * holding sizingLock.
+     */
+    private void sample(long now) {
+        long completed = getCompletedTaskCount();
+        long elapsed = now - lastSampleTime;
+        double tput = (elapsed <= 0L) ? 0.0 :
+            (completed - lastCompletedCount) * 1e9 / elapsed;
+        int blocked = getBlockedCount();
+        lastSampleTime = now;
+        lastCompletedCount = completed;
+        nextSampleTime = now + sampleInterval;
+        throughput = tput;
+        blockedCount = blocked;
+        if (blocked < compensated)
+            compensated = blocked;
+        if (isShutdown())
+            return;
+        int size = getCorePoolSize();
+        int queued = getQueue().size();
+        int move;
+        if (queued > 0 && blocked > 0)
+            move = blocked - compensated;
+        else if (queued == 0)
+            move = (getActiveCount() < size) ? -1 : 0;
+        else if (direction == 0 || tput > lastThroughput * (1.0 + THRESHOLD))
+            move = (direction == 0) ? 1 : direction;
+        else if (tput < lastThroughput * (1.0 - THRESHOLD))
+            move = -direction;
+        else
+            move = -1;
+        boolean climbing = queued > 0 && blocked == 0;
+        lastThroughput = tput;
+        direction = 0;
+        int min = minimumPoolSize, max = getMaximumPoolSize();
+        int target = Math.max(min, Math.min(max, size + move));
+        if (queued > 0 && blocked > 0 && target > size)
+            compensated += target - size;
+        if (target != size) {
+            super.setCorePoolSize(target);
+            String cause;
+            if (climbing) {
+                direction = (target > size) ? 1 : -1;
+                if (direction > 0) {
+                    ++throughputIncreases;
+                    cause = "throughput";
+                }
+                else {
+                    ++throughputDecreases;
+                    cause = "no throughput gain";
+                }
+            }
+            else if (target > size) {
+                ++starvationIncreases;
+                cause = blocked + " blocked workers";
+            }
+            else {
+                ++idleDecreases;
+                cause = "idle workers";
+            }
+            lastAdjustment = size + " -> " + target + " threads (" + cause +
+                ", " + Math.round(tput) + " tasks/s)";
+        }
+    }
+
+    /**
+     * Returns the minimum number of threads the executor targets.
+     *
+     * @return the minimum pool size
+     * @see #setMinimumPoolSize
+     */
+    public int getMinimumPoolSize() {
+        return minimumPoolSize;
+    }
+
+    /**
+     * Sets the minimum number of threads the executor targets.  If
+     * the current target is smaller, it is increased to the new
+     * minimum.
+     *
+     * @param minimumPoolSize the new minimum
+     * @throws IllegalArgumentException if {@code minimumPoolSize < 0}
+     *         or {@code minimumPoolSize} is greater than the
+     *         {@linkplain #getMaximumPoolSize maximum pool size}
+     * @see #getMinimumPoolSize
+     */
+    public void setMinimumPoolSize(int minimumPoolSize) {
+        final ReentrantLock lock = this.sizingLock;
+        lock.lock();
+        try {
+            if (minimumPoolSize < 0 || minimumPoolSize > getMaximumPoolSize())
+                throw new IllegalArgumentException();
+            this.minimumPoolSize = minimumPoolSize;
+            if (getCorePoolSize() < minimumPoolSize)
+                super.setCorePoolSize(minimumPoolSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the maximum allowed number of threads, as specified by
+     * {@link ThreadPoolExecutor#setMaximumPoolSize}, first reducing
+     * the target to the new maximum if it is larger.
+     *
+     * @param maximumPoolSize the new maximum
+     * @throws IllegalArgumentException if the new maximum is
+     *         less than or equal to zero, or less than the
+     *         {@linkplain #getMinimumPoolSize minimum pool size}
+     */
+    public void setMaximumPoolSize(int maximumPoolSize) {
+        final ReentrantLock lock = this.sizingLock;
+        lock.lock();
+        try {
+            if (maximumPoolSize <= 0 || maximumPoolSize < minimumPoolSize)
+                throw new IllegalArgumentException();
+            if (getCorePoolSize() > maximumPoolSize)
+                super.setCorePoolSize(maximumPoolSize);
+            super.setMaximumPoolSize(maximumPoolSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the interval between adjustments of the target pool size.
+     * The new interval applies from the end of the current one.
+     *
+     * @param time the sampling interval
+     * @param unit the time unit of the {@code time} argument
+     * @throws IllegalArgumentException if {@code time} is not greater
+     *         than zero
+     * @throws NullPointerException if {@code unit} is null
+     * @see #getSampleInterval
+     */
+    public void setSampleInterval(long time, TimeUnit unit) {
+        long nanos = unit.toNanos(time);
+        if (nanos <= 0L)
+            throw new IllegalArgumentException();
+        this.sampleInterval = nanos;
+    }
+
+    /**
+     * Returns the interval between adjustments of the target pool
+     * size.
+     *
+     * @param unit the desired time unit of the result
+     * @return the sampling interval
+     * @see #setSampleInterval
+     */
+    public long getSampleInterval(TimeUnit unit) {
+        return unit.convert(sampleInterval, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the management interface of this executor, which in
+     * addition to the statistics described in {@link
+     * ThreadPoolExecutor#getMXBean}, reports the sizing decisions of
+     * this executor.
+     *
+     * @return the {@link AdaptiveThreadPoolExecutorMXBean} of this
+     *         executor
+     */
+    public AdaptiveThreadPoolExecutorMXBean getMXBean() {
+        return (AdaptiveStats)stats();
+    }
+
+    @Override Stats newStats() {
+        return new AdaptiveStats();
+    }
+
+    /**
+     * Statistics additionally reporting sizing decisions.
+     */
+    final class AdaptiveStats extends Stats
+        implements AdaptiveThreadPoolExecutorMXBean {
+        public int getMinimumPoolSize()       { return minimumPoolSize; }
+        public long getSampleInterval() {
+            return TimeUnit.NANOSECONDS.toMillis(sampleInterval);
+        }
+        public double getThroughput()         { return throughput; }
+        public int getBlockedWorkerCount()    { return blockedCount; }
+        public long getThroughputIncreaseCount() {
+            return throughputIncreases;
+        }
+        public long getThroughputDecreaseCount() {
+            return throughputDecreases;
+        }
+        public long getStarvationIncreaseCount() {
+            return starvationIncreases;
+        }
+        public long getIdleDecreaseCount()    { return idleDecreases; }
+        public String getLastAdjustment()     { return lastAdjustment; }
+    }
+}
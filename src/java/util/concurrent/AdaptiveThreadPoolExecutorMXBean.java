@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+/**
+ * The management interface of an {@link AdaptiveThreadPoolExecutor},
+ * obtained from {@link AdaptiveThreadPoolExecutor#getMXBean}.  In
+ * addition to the statistics of a {@link ThreadPoolExecutorMXBean},
+ * it reports the inputs and outcomes of the sizing decisions of the
+ * executor: the throughput and number of blocked workers observed in
+ * the last sampling interval, and counts of the adjustments made to
+ * the target pool size, by cause.  These values are maintained by
+ * the executor whether or not this interface is in use.
+ *
+ * @see AdaptiveThreadPoolExecutor
+ * @since 1.8
+ */
+public interface AdaptiveThreadPoolExecutorMXBean
+    extends ThreadPoolExecutorMXBean {
+
+    /**
+     * Returns the minimum number of threads the executor targets.
+     *
+     * @return the minimum pool size
+     */
+    int getMinimumPoolSize();
+
+    /**
+     * Returns the length of the sampling interval, in milliseconds.
+     *
+     * @return the sampling interval
+     */
+    long getSampleInterval();
+
+    /**
+     * Returns the number of tasks completed per second during the
+     * last sampling interval.
+     *
+     * @return the last measured throughput
+     */
+    double getThroughput();
+
+    /**
+     * Returns the number of threads executing tasks that were found
+     * blocked or waiting at the end of the last sampling interval.
+     *
+     * @return the number of blocked workers
+     */
+    int getBlockedWorkerCount();
+
+    /**
+     * Returns the number of times the target pool size was increased
+     * because throughput improved with the previous increase, or the
+     * queue was backlogged with no history.
+     *
+     * @return the number of increases due to throughput
+     */
+    long getThroughputIncreaseCount();
+
+    /**
+     * Returns the number of times the target pool size was decreased
+     * because throughput did not improve with more threads.
+     *
+     * @return the number of decreases due to throughput
+     */
+    long getThroughputDecreaseCount();
+
+    /**
+     * Returns the number of times the target pool size was increased
+     * to compensate for blocked workers while tasks were queued.
+     *
+     * @return the number of increases due to blocked workers
+     */
+    long getStarvationIncreaseCount();
+
+    /**
+     * Returns the number of times the target pool size was decreased
+     * because workers were idle and no tasks were queued.
+     *
+     * @return the number of decreases due to idleness
+     */
+    long getIdleDecreaseCount();
+
+    /**
+     * Returns a description of the last adjustment of the target pool
+     * size, or {@code null} if none has been made.
+     *
+     * @return a description of the last adjustment
+     */
+    String getLastAdjustment();
+}
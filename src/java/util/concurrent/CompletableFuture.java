@@ -34,6 +34,9 @@
  */
 
 package java.util.concurrent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.function.Supplier;
 import java.util.function.Consumer;
 import java.util.function.BiConsumer;
@@ -218,6 +221,22 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
             postComplete();
     }
 
+    /**
+     * Pushes the given node onto the completions list unless already
+     * completed.  Callers pushing successfully must then invoke
+     * helpPostComplete to process the node if completion raced.
+     *
+     * @return true if pushed, false if already completed
+     */
+    final boolean tryPushCompletion(CompletionNode p) {
+        while (result == null) {
+            if (UNSAFE.compareAndSwapObject
+                (this, COMPLETIONS, p.next = completions, p))
+                return true;
+        }
+        return false;
+    }
+
     /* ------------- waiting for completions -------------- */
 
     /** Number of processors, for spin control */
@@ -1492,6 +1511,171 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         private static final long serialVersionUID = 5232453952276885070L;
     }
 
+    /**
+     * Completion shared by all sources of allOf(Collection), counting
+     * down the sources not yet complete, held as the AtomicInteger
+     * value, rather than claimed by compareAndSet(0, 1).  Each source
+     * runs it at most once, from the node pushed onto its list.
+     */
+    static final class AllCompletion<T> extends Completion {
+        final CompletableFuture<?>[] srcs;
+        final CompletableFuture<List<T>> dst;
+        AllCompletion(CompletableFuture<?>[] srcs,
+                      CompletableFuture<List<T>> dst) {
+            this.srcs = srcs; this.dst = dst;
+            set(srcs.length + 1); // plus one until all are pushed
+        }
+        public final void run() {
+            if (decrementAndGet() == 0)
+                completeAll(srcs, dst);
+        }
+        private static final long serialVersionUID = 5232453952276885070L;
+    }
+
+    /**
+     * Completion shared by the sources started by allOfBounded,
+     * counting down the tasks not yet complete, held as the
+     * AtomicInteger value.  Each completion of a source starts the
+     * next task, so that at most the given number of sources are
+     * incomplete at any time.
+     */
+    static final class BoundedAllCompletion<T> extends Completion {
+        final Supplier<? extends CompletableFuture<? extends T>>[] tasks;
+        final CompletableFuture<?>[] srcs;
+        final CompletableFuture<List<T>> dst;
+        final AtomicInteger next = new AtomicInteger(); // index of next task
+        BoundedAllCompletion
+            (Supplier<? extends CompletableFuture<? extends T>>[] tasks,
+             CompletableFuture<List<T>> dst) {
+            this.tasks = tasks; this.dst = dst;
+            this.srcs = new CompletableFuture<?>[tasks.length];
+            set(tasks.length);
+        }
+
+        /**
+         * Starts tasks until one of them is not yet complete, or none
+         * remain, or dst is complete.
+         */
+        final void startNext() {
+            final Supplier<? extends CompletableFuture<? extends T>>[] ts;
+            final CompletableFuture<List<T>> dst;
+            int i;
+            if ((ts = tasks) != null && (dst = this.dst) != null) {
+                while (dst.result == null &&
+                       (i = next.getAndIncrement()) < ts.length) {
+                    CompletableFuture<? extends T> f;
+                    try {
+                        if ((f = ts[i].get()) == null)
+                            throw new NullPointerException();
+                    } catch (Throwable ex) {
+                        dst.internalComplete(null, ex);
+                        break;
+                    }
+                    srcs[i] = f;
+                    if (f.result == null &&
+                        f.tryPushCompletion(new CompletionNode(this))) {
+                        f.helpPostComplete();
+                        break;
+                    }
+                    if (decrementAndGet() == 0)
+                        completeAll(srcs, dst);
+                }
+            }
+        }
+
+        public final void run() {
+            if (decrementAndGet() == 0)
+                completeAll(srcs, dst);
+            else
+                startNext();
+        }
+        private static final long serialVersionUID = 5232453952276885070L;
+    }
+
+    /**
+     * Completes dst with the list of results of the given completed
+     * sources, or the exception of the first exceptional one.
+     */
+    static <T> void completeAll(CompletableFuture<?>[] srcs,
+                                CompletableFuture<List<T>> dst) {
+        ArrayList<T> list = new ArrayList<T>(srcs.length);
+        Throwable ex = null;
+        for (CompletableFuture<?> f : srcs) {
+            Object r = f.result;
+            if (r instanceof AltResult) {
+                if ((ex = ((AltResult)r).ex) != null)
+                    break;
+                list.add(null);
+            }
+            else {
+                @SuppressWarnings("unchecked") T tr = (T) r;
+                list.add(tr);
+            }
+        }
+        dst.internalComplete((ex == null) ? list : null, ex);
+    }
+
+    /**
+     * Completion shared by all sources of anyOf(Collection, boolean),
+     * copying the result of the first complete source found, and
+     * optionally cancelling the others.
+     */
+    static final class AnyCompletion<T> extends Completion {
+        final CompletableFuture<?>[] srcs;
+        final CompletableFuture<T> dst;
+        final boolean cancelOthers;
+        AnyCompletion(CompletableFuture<?>[] srcs,
+                      CompletableFuture<T> dst,
+                      boolean cancelOthers) {
+            this.srcs = srcs; this.dst = dst;
+            this.cancelOthers = cancelOthers;
+        }
+        public final void run() {
+            final CompletableFuture<?>[] srcs;
+            final CompletableFuture<T> dst;
+            if ((dst = this.dst) != null &&
+                (srcs = this.srcs) != null &&
+                compareAndSet(0, 1)) {
+                Object r = null;
+                for (CompletableFuture<?> f : srcs) {
+                    if ((r = f.result) != null)
+                        break;
+                }
+                Throwable ex; T t;
+                if (r instanceof AltResult) {
+                    ex = ((AltResult)r).ex;
+                    t = null;
+                }
+                else {
+                    ex = null;
+                    @SuppressWarnings("unchecked") T tr = (T) r;
+                    t = tr;
+                }
+                dst.internalComplete(t, ex);
+                if (cancelOthers) {
+                    for (CompletableFuture<?> f : srcs)
+                        f.cancel(false);
+                }
+            }
+        }
+        private static final long serialVersionUID = 5232453952276885070L;
+    }
+
+    /**
+     * Completion cancelling the timer task of orTimeout or
+     * completeOnTimeout when its future completes first.
+     */
+    static final class TimeoutCancellation extends Completion {
+        final Future<?> timeout;
+        TimeoutCancellation(Future<?> timeout) { this.timeout = timeout; }
+        public final void run() {
+            final Future<?> timeout;
+            if ((timeout = this.timeout) != null && compareAndSet(0, 1))
+                timeout.cancel(false);
+        }
+        private static final long serialVersionUID = 5232453952276885070L;
+    }
+
     // Implementations of stage methods with (plain, async, Executor) forms
 
     private <U> CompletableFuture<U> doThenApply
@@ -2870,6 +3054,270 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         return dst;
     }
 
+    /*
+     * The Collection forms below instead register a single
+     * completion, shared by all sources, that counts down or claims
+     * their completions, so each source not yet complete costs only
+     * one CompletionNode.
+     */
+
+    /**
+     * Returns a new CompletableFuture that is completed when all of
+     * the given CompletableFutures complete, with the list of their
+     * results, in the iteration order of the collection.  If any of
+     * the given CompletableFutures complete exceptionally, then the
+     * returned CompletableFuture also does so, with a
+     * CompletionException holding the exception of the first such one
+     * in iteration order as its cause.  If the collection is empty,
+     * returns a CompletableFuture completed with an empty list.
+     *
+     * <p>Unlike {@link #allOf(CompletableFuture...)}, which forms a
+     * tree of intermediate CompletableFutures, this method registers
+     * one dependent action shared by all of the given
+     * CompletableFutures, so is preferable for large numbers of them.
+     *
+     * @param cfs the CompletableFutures
+     * @param <T> the type of the results
+     * @return a new CompletableFuture that is completed with the list
+     * of results when all of the given CompletableFutures complete
+     * @throws NullPointerException if the collection or any of its
+     * elements are {@code null}
+     */
+    public static <T> CompletableFuture<List<T>> allOf
+        (Collection<? extends CompletableFuture<? extends T>> cfs) {
+        CompletableFuture<?>[] a = toNonNullArray(cfs);
+        CompletableFuture<List<T>> dst = new CompletableFuture<List<T>>();
+        AllCompletion<T> d = new AllCompletion<T>(a, dst);
+        int done = 1; // sources complete before pushing, plus one
+        for (CompletableFuture<?> f : a) {
+            if (f.result == null &&
+                f.tryPushCompletion(new CompletionNode(d)))
+                f.helpPostComplete();
+            else
+                ++done;
+        }
+        if (d.addAndGet(-done) == 0)
+            completeAll(a, dst);
+        return dst;
+    }
+
+    /**
+     * Returns a new CompletableFuture that is completed when any of
+     * the given CompletableFutures complete, with the same result.
+     * Otherwise, if it completed exceptionally, the returned
+     * CompletableFuture also does so, with a CompletionException
+     * holding this exception as its cause.  If {@code cancelOthers}
+     * is {@code true}, all of the given CompletableFutures that have
+     * not completed are then {@linkplain #cancel cancelled}.  If the
+     * collection is empty, returns an incomplete CompletableFuture.
+     *
+     * <p>Unlike {@link #anyOf(CompletableFuture...)}, which forms a
+     * tree of intermediate CompletableFutures, this method registers
+     * one dependent action shared by all of the given
+     * CompletableFutures.
+     *
+     * @param cfs the CompletableFutures
+     * @param cancelOthers whether to cancel the other
+     * CompletableFutures upon the completion of one of them
+     * @param <T> the type of the result
+     * @return a new CompletableFuture that is completed with the
+     * result or exception of any of the given CompletableFutures when
+     * one completes
+     * @throws NullPointerException if the collection or any of its
+     * elements are {@code null}
+     */
+    public static <T> CompletableFuture<T> anyOf
+        (Collection<? extends CompletableFuture<? extends T>> cfs,
+         boolean cancelOthers) {
+        CompletableFuture<?>[] a = toNonNullArray(cfs);
+        CompletableFuture<T> dst = new CompletableFuture<T>();
+        AnyCompletion<T> d = new AnyCompletion<T>(a, dst, cancelOthers);
+        for (CompletableFuture<?> f : a) {
+            if (d.get() != 0)
+                break;
+            if (f.result == null &&
+                f.tryPushCompletion(new CompletionNode(d)))
+                f.helpPostComplete();
+            else {
+                d.run();
+                break;
+            }
+        }
+        return dst;
+    }
+
+    /**
+     * Returns a new CompletableFuture that is completed when all of
+     * the CompletableFutures obtained from the given suppliers
+     * complete, with the list of their results, in the iteration
+     * order of the collection.  The suppliers are invoked in that
+     * order, so as to start the computations of their results, but
+     * no more than {@code parallelism} of the CompletableFutures
+     * obtained are incomplete at any time: the next supplier is
+     * invoked only upon the completion of an earlier
+     * CompletableFuture, by the thread that completes it.
+     *
+     * <p>If any of the obtained CompletableFutures complete
+     * exceptionally, then the returned CompletableFuture also does
+     * so, once all are complete, with a CompletionException holding
+     * the exception of the first such one in iteration order as its
+     * cause.  If a supplier throws an exception or returns {@code
+     * null}, then the returned CompletableFuture completes
+     * exceptionally with a CompletionException holding this exception,
+     * or a NullPointerException, as its cause.  No further suppliers
+     * are invoked once the returned CompletableFuture is complete,
+     * including by {@linkplain #cancel cancellation}.  If the
+     * collection is empty, returns a CompletableFuture completed with
+     * an empty list.
+     *
+     * @param suppliers the suppliers of the CompletableFutures
+     * @param parallelism the maximum number of incomplete
+     * CompletableFutures
+     * @param <T> the type of the results
+     * @return a new CompletableFuture that is completed with the list
+     * of results when all of the obtained CompletableFutures complete
+     * @throws NullPointerException if the collection or any of its
+     * elements are {@code null}
+     * @throws IllegalArgumentException if {@code parallelism <= 0}
+     */
+    public static <T> CompletableFuture<List<T>> allOfBounded
+        (Collection<? extends Supplier<? extends CompletableFuture<? extends T>>> suppliers,
+         int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException();
+        @SuppressWarnings("unchecked")
+        Supplier<? extends CompletableFuture<? extends T>>[] a =
+            (Supplier<? extends CompletableFuture<? extends T>>[])
+            suppliers.toArray(new Supplier<?>[0]);
+        for (Supplier<?> s : a) {
+            if (s == null)
+                throw new NullPointerException();
+        }
+        CompletableFuture<List<T>> dst = new CompletableFuture<List<T>>();
+        if (a.length == 0)
+            dst.result = new ArrayList<T>();
+        else {
+            BoundedAllCompletion<T> d = new BoundedAllCompletion<T>(a, dst);
+            for (int k = Math.min(parallelism, a.length); k > 0; --k)
+                d.startNext();
+        }
+        return dst;
+    }
+
+    /**
+     * Returns the elements of the given collection as an array,
+     * throwing NullPointerException if any are null.
+     */
+    private static CompletableFuture<?>[] toNonNullArray
+        (Collection<? extends CompletableFuture<?>> cfs) {
+        CompletableFuture<?>[] a = cfs.toArray(new CompletableFuture<?>[0]);
+        for (CompletableFuture<?> f : a) {
+            if (f == null)
+                throw new NullPointerException();
+        }
+        return a;
+    }
+
+    /* ------------- Timeouts -------------- */
+
+    /**
+     * Exceptionally completes this CompletableFuture with a {@link
+     * TimeoutException} if not otherwise completed before the given
+     * timeout.  Timeouts of all CompletableFutures are kept by a
+     * single shared timer thread, and cancelled upon completion.
+     *
+     * @param timeout how long to wait before completing exceptionally
+     *        with a TimeoutException, in units of {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the
+     *        {@code timeout} parameter
+     * @return this CompletableFuture
+     */
+    public CompletableFuture<T> orTimeout(long timeout, TimeUnit unit) {
+        if (unit == null)
+            throw new NullPointerException();
+        if (result == null)
+            addTimeout(new Timeout(this), timeout, unit);
+        return this;
+    }
+
+    /**
+     * Completes this CompletableFuture with the given value if not
+     * otherwise completed before the given timeout.  Timeouts of all
+     * CompletableFutures are kept by a single shared timer thread,
+     * and cancelled upon completion.
+     *
+     * @param value the value to use upon timeout
+     * @param timeout how long to wait before completing normally
+     *        with the given value, in units of {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the
+     *        {@code timeout} parameter
+     * @return this CompletableFuture
+     */
+    public CompletableFuture<T> completeOnTimeout(T value, long timeout,
+                                                  TimeUnit unit) {
+        if (unit == null)
+            throw new NullPointerException();
+        if (result == null)
+            addTimeout(new DelayedCompleter<T>(this, value), timeout, unit);
+        return this;
+    }
+
+    /**
+     * Schedules the given timeout action, to be cancelled upon
+     * completion.
+     */
+    private void addTimeout(Runnable action, long timeout, TimeUnit unit) {
+        Future<?> f = Delayer.delayer.schedule(action, timeout, unit);
+        if (tryPushCompletion(new CompletionNode(new TimeoutCancellation(f))))
+            helpPostComplete();
+        else
+            f.cancel(false);
+    }
+
+    /**
+     * Holder of the timer for orTimeout and completeOnTimeout,
+     * created upon first use.  The timer thread is a daemon, and
+     * hands expired timeouts to the common pool, so that dependent
+     * actions of the futures they complete never delay other
+     * timeouts.
+     */
+    static final class Delayer {
+        static final TimingWheelScheduledExecutor delayer =
+            new TimingWheelScheduledExecutor(1L, TimeUnit.MILLISECONDS,
+                                             ForkJoinPool.commonPool(),
+                                             new DaemonThreadFactory());
+
+        static final class DaemonThreadFactory implements ThreadFactory {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r);
+                t.setDaemon(true);
+                t.setName("CompletableFutureDelayScheduler");
+                return t;
+            }
+        }
+    }
+
+    /** Action to completeExceptionally on timeout */
+    static final class Timeout implements Runnable {
+        final CompletableFuture<?> f;
+        Timeout(CompletableFuture<?> f) { this.f = f; }
+        public void run() {
+            if (f != null && !f.isDone())
+                f.completeExceptionally(new TimeoutException());
+        }
+    }
+
+    /** Action to complete on timeout */
+    static final class DelayedCompleter<U> implements Runnable {
+        final CompletableFuture<U> f;
+        final U u;
+        DelayedCompleter(CompletableFuture<U> f, U u) { this.f = f; this.u = u; }
+        public void run() {
+            if (f != null)
+                f.complete(u);
+        }
+    }
+
     /* ------------- Control and status methods -------------- */
 
     /**
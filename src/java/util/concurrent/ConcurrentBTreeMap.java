@@ -0,0 +1,1614 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.BTreeMap;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A {@link ConcurrentNavigableMap} backed by a {@link BTreeMap}, for
+ * read-mostly workloads.  The map is sorted according to the
+ * {@linkplain Comparable natural ordering} of its keys, or by a
+ * {@link Comparator} provided at map creation time, depending on which
+ * constructor is used.
+ *
+ * <p>Retrievals, including those of views and of iterators, do not
+ * block or write to shared memory in the common case: they traverse the
+ * tree optimistically and then check, using a {@link StampedLock}, that
+ * no update intervened, retrying under a read lock only if one did.
+ * Updates are serialized by the write lock.  This class is thus a
+ * compact, cache-friendly alternative to {@link ConcurrentSkipListMap}
+ * when updates are rare; under frequent updates, which block each other
+ * and force readers to retry, {@code ConcurrentSkipListMap} scales
+ * better.
+ *
+ * <p>Iterators and spliterators are <a
+ * href="package-summary.html#Weakly"><i>weakly consistent</i></a>.
+ * They read mappings in batches, each of which is a consistent snapshot
+ * of a range of keys, and never throw {@link
+ * ConcurrentModificationException}.  Descending views are traversed
+ * as fast as ascending ones, as both scan the linked tree leaves.
+ *
+ * <p>The functions given to {@code computeIfAbsent}, {@code
+ * computeIfPresent}, {@code compute} and {@code merge} are applied at
+ * most once, while holding the write lock, so they should be short and
+ * simple, and must not attempt to access this map.
+ *
+ * <p>All {@code Map.Entry} pairs returned by methods in this class
+ * and its views represent snapshots of mappings at the time they were
+ * produced. They do <em>not</em> support the {@code Entry.setValue}
+ * method.  Like most other concurrent collections, this class does not
+ * permit the use of {@code null} keys or values.  Bulk operations such
+ * as {@code putAll} and {@code equals} are not guaranteed to be
+ * performed atomically.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ * @see BTreeMap
+ * @see ConcurrentSkipListMap
+ * @since 1.8
+ */
+public class ConcurrentBTreeMap<K,V> extends AbstractMap<K,V>
+    implements ConcurrentNavigableMap<K,V>, Cloneable, Serializable {
+    private static final long serialVersionUID = 4409527398761048211L;
+
+    /*
+     * Overview:
+     *
+     * All operations are performed on a BTreeMap, or on one of its
+     * views, under a StampedLock.  Writers hold the write lock.
+     * Readers first perform the whole operation in an optimistic read
+     * and then validate the stamp, falling back to the read lock only
+     * if validation fails.  This relies on BTreeMap lookups not
+     * writing to the map, and on their terminating even when racing
+     * with a writer: a descent visits at most one node per level, as
+     * nodes never change levels, and the neighbouring positions of a
+     * key are found at most one leaf away.  Any exception thrown by
+     * an optimistic read that then fails validation (such as an index
+     * out of bounds, or a null node) is ignored.
+     *
+     * Iterators copy up to BATCH mappings at a time from the backing
+     * view, starting after the last key copied, and so need only
+     * O(log n) work per batch in addition to the sequential scans of
+     * leaves.  Each batch is read under a single stamp.
+     */
+
+    /** The number of mappings copied by iterators at a time */
+    static final int BATCH = 64;
+
+    /**
+     * The backing map.
+     * @serial
+     */
+    private BTreeMap<K,V> tree;
+
+    private transient StampedLock lock;
+
+    /** Lazily initialized key set */
+    private transient KeySet<K> keySet;
+    /** Lazily initialized entry set */
+    private transient EntrySet<K,V> entrySet;
+    /** Lazily initialized values collection */
+    private transient Values<V> values;
+    /** Lazily initialized descending map */
+    private transient ConcurrentNavigableMap<K,V> descendingMap;
+
+    /**
+     * Constructs a new, empty map, sorted according to the
+     * {@linkplain Comparable natural ordering} of the keys.
+     */
+    public ConcurrentBTreeMap() {
+        this.tree = new BTreeMap<K,V>();
+        this.lock = new StampedLock();
+    }
+
+    /**
+     * Constructs a new, empty map, sorted according to the specified
+     * comparator.
+     *
+     * @param comparator the comparator that will be used to order this map.
+     *        If {@code null}, the {@linkplain Comparable natural
+     *        ordering} of the keys will be used.
+     */
+    public ConcurrentBTreeMap(Comparator<? super K> comparator) {
+        this.tree = new BTreeMap<K,V>(comparator);
+        this.lock = new StampedLock();
+    }
+
+    /**
+     * Constructs a new map containing the same mappings as the given map,
+     * sorted according to the {@linkplain Comparable natural ordering} of
+     * the keys.
+     *
+     * @param  m the map whose mappings are to be placed in this map
+     * @throws ClassCastException if the keys in {@code m} are not
+     *         {@link Comparable}, or are not mutually comparable
+     * @throws NullPointerException if the specified map or any of its keys
+     *         or values are null
+     */
+    public ConcurrentBTreeMap(Map<? extends K, ? extends V> m) {
+        this();
+        putAll(m);
+    }
+
+    /**
+     * Constructs a new map containing the same mappings and using the
+     * same ordering as the specified sorted map.
+     *
+     * @param m the sorted map whose mappings are to be placed in this
+     *        map, and whose comparator is to be used to sort this map
+     * @throws NullPointerException if the specified sorted map or any of
+     *         its keys or values are null
+     */
+    public ConcurrentBTreeMap(SortedMap<K, ? extends V> m) {
+        this(m.comparator());
+        putAll(m);
+    }
+
+    /**
+     * Returns a shallow copy of this {@code ConcurrentBTreeMap}
+     * instance. (The keys and values themselves are not cloned.)
+     *
+     * @return a shallow copy of this map
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentBTreeMap<K,V> clone() {
+        try {
+            ConcurrentBTreeMap<K,V> clone =
+                (ConcurrentBTreeMap<K,V>) super.clone();
+            long stamp = lock.readLock();
+            try {
+                clone.tree = (BTreeMap<K,V>) tree.clone();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            clone.lock = new StampedLock();
+            clone.keySet = null;
+            clone.entrySet = null;
+            clone.values = null;
+            clone.descendingMap = null;
+            return clone;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError();
+        }
+    }
+
+    /* ---------------- Locking utilities -------------- */
+
+    /**
+     * Returns the result of applying the given function to the given
+     * map, which is guarded by the given lock, first optimistically,
+     * and then if an update may have intervened, under the read lock.
+     */
+    static <M,R> R read(StampedLock lock, M map,
+                        Function<? super M, ? extends R> op) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                R r = op.apply(map);
+                if (lock.validate(stamp))
+                    return r;
+            } catch (RuntimeException ex) {
+                if (lock.validate(stamp))
+                    throw ex;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return op.apply(map);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Version of read for operations on a non-null key.
+     */
+    static <M,K,R> R read(StampedLock lock, M map, K key,
+                          BiFunction<? super M, ? super K, ? extends R> op) {
+        if (key == null)
+            throw new NullPointerException();
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                R r = op.apply(map, key);
+                if (lock.validate(stamp))
+                    return r;
+            } catch (RuntimeException ex) {
+                if (lock.validate(stamp))
+                    throw ex;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return op.apply(map, key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /* ---------------- Map API methods -------------- */
+
+    /**
+     * Returns {@code true} if this map contains a mapping for the specified
+     * key.
+     *
+     * @param key key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the specified key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean containsKey(Object key) {
+        return read(lock, tree, key, Map::containsKey);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or {@code null} if this map contains no mapping for the key.
+     *
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     */
+    public V get(Object key) {
+        return read(lock, tree, key, Map::get);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or the given defaultValue if this map contains no mapping for the key.
+     *
+     * @param key the key
+     * @param defaultValue the value to return if this map contains
+     * no mapping for the given key
+     * @return the mapping for the key, if present; else the defaultValue
+     * @throws NullPointerException if the specified key is null
+     */
+    public V getOrDefault(Object key, V defaultValue) {
+        V v;
+        return (v = get(key)) == null ? defaultValue : v;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old
+     * value is replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the specified key, or
+     *         {@code null} if there was no mapping for the key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V put(K key, V value) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        long stamp = lock.writeLock();
+        try {
+            return tree.put(key, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the mapping for the specified key from this map if present.
+     *
+     * @param  key key for which mapping should be removed
+     * @return the previous value associated with the specified key, or
+     *         {@code null} if there was no mapping for the key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     */
+    public V remove(Object key) {
+        if (key == null)
+            throw new NullPointerException();
+        long stamp = lock.writeLock();
+        try {
+            return tree.remove(key);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns {@code true} if this map maps one or more keys to the
+     * specified value.  This operation requires time linear in the
+     * map size.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if a mapping to {@code value} exists;
+     *         {@code false} otherwise
+     * @throws NullPointerException if the specified value is null
+     */
+    public boolean containsValue(Object value) {
+        if (value == null)
+            throw new NullPointerException();
+        for (Iterator<V> it = valueIterator(); it.hasNext(); ) {
+            if (value.equals(it.next()))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of elements in this map
+     */
+    public int size() {
+        return read(lock, tree, Map::size);
+    }
+
+    /**
+     * Returns {@code true} if this map contains no key-value mappings.
+     * @return {@code true} if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return read(lock, tree, Map::isEmpty);
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            tree.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * If the specified key is not already associated with a value,
+     * attempts to compute its value using the given mapping function
+     * and enters it into this map unless {@code null}.  The function
+     * is applied at most once, while holding the write lock.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param mappingFunction the function to compute a value
+     * @return the current (existing or computed) value associated with
+     *         the specified key, or null if the computed value is null
+     * @throws NullPointerException if the specified key is null
+     *         or the mappingFunction is null
+     */
+    public V computeIfAbsent(K key,
+                             Function<? super K, ? extends V> mappingFunction) {
+        if (key == null || mappingFunction == null)
+            throw new NullPointerException();
+        V v = get(key);
+        if (v != null)
+            return v;
+        long stamp = lock.writeLock();
+        try {
+            if ((v = tree.get(key)) == null &&
+                (v = mappingFunction.apply(key)) != null)
+                tree.put(key, v);
+            return v;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * If the value for the specified key is present, attempts to
+     * compute a new mapping given the key and its current mapped
+     * value.  The function is applied at most once, while holding the
+     * write lock.
+     *
+     * @param key key with which a value may be associated
+     * @param remappingFunction the function to compute a value
+     * @return the new value associated with the specified key, or null if none
+     * @throws NullPointerException if the specified key is null
+     *         or the remappingFunction is null
+     */
+    public V computeIfPresent(K key,
+                              BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (key == null || remappingFunction == null)
+            throw new NullPointerException();
+        if (get(key) == null)
+            return null;
+        long stamp = lock.writeLock();
+        try {
+            V v, r = null;
+            if ((v = tree.get(key)) != null) {
+                if ((r = remappingFunction.apply(key, v)) != null)
+                    tree.put(key, r);
+                else
+                    tree.remove(key);
+            }
+            return r;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Attempts to compute a mapping for the specified key and its
+     * current mapped value (or {@code null} if there is no current
+     * mapping).  The function is applied once, while holding the write
+     * lock.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param remappingFunction the function to compute a value
+     * @return the new value associated with the specified key, or null if none
+     * @throws NullPointerException if the specified key is null
+     *         or the remappingFunction is null
+     */
+    public V compute(K key,
+                     BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (key == null || remappingFunction == null)
+            throw new NullPointerException();
+        long stamp = lock.writeLock();
+        try {
+            V r = remappingFunction.apply(key, tree.get(key));
+            if (r != null)
+                tree.put(key, r);
+            else
+                tree.remove(key);
+            return r;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * If the specified key is not already associated with a value,
+     * associates it with the given value.  Otherwise, replaces the
+     * value with the results of the given remapping function, or
+     * removes if {@code null}.  The function is applied at most once,
+     * while holding the write lock.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value the value to use if absent
+     * @param remappingFunction the function to recompute a value if present
+     * @return the new value associated with the specified key, or null if none
+     * @throws NullPointerException if the specified key or value is null
+     *         or the remappingFunction is null
+     */
+    public V merge(K key, V value,
+                   BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        if (key == null || value == null || remappingFunction == null)
+            throw new NullPointerException();
+        long stamp = lock.writeLock();
+        try {
+            V v = tree.get(key), r;
+            if (v == null)
+                r = value;
+            else if ((r = remappingFunction.apply(v, value)) == null) {
+                tree.remove(key);
+                return null;
+            }
+            tree.put(key, r);
+            return r;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /* ---------------- View methods -------------- */
+
+    public NavigableSet<K> keySet() {
+        KeySet<K> ks = keySet;
+        return (ks != null) ? ks : (keySet = new KeySet<K>(this));
+    }
+
+    public NavigableSet<K> navigableKeySet() {
+        KeySet<K> ks = keySet;
+        return (ks != null) ? ks : (keySet = new KeySet<K>(this));
+    }
+
+    /**
+     * Returns a {@link Collection} view of the values contained in this map.
+     * The collection's iterator returns the values in ascending order
+     * of the corresponding keys.  The collection is backed by the map,
+     * so changes to the map are reflected in the collection, and
+     * vice-versa.  The collection supports element removal, which
+     * removes the corresponding mapping from the map, via the {@code
+     * Iterator.remove}, {@code Collection.remove}, {@code removeAll},
+     * {@code retainAll} and {@code clear} operations.  It does not
+     * support the {@code add} or {@code addAll} operations.
+     *
+     * <p>The view's iterators and spliterators are
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>.
+     */
+    public Collection<V> values() {
+        Values<V> vs = values;
+        return (vs != null) ? vs : (values = new Values<V>(this));
+    }
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this map.
+     * The set's iterator returns the entries in ascending key order.  The
+     * set is backed by the map, so changes to the map are reflected in
+     * the set, and vice-versa.  The set supports element removal, which
+     * removes the corresponding mapping from the map, via the {@code
+     * Iterator.remove}, {@code Set.remove}, {@code removeAll}, {@code
+     * retainAll} and {@code clear} operations.  It does not support the
+     * {@code add} or {@code addAll} operations.
+     *
+     * <p>The view's iterators and spliterators are
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>.
+     *
+     * <p>The {@code Map.Entry} elements traversed by the {@code iterator}
+     * or {@code spliterator} do <em>not</em> support the {@code setValue}
+     * operation.
+     *
+     * @return a set view of the mappings contained in this map,
+     *         sorted in ascending key order
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        EntrySet<K,V> es = entrySet;
+        return (es != null) ? es : (entrySet = new EntrySet<K,V>(this));
+    }
+
+    public ConcurrentNavigableMap<K,V> descendingMap() {
+        ConcurrentNavigableMap<K,V> dm = descendingMap;
+        return (dm != null) ? dm :
+            (descendingMap = new SubMap<K,V>(this, tree.descendingMap()));
+    }
+
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    /* ---------------- ConcurrentMap API methods -------------- */
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no mapping for the key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V putIfAbsent(K key, V value) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        V v = get(key);
+        if (v != null)
+            return v;
+        long stamp = lock.writeLock();
+        try {
+            if ((v = tree.get(key)) == null)
+                tree.put(key, value);
+            return v;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean remove(Object key, Object value) {
+        if (key == null)
+            throw new NullPointerException();
+        if (value == null)
+            return false;
+        long stamp = lock.writeLock();
+        try {
+            if (!value.equals(tree.get(key)))
+                return false;
+            tree.remove(key);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if any of the arguments are null
+     */
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (key == null || oldValue == null || newValue == null)
+            throw new NullPointerException();
+        long stamp = lock.writeLock();
+        try {
+            if (!oldValue.equals(tree.get(key)))
+                return false;
+            tree.put(key, newValue);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no mapping for the key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V replace(K key, V value) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        long stamp = lock.writeLock();
+        try {
+            V v = tree.get(key);
+            if (v != null)
+                tree.put(key, value);
+            return v;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /* ------ SortedMap API methods ------ */
+
+    public Comparator<? super K> comparator() {
+        return tree.comparator();
+    }
+
+    /**
+     * @throws NoSuchElementException {@inheritDoc}
+     */
+    public K firstKey() {
+        return read(lock, tree, NavigableMap::firstKey);
+    }
+
+    /**
+     * @throws NoSuchElementException {@inheritDoc}
+     */
+    public K lastKey() {
+        return read(lock, tree, NavigableMap::lastKey);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} or {@code toKey} is null
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public ConcurrentNavigableMap<K,V> subMap(K fromKey,
+                                              boolean fromInclusive,
+                                              K toKey,
+                                              boolean toInclusive) {
+        if (fromKey == null || toKey == null)
+            throw new NullPointerException();
+        return new SubMap<K,V>
+            (this, tree.subMap(fromKey, fromInclusive, toKey, toInclusive));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if {@code toKey} is null
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public ConcurrentNavigableMap<K,V> headMap(K toKey,
+                                               boolean inclusive) {
+        if (toKey == null)
+            throw new NullPointerException();
+        return new SubMap<K,V>(this, tree.headMap(toKey, inclusive));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} is null
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public ConcurrentNavigableMap<K,V> tailMap(K fromKey,
+                                               boolean inclusive) {
+        if (fromKey == null)
+            throw new NullPointerException();
+        return new SubMap<K,V>(this, tree.tailMap(fromKey, inclusive));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} or {@code toKey} is null
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public ConcurrentNavigableMap<K,V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if {@code toKey} is null
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public ConcurrentNavigableMap<K,V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} is null
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public ConcurrentNavigableMap<K,V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    /* ---------------- Relational operations -------------- */
+
+    /**
+     * Returns a key-value mapping associated with the greatest key
+     * strictly less than the given key, or {@code null} if there is
+     * no such key. The returned entry does <em>not</em> support the
+     * {@code Entry.setValue} method.
+     *
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     */
+    public Map.Entry<K,V> lowerEntry(K key) {
+        return read(lock, tree, key, NavigableMap::lowerEntry);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     */
+    public K lowerKey(K key) {
+        return read(lock, tree, key, NavigableMap::lowerKey);
+    }
+
+    /**
+     * Returns a key-value mapping associated with the greatest key
+     * less than or equal to the given key, or {@code null} if there
+     * is no such key. The returned entry does <em>not</em> support
+     * the {@code Entry.setValue} method.
+     *
+     * @param key the key
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     */
+    public Map.Entry<K,V> floorEntry(K key) {
+        return read(lock, tree, key, NavigableMap::floorEntry);
+    }
+
+    /**
+     * @param key the key
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     */
+    public K floorKey(K key) {
+        return read(lock, tree, key, NavigableMap::floorKey);
+    }
+
+    /**
+     * Returns a key-value mapping associated with the least key
+     * greater than or equal to the given key, or {@code null} if
+     * there is no such entry. The returned entry does <em>not</em>
+     * support the {@code Entry.setValue} method.
+     *
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     */
+    public Map.Entry<K,V> ceilingEntry(K key) {
+        return read(lock, tree, key, NavigableMap::ceilingEntry);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     */
+    public K ceilingKey(K key) {
+        return read(lock, tree, key, NavigableMap::ceilingKey);
+    }
+
+    /**
+     * Returns a key-value mapping associated with the least key
+     * strictly greater than the given key, or {@code null} if there
+     * is no such key. The returned entry does <em>not</em> support
+     * the {@code Entry.setValue} method.
+     *
+     * @param key the key
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     */
+    public Map.Entry<K,V> higherEntry(K key) {
+        return read(lock, tree, key, NavigableMap::higherEntry);
+    }
+
+    /**
+     * @param key the key
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     */
+    public K higherKey(K key) {
+        return read(lock, tree, key, NavigableMap::higherKey);
+    }
+
+    /**
+     * Returns a key-value mapping associated with the least
+     * key in this map, or {@code null} if the map is empty.
+     * The returned entry does <em>not</em> support
+     * the {@code Entry.setValue} method.
+     */
+    public Map.Entry<K,V> firstEntry() {
+        return read(lock, tree, NavigableMap::firstEntry);
+    }
+
+    /**
+     * Returns a key-value mapping associated with the greatest
+     * key in this map, or {@code null} if the map is empty.
+     * The returned entry does <em>not</em> support
+     * the {@code Entry.setValue} method.
+     */
+    public Map.Entry<K,V> lastEntry() {
+        return read(lock, tree, NavigableMap::lastEntry);
+    }
+
+    /**
+     * Removes and returns a key-value mapping associated with
+     * the least key in this map, or {@code null} if the map is empty.
+     * The returned entry does <em>not</em> support
+     * the {@code Entry.setValue} method.
+     */
+    public Map.Entry<K,V> pollFirstEntry() {
+        long stamp = lock.writeLock();
+        try {
+            return tree.pollFirstEntry();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes and returns a key-value mapping associated with
+     * the greatest key in this map, or {@code null} if the map is empty.
+     * The returned entry does <em>not</em> support
+     * the {@code Entry.setValue} method.
+     */
+    public Map.Entry<K,V> pollLastEntry() {
+        long stamp = lock.writeLock();
+        try {
+            return tree.pollLastEntry();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (action == null) throw new NullPointerException();
+        for (EntryIterator<K,V> it = new EntryIterator<K,V>(lock, tree);
+             it.hasNext(); ) {
+            Map.Entry<K,V> e = it.next();
+            action.accept(e.getKey(), e.getValue());
+        }
+    }
+
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        if (function == null) throw new NullPointerException();
+        for (EntryIterator<K,V> it = new EntryIterator<K,V>(lock, tree);
+             it.hasNext(); ) {
+            Map.Entry<K,V> e = it.next();
+            K k = e.getKey();
+            V v = e.getValue();
+            while (v != null) {
+                V r = function.apply(k, v);
+                if (r == null)
+                    throw new NullPointerException();
+                if (replace(k, v, r))
+                    break;
+                v = get(k);
+            }
+        }
+    }
+
+    /* ---------------- Iterators -------------- */
+
+    /**
+     * Base of iterator classes, copying batches of mappings from a
+     * backing view, in its order, under the given lock.
+     */
+    abstract static class Iter<K,V,T> implements Iterator<T> {
+        final StampedLock lock;
+        final NavigableMap<K,V> view;
+        final Object[] keys = new Object[BATCH];
+        final Object[] vals = new Object[BATCH];
+        /** Index of the next mapping in the batch */
+        int index;
+        /** The number of mappings in the batch */
+        int count;
+        /** True if there are no mappings after the current batch */
+        boolean exhausted;
+        /** The key of the mapping last returned, or null if removed */
+        K lastReturned;
+
+        Iter(StampedLock lock, NavigableMap<K,V> view) {
+            this.lock = lock;
+            this.view = view;
+            fetch(null);
+        }
+
+        /**
+         * Copies the next batch of mappings, those following the given
+         * key, or the first ones if null.
+         */
+        private void fetch(K from) {
+            long stamp = lock.tryOptimisticRead();
+            int n = -1;
+            if (stamp != 0L) {
+                try {
+                    n = copy(from);
+                    if (!lock.validate(stamp))
+                        n = -1;
+                } catch (RuntimeException ex) {
+                    if (lock.validate(stamp))
+                        throw ex;
+                    n = -1;
+                }
+            }
+            if (n < 0) {
+                stamp = lock.readLock();
+                try {
+                    n = copy(from);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            clearFrom(n);
+            index = 0;
+            count = n;
+            exhausted = n < BATCH;
+        }
+
+        private int copy(K from) {
+            NavigableMap<K,V> m = (from == null) ? view : view.tailMap(from, false);
+            Object[] ks = keys, vs = vals;
+            int n = 0;
+            for (Map.Entry<K,V> e : m.entrySet()) {
+                ks[n] = e.getKey();
+                vs[n] = e.getValue();
+                if (++n == BATCH)
+                    break;
+            }
+            return n;
+        }
+
+        /** Clears references held beyond the end of the batch. */
+        private void clearFrom(int n) {
+            for (int i = n; i < BATCH && keys[i] != null; ++i)
+                keys[i] = vals[i] = null;
+        }
+
+        public final boolean hasNext() {
+            if (index < count)
+                return true;
+            if (exhausted)
+                return false;
+            @SuppressWarnings("unchecked") K last = (K)keys[count - 1];
+            fetch(last);
+            return index < count;
+        }
+
+        /**
+         * Advances to the next mapping, returning its index in the batch.
+         */
+        @SuppressWarnings("unchecked")
+        final int advance() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            int i = index++;
+            lastReturned = (K)keys[i];
+            return i;
+        }
+
+        public final void remove() {
+            K k = lastReturned;
+            if (k == null)
+                throw new IllegalStateException();
+            long stamp = lock.writeLock();
+            try {
+                view.remove(k);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            lastReturned = null;
+        }
+    }
+
+    static final class KeyIterator<K,V> extends Iter<K,V,K> {
+        KeyIterator(StampedLock lock, NavigableMap<K,V> view) {
+            super(lock, view);
+        }
+        @SuppressWarnings("unchecked")
+        public K next() {
+            return (K)keys[advance()];
+        }
+    }
+
+    static final class ValueIterator<K,V> extends Iter<K,V,V> {
+        ValueIterator(StampedLock lock, NavigableMap<K,V> view) {
+            super(lock, view);
+        }
+        @SuppressWarnings("unchecked")
+        public V next() {
+            return (V)vals[advance()];
+        }
+    }
+
+    static final class EntryIterator<K,V> extends Iter<K,V,Map.Entry<K,V>> {
+        EntryIterator(StampedLock lock, NavigableMap<K,V> view) {
+            super(lock, view);
+        }
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K,V> next() {
+            int i = advance();
+            return new AbstractMap.SimpleImmutableEntry<K,V>((K)keys[i],
+                                                             (V)vals[i]);
+        }
+    }
+
+    // Factory methods for iterators needed by KeySet, Values, EntrySet
+
+    Iterator<K> keyIterator() {
+        return new KeyIterator<K,V>(lock, tree);
+    }
+
+    Iterator<V> valueIterator() {
+        return new ValueIterator<K,V>(lock, tree);
+    }
+
+    Iterator<Map.Entry<K,V>> entryIterator() {
+        return new EntryIterator<K,V>(lock, tree);
+    }
+
+    /* ---------------- View Classes -------------- */
+
+    /*
+     * View classes are static, delegating to a ConcurrentNavigableMap
+     * to allow use by SubMaps, as in ConcurrentSkipListMap.
+     */
+
+    static final <E> List<E> toList(Collection<E> c) {
+        // Using size() here would be a pessimization.
+        ArrayList<E> list = new ArrayList<E>();
+        for (E e : c)
+            list.add(e);
+        return list;
+    }
+
+    static final class KeySet<E>
+            extends AbstractSet<E> implements NavigableSet<E> {
+        final ConcurrentNavigableMap<E,?> m;
+        KeySet(ConcurrentNavigableMap<E,?> map) { m = map; }
+        public int size() { return m.size(); }
+        public boolean isEmpty() { return m.isEmpty(); }
+        public boolean contains(Object o) { return m.containsKey(o); }
+        public boolean remove(Object o) { return m.remove(o) != null; }
+        public void clear() { m.clear(); }
+        public E lower(E e) { return m.lowerKey(e); }
+        public E floor(E e) { return m.floorKey(e); }
+        public E ceiling(E e) { return m.ceilingKey(e); }
+        public E higher(E e) { return m.higherKey(e); }
+        public Comparator<? super E> comparator() { return m.comparator(); }
+        public E first() { return m.firstKey(); }
+        public E last() { return m.lastKey(); }
+        public E pollFirst() {
+            Map.Entry<E,?> e = m.pollFirstEntry();
+            return (e == null) ? null : e.getKey();
+        }
+        public E pollLast() {
+            Map.Entry<E,?> e = m.pollLastEntry();
+            return (e == null) ? null : e.getKey();
+        }
+        @SuppressWarnings("unchecked")
+        public Iterator<E> iterator() {
+            if (m instanceof ConcurrentBTreeMap)
+                return ((ConcurrentBTreeMap<E,Object>)m).keyIterator();
+            else
+                return ((ConcurrentBTreeMap.SubMap<E,Object>)m).keyIterator();
+        }
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (!(o instanceof Set))
+                return false;
+            Collection<?> c = (Collection<?>) o;
+            try {
+                return containsAll(c) && c.containsAll(this);
+            } catch (ClassCastException unused) {
+                return false;
+            } catch (NullPointerException unused) {
+                return false;
+            }
+        }
+        public Object[] toArray()     { return toList(this).toArray();  }
+        public <T> T[] toArray(T[] a) { return toList(this).toArray(a); }
+        public Iterator<E> descendingIterator() {
+            return descendingSet().iterator();
+        }
+        public NavigableSet<E> subSet(E fromElement,
+                                      boolean fromInclusive,
+                                      E toElement,
+                                      boolean toInclusive) {
+            return new KeySet<E>(m.subMap(fromElement, fromInclusive,
+                                          toElement,   toInclusive));
+        }
+        public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+            return new KeySet<E>(m.headMap(toElement, inclusive));
+        }
+        public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+            return new KeySet<E>(m.tailMap(fromElement, inclusive));
+        }
+        public NavigableSet<E> subSet(E fromElement, E toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+        public NavigableSet<E> headSet(E toElement) {
+            return headSet(toElement, false);
+        }
+        public NavigableSet<E> tailSet(E fromElement) {
+            return tailSet(fromElement, true);
+        }
+        public NavigableSet<E> descendingSet() {
+            return new KeySet<E>(m.descendingMap());
+        }
+    }
+
+    static final class Values<E> extends AbstractCollection<E> {
+        final ConcurrentNavigableMap<?, E> m;
+        Values(ConcurrentNavigableMap<?, E> map) {
+            m = map;
+        }
+        @SuppressWarnings("unchecked")
+        public Iterator<E> iterator() {
+            if (m instanceof ConcurrentBTreeMap)
+                return ((ConcurrentBTreeMap<?,E>)m).valueIterator();
+            else
+                return ((SubMap<?,E>)m).valueIterator();
+        }
+        public boolean isEmpty() {
+            return m.isEmpty();
+        }
+        public int size() {
+            return m.size();
+        }
+        public boolean contains(Object o) {
+            return m.containsValue(o);
+        }
+        public void clear() {
+            m.clear();
+        }
+        public Object[] toArray()     { return toList(this).toArray();  }
+        public <T> T[] toArray(T[] a) { return toList(this).toArray(a); }
+    }
+
+    static final class EntrySet<K1,V1> extends AbstractSet<Map.Entry<K1,V1>> {
+        final ConcurrentNavigableMap<K1, V1> m;
+        EntrySet(ConcurrentNavigableMap<K1, V1> map) {
+            m = map;
+        }
+        @SuppressWarnings("unchecked")
+        public Iterator<Map.Entry<K1,V1>> iterator() {
+            if (m instanceof ConcurrentBTreeMap)
+                return ((ConcurrentBTreeMap<K1,V1>)m).entryIterator();
+            else
+                return ((SubMap<K1,V1>)m).entryIterator();
+        }
+
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            V1 v = m.get(e.getKey());
+            return v != null && v.equals(e.getValue());
+        }
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            return m.remove(e.getKey(),
+                            e.getValue());
+        }
+        public boolean isEmpty() {
+            return m.isEmpty();
+        }
+        public int size() {
+            return m.size();
+        }
+        public void clear() {
+            m.clear();
+        }
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (!(o instanceof Set))
+                return false;
+            Collection<?> c = (Collection<?>) o;
+            try {
+                return containsAll(c) && c.containsAll(this);
+            } catch (ClassCastException unused) {
+                return false;
+            } catch (NullPointerException unused) {
+                return false;
+            }
+        }
+        public Object[] toArray()     { return toList(this).toArray();  }
+        public <T> T[] toArray(T[] a) { return toList(this).toArray(a); }
+    }
+
+    /**
+     * Submaps returned by {@link ConcurrentBTreeMap} submap operations
+     * represent a subrange of mappings of their underlying maps.  Each
+     * applies the operations of a view of the backing BTreeMap, which
+     * checks the range, under the lock of the underlying map.
+     */
+    static final class SubMap<K,V> extends AbstractMap<K,V>
+        implements ConcurrentNavigableMap<K,V> {
+
+        /** Underlying map */
+        final ConcurrentBTreeMap<K,V> m;
+        /** View of the backing tree */
+        final NavigableMap<K,V> view;
+
+        // Lazily initialized view holders
+        private transient KeySet<K> keySetView;
+        private transient Set<Map.Entry<K,V>> entrySetView;
+        private transient Collection<V> valuesView;
+
+        SubMap(ConcurrentBTreeMap<K,V> m, NavigableMap<K,V> view) {
+            this.m = m;
+            this.view = view;
+        }
+
+        /* ----------------  Map API methods -------------- */
+
+        public boolean containsKey(Object key) {
+            return read(m.lock, view, key, Map::containsKey);
+        }
+
+        public V get(Object key) {
+            return read(m.lock, view, key, Map::get);
+        }
+
+        public V put(K key, V value) {
+            if (key == null || value == null)
+                throw new NullPointerException();
+            long stamp = m.lock.writeLock();
+            try {
+                return view.put(key, value);
+            } finally {
+                m.lock.unlockWrite(stamp);
+            }
+        }
+
+        public V remove(Object key) {
+            if (key == null)
+                throw new NullPointerException();
+            long stamp = m.lock.writeLock();
+            try {
+                return view.remove(key);
+            } finally {
+                m.lock.unlockWrite(stamp);
+            }
+        }
+
+        public int size() {
+            return read(m.lock, view, Map::size);
+        }
+
+        public boolean isEmpty() {
+            return read(m.lock, view, Map::isEmpty);
+        }
+
+        public boolean containsValue(Object value) {
+            if (value == null)
+                throw new NullPointerException();
+            for (Iterator<V> it = valueIterator(); it.hasNext(); ) {
+                if (value.equals(it.next()))
+                    return true;
+            }
+            return false;
+        }
+
+        public void clear() {
+            long stamp = m.lock.writeLock();
+            try {
+                view.clear();
+            } finally {
+                m.lock.unlockWrite(stamp);
+            }
+        }
+
+        /* ----------------  ConcurrentMap API methods -------------- */
+
+        public V putIfAbsent(K key, V value) {
+            if (key == null || value == null)
+                throw new NullPointerException();
+            long stamp = m.lock.writeLock();
+            try {
+                V v = view.get(key);
+                if (v == null)
+                    view.put(key, value);
+                return v;
+            } finally {
+                m.lock.unlockWrite(stamp);
+            }
+        }
+
+        public boolean remove(Object key, Object value) {
+            if (key == null)
+                throw new NullPointerException();
+            if (value == null)
+                return false;
+            long stamp = m.lock.writeLock();
+            try {
+                if (!value.equals(view.get(key)))
+                    return false;
+                view.remove(key);
+                return true;
+            } finally {
+                m.lock.unlockWrite(stamp);
+            }
+        }
+
+        public boolean replace(K key, V oldValue, V newValue) {
+            if (key == null || oldValue == null || newValue == null)
+                throw new NullPointerException();
+            long stamp = m.lock.writeLock();
+            try {
+                if (!oldValue.equals(view.get(key)))
+                    return false;
+                view.put(key, newValue);
+                return true;
+            } finally {
+                m.lock.unlockWrite(stamp);
+            }
+        }
+
+        public V replace(K key, V value) {
+            if (key == null || value == null)
+                throw new NullPointerException();
+            long stamp = m.lock.writeLock();
+            try {
+                V v = view.get(key);
+                if (v != null)
+                    view.put(key, value);
+                return v;
+            } finally {
+                m.lock.unlockWrite(stamp);
+            }
+        }
+
+        /* ----------------  SortedMap API methods -------------- */
+
+        public Comparator<? super K> comparator() {
+            return view.comparator();
+        }
+
+        public ConcurrentNavigableMap<K,V> subMap(K fromKey,
+                                                  boolean fromInclusive,
+                                                  K toKey,
+                                                  boolean toInclusive) {
+            if (fromKey == null || toKey == null)
+                throw new NullPointerException();
+            return new SubMap<K,V>
+                (m, view.subMap(fromKey, fromInclusive, toKey, toInclusive));
+        }
+
+        public ConcurrentNavigableMap<K,V> headMap(K toKey,
+                                                   boolean inclusive) {
+            if (toKey == null)
+                throw new NullPointerException();
+            return new SubMap<K,V>(m, view.headMap(toKey, inclusive));
+        }
+
+        public ConcurrentNavigableMap<K,V> tailMap(K fromKey,
+                                                   boolean inclusive) {
+            if (fromKey == null)
+                throw new NullPointerException();
+            return new SubMap<K,V>(m, view.tailMap(fromKey, inclusive));
+        }
+
+        public ConcurrentNavigableMap<K,V> subMap(K fromKey, K toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        public ConcurrentNavigableMap<K,V> headMap(K toKey) {
+            return headMap(toKey, false);
+        }
+
+        public ConcurrentNavigableMap<K,V> tailMap(K fromKey) {
+            return tailMap(fromKey, true);
+        }
+
+        public ConcurrentNavigableMap<K,V> descendingMap() {
+            return new SubMap<K,V>(m, view.descendingMap());
+        }
+
+        /* ----------------  Relational methods -------------- */
+
+        public Map.Entry<K,V> ceilingEntry(K key) {
+            return read(m.lock, view, key, NavigableMap::ceilingEntry);
+        }
+
+        public K ceilingKey(K key) {
+            return read(m.lock, view, key, NavigableMap::ceilingKey);
+        }
+
+        public Map.Entry<K,V> lowerEntry(K key) {
+            return read(m.lock, view, key, NavigableMap::lowerEntry);
+        }
+
+        public K lowerKey(K key) {
+            return read(m.lock, view, key, NavigableMap::lowerKey);
+        }
+
+        public Map.Entry<K,V> floorEntry(K key) {
+            return read(m.lock, view, key, NavigableMap::floorEntry);
+        }
+
+        public K floorKey(K key) {
+            return read(m.lock, view, key, NavigableMap::floorKey);
+        }
+
+        public Map.Entry<K,V> higherEntry(K key) {
+            return read(m.lock, view, key, NavigableMap::higherEntry);
+        }
+
+        public K higherKey(K key) {
+            return read(m.lock, view, key, NavigableMap::higherKey);
+        }
+
+        public K firstKey() {
+            return read(m.lock, view, NavigableMap::firstKey);
+        }
+
+        public K lastKey() {
+            return read(m.lock, view, NavigableMap::lastKey);
+        }
+
+        public Map.Entry<K,V> firstEntry() {
+            return read(m.lock, view, NavigableMap::firstEntry);
+        }
+
+        public Map.Entry<K,V> lastEntry() {
+            return read(m.lock, view, NavigableMap::lastEntry);
+        }
+
+        public Map.Entry<K,V> pollFirstEntry() {
+            long stamp = m.lock.writeLock();
+            try {
+                return view.pollFirstEntry();
+            } finally {
+                m.lock.unlockWrite(stamp);
+            }
+        }
+
+        public Map.Entry<K,V> pollLastEntry() {
+            long stamp = m.lock.writeLock();
+            try {
+                return view.pollLastEntry();
+            } finally {
+                m.lock.unlockWrite(stamp);
+            }
+        }
+
+        /* ---------------- Submap Views -------------- */
+
+        public NavigableSet<K> keySet() {
+            KeySet<K> ks = keySetView;
+            return (ks != null) ? ks : (keySetView = new KeySet<K>(this));
+        }
+
+        public NavigableSet<K> navigableKeySet() {
+            KeySet<K> ks = keySetView;
+            return (ks != null) ? ks : (keySetView = new KeySet<K>(this));
+        }
+
+        public Collection<V> values() {
+            Collection<V> vs = valuesView;
+            return (vs != null) ? vs : (valuesView = new Values<V>(this));
+        }
+
+        public Set<Map.Entry<K,V>> entrySet() {
+            Set<Map.Entry<K,V>> es = entrySetView;
+            return (es != null) ? es : (entrySetView = new EntrySet<K,V>(this));
+        }
+
+        public NavigableSet<K> descendingKeySet() {
+            return descendingMap().navigableKeySet();
+        }
+
+        Iterator<K> keyIterator() {
+            return new KeyIterator<K,V>(m.lock, view);
+        }
+
+        Iterator<V> valueIterator() {
+            return new ValueIterator<K,V>(m.lock, view);
+        }
+
+        Iterator<Map.Entry<K,V>> entryIterator() {
+            return new EntryIterator<K,V>(m.lock, view);
+        }
+    }
+
+    /* ---------------- Serialization -------------- */
+
+    /**
+     * Saves this map to a stream (that is, serializes it).
+     *
+     * @param s the stream
+     * @throws java.io.IOException if an I/O error occurs
+     * @serialData The backing {@code BTreeMap}.
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+        long stamp = lock.readLock();
+        try {
+            s.defaultWriteObject();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Reconstitutes this map from a stream (that is, deserializes it).
+     * @param s the stream
+     * @throws ClassNotFoundException if the class of a serialized object
+     *         could not be found
+     * @throws java.io.IOException if an I/O error occurs
+     */
+    private void readObject(final java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        if (tree == null)
+            throw new java.io.InvalidObjectException("null tree");
+        lock = new StampedLock();
+    }
+}
@@ -0,0 +1,1405 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * A {@link ConcurrentMap} holding a bounded number (or total weight) of
+ * mappings, evicting those least likely to be used again when the bound
+ * is exceeded, and optionally expiring mappings a fixed time after they
+ * were written or last read.  It is intended as a scalable replacement
+ * for a {@link java.util.LinkedHashMap} with a
+ * {@link java.util.LinkedHashMap#removeEldestEntry removeEldestEntry}
+ * policy wrapped in {@link java.util.Collections#synchronizedMap}, whose
+ * single lock serializes every reader.
+ *
+ * <p>Mappings are stored in a {@link ConcurrentHashMap}, so retrievals
+ * never block.  The eviction policy is maintained under a separate lock
+ * that readers never wait for: each read is recorded in one of a set of
+ * small lossy buffers, striped across threads in the manner of
+ * {@link java.util.concurrent.atomic.LongAdder}, and the buffers are
+ * replayed against the policy by whichever thread next acquires the lock
+ * without waiting.  Writes update the policy directly.
+ *
+ * <p>The policy is <em>W-TinyLFU</em>: new mappings enter a small LRU
+ * <em>window</em>, and a mapping leaving the window is admitted to the
+ * main, segmented-LRU region only if it has been used more frequently
+ * than the mapping it would displace.  Frequencies are estimated by a
+ * compact count-min sketch of four-bit counters, periodically halved so
+ * that past popularity decays.  This retains frequently used mappings
+ * through bursts of one-time accesses that would flush a plain LRU cache.
+ *
+ * <p>The bound is either a maximum number of mappings, or a maximum total
+ * weight, computed for each mapping by a weigher supplied at
+ * construction.  Expiry is configured with {@link #setExpireAfterWrite}
+ * and {@link #setExpireAfterAccess}.  Expired mappings are never returned,
+ * and are removed periodically by a task run on a shared
+ * {@link ScheduledThreadPoolExecutor}.
+ *
+ * <p>{@link #computeIfAbsent} computes the value for a key at most once
+ * however many threads miss on it concurrently: the others wait for and
+ * return the value computed.  Hit, miss, load, eviction and expiration
+ * counts are kept in {@link LongAdder}s and exposed through a
+ * {@link ConcurrentCacheMXBean}.
+ *
+ * <p>Like {@link ConcurrentHashMap}, this class does not allow {@code null}
+ * to be used as a key or value.  The size reported by {@link #size} may
+ * include expired mappings not yet removed.
+ *
+ * @param <K> the type of keys maintained by this cache
+ * @param <V> the type of mapped values
+ * @see ConcurrentHashMap
+ * @see ConcurrentCacheMXBean
+ * @since 1.8
+ */
+public class ConcurrentCache<K,V> extends AbstractMap<K,V>
+    implements ConcurrentMap<K,V> {
+
+    /*
+     * Overview:
+     *
+     * Each mapping is held in a Node stored as the value of the backing
+     * ConcurrentHashMap.  A node is created by a write of an absent key,
+     * updated in place by later writes, and "retired" when removed.  All
+     * creations, updates and retirements happen inside compute methods of
+     * the backing map, so a node is present in the map exactly when it is
+     * not retired.
+     *
+     * The policy fields of a node (queue links and accounted weight) are
+     * guarded by evictionLock.  As writers acquire the lock in an order
+     * unrelated to the order of their map operations, the policy does not
+     * replay events but reconciles: on each write, it brings the node's
+     * policy state in line with its current map state (linking a live
+     * unlinked node, unlinking a retired one, or adjusting weight).
+     *
+     * The backing map is never updated while holding evictionLock, so
+     * that writers of other keys do not wait for the policy, nor the
+     * policy for bins locked by writers.  Eviction and expiry instead
+     * unlink their victims from the policy under the lock, marking them
+     * with queue VICTIM, which reconciliation leaves alone, and retire
+     * them after releasing it.  An expiry victim refreshed by a write in
+     * the meantime is not retired, and is relinked.  Reads that find an
+     * expired node retire it, and reconcile it only if the lock is free;
+     * otherwise they record it in a read buffer, whose replay unlinks
+     * retired nodes (and the next sweep does if the record is dropped).
+     */
+
+    /** Number of CPUS, to place bounds on some sizings */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /** The maximum number of read buffers */
+    static final int MAX_READ_BUFFERS =
+        Integer.highestOneBit(Math.max(1, NCPU) * 2 - 1);
+
+    /** Percentage of the maximum weight given to the admission window */
+    static final int WINDOW_PERCENT = 1;
+
+    /** Percentage of the main region given to the protected segment */
+    static final int PROTECTED_PERCENT = 80;
+
+    /** Queue identifiers; VICTIM marks nodes unlinked to be retired */
+    static final int NONE = 0, WINDOW = 1, PROBATION = 2, PROTECTED = 3,
+        VICTIM = 4;
+
+    /** Smallest period between expiry sweeps, in nanoseconds */
+    static final long MIN_SWEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(10L);
+
+    /** Largest period between expiry sweeps, in nanoseconds */
+    static final long MAX_SWEEP_NANOS = TimeUnit.SECONDS.toNanos(1L);
+
+    /* ---------------- Nodes -------------- */
+
+    static final class Node<K,V> {
+        final K key;
+        volatile V value;
+        volatile long weight;
+        volatile long writeTime;
+        volatile long accessTime;
+        volatile boolean retired;
+
+        // Policy fields, guarded by evictionLock
+        Node<K,V> prev, next;
+        int queue;
+        long policyWeight;
+
+        Node(K key, V value, long weight, long now) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTime = now;
+            this.accessTime = now;
+        }
+    }
+
+    /**
+     * A doubly-linked access-ordered queue of nodes, head eldest.
+     */
+    static final class AccessQueue<K,V> {
+        Node<K,V> head, tail;
+
+        void addLast(Node<K,V> n) {
+            Node<K,V> t = tail;
+            n.prev = t;
+            n.next = null;
+            if (t == null)
+                head = n;
+            else
+                t.next = n;
+            tail = n;
+        }
+
+        void unlink(Node<K,V> n) {
+            Node<K,V> p = n.prev, s = n.next;
+            if (p == null)
+                head = s;
+            else
+                p.next = s;
+            if (s == null)
+                tail = p;
+            else
+                s.prev = p;
+            n.prev = n.next = null;
+        }
+
+        void moveToLast(Node<K,V> n) {
+            if (tail != n) {
+                unlink(n);
+                addLast(n);
+            }
+        }
+    }
+
+    /* ---------------- Read buffers -------------- */
+
+    /**
+     * A small bounded buffer of nodes read but not yet replayed against
+     * the policy.  Producers claim slots by CAS on writeCounter and drop
+     * the record if the buffer is full; the single consumer holds
+     * evictionLock.  Losing records only makes the policy slightly less
+     * precise.
+     */
+    static final class ReadBuffer<K,V> {
+        static final int SIZE = 16, MASK = SIZE - 1;
+        static final int OK = 0, FULL = 1, CONTENDED = 2, DRAIN = 3;
+
+        final AtomicLong writeCounter = new AtomicLong();
+        final AtomicReferenceArray<Node<K,V>> buffer =
+            new AtomicReferenceArray<Node<K,V>>(SIZE);
+        volatile long readCounter;
+
+        int offer(Node<K,V> n) {
+            long r = readCounter, w = writeCounter.get();
+            if (w - r >= SIZE)
+                return FULL;
+            if (!writeCounter.compareAndSet(w, w + 1))
+                return CONTENDED;
+            buffer.lazySet((int)(w & MASK), n);
+            return (w + 1 - r >= SIZE / 2) ? DRAIN : OK;
+        }
+
+        void drainTo(ConcurrentCache<K,V> cache) {
+            long r = readCounter, w = writeCounter.get();
+            for (; r < w; ++r) {
+                int i = (int)(r & MASK);
+                Node<K,V> n = buffer.get(i);
+                if (n == null)
+                    break; // slot claimed but not yet published
+                buffer.lazySet(i, null);
+                cache.onAccess(n);
+            }
+            readCounter = r;
+        }
+    }
+
+    /* ---------------- Frequency sketch -------------- */
+
+    /**
+     * A count-min sketch of four-bit counters estimating the popularity
+     * of keys, with a reset operation halving all counters once the
+     * number of increments reaches ten times the table length, so that
+     * estimates reflect recent history.  The table holds a long per
+     * mapping, and is sized from the number of mappings the policy
+     * holds, rather than from the maximum, which may be a weight:
+     * it starts small and grows (discarding counts) as the cache fills.
+     * Guarded by evictionLock.
+     */
+    static final class FrequencySketch {
+        static final long[] SEED = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+            0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+        static final long RESET_MASK = 0x7777777777777777L;
+        static final long ONE_MASK = 0x1111111111111111L;
+
+        long[] table;
+        int tableMask;
+        int sampleSize;
+        int size;
+
+        /** The largest table length */
+        static final int MAXIMUM_CAPACITY = 1 << 26;
+
+        FrequencySketch() {
+            setCapacity(16);
+        }
+
+        /**
+         * Grows the table, if necessary, to hold a counter per mapping
+         * for the given number of mappings.
+         */
+        void ensureCapacity(long mappings) {
+            if (mappings > table.length && table.length < MAXIMUM_CAPACITY) {
+                int n = (int)Math.min(mappings, MAXIMUM_CAPACITY);
+                setCapacity(Integer.highestOneBit(n - 1) << 1);
+            }
+        }
+
+        private void setCapacity(int cap) {
+            table = new long[cap];
+            tableMask = cap - 1;
+            sampleSize = 10 * cap;
+            size = 0;
+        }
+
+        static int spread(int h) {
+            h = ((h >>> 16) ^ h) * 0x45d9f3b;
+            h = ((h >>> 16) ^ h) * 0x45d9f3b;
+            return (h >>> 16) ^ h;
+        }
+
+        int indexOf(int item, int i) {
+            long hash = (item + SEED[i]) * SEED[i];
+            hash += (hash >>> 32);
+            return ((int)hash) & tableMask;
+        }
+
+        int frequency(Object e) {
+            int hash = spread(e.hashCode());
+            int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int count = (int)((table[index] >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void increment(Object e) {
+            int hash = spread(e.hashCode());
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int offset = (start + i) << 2;
+                long mask = 0xfL << offset;
+                if ((table[index] & mask) != mask) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++size == sampleSize)
+                reset();
+        }
+
+        void reset() {
+            int count = 0;
+            for (int i = 0; i < table.length; i++) {
+                count += Long.bitCount(table[i] & ONE_MASK);
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            size = (size >>> 1) - (count >>> 2);
+        }
+    }
+
+    /* ---------------- Fields -------------- */
+
+    final ConcurrentHashMap<K,Node<K,V>> data;
+    final ToLongBiFunction<? super K, ? super V> weigher;
+    final ReentrantLock evictionLock = new ReentrantLock();
+    final ReadBuffer<K,V>[] readBuffers;
+
+    // Policy state, guarded by evictionLock
+    final FrequencySketch sketch = new FrequencySketch();
+    final AccessQueue<K,V> window = new AccessQueue<K,V>();
+    final AccessQueue<K,V> probation = new AccessQueue<K,V>();
+    final AccessQueue<K,V> protectedQueue = new AccessQueue<K,V>();
+    long maximum;
+    long windowMaximum;
+    long protectedMaximum;
+    long weightedSize;
+    long windowWeightedSize;
+    long protectedWeightedSize;
+    long nodeCount;
+
+    // Expiry configuration; sweepTask guarded by evictionLock
+    volatile long expireAfterWriteNanos;
+    volatile long expireAfterAccessNanos;
+    ScheduledFuture<?> sweepTask;
+
+    // Statistics
+    final LongAdder hitCount = new LongAdder();
+    final LongAdder missCount = new LongAdder();
+    final LongAdder loadCount = new LongAdder();
+    final LongAdder evictionCount = new LongAdder();
+    final LongAdder expirationCount = new LongAdder();
+    private transient Stats stats;
+
+    /* ---------------- Construction -------------- */
+
+    /**
+     * Creates a cache holding at most the given number of mappings.
+     *
+     * @param maximumSize the maximum number of mappings
+     * @throws IllegalArgumentException if maximumSize is negative
+     */
+    public ConcurrentCache(long maximumSize) {
+        this(maximumSize, null);
+    }
+
+    /**
+     * Creates a cache whose mappings have at most the given total weight,
+     * as computed by the given weigher.  The weight of a mapping is
+     * computed when it is written and must not change while it is
+     * cached.  A mapping whose weight exceeds the maximum is evicted
+     * immediately.
+     *
+     * @param maximumWeight the maximum total weight of the mappings
+     * @param weigher the function computing the nonnegative weight of a
+     *        mapping, or {@code null} to give each mapping weight one
+     * @throws IllegalArgumentException if maximumWeight is negative
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentCache(long maximumWeight,
+                           ToLongBiFunction<? super K, ? super V> weigher) {
+        if (maximumWeight < 0L)
+            throw new IllegalArgumentException();
+        this.weigher = weigher;
+        long cap = (weigher == null) ? maximumWeight : 16L;
+        this.data = new ConcurrentHashMap<K,Node<K,V>>(
+            (int)Math.min(cap, 1 << 16));
+        this.readBuffers = (ReadBuffer<K,V>[])new ReadBuffer<?,?>[MAX_READ_BUFFERS];
+        for (int i = 0; i < readBuffers.length; ++i)
+            readBuffers[i] = new ReadBuffer<K,V>();
+        setBounds(maximumWeight);
+    }
+
+    /** Requires evictionLock or construction. */
+    private void setBounds(long max) {
+        maximum = max;
+        windowMaximum = (max == 0L) ? 0L :
+            Math.max(1L, percentOf(max, WINDOW_PERCENT));
+        protectedMaximum = percentOf(max - windowMaximum, PROTECTED_PERCENT);
+    }
+
+    /** Returns p percent of v, without overflow or loss for small v. */
+    static long percentOf(long v, int p) {
+        return v / 100L * p + v % 100L * p / 100L;
+    }
+
+    /* ---------------- Configuration -------------- */
+
+    /**
+     * Returns the maximum total weight (or, without a weigher, the maximum
+     * number) of mappings.
+     *
+     * @return the maximum weight
+     */
+    public long getMaximumWeight() {
+        evictionLock.lock();
+        try {
+            return maximum;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the maximum total weight (or, without a weigher, the maximum
+     * number) of mappings, evicting mappings if necessary.
+     *
+     * @param maximumWeight the new maximum weight
+     * @throws IllegalArgumentException if maximumWeight is negative
+     */
+    public void setMaximumWeight(long maximumWeight) {
+        if (maximumWeight < 0L)
+            throw new IllegalArgumentException();
+        ArrayList<Node<K,V>> victims;
+        evictionLock.lock();
+        try {
+            setBounds(maximumWeight);
+            drainReadBuffers();
+            victims = evict();
+        } finally {
+            evictionLock.unlock();
+        }
+        retireVictims(victims, false);
+    }
+
+    /**
+     * Sets the time after which a mapping expires once written.  A
+     * duration of zero disables write expiry.
+     *
+     * @param duration the time after a write at which a mapping expires
+     * @param unit the time unit of the duration argument
+     * @throws IllegalArgumentException if duration is negative
+     */
+    public void setExpireAfterWrite(long duration, TimeUnit unit) {
+        if (duration < 0L)
+            throw new IllegalArgumentException();
+        expireAfterWriteNanos = unit.toNanos(duration);
+        scheduleSweeps();
+    }
+
+    /**
+     * Sets the time after which a mapping expires once last read or
+     * written.  A duration of zero disables access expiry.
+     *
+     * @param duration the time after an access at which a mapping expires
+     * @param unit the time unit of the duration argument
+     * @throws IllegalArgumentException if duration is negative
+     */
+    public void setExpireAfterAccess(long duration, TimeUnit unit) {
+        if (duration < 0L)
+            throw new IllegalArgumentException();
+        expireAfterAccessNanos = unit.toNanos(duration);
+        scheduleSweeps();
+    }
+
+    /**
+     * Holder of the executor running expiry sweeps of all caches, created
+     * on first use.
+     */
+    static final class Sweeper {
+        static final ScheduledThreadPoolExecutor executor;
+        static {
+            executor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread t = new Thread(r, "ConcurrentCache-Sweeper");
+                t.setDaemon(true);
+                return t;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    /**
+     * Periodic sweep referring weakly to its cache, so that a scheduled
+     * sweep does not keep an otherwise unreachable cache alive.
+     */
+    static final class SweepTask implements Runnable {
+        final WeakReference<ConcurrentCache<?,?>> ref;
+        volatile ScheduledFuture<?> future;
+        SweepTask(ConcurrentCache<?,?> cache) {
+            ref = new WeakReference<ConcurrentCache<?,?>>(cache);
+        }
+        public void run() {
+            ConcurrentCache<?,?> cache = ref.get();
+            if (cache != null)
+                cache.expireEntries();
+            else if (future != null)
+                future.cancel(false);
+        }
+    }
+
+    /**
+     * (Re)schedules the expiry sweep at a period proportional to the
+     * shortest expiry, or cancels it if expiry is disabled.
+     */
+    private void scheduleSweeps() {
+        long w = expireAfterWriteNanos, a = expireAfterAccessNanos;
+        long shortest = (w == 0L) ? a : (a == 0L) ? w : Math.min(w, a);
+        evictionLock.lock();
+        try {
+            if (sweepTask != null) {
+                sweepTask.cancel(false);
+                sweepTask = null;
+            }
+            if (shortest > 0L) {
+                long period = Math.max(MIN_SWEEP_NANOS,
+                                       Math.min(MAX_SWEEP_NANOS, shortest / 4));
+                SweepTask task = new SweepTask(this);
+                sweepTask = task.future = Sweeper.executor.scheduleWithFixedDelay(
+                    task, period, period, TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /* ---------------- Expiry -------------- */
+
+    final boolean expires() {
+        return (expireAfterWriteNanos | expireAfterAccessNanos) != 0L;
+    }
+
+    final long now() {
+        return expires() ? System.nanoTime() : 0L;
+    }
+
+    final boolean isExpired(Node<K,V> n, long now) {
+        long w = expireAfterWriteNanos, a = expireAfterAccessNanos;
+        return ((w != 0L && now - n.writeTime >= w) ||
+                (a != 0L && now - n.accessTime >= a));
+    }
+
+    /**
+     * Retires the given node, found expired by a read, if it is still
+     * mapped and has expired, and reconciles the policy if the lock is
+     * free; otherwise leaves that to the replay of a read buffer.
+     */
+    final void removeExpired(Node<K,V> node) {
+        if (retire(node, true)) {
+            expirationCount.increment();
+            if (evictionLock.tryLock()) {
+                try {
+                    drainReadBuffers();
+                    reconcile(node);
+                } finally {
+                    evictionLock.unlock();
+                }
+            }
+            else
+                afterRead(node);
+        }
+    }
+
+    /**
+     * Removes all expired mappings.  Run periodically by the sweeper.
+     */
+    final void expireEntries() {
+        if (!expires())
+            return;
+        ArrayList<Node<K,V>> victims = new ArrayList<Node<K,V>>();
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            long now = System.nanoTime();
+            expireQueue(window, now, victims);
+            expireQueue(probation, now, victims);
+            expireQueue(protectedQueue, now, victims);
+        } finally {
+            evictionLock.unlock();
+        }
+        retireVictims(victims, true);
+    }
+
+    /**
+     * Unlinks the expired nodes of the given queue, adding the live ones
+     * to victims.  Requires evictionLock.
+     */
+    private void expireQueue(AccessQueue<K,V> q, long now,
+                             ArrayList<Node<K,V>> victims) {
+        boolean accessOrdered = expireAfterWriteNanos == 0L;
+        for (Node<K,V> n = q.head, next; n != null; n = next) {
+            next = n.next;
+            if (n.retired)
+                reconcile(n);
+            else if (isExpired(n, now))
+                addVictim(n, victims);
+            // Queues are (approximately) in access order, so if only
+            // access expiry applies, the rest have not expired either
+            else if (accessOrdered)
+                break;
+        }
+    }
+
+    /**
+     * Unlinks the given live node from the policy, to be retired by
+     * retireVictims.  Requires evictionLock.
+     */
+    private void addVictim(Node<K,V> n, ArrayList<Node<K,V>> victims) {
+        unlink(n);
+        n.queue = VICTIM;
+        victims.add(n);
+    }
+
+    /**
+     * Retires the given victims (if expired, only those that still are),
+     * counting evictions or expirations.  Must be called without holding
+     * evictionLock.  Victims that remain mapped are relinked.
+     */
+    private void retireVictims(ArrayList<Node<K,V>> victims, boolean expired) {
+        if (victims == null || victims.isEmpty())
+            return;
+        ArrayList<Node<K,V>> kept = null;
+        for (Node<K,V> n : victims) {
+            if (retire(n, expired))
+                (expired ? expirationCount : evictionCount).increment();
+            else if (!n.retired) {
+                if (kept == null)
+                    kept = new ArrayList<Node<K,V>>();
+                kept.add(n);
+            }
+        }
+        if (kept != null) {
+            evictionLock.lock();
+            try {
+                for (Node<K,V> n : kept) {
+                    if (n.queue == VICTIM) {
+                        n.queue = NONE;
+                        reconcile(n);
+                    }
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Retires the given node if it is still mapped (and, if
+     * onlyIfExpired, has expired).  Returns true if retired by this call.
+     */
+    private boolean retire(Node<K,V> node, boolean onlyIfExpired) {
+        boolean[] removed = new boolean[1];
+        data.computeIfPresent(node.key, (k, n) -> {
+            if (n != node ||
+                (onlyIfExpired && !isExpired(n, System.nanoTime())))
+                return n;
+            n.retired = true;
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    /* ---------------- Policy maintenance -------------- */
+
+    /**
+     * Records a read of the given node in a read buffer, draining the
+     * buffers if they are filling up and the lock is free.
+     */
+    final void afterRead(Node<K,V> n) {
+        int h;
+        if ((h = ThreadLocalRandom.getProbe()) == 0) {
+            ThreadLocalRandom.localInit();      // force initialization
+            h = ThreadLocalRandom.getProbe();
+        }
+        ReadBuffer<K,V>[] bs = readBuffers;
+        int r = bs[h & (bs.length - 1)].offer(n);
+        if (r == ReadBuffer.CONTENDED)
+            ThreadLocalRandom.advanceProbe(h);
+        else if (r != ReadBuffer.OK && evictionLock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Reconciles the policy with the given nodes after a write, and evicts
+     * if over the bound.
+     */
+    final void afterWrite(Node<K,V> n, Node<K,V> replaced) {
+        ArrayList<Node<K,V>> victims;
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            if (replaced != null)
+                reconcile(replaced);
+            if (n != null)
+                reconcile(n);
+            victims = evict();
+        } finally {
+            evictionLock.unlock();
+        }
+        retireVictims(victims, false);
+    }
+
+    /** Requires evictionLock. */
+    final void drainReadBuffers() {
+        for (ReadBuffer<K,V> b : readBuffers)
+            b.drainTo(this);
+    }
+
+    /**
+     * Applies a recorded read, or unlinks a node retired since.  Requires
+     * evictionLock.
+     */
+    final void onAccess(Node<K,V> n) {
+        if (n.retired) {
+            reconcile(n);
+            return;
+        }
+        if (n.queue == NONE || n.queue == VICTIM)
+            return;
+        sketch.increment(n.key);
+        switch (n.queue) {
+        case WINDOW:
+            window.moveToLast(n);
+            break;
+        case PROBATION:
+            probation.unlink(n);
+            protectedQueue.addLast(n);
+            n.queue = PROTECTED;
+            protectedWeightedSize += n.policyWeight;
+            demoteProtected();
+            break;
+        case PROTECTED:
+            protectedQueue.moveToLast(n);
+            break;
+        }
+    }
+
+    /** Moves the eldest protected nodes to probation while over bound. */
+    private void demoteProtected() {
+        Node<K,V> p;
+        while (protectedWeightedSize > protectedMaximum &&
+               (p = protectedQueue.head) != null) {
+            protectedQueue.unlink(p);
+            probation.addLast(p);
+            p.queue = PROBATION;
+            protectedWeightedSize -= p.policyWeight;
+        }
+    }
+
+    /**
+     * Brings the policy state of the given node in line with its map
+     * state.  Requires evictionLock.
+     */
+    final void reconcile(Node<K,V> n) {
+        if (n.queue == VICTIM)
+            return;
+        if (n.retired) {
+            if (n.queue != NONE)
+                unlink(n);
+        }
+        else if (n.queue == NONE) {
+            long w = n.weight;
+            n.policyWeight = w;
+            n.queue = WINDOW;
+            window.addLast(n);
+            windowWeightedSize += w;
+            weightedSize += w;
+            sketch.ensureCapacity(++nodeCount);
+            sketch.increment(n.key);
+        }
+        else {
+            long d = n.weight - n.policyWeight;
+            if (d != 0L) {
+                n.policyWeight += d;
+                weightedSize += d;
+                if (n.queue == WINDOW)
+                    windowWeightedSize += d;
+                else if (n.queue == PROTECTED)
+                    protectedWeightedSize += d;
+            }
+        }
+    }
+
+    /** Removes a node from its queue.  Requires evictionLock. */
+    private void unlink(Node<K,V> n) {
+        long w = n.policyWeight;
+        switch (n.queue) {
+        case WINDOW:
+            window.unlink(n);
+            windowWeightedSize -= w;
+            break;
+        case PROBATION:
+            probation.unlink(n);
+            break;
+        case PROTECTED:
+            protectedQueue.unlink(n);
+            protectedWeightedSize -= w;
+            break;
+        }
+        weightedSize -= w;
+        --nodeCount;
+        n.queue = NONE;
+    }
+
+    /**
+     * Evicts until within bounds.  Nodes overflowing the window become
+     * candidates at the tail of probation; while over the bound, each
+     * candidate is compared with the eldest probation node (the victim),
+     * and the one with the lower estimated frequency is evicted.
+     * Requires evictionLock.
+     *
+     * @return the nodes to retire by retireVictims, or null if none
+     */
+    final ArrayList<Node<K,V>> evict() {
+        ArrayList<Node<K,V>> victims = null;
+        Node<K,V> candidate = null, n;
+        while (windowWeightedSize > windowMaximum &&
+               (n = window.head) != null) {
+            window.unlink(n);
+            windowWeightedSize -= n.policyWeight;
+            probation.addLast(n);
+            n.queue = PROBATION;
+            if (candidate == null)
+                candidate = n;
+        }
+        while (weightedSize > maximum) {
+            if (victims == null)
+                victims = new ArrayList<Node<K,V>>();
+            Node<K,V> victim = probation.head;
+            if (victim == null && (victim = protectedQueue.head) == null &&
+                (victim = window.head) == null)
+                break;
+            if (candidate == null || victim == candidate ||
+                victim.queue != PROBATION) {
+                if (victim == candidate)
+                    candidate = candidate.next;
+                evictNode(victim, victims);
+            }
+            else if (sketch.frequency(candidate.key) >
+                     sketch.frequency(victim.key))
+                evictNode(victim, victims);
+            else {
+                Node<K,V> next = candidate.next;
+                evictNode(candidate, victims);
+                candidate = next;
+            }
+        }
+        return victims;
+    }
+
+    /** Requires evictionLock. */
+    private void evictNode(Node<K,V> n, ArrayList<Node<K,V>> victims) {
+        if (n.retired)
+            unlink(n);
+        else
+            addVictim(n, victims);
+    }
+
+    /**
+     * Performs any pending maintenance: replays buffered reads, removes
+     * expired mappings and evicts if over the bound.
+     */
+    public void cleanUp() {
+        expireEntries();
+        ArrayList<Node<K,V>> victims;
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            victims = evict();
+        } finally {
+            evictionLock.unlock();
+        }
+        retireVictims(victims, false);
+    }
+
+    /* ---------------- Map operations -------------- */
+
+    final long weigh(K key, V value) {
+        if (weigher == null)
+            return 1L;
+        long w = weigher.applyAsLong(key, value);
+        if (w < 0L)
+            throw new IllegalArgumentException("Negative weight: " + w);
+        return w;
+    }
+
+    /**
+     * Returns the live node for the given key, recording a hit or miss.
+     */
+    private Node<K,V> liveNode(Object key, boolean recordStats) {
+        if (key == null)
+            throw new NullPointerException();
+        Node<K,V> n = data.get(key);
+        if (n != null && expires()) {
+            long now = System.nanoTime();
+            if (isExpired(n, now)) {
+                removeExpired(n);
+                n = null;
+            }
+            else if (recordStats && expireAfterAccessNanos != 0L)
+                n.accessTime = now;
+        }
+        if (recordStats) {
+            if (n == null)
+                missCount.increment();
+            else {
+                hitCount.increment();
+                afterRead(n);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code null} if this cache contains no live mapping for the key.
+     * Records a hit or miss, and a use of the mapping for the purposes
+     * of eviction and access expiry.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value, or {@code null} if absent
+     * @throws NullPointerException if the specified key is null
+     */
+    public V get(Object key) {
+        Node<K,V> n = liveNode(key, true);
+        return (n == null) ? null : n.value;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped without
+     * recording a hit, miss or use of the mapping.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value, or {@code null} if absent
+     * @throws NullPointerException if the specified key is null
+     */
+    public V peek(Object key) {
+        Node<K,V> n = liveNode(key, false);
+        return (n == null) ? null : n.value;
+    }
+
+    /**
+     * Returns {@code true} if this cache contains a live mapping for the
+     * specified key.  Does not record a hit, miss or use of the mapping.
+     *
+     * @param key possible key
+     * @return {@code true} if the key is present in this cache
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean containsKey(Object key) {
+        return liveNode(key, false) != null;
+    }
+
+    /**
+     * Returns the number of mappings, possibly including expired mappings
+     * not yet removed.
+     *
+     * @return the number of mappings
+     */
+    public int size() {
+        return data.size();
+    }
+
+    /**
+     * Returns {@code true} if this cache contains no mappings.
+     *
+     * @return {@code true} if this cache contains no mappings
+     */
+    public boolean isEmpty() {
+        return data.isEmpty();
+    }
+
+    /**
+     * Result holder for writes performed inside compute functions.
+     */
+    static final class WriteResult<K,V> {
+        V oldValue;
+        Node<K,V> node;
+        Node<K,V> replaced;
+        boolean structural;
+    }
+
+    /**
+     * Shared implementation of put, putIfAbsent and replace.
+     *
+     * @param mode 0 to always store, 1 to store only if absent, 2 to
+     *        store only if present
+     */
+    private V doPut(K key, V value, int mode) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        long w = weigh(key, value);
+        WriteResult<K,V> res = new WriteResult<K,V>();
+        data.compute(key, (k, prior) -> {
+            long now = now();
+            if (prior != null) {
+                if (!isExpired(prior, now)) {
+                    res.oldValue = prior.value;
+                    res.node = prior;
+                    if (mode != 1) {
+                        res.structural = prior.weight != w;
+                        prior.value = value;
+                        prior.weight = w;
+                        prior.writeTime = prior.accessTime = now;
+                    }
+                    return prior;
+                }
+                prior.retired = true;
+                res.replaced = prior;
+                res.structural = true;
+            }
+            if (mode == 2)
+                return null;
+            res.structural = true;
+            return res.node = new Node<K,V>(k, value, w, now);
+        });
+        if (res.replaced != null)
+            expirationCount.increment();
+        if (res.structural)
+            afterWrite(res.node, res.replaced);
+        else if (res.node != null)
+            afterRead(res.node);
+        return res.oldValue;
+    }
+
+    /**
+     * Maps the specified key to the specified value in this cache.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no live mapping for {@code key}
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V put(K key, V value) {
+        return doPut(key, value, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no live mapping for the key
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V putIfAbsent(K key, V value) {
+        return doPut(key, value, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no live mapping for the key
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V replace(K key, V value) {
+        return doPut(key, value, 2);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if any of the arguments are null
+     */
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (key == null || oldValue == null || newValue == null)
+            throw new NullPointerException();
+        long w = weigh(key, newValue);
+        WriteResult<K,V> res = new WriteResult<K,V>();
+        data.computeIfPresent(key, (k, prior) -> {
+            long now = now();
+            if (isExpired(prior, now)) {
+                prior.retired = true;
+                res.replaced = prior;
+                return null;
+            }
+            if (!oldValue.equals(prior.value))
+                return prior;
+            res.node = prior;
+            res.structural = prior.weight != w;
+            prior.value = newValue;
+            prior.weight = w;
+            prior.writeTime = prior.accessTime = now;
+            return prior;
+        });
+        if (res.replaced != null) {
+            expirationCount.increment();
+            afterWrite(null, res.replaced);
+        }
+        else if (res.structural)
+            afterWrite(res.node, null);
+        else if (res.node != null)
+            afterRead(res.node);
+        return res.node != null;
+    }
+
+    /**
+     * Removes the mapping for a key from this cache if it is present.
+     *
+     * @param key key whose mapping is to be removed from the cache
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no live mapping for {@code key}
+     * @throws NullPointerException if the specified key is null
+     */
+    public V remove(Object key) {
+        return doRemove(key, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean remove(Object key, Object value) {
+        if (key == null)
+            throw new NullPointerException();
+        return value != null && doRemove(key, value) != null;
+    }
+
+    private V doRemove(Object key, Object expect) {
+        if (key == null)
+            throw new NullPointerException();
+        WriteResult<K,V> res = new WriteResult<K,V>();
+        data.computeIfPresent(cast(key), (k, prior) -> {
+            boolean expired = isExpired(prior, now());
+            if (!expired && expect != null && !expect.equals(prior.value))
+                return prior;
+            prior.retired = true;
+            res.replaced = prior;
+            if (!expired)
+                res.oldValue = prior.value;
+            else
+                expirationCount.increment();
+            return null;
+        });
+        if (res.replaced != null)
+            afterWrite(null, res.replaced);
+        return res.oldValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> K cast(Object key) {
+        return (K)key;
+    }
+
+    /**
+     * If the specified key is not already associated with a live value,
+     * attempts to compute its value using the given mapping function and
+     * enters it into this cache unless {@code null}.  The function is
+     * applied at most once per miss: other threads requesting the same key
+     * meanwhile wait and then return the computed value.  Some attempted
+     * update operations on this cache by other threads may be blocked
+     * while computation is in progress, so the computation should not
+     * attempt to update any other mappings of this cache.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param mappingFunction the function to compute a value
+     * @return the current (existing or computed) value associated with
+     *         the specified key, or null if the computed value is null
+     * @throws NullPointerException if the specified key or
+     *         mappingFunction is null
+     */
+    public V computeIfAbsent(K key,
+                             Function<? super K, ? extends V> mappingFunction) {
+        if (mappingFunction == null)
+            throw new NullPointerException();
+        Node<K,V> n = liveNode(key, true);
+        if (n != null)
+            return n.value;
+        WriteResult<K,V> res = new WriteResult<K,V>();
+        Node<K,V> r = data.compute(key, (k, prior) -> {
+            long now = now();
+            if (prior != null) {
+                if (!isExpired(prior, now))
+                    return prior;
+                prior.retired = true;
+                res.replaced = prior;
+            }
+            V v = mappingFunction.apply(k);
+            loadCount.increment();
+            if (v == null)
+                return null;
+            return res.node = new Node<K,V>(k, v, weigh(k, v), now);
+        });
+        if (res.replaced != null)
+            expirationCount.increment();
+        if (res.node != null || res.replaced != null)
+            afterWrite(res.node, res.replaced);
+        else if (r != null)
+            afterRead(r);
+        return (r == null) ? null : r.value;
+    }
+
+    /**
+     * Removes all of the mappings from this cache.
+     */
+    public void clear() {
+        for (K k : data.keySet()) {
+            data.computeIfPresent(k, (key, prior) -> {
+                prior.retired = true;
+                return null;
+            });
+        }
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            unlinkRetired(window);
+            unlinkRetired(probation);
+            unlinkRetired(protectedQueue);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /** Unlinks the retired nodes of the given queue.  Requires evictionLock. */
+    private void unlinkRetired(AccessQueue<K,V> q) {
+        for (Node<K,V> n = q.head, next; n != null; n = next) {
+            next = n.next;
+            if (n.retired)
+                unlink(n);
+        }
+    }
+
+    /* ---------------- Views -------------- */
+
+    private transient Set<Map.Entry<K,V>> entrySet;
+
+    /**
+     * Returns a {@link Set} view of the live mappings contained in this
+     * cache.  The set is backed by the cache, and its iterator is weakly
+     * consistent.  Iteration does not count as use of the mappings.
+     *
+     * @return the set view
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        Set<Map.Entry<K,V>> es;
+        return (es = entrySet) != null ? es : (entrySet = new EntrySet());
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return new EntryIterator();
+        }
+        public int size() {
+            return ConcurrentCache.this.size();
+        }
+        public void clear() {
+            ConcurrentCache.this.clear();
+        }
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            Object k, v, r;
+            return ((k = e.getKey()) != null &&
+                    (v = e.getValue()) != null &&
+                    (r = peek(k)) != null && v.equals(r));
+        }
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            Object k, v;
+            return ((k = e.getKey()) != null &&
+                    (v = e.getValue()) != null &&
+                    ConcurrentCache.this.remove(k, v));
+        }
+    }
+
+    final class EntryIterator implements Iterator<Map.Entry<K,V>> {
+        final Iterator<Node<K,V>> it = data.values().iterator();
+        Node<K,V> next, lastReturned;
+        V nextValue;
+
+        public boolean hasNext() {
+            while (next == null && it.hasNext()) {
+                Node<K,V> n = it.next();
+                if (!n.retired && !(expires() && isExpired(n, System.nanoTime()))) {
+                    next = n;
+                    nextValue = n.value;
+                }
+            }
+            return next != null;
+        }
+
+        public Map.Entry<K,V> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Node<K,V> n = next;
+            next = null;
+            lastReturned = n;
+            return new WriteThroughEntry(n.key, nextValue);
+        }
+
+        public void remove() {
+            Node<K,V> n = lastReturned;
+            if (n == null)
+                throw new IllegalStateException();
+            lastReturned = null;
+            ConcurrentCache.this.remove(n.key);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    final class WriteThroughEntry extends AbstractMap.SimpleEntry<K,V> {
+        WriteThroughEntry(K k, V v) {
+            super(k, v);
+        }
+        public V setValue(V value) {
+            if (value == null) throw new NullPointerException();
+            V v = super.setValue(value);
+            put(getKey(), value);
+            return v;
+        }
+    }
+
+    /* ---------------- Statistics -------------- */
+
+    /**
+     * Returns the management interface of this cache.
+     *
+     * @return the {@link ConcurrentCacheMXBean} of this cache
+     */
+    public ConcurrentCacheMXBean getMXBean() {
+        Stats s;
+        return (s = stats) != null ? s : (stats = new Stats());
+    }
+
+    final class Stats implements ConcurrentCacheMXBean {
+        public long getHitCount()        { return hitCount.sum(); }
+        public long getMissCount()       { return missCount.sum(); }
+        public long getLoadCount()       { return loadCount.sum(); }
+        public long getEvictionCount()   { return evictionCount.sum(); }
+        public long getExpirationCount() { return expirationCount.sum(); }
+        public long getEstimatedSize()   { return data.mappingCount(); }
+        public long getMaximumWeight() {
+            return ConcurrentCache.this.getMaximumWeight();
+        }
+        public double getHitRate() {
+            long h = hitCount.sum(), n = h + missCount.sum();
+            return (n == 0L) ? 1.0 : (double)h / n;
+        }
+        public long getWeightedSize() {
+            evictionLock.lock();
+            try {
+                drainReadBuffers();
+                return weightedSize;
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+        public void resetStatistics() {
+            hitCount.reset();
+            missCount.reset();
+            loadCount.reset();
+            evictionCount.reset();
+            expirationCount.reset();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+/**
+ * The management interface of a {@link ConcurrentCache}.  An instance is
+ * obtained from {@link ConcurrentCache#getMXBean} and may be registered
+ * with a platform {@code MBeanServer} under a name of the application's
+ * choosing, for example:
+ *
+ * <pre> {@code
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(
+ *     cache.getMXBean(),
+ *     new ObjectName("com.example:type=ConcurrentCache,name=sessions"));}</pre>
+ *
+ * <p>All counts are cumulative since the cache was created or last had
+ * its statistics reset, and are maintained without locking, so a set of
+ * values read together is not necessarily an atomic snapshot.
+ *
+ * @see ConcurrentCache
+ * @since 1.8
+ */
+public interface ConcurrentCacheMXBean {
+
+    /**
+     * Returns the number of lookups that found a live mapping.
+     *
+     * @return the hit count
+     */
+    long getHitCount();
+
+    /**
+     * Returns the number of lookups that found no live mapping.
+     *
+     * @return the miss count
+     */
+    long getMissCount();
+
+    /**
+     * Returns the ratio of hits to lookups, or {@code 1.0} if there have
+     * been no lookups.
+     *
+     * @return the hit rate
+     */
+    double getHitRate();
+
+    /**
+     * Returns the number of values computed by
+     * {@link ConcurrentCache#computeIfAbsent}.
+     *
+     * @return the load count
+     */
+    long getLoadCount();
+
+    /**
+     * Returns the number of mappings removed because of the size or
+     * weight bound.
+     *
+     * @return the eviction count
+     */
+    long getEvictionCount();
+
+    /**
+     * Returns the number of mappings removed because they expired.
+     *
+     * @return the expiration count
+     */
+    long getExpirationCount();
+
+    /**
+     * Returns the approximate number of mappings in the cache.
+     *
+     * @return the estimated size
+     */
+    long getEstimatedSize();
+
+    /**
+     * Returns the total weight of the mappings retained by the eviction
+     * policy.
+     *
+     * @return the weighted size
+     */
+    long getWeightedSize();
+
+    /**
+     * Returns the maximum total weight of the cache.
+     *
+     * @return the maximum weight
+     */
+    long getMaximumWeight();
+
+    /**
+     * Resets the hit, miss, load, eviction and expiration counts to zero.
+     */
+    void resetStatistics();
+}
@@ -0,0 +1,982 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * A hash table supporting full concurrency of retrievals and high
+ * expected concurrency for updates, mapping primitive {@code long} keys to
+ * primitive {@code long} values.  This class provides the same style of
+ * functionality as a {@link ConcurrentHashMap} whose keys and values are
+ * {@code Long}s, without allocating a boxed key, a boxed value or a node
+ * object per mapping.  It is intended for very large counter and index
+ * tables, where those objects otherwise dominate heap occupancy and
+ * garbage collection time.
+ *
+ * <p>Because there are no per-mapping nodes on which to synchronize, the
+ * table is divided into a fixed number of <em>segments</em>, each an
+ * independent open-addressing table over flat {@code long} arrays guarded
+ * by a {@link StampedLock}.  Retrievals use optimistic reads and so do not
+ * block, and do not write to shared memory, unless they overlap an update
+ * of the same segment.  Updates lock only the segment they touch, and each
+ * segment resizes independently, so a resize never stops the whole table.
+ * Element counts are kept per segment, so that, as with the counter cells
+ * of {@link ConcurrentHashMap}, counting does not serialize updates.
+ *
+ * <p>Methods returning a {@code long} value for a key that may be absent
+ * ({@link #put}, {@link #putIfAbsent}, {@link #remove(long)}) return
+ * {@code 0} when there was no mapping; use {@link #containsKey} or
+ * {@link #getOrDefault} to distinguish an absent key from one mapped to
+ * {@code 0}.
+ *
+ * <p>Like {@link ConcurrentHashMap}, this class supports bulk operations
+ * ({@link #forEach(long, EntryConsumer)},
+ * {@link #reduceValues(long, long, LongBinaryOperator)}) that may be
+ * performed in parallel using the {@link ForkJoinPool#commonPool()} when
+ * the map holds at least {@code parallelismThreshold} mappings.  Bulk
+ * operations read each segment while holding its read lock, so their
+ * function arguments must not attempt to update this map.
+ *
+ * @see ConcurrentHashMap
+ * @see ConcurrentLongObjectMap
+ * @since 1.8
+ */
+public class ConcurrentLongLongMap {
+
+    /* ---------------- Constants -------------- */
+
+    /**
+     * The key value marking a free slot.
+     */
+    static final long FREE_KEY = 0L;
+
+    /**
+     * The smallest table capacity of a segment.  Must be a power of two.
+     */
+    static final int MIN_SEGMENT_CAPACITY = 16;
+
+    /**
+     * The largest table capacity of a segment.  Must be a power of two.
+     */
+    static final int MAX_SEGMENT_CAPACITY = 1 << 30;
+
+    /**
+     * The maximum number of segments.
+     */
+    static final int MAX_SEGMENTS = 1 << 16;
+
+    /**
+     * The load factor of each segment table.  Open addressing degrades
+     * faster than chaining as tables fill, so this is lower than
+     * ConcurrentHashMap's 0.75.
+     */
+    static final float LOAD_FACTOR = 0.5f;
+
+    /** Number of CPUS, to place bounds on some sizings */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The default number of segments, used when not otherwise specified.
+     */
+    static final int DEFAULT_CONCURRENCY_LEVEL =
+        Integer.highestOneBit(Math.max(16, NCPU << 2));
+
+    /* ---------------- Fields -------------- */
+
+    /**
+     * The segments, each of which is a hash table.  Length is a power of
+     * two.
+     */
+    final Segment[] segments;
+
+    /**
+     * Shift for selecting a segment from the top bits of a 64-bit hash.
+     */
+    final int segmentShift;
+
+    /* ---------------- Hashing -------------- */
+
+    /**
+     * Mixes a key by multiplying by the 64-bit golden ratio.  The top bits
+     * of the product select a segment; {@link #slotHash} of the same value
+     * selects a slot within it.
+     */
+    static long mix(long key) {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Folds a mixed 64-bit hash into the int used for slot indexing.
+     */
+    static int slotHash(long h) {
+        return (int)(h ^ (h >>> 32));
+    }
+
+    /**
+     * Returns the segment for the given key.
+     */
+    final Segment segmentFor(long key) {
+        Segment[] segs = segments;
+        return segs[(segs.length == 1) ? 0 :
+                    (int)(mix(key) >>> segmentShift)];
+    }
+
+    /* ---------------- Segments -------------- */
+
+    /**
+     * An open-addressing table of the keys falling in one segment.  The
+     * lock guards all fields.  Readers may access the tables optimistically
+     * and validate afterwards; writers hold the write lock.  Tables are
+     * replaced, never resized in place, so an optimistic reader that races
+     * a resize reads a stale but well-formed table and then fails
+     * validation.
+     */
+    @SuppressWarnings("serial")
+    static final class Segment extends StampedLock {
+        long[] keys;
+        long[] values;
+        int size;
+        int threshold;
+        boolean hasFreeKey;
+        long freeKeyValue;
+
+        Segment(int cap) {
+            keys = new long[cap];
+            values = new long[cap];
+            threshold = (int)(cap * LOAD_FACTOR);
+        }
+
+        /**
+         * Returns the slot of the given non-free key in the given table,
+         * or the complement of a free slot if absent.  The probe is
+         * bounded so that it terminates on a table being concurrently
+         * modified; the result is then meaningless, but will fail
+         * validation.
+         */
+        static int slot(long[] ks, long key) {
+            int mask = ks.length - 1, i = slotHash(mix(key)) & mask;
+            for (int n = 0; n <= mask; ++n, i = (i + 1) & mask) {
+                long k = ks[i];
+                if (k == key)
+                    return i;
+                if (k == FREE_KEY)
+                    return ~i;
+            }
+            return ~0;
+        }
+
+        /** Read under optimistic or read lock. */
+        boolean containsKeyUnlocked(long key) {
+            return (key == FREE_KEY) ? hasFreeKey : slot(keys, key) >= 0;
+        }
+
+        /** Read under optimistic or read lock. */
+        long getUnlocked(long key, long defaultValue) {
+            if (key == FREE_KEY)
+                return hasFreeKey ? freeKeyValue : defaultValue;
+            long[] ks = keys, vs = values;
+            int i = slot(ks, key);
+            return (i >= 0 && i < vs.length) ? vs[i] : defaultValue;
+        }
+
+        boolean containsKey(long key) {
+            long stamp = tryOptimisticRead();
+            boolean r = containsKeyUnlocked(key);
+            if (!validate(stamp)) {
+                stamp = readLock();
+                try {
+                    r = containsKeyUnlocked(key);
+                } finally {
+                    unlockRead(stamp);
+                }
+            }
+            return r;
+        }
+
+        long get(long key, long defaultValue) {
+            long stamp = tryOptimisticRead();
+            long r = getUnlocked(key, defaultValue);
+            if (!validate(stamp)) {
+                stamp = readLock();
+                try {
+                    r = getUnlocked(key, defaultValue);
+                } finally {
+                    unlockRead(stamp);
+                }
+            }
+            return r;
+        }
+
+        /* ----- Methods below require the write lock ----- */
+
+        /**
+         * Stores a mapping, returning the previous value or 0.  If
+         * onlyIfAbsent, does not replace an existing value.
+         */
+        long putLocked(long key, long value, boolean onlyIfAbsent) {
+            if (key == FREE_KEY) {
+                if (hasFreeKey) {
+                    long old = freeKeyValue;
+                    if (!onlyIfAbsent)
+                        freeKeyValue = value;
+                    return old;
+                }
+                hasFreeKey = true;
+                freeKeyValue = value;
+                ++size;
+                return 0L;
+            }
+            int i = slot(keys, key);
+            if (i >= 0) {
+                long old = values[i];
+                if (!onlyIfAbsent)
+                    values[i] = value;
+                return old;
+            }
+            insertAt(~i, key, value);
+            return 0L;
+        }
+
+        void insertAt(int i, long key, long value) {
+            keys[i] = key;
+            values[i] = value;
+            if (++size > threshold)
+                rehash();
+        }
+
+        /**
+         * Removes the mapping for key at slot i, shifting back
+         * possibly-colliding entries following it.
+         */
+        void removeAt(int d) {
+            // Adapted from Knuth Section 6.4 Algorithm R
+            long[] ks = keys, vs = values;
+            int mask = ks.length - 1;
+            long k;
+            --size;
+            for (int i = (d + 1) & mask; (k = ks[i]) != FREE_KEY;
+                 i = (i + 1) & mask) {
+                int r = slotHash(mix(k)) & mask;
+                if ((i < r && (r <= d || d <= i)) || (r <= d && d <= i)) {
+                    ks[d] = k;
+                    vs[d] = vs[i];
+                    d = i;
+                }
+            }
+            ks[d] = FREE_KEY;
+            vs[d] = 0L;
+        }
+
+        void removeFreeKey() {
+            hasFreeKey = false;
+            freeKeyValue = 0L;
+            --size;
+        }
+
+        /**
+         * Doubles the table, publishing the new arrays only once they
+         * are fully populated.
+         */
+        void rehash() {
+            long[] oldKeys = keys, oldValues = values;
+            int oldCap = oldKeys.length;
+            if (oldCap >= MAX_SEGMENT_CAPACITY) {
+                if (size >= MAX_SEGMENT_CAPACITY - 1)
+                    throw new IllegalStateException("Segment capacity exhausted");
+                threshold = MAX_SEGMENT_CAPACITY - 1;
+                return;
+            }
+            int n = oldCap << 1, mask = n - 1;
+            long[] ks = new long[n], vs = new long[n];
+            for (int j = 0; j < oldCap; ++j) {
+                long k = oldKeys[j];
+                if (k != FREE_KEY) {
+                    int i = slotHash(mix(k)) & mask;
+                    while (ks[i] != FREE_KEY)
+                        i = (i + 1) & mask;
+                    ks[i] = k;
+                    vs[i] = oldValues[j];
+                }
+            }
+            keys = ks;
+            values = vs;
+            threshold = (int)(n * LOAD_FACTOR);
+        }
+
+        void clearLocked() {
+            int cap = keys.length;
+            keys = new long[cap];
+            values = new long[cap];
+            hasFreeKey = false;
+            freeKeyValue = 0L;
+            size = 0;
+        }
+
+        /* ----- Bulk operations, under read lock ----- */
+
+        void forEach(EntryConsumer action) {
+            long stamp = readLock();
+            try {
+                if (hasFreeKey)
+                    action.accept(FREE_KEY, freeKeyValue);
+                long[] ks = keys, vs = values;
+                for (int i = 0; i < ks.length; ++i) {
+                    long k = ks[i];
+                    if (k != FREE_KEY)
+                        action.accept(k, vs[i]);
+                }
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        long reduceValues(long r, LongBinaryOperator reducer) {
+            long stamp = readLock();
+            try {
+                if (hasFreeKey)
+                    r = reducer.applyAsLong(r, freeKeyValue);
+                long[] ks = keys, vs = values;
+                for (int i = 0; i < ks.length; ++i) {
+                    if (ks[i] != FREE_KEY)
+                        r = reducer.applyAsLong(r, vs[i]);
+                }
+            } finally {
+                unlockRead(stamp);
+            }
+            return r;
+        }
+    }
+
+    /* ---------------- Public operations -------------- */
+
+    /**
+     * Creates a new, empty map with the default initial table size and
+     * number of segments.
+     */
+    public ConcurrentLongLongMap() {
+        this(0, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates a new, empty map with an initial table size accommodating
+     * the specified number of elements without the need to dynamically
+     * resize.
+     *
+     * @param initialCapacity the implementation performs internal
+     * sizing to accommodate this many elements
+     * @throws IllegalArgumentException if the initial capacity is negative
+     */
+    public ConcurrentLongLongMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates a new, empty map with an initial table size based on the
+     * given number of elements ({@code initialCapacity}) and number of
+     * concurrently updating threads ({@code concurrencyLevel}).
+     *
+     * @param initialCapacity the implementation performs internal
+     * sizing to accommodate this many elements
+     * @param concurrencyLevel the estimated number of concurrently
+     * updating threads.  The implementation uses this value as a sizing
+     * hint for the number of segments.
+     * @throws IllegalArgumentException if the initial capacity is
+     * negative or the concurrency level is nonpositive
+     */
+    public ConcurrentLongLongMap(int initialCapacity, int concurrencyLevel) {
+        if (initialCapacity < 0 || concurrencyLevel <= 0)
+            throw new IllegalArgumentException();
+        int nsegs = segmentCountFor(concurrencyLevel);
+        int cap = segmentCapacityFor(initialCapacity, nsegs);
+        Segment[] segs = new Segment[nsegs];
+        for (int i = 0; i < nsegs; ++i)
+            segs[i] = new Segment(cap);
+        this.segments = segs;
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(nsegs);
+    }
+
+    /**
+     * Returns the power of two number of segments for the given
+     * concurrency level.
+     */
+    static int segmentCountFor(int concurrencyLevel) {
+        int n = 1;
+        while (n < concurrencyLevel && n < MAX_SEGMENTS)
+            n <<= 1;
+        return n;
+    }
+
+    /**
+     * Returns the power of two initial capacity of each segment table for
+     * the given total initial capacity.
+     */
+    static int segmentCapacityFor(int initialCapacity, int nsegs) {
+        long perSeg = (long)Math.ceil((double)initialCapacity /
+                                      nsegs / LOAD_FACTOR);
+        int cap = MIN_SEGMENT_CAPACITY;
+        while (cap < perSeg && cap < MAX_SEGMENT_CAPACITY)
+            cap <<= 1;
+        return cap;
+    }
+
+    /**
+     * Returns the number of mappings.  The value returned is an estimate;
+     * the actual count may differ if there are concurrent insertions or
+     * removals.  This method should be used instead of {@link #size}
+     * because the map may contain more mappings than can be represented
+     * as an int.
+     *
+     * @return the number of mappings
+     */
+    public long mappingCount() {
+        long n = 0L;
+        for (Segment s : segments) {
+            long stamp = s.tryOptimisticRead();
+            int c = s.size;
+            if (!s.validate(stamp)) {
+                stamp = s.readLock();
+                c = s.size;
+                s.unlockRead(stamp);
+            }
+            n += c;
+        }
+        return n;
+    }
+
+    /**
+     * Returns the number of mappings, or {@link Integer#MAX_VALUE} if that
+     * is larger.
+     *
+     * @return the number of mappings, capped at {@code Integer.MAX_VALUE}
+     */
+    public int size() {
+        long n = mappingCount();
+        return (n > (long)Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)n;
+    }
+
+    /**
+     * Returns {@code true} if this map contains no mappings.
+     *
+     * @return {@code true} if this map contains no mappings
+     */
+    public boolean isEmpty() {
+        for (Segment s : segments) {
+            long stamp = s.tryOptimisticRead();
+            int c = s.size;
+            if (!s.validate(stamp)) {
+                stamp = s.readLock();
+                c = s.size;
+                s.unlockRead(stamp);
+            }
+            if (c != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests if the specified key is a key in this map.
+     *
+     * @param key possible key
+     * @return {@code true} if the key is present in this map
+     */
+    public boolean containsKey(long key) {
+        return segmentFor(key).containsKey(key);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or the given
+     * default value if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @param defaultValue the value to return if this map contains
+     * no mapping for the given key
+     * @return the mapping for the key, if present; else the default value
+     */
+    public long getOrDefault(long key, long defaultValue) {
+        return segmentFor(key).get(key, defaultValue);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or {@code 0}
+     * if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the mapping for the key, if present; else {@code 0}
+     */
+    public long get(long key) {
+        return segmentFor(key).get(key, 0L);
+    }
+
+    /**
+     * Maps the specified key to the specified value in this table.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with {@code key}, or
+     *         {@code 0} if there was no mapping for {@code key}
+     */
+    public long put(long key, long value) {
+        Segment s = segmentFor(key);
+        long stamp = s.writeLock();
+        try {
+            return s.putLocked(key, value, false);
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * If the specified key is not already associated with a value,
+     * associates it with the given value.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the specified key,
+     *         or {@code 0} if there was no mapping for the key
+     */
+    public long putIfAbsent(long key, long value) {
+        Segment s = segmentFor(key);
+        long stamp = s.writeLock();
+        try {
+            return s.putLocked(key, value, true);
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the key (and its corresponding value) from this map.
+     * This method does nothing if the key is not in the map.
+     *
+     * @param  key the key that needs to be removed
+     * @return the previous value associated with {@code key}, or
+     *         {@code 0} if there was no mapping for {@code key}
+     */
+    public long remove(long key) {
+        Segment s = segmentFor(key);
+        long stamp = s.writeLock();
+        try {
+            if (key == FREE_KEY) {
+                if (!s.hasFreeKey)
+                    return 0L;
+                long old = s.freeKeyValue;
+                s.removeFreeKey();
+                return old;
+            }
+            int i = Segment.slot(s.keys, key);
+            if (i < 0)
+                return 0L;
+            long old = s.values[i];
+            s.removeAt(i);
+            return old;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the entry for a key only if currently mapped to a given
+     * value.
+     *
+     * @param key key with which the specified value is associated
+     * @param value value expected to be associated with the specified key
+     * @return {@code true} if the value was removed
+     */
+    public boolean remove(long key, long value) {
+        Segment s = segmentFor(key);
+        long stamp = s.writeLock();
+        try {
+            if (key == FREE_KEY) {
+                if (!s.hasFreeKey || s.freeKeyValue != value)
+                    return false;
+                s.removeFreeKey();
+                return true;
+            }
+            int i = Segment.slot(s.keys, key);
+            if (i < 0 || s.values[i] != value)
+                return false;
+            s.removeAt(i);
+            return true;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces the entry for a key only if currently mapped to a given
+     * value.
+     *
+     * @param key key with which the specified value is associated
+     * @param oldValue value expected to be associated with the specified key
+     * @param newValue value to be associated with the specified key
+     * @return {@code true} if the value was replaced
+     */
+    public boolean replace(long key, long oldValue, long newValue) {
+        Segment s = segmentFor(key);
+        long stamp = s.writeLock();
+        try {
+            if (key == FREE_KEY) {
+                if (!s.hasFreeKey || s.freeKeyValue != oldValue)
+                    return false;
+                s.freeKeyValue = newValue;
+                return true;
+            }
+            int i = Segment.slot(s.keys, key);
+            if (i < 0 || s.values[i] != oldValue)
+                return false;
+            s.values[i] = newValue;
+            return true;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Atomically adds the given delta to the value associated with the
+     * specified key, treating an absent key as mapped to {@code 0}.
+     *
+     * @param key the key whose value is to be incremented
+     * @param delta the amount to add
+     * @return the updated value
+     */
+    public long addTo(long key, long delta) {
+        Segment s = segmentFor(key);
+        long stamp = s.writeLock();
+        try {
+            if (key == FREE_KEY) {
+                if (!s.hasFreeKey) {
+                    s.putLocked(key, delta, false);
+                    return delta;
+                }
+                return s.freeKeyValue += delta;
+            }
+            int i = Segment.slot(s.keys, key);
+            if (i >= 0)
+                return s.values[i] += delta;
+            s.insertAt(~i, key, delta);
+            return delta;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * If the specified key is not already associated with a value,
+     * attempts to compute its value using the given mapping function and
+     * enters it into this map.  The entire method invocation is performed
+     * atomically, so the function is applied at most once per key.  Some
+     * attempted update operations on other keys of this map by other
+     * threads may be blocked while computation is in progress, so the
+     * computation should be short and simple, and must not attempt to
+     * update any other mappings of this map.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param mappingFunction the function to compute a value
+     * @return the current (existing or computed) value associated with
+     *         the specified key
+     * @throws NullPointerException if the mappingFunction is null
+     */
+    public long computeIfAbsent(long key, LongUnaryOperator mappingFunction) {
+        if (mappingFunction == null)
+            throw new NullPointerException();
+        Segment s = segmentFor(key);
+        long stamp = s.tryOptimisticRead();
+        if (s.containsKeyUnlocked(key)) {
+            long v = s.getUnlocked(key, 0L);
+            if (s.validate(stamp))
+                return v;
+        }
+        stamp = s.writeLock();
+        try {
+            if (key == FREE_KEY) {
+                if (!s.hasFreeKey)
+                    s.putLocked(key, mappingFunction.applyAsLong(key), false);
+                return s.freeKeyValue;
+            }
+            int i = Segment.slot(s.keys, key);
+            if (i >= 0)
+                return s.values[i];
+            long v = mappingFunction.applyAsLong(key);
+            s.insertAt(~i, key, v);
+            return v;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Attempts to compute a mapping for the specified key and its current
+     * mapped value, which is passed to the function as {@code 0} if the
+     * key is absent.  The result is always stored.  The entire method
+     * invocation is performed atomically; the function must not attempt
+     * to update any other mappings of this map.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param remappingFunction the function to compute a value from the
+     *        key and its current value
+     * @return the new value associated with the specified key
+     * @throws NullPointerException if the remappingFunction is null
+     */
+    public long compute(long key, LongBinaryOperator remappingFunction) {
+        if (remappingFunction == null)
+            throw new NullPointerException();
+        Segment s = segmentFor(key);
+        long stamp = s.writeLock();
+        try {
+            if (key == FREE_KEY) {
+                long v = remappingFunction.applyAsLong(
+                    key, s.hasFreeKey ? s.freeKeyValue : 0L);
+                s.putLocked(key, v, false);
+                return v;
+            }
+            int i = Segment.slot(s.keys, key);
+            if (i >= 0)
+                return s.values[i] =
+                    remappingFunction.applyAsLong(key, s.values[i]);
+            long v = remappingFunction.applyAsLong(key, 0L);
+            s.insertAt(~i, key, v);
+            return v;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * If the specified key is not already associated with a value,
+     * associates it with the given value.  Otherwise, replaces the value
+     * with the results of the given remapping function applied to the old
+     * and given values.  The entire method invocation is performed
+     * atomically.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value the value to use if absent
+     * @param remappingFunction the function to recompute a value if present
+     * @return the new value associated with the specified key
+     * @throws NullPointerException if the remappingFunction is null
+     */
+    public long merge(long key, long value,
+                      LongBinaryOperator remappingFunction) {
+        if (remappingFunction == null)
+            throw new NullPointerException();
+        Segment s = segmentFor(key);
+        long stamp = s.writeLock();
+        try {
+            if (key == FREE_KEY) {
+                long v = s.hasFreeKey ?
+                    remappingFunction.applyAsLong(s.freeKeyValue, value) :
+                    value;
+                s.putLocked(key, v, false);
+                return v;
+            }
+            int i = Segment.slot(s.keys, key);
+            if (i >= 0)
+                return s.values[i] =
+                    remappingFunction.applyAsLong(s.values[i], value);
+            s.insertAt(~i, key, value);
+            return value;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        for (Segment s : segments) {
+            long stamp = s.writeLock();
+            try {
+                s.clearLocked();
+            } finally {
+                s.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Returns a string representation of this map, in the same form as
+     * {@link java.util.AbstractMap#toString}.
+     *
+     * @return a string representation of this map
+     */
+    public String toString() {
+        StringJoiner sj = new StringJoiner(", ", "{", "}");
+        forEach(Long.MAX_VALUE, (k, v) -> sj.add(k + "=" + v));
+        return sj.toString();
+    }
+
+    /* ---------------- Bulk operations -------------- */
+
+    /**
+     * Represents an operation that accepts a {@code long} key and its
+     * {@code long} value and returns no result.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        /**
+         * Performs this operation on the given mapping.
+         *
+         * @param key the key
+         * @param value the value
+         */
+        void accept(long key, long value);
+    }
+
+    /**
+     * Returns true if a bulk operation with the given threshold should run
+     * in parallel.
+     */
+    final boolean parallelFor(long parallelismThreshold) {
+        return segments.length > 1 &&
+            parallelismThreshold != Long.MAX_VALUE &&
+            ForkJoinPool.getCommonPoolParallelism() > 1 &&
+            mappingCount() >= Math.max(parallelismThreshold, 1L);
+    }
+
+    /**
+     * Performs the given action for each (key, value).
+     *
+     * @param parallelismThreshold the (estimated) number of elements
+     * needed for this operation to be executed in parallel
+     * @param action the action
+     */
+    public void forEach(long parallelismThreshold, EntryConsumer action) {
+        if (action == null) throw new NullPointerException();
+        if (parallelFor(parallelismThreshold))
+            new ForEachTask(null, segments, 0, segments.length, action).invoke();
+        else {
+            for (Segment s : segments)
+                s.forEach(action);
+        }
+    }
+
+    /**
+     * Returns the result of accumulating all values using the given
+     * reducer to combine values, and the given basis as an identity
+     * value.
+     *
+     * @param parallelismThreshold the (estimated) number of elements
+     * needed for this operation to be executed in parallel
+     * @param basis the identity (initial default value) for the reduction
+     * @param reducer a commutative associative combining function
+     * @return the result of accumulating all values
+     */
+    public long reduceValues(long parallelismThreshold, long basis,
+                             LongBinaryOperator reducer) {
+        if (reducer == null) throw new NullPointerException();
+        if (parallelFor(parallelismThreshold))
+            return new ReduceValuesTask(null, segments, 0, segments.length,
+                                        null, basis, reducer).invoke();
+        long r = basis;
+        for (Segment s : segments)
+            r = s.reduceValues(r, reducer);
+        return r;
+    }
+
+    /**
+     * Returns the sum of all values, computed in parallel if the map holds
+     * at least {@code parallelismThreshold} mappings.
+     *
+     * @param parallelismThreshold the (estimated) number of elements
+     * needed for this operation to be executed in parallel
+     * @return the sum of all values
+     */
+    public long sumValues(long parallelismThreshold) {
+        return reduceValues(parallelismThreshold, 0L, Long::sum);
+    }
+
+    /**
+     * Task splitting a range of segments in halves until single segments
+     * remain, in the manner of ConcurrentHashMap.ForEachMappingTask.
+     */
+    @SuppressWarnings("serial")
+    static final class ForEachTask extends CountedCompleter<Void> {
+        final Segment[] segs;
+        final int lo;
+        int hi;
+        final EntryConsumer action;
+        ForEachTask(CountedCompleter<?> p, Segment[] segs, int lo, int hi,
+                    EntryConsumer action) {
+            super(p);
+            this.segs = segs; this.lo = lo; this.hi = hi;
+            this.action = action;
+        }
+        public final void compute() {
+            for (int h; (h = (lo + hi) >>> 1) > lo;) {
+                addToPendingCount(1);
+                new ForEachTask(this, segs, h, hi, action).fork();
+                hi = h;
+            }
+            segs[lo].forEach(action);
+            propagateCompletion();
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class ReduceValuesTask extends CountedCompleter<Long> {
+        final Segment[] segs;
+        final int lo;
+        int hi;
+        final long basis;
+        final LongBinaryOperator reducer;
+        long result;
+        ReduceValuesTask rights, nextRight;
+        ReduceValuesTask(CountedCompleter<?> p, Segment[] segs, int lo,
+                         int hi, ReduceValuesTask nextRight, long basis,
+                         LongBinaryOperator reducer) {
+            super(p);
+            this.segs = segs; this.lo = lo; this.hi = hi;
+            this.nextRight = nextRight;
+            this.basis = basis; this.reducer = reducer;
+        }
+        public final Long getRawResult() { return result; }
+        public final void compute() {
+            final LongBinaryOperator reducer = this.reducer;
+            for (int h; (h = (lo + hi) >>> 1) > lo;) {
+                addToPendingCount(1);
+                (rights = new ReduceValuesTask
+                 (this, segs, h, hi, rights, basis, reducer)).fork();
+                hi = h;
+            }
+            result = segs[lo].reduceValues(basis, reducer);
+            CountedCompleter<?> c;
+            for (c = firstComplete(); c != null; c = c.nextComplete()) {
+                ReduceValuesTask t = (ReduceValuesTask)c,
+                    s = t.rights;
+                while (s != null) {
+                    t.result = reducer.applyAsLong(t.result, s.result);
+                    s = t.rights = s.nextRight;
+                }
+            }
+        }
+    }
+}
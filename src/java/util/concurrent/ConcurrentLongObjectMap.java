@@ -0,0 +1,857 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.util.StringJoiner;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.LongFunction;
+
+/**
+ * A hash table supporting full concurrency of retrievals and high
+ * expected concurrency for updates, mapping primitive {@code long} keys to
+ * object values.  This class provides the same style of functionality as
+ * a {@link ConcurrentHashMap} with {@code Long} keys, without allocating a
+ * boxed key or a node object per mapping.
+ *
+ * <p>The table is divided into a fixed number of segments, each an
+ * independent open-addressing table over a flat {@code long[]} of keys and
+ * a parallel {@code Object[]} of values, guarded by a {@link StampedLock}.
+ * Retrievals use optimistic reads; updates lock only the segment they
+ * touch, and each segment resizes independently.  See
+ * {@link ConcurrentLongLongMap} for further description of the design.
+ *
+ * <p>Like {@link ConcurrentHashMap}, this class does <em>not</em> allow
+ * {@code null} to be used as a value, so a {@code null} return from
+ * {@link #get} unambiguously indicates an absent key.
+ *
+ * @param <V> the type of mapped values
+ * @see ConcurrentHashMap
+ * @see ConcurrentLongLongMap
+ * @since 1.8
+ */
+public class ConcurrentLongObjectMap<V> {
+
+    /**
+     * The key value marking a free slot.
+     */
+    static final long FREE_KEY = 0L;
+
+    /**
+     * The segments, each of which is a hash table.  Length is a power of
+     * two.
+     */
+    final Segment[] segments;
+
+    /**
+     * Shift for selecting a segment from the top bits of a 64-bit hash.
+     */
+    final int segmentShift;
+
+    /**
+     * Returns the segment for the given key.
+     */
+    final Segment segmentFor(long key) {
+        Segment[] segs = segments;
+        return segs[(segs.length == 1) ? 0 :
+                    (int)(ConcurrentLongLongMap.mix(key) >>> segmentShift)];
+    }
+
+    /**
+     * Returns the slot index hash of the given key.
+     */
+    static int slotHash(long key) {
+        return ConcurrentLongLongMap.slotHash(ConcurrentLongLongMap.mix(key));
+    }
+
+    /**
+     * An open-addressing table of the keys falling in one segment.  As in
+     * ConcurrentLongLongMap.Segment, the lock guards all fields, and tables
+     * are replaced rather than resized in place.
+     */
+    @SuppressWarnings("serial")
+    static final class Segment extends StampedLock {
+        long[] keys;
+        Object[] values;
+        int size;
+        int threshold;
+        Object freeKeyValue;    // null if the free key is absent
+
+        Segment(int cap) {
+            keys = new long[cap];
+            values = new Object[cap];
+            threshold = (int)(cap * ConcurrentLongLongMap.LOAD_FACTOR);
+        }
+
+        /**
+         * Returns the slot of the given non-free key in the given table,
+         * or the complement of a free slot if absent; see
+         * ConcurrentLongLongMap.Segment.slot.
+         */
+        static int slot(long[] ks, long key) {
+            int mask = ks.length - 1, i = slotHash(key) & mask;
+            for (int n = 0; n <= mask; ++n, i = (i + 1) & mask) {
+                long k = ks[i];
+                if (k == key)
+                    return i;
+                if (k == FREE_KEY)
+                    return ~i;
+            }
+            return ~0;
+        }
+
+        /** Read under optimistic or read lock. */
+        Object getUnlocked(long key) {
+            if (key == FREE_KEY)
+                return freeKeyValue;
+            long[] ks = keys;
+            Object[] vs = values;
+            int i = slot(ks, key);
+            return (i >= 0 && i < vs.length) ? vs[i] : null;
+        }
+
+        Object get(long key) {
+            long stamp = tryOptimisticRead();
+            Object r = getUnlocked(key);
+            if (!validate(stamp)) {
+                stamp = readLock();
+                try {
+                    r = getUnlocked(key);
+                } finally {
+                    unlockRead(stamp);
+                }
+            }
+            return r;
+        }
+
+        /* ----- Methods below require the write lock ----- */
+
+        /**
+         * Sets the value for key, inserting or removing as needed, and
+         * returns the previous value.  A null value removes the mapping.
+         */
+        Object setLocked(long key, Object value) {
+            if (key == FREE_KEY) {
+                Object old = freeKeyValue;
+                freeKeyValue = value;
+                if (old == null && value != null)
+                    ++size;
+                else if (old != null && value == null)
+                    --size;
+                return old;
+            }
+            int i = slot(keys, key);
+            if (i >= 0) {
+                Object old = values[i];
+                if (value == null)
+                    removeAt(i);
+                else
+                    values[i] = value;
+                return old;
+            }
+            if (value != null)
+                insertAt(~i, key, value);
+            return null;
+        }
+
+        void insertAt(int i, long key, Object value) {
+            keys[i] = key;
+            values[i] = value;
+            if (++size > threshold)
+                rehash();
+        }
+
+        void removeAt(int d) {
+            // Adapted from Knuth Section 6.4 Algorithm R
+            long[] ks = keys;
+            Object[] vs = values;
+            int mask = ks.length - 1;
+            long k;
+            --size;
+            for (int i = (d + 1) & mask; (k = ks[i]) != FREE_KEY;
+                 i = (i + 1) & mask) {
+                int r = slotHash(k) & mask;
+                if ((i < r && (r <= d || d <= i)) || (r <= d && d <= i)) {
+                    ks[d] = k;
+                    vs[d] = vs[i];
+                    d = i;
+                }
+            }
+            ks[d] = FREE_KEY;
+            vs[d] = null;
+        }
+
+        void rehash() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            int oldCap = oldKeys.length;
+            int max = ConcurrentLongLongMap.MAX_SEGMENT_CAPACITY;
+            if (oldCap >= max) {
+                if (size >= max - 1)
+                    throw new IllegalStateException("Segment capacity exhausted");
+                threshold = max - 1;
+                return;
+            }
+            int n = oldCap << 1, mask = n - 1;
+            long[] ks = new long[n];
+            Object[] vs = new Object[n];
+            for (int j = 0; j < oldCap; ++j) {
+                long k = oldKeys[j];
+                if (k != FREE_KEY) {
+                    int i = slotHash(k) & mask;
+                    while (ks[i] != FREE_KEY)
+                        i = (i + 1) & mask;
+                    ks[i] = k;
+                    vs[i] = oldValues[j];
+                }
+            }
+            keys = ks;
+            values = vs;
+            threshold = (int)(n * ConcurrentLongLongMap.LOAD_FACTOR);
+        }
+
+        void clearLocked() {
+            int cap = keys.length;
+            keys = new long[cap];
+            values = new Object[cap];
+            freeKeyValue = null;
+            size = 0;
+        }
+
+        /* ----- Bulk operations, under read lock ----- */
+
+        @SuppressWarnings("unchecked")
+        <V> void forEach(EntryConsumer<? super V> action) {
+            long stamp = readLock();
+            try {
+                if (freeKeyValue != null)
+                    action.accept(FREE_KEY, (V)freeKeyValue);
+                long[] ks = keys;
+                Object[] vs = values;
+                for (int i = 0; i < ks.length; ++i) {
+                    if (ks[i] != FREE_KEY)
+                        action.accept(ks[i], (V)vs[i]);
+                }
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        <V> V reduceValues(BiFunction<? super V, ? super V, ? extends V> reducer) {
+            V r = null;
+            long stamp = readLock();
+            try {
+                if (freeKeyValue != null)
+                    r = (V)freeKeyValue;
+                long[] ks = keys;
+                Object[] vs = values;
+                for (int i = 0; i < ks.length; ++i) {
+                    if (ks[i] != FREE_KEY) {
+                        V v = (V)vs[i];
+                        r = (r == null) ? v : reducer.apply(r, v);
+                    }
+                }
+            } finally {
+                unlockRead(stamp);
+            }
+            return r;
+        }
+    }
+
+    /* ---------------- Public operations -------------- */
+
+    /**
+     * Creates a new, empty map with the default initial table size and
+     * number of segments.
+     */
+    public ConcurrentLongObjectMap() {
+        this(0, ConcurrentLongLongMap.DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates a new, empty map with an initial table size accommodating
+     * the specified number of elements without the need to dynamically
+     * resize.
+     *
+     * @param initialCapacity the implementation performs internal
+     * sizing to accommodate this many elements
+     * @throws IllegalArgumentException if the initial capacity is negative
+     */
+    public ConcurrentLongObjectMap(int initialCapacity) {
+        this(initialCapacity, ConcurrentLongLongMap.DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates a new, empty map with an initial table size based on the
+     * given number of elements ({@code initialCapacity}) and number of
+     * concurrently updating threads ({@code concurrencyLevel}).
+     *
+     * @param initialCapacity the implementation performs internal
+     * sizing to accommodate this many elements
+     * @param concurrencyLevel the estimated number of concurrently
+     * updating threads, used as a sizing hint for the number of segments
+     * @throws IllegalArgumentException if the initial capacity is
+     * negative or the concurrency level is nonpositive
+     */
+    public ConcurrentLongObjectMap(int initialCapacity, int concurrencyLevel) {
+        if (initialCapacity < 0 || concurrencyLevel <= 0)
+            throw new IllegalArgumentException();
+        int nsegs = ConcurrentLongLongMap.segmentCountFor(concurrencyLevel);
+        int cap = ConcurrentLongLongMap.segmentCapacityFor(initialCapacity,
+                                                           nsegs);
+        Segment[] segs = new Segment[nsegs];
+        for (int i = 0; i < nsegs; ++i)
+            segs[i] = new Segment(cap);
+        this.segments = segs;
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(nsegs);
+    }
+
+    /**
+     * Returns the number of mappings.  The value returned is an estimate;
+     * the actual count may differ if there are concurrent insertions or
+     * removals.
+     *
+     * @return the number of mappings
+     */
+    public long mappingCount() {
+        long n = 0L;
+        for (Segment s : segments) {
+            long stamp = s.tryOptimisticRead();
+            int c = s.size;
+            if (!s.validate(stamp)) {
+                stamp = s.readLock();
+                c = s.size;
+                s.unlockRead(stamp);
+            }
+            n += c;
+        }
+        return n;
+    }
+
+    /**
+     * Returns the number of mappings, or {@link Integer#MAX_VALUE} if that
+     * is larger.
+     *
+     * @return the number of mappings, capped at {@code Integer.MAX_VALUE}
+     */
+    public int size() {
+        long n = mappingCount();
+        return (n > (long)Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)n;
+    }
+
+    /**
+     * Returns {@code true} if this map contains no mappings.
+     *
+     * @return {@code true} if this map contains no mappings
+     */
+    public boolean isEmpty() {
+        return mappingCount() == 0L;
+    }
+
+    /**
+     * Tests if the specified key is a key in this map.
+     *
+     * @param key possible key
+     * @return {@code true} if the key is present in this map
+     */
+    public boolean containsKey(long key) {
+        return segmentFor(key).get(key) != null;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code null} if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the mapping for the key, or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        return (V)segmentFor(key).get(key);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or the given
+     * default value if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @param defaultValue the value to return if this map contains
+     * no mapping for the given key
+     * @return the mapping for the key, if present; else the default value
+     */
+    public V getOrDefault(long key, V defaultValue) {
+        V v;
+        return (v = get(key)) == null ? defaultValue : v;
+    }
+
+    /**
+     * Maps the specified key to the specified value in this table.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}
+     * @throws NullPointerException if the specified value is null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) throw new NullPointerException();
+        Segment s = segmentFor(key);
+        long stamp = s.writeLock();
+        try {
+            return (V)s.setLocked(key, value);
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * If the specified key is not already associated with a value,
+     * associates it with the given value.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no mapping for the key
+     * @throws NullPointerException if the specified value is null
+     */
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(long key, V value) {
+        if (value == null) throw new NullPointerException();
+        Segment s = segmentFor(key);
+        long stamp = s.writeLock();
+        try {
+            Object old = s.getUnlocked(key);
+            if (old == null)
+                s.setLocked(key, value);
+            return (V)old;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the key (and its corresponding value) from this map.
+     * This method does nothing if the key is not in the map.
+     *
+     * @param  key the key that needs to be removed
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        Segment s = segmentFor(key);
+        long stamp = s.writeLock();
+        try {
+            return (V)s.setLocked(key, null);
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the entry for a key only if currently mapped to a given
+     * value.
+     *
+     * @param key key with which the specified value is associated
+     * @param value value expected to be associated with the specified key
+     * @return {@code true} if the value was removed
+     */
+    public boolean remove(long key, Object value) {
+        if (value == null)
+            return false;
+        Segment s = segmentFor(key);
+        long stamp = s.writeLock();
+        try {
+            Object old = s.getUnlocked(key);
+            if (old == null || !value.equals(old))
+                return false;
+            s.setLocked(key, null);
+            return true;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces the entry for a key only if currently mapped to a given
+     * value.
+     *
+     * @param key key with which the specified value is associated
+     * @param oldValue value expected to be associated with the specified key
+     * @param newValue value to be associated with the specified key
+     * @return {@code true} if the value was replaced
+     * @throws NullPointerException if any of the values are null
+     */
+    public boolean replace(long key, V oldValue, V newValue) {
+        if (oldValue == null || newValue == null)
+            throw new NullPointerException();
+        Segment s = segmentFor(key);
+        long stamp = s.writeLock();
+        try {
+            Object old = s.getUnlocked(key);
+            if (old == null || !oldValue.equals(old))
+                return false;
+            s.setLocked(key, newValue);
+            return true;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces the entry for a key only if currently mapped to some value.
+     *
+     * @param key key with which the specified value is associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no mapping for the key
+     * @throws NullPointerException if the specified value is null
+     */
+    @SuppressWarnings("unchecked")
+    public V replace(long key, V value) {
+        if (value == null) throw new NullPointerException();
+        Segment s = segmentFor(key);
+        long stamp = s.writeLock();
+        try {
+            Object old = s.getUnlocked(key);
+            if (old != null)
+                s.setLocked(key, value);
+            return (V)old;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * If the specified key is not already associated with a value,
+     * attempts to compute its value using the given mapping function and
+     * enters it into this map unless {@code null}.  The entire method
+     * invocation is performed atomically, so the function is applied at
+     * most once per key.  Some attempted update operations on this map by
+     * other threads may be blocked while computation is in progress, so
+     * the computation should be short and simple, and must not attempt to
+     * update any other mappings of this map.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param mappingFunction the function to compute a value
+     * @return the current (existing or computed) value associated with
+     *         the specified key, or null if the computed value is null
+     * @throws NullPointerException if the mappingFunction is null
+     */
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(long key,
+                             LongFunction<? extends V> mappingFunction) {
+        if (mappingFunction == null)
+            throw new NullPointerException();
+        Segment s = segmentFor(key);
+        Object v = s.get(key);
+        if (v != null)
+            return (V)v;
+        long stamp = s.writeLock();
+        try {
+            if ((v = s.getUnlocked(key)) == null &&
+                (v = mappingFunction.apply(key)) != null)
+                s.setLocked(key, v);
+            return (V)v;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * If the value for the specified key is present, attempts to compute a
+     * new mapping given the key and its current mapped value.  If the
+     * function returns {@code null}, the mapping is removed.  The entire
+     * method invocation is performed atomically.
+     *
+     * @param key key with which a value may be associated
+     * @param remappingFunction the function to compute a value
+     * @return the new value associated with the specified key, or null if none
+     * @throws NullPointerException if the remappingFunction is null
+     */
+    @SuppressWarnings("unchecked")
+    public V computeIfPresent(long key,
+                              EntryFunction<? super V, ? extends V> remappingFunction) {
+        if (remappingFunction == null)
+            throw new NullPointerException();
+        Segment s = segmentFor(key);
+        long stamp = s.writeLock();
+        try {
+            Object old = s.getUnlocked(key), v = null;
+            if (old != null)
+                s.setLocked(key, v = remappingFunction.apply(key, (V)old));
+            return (V)v;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Attempts to compute a mapping for the specified key and its current
+     * mapped value (or {@code null} if there is no current mapping).  If
+     * the function returns {@code null}, the mapping is removed (or
+     * remains absent).  The entire method invocation is performed
+     * atomically; the function must not attempt to update any other
+     * mappings of this map.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param remappingFunction the function to compute a value
+     * @return the new value associated with the specified key, or null if none
+     * @throws NullPointerException if the remappingFunction is null
+     */
+    @SuppressWarnings("unchecked")
+    public V compute(long key,
+                     EntryFunction<? super V, ? extends V> remappingFunction) {
+        if (remappingFunction == null)
+            throw new NullPointerException();
+        Segment s = segmentFor(key);
+        long stamp = s.writeLock();
+        try {
+            V v = remappingFunction.apply(key, (V)s.getUnlocked(key));
+            s.setLocked(key, v);
+            return v;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * If the specified key is not already associated with a (non-null)
+     * value, associates it with the given value.  Otherwise, replaces the
+     * value with the results of the given remapping function, or removes
+     * if {@code null}.  The entire method invocation is performed
+     * atomically.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value the value to use if absent
+     * @param remappingFunction the function to recompute a value if present
+     * @return the new value associated with the specified key, or null if none
+     * @throws NullPointerException if the value or the remappingFunction
+     *         is null
+     */
+    @SuppressWarnings("unchecked")
+    public V merge(long key, V value,
+                   BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        if (value == null || remappingFunction == null)
+            throw new NullPointerException();
+        Segment s = segmentFor(key);
+        long stamp = s.writeLock();
+        try {
+            V old = (V)s.getUnlocked(key);
+            V v = (old == null) ? value : remappingFunction.apply(old, value);
+            s.setLocked(key, v);
+            return v;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        for (Segment s : segments) {
+            long stamp = s.writeLock();
+            try {
+                s.clearLocked();
+            } finally {
+                s.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Returns a string representation of this map, in the same form as
+     * {@link java.util.AbstractMap#toString}.
+     *
+     * @return a string representation of this map
+     */
+    public String toString() {
+        StringJoiner sj = new StringJoiner(", ", "{", "}");
+        forEach(Long.MAX_VALUE, (k, v) -> sj.add(k + "=" + v));
+        return sj.toString();
+    }
+
+    /* ---------------- Bulk operations -------------- */
+
+    /**
+     * Represents an operation that accepts a {@code long} key and its
+     * value and returns no result.
+     *
+     * @param <V> the type of values
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        /**
+         * Performs this operation on the given mapping.
+         *
+         * @param key the key
+         * @param value the value
+         */
+        void accept(long key, V value);
+    }
+
+    /**
+     * Represents a function that accepts a {@code long} key and its value
+     * and produces a result.
+     *
+     * @param <V> the type of values
+     * @param <R> the type of the result
+     */
+    @FunctionalInterface
+    public interface EntryFunction<V, R> {
+        /**
+         * Applies this function to the given mapping.
+         *
+         * @param key the key
+         * @param value the value, or {@code null} if absent
+         * @return the function result
+         */
+        R apply(long key, V value);
+    }
+
+    /**
+     * Returns true if a bulk operation with the given threshold should run
+     * in parallel.
+     */
+    final boolean parallelFor(long parallelismThreshold) {
+        return segments.length > 1 &&
+            parallelismThreshold != Long.MAX_VALUE &&
+            ForkJoinPool.getCommonPoolParallelism() > 1 &&
+            mappingCount() >= Math.max(parallelismThreshold, 1L);
+    }
+
+    /**
+     * Performs the given action for each (key, value).
+     *
+     * @param parallelismThreshold the (estimated) number of elements
+     * needed for this operation to be executed in parallel
+     * @param action the action
+     */
+    public void forEach(long parallelismThreshold,
+                        EntryConsumer<? super V> action) {
+        if (action == null) throw new NullPointerException();
+        if (parallelFor(parallelismThreshold))
+            new ForEachTask<V>(null, segments, 0, segments.length,
+                               action).invoke();
+        else {
+            for (Segment s : segments)
+                s.forEach(action);
+        }
+    }
+
+    /**
+     * Returns the result of accumulating all values using the given
+     * reducer to combine values, or null if none.
+     *
+     * @param parallelismThreshold the (estimated) number of elements
+     * needed for this operation to be executed in parallel
+     * @param reducer a commutative associative combining function
+     * @return the result of accumulating all values
+     */
+    public V reduceValues(long parallelismThreshold,
+                          BiFunction<? super V, ? super V, ? extends V> reducer) {
+        if (reducer == null) throw new NullPointerException();
+        if (parallelFor(parallelismThreshold))
+            return new ReduceValuesTask<V>(null, segments, 0, segments.length,
+                                           null, reducer).invoke();
+        V r = null;
+        for (Segment s : segments) {
+            V u = s.reduceValues(reducer);
+            if (u != null)
+                r = (r == null) ? u : reducer.apply(r, u);
+        }
+        return r;
+    }
+
+    @SuppressWarnings("serial")
+    static final class ForEachTask<V> extends CountedCompleter<Void> {
+        final Segment[] segs;
+        final int lo;
+        int hi;
+        final EntryConsumer<? super V> action;
+        ForEachTask(CountedCompleter<?> p, Segment[] segs, int lo, int hi,
+                    EntryConsumer<? super V> action) {
+            super(p);
+            this.segs = segs; this.lo = lo; this.hi = hi;
+            this.action = action;
+        }
+        public final void compute() {
+            for (int h; (h = (lo + hi) >>> 1) > lo;) {
+                addToPendingCount(1);
+                new ForEachTask<V>(this, segs, h, hi, action).fork();
+                hi = h;
+            }
+            segs[lo].forEach(action);
+            propagateCompletion();
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class ReduceValuesTask<V> extends CountedCompleter<V> {
+        final Segment[] segs;
+        final int lo;
+        int hi;
+        final BiFunction<? super V, ? super V, ? extends V> reducer;
+        V result;
+        ReduceValuesTask<V> rights, nextRight;
+        ReduceValuesTask(CountedCompleter<?> p, Segment[] segs, int lo,
+                         int hi, ReduceValuesTask<V> nextRight,
+                         BiFunction<? super V, ? super V, ? extends V> reducer) {
+            super(p);
+            this.segs = segs; this.lo = lo; this.hi = hi;
+            this.nextRight = nextRight;
+            this.reducer = reducer;
+        }
+        public final V getRawResult() { return result; }
+        public final void compute() {
+            final BiFunction<? super V, ? super V, ? extends V> reducer =
+                this.reducer;
+            for (int h; (h = (lo + hi) >>> 1) > lo;) {
+                addToPendingCount(1);
+                (rights = new ReduceValuesTask<V>
+                 (this, segs, h, hi, rights, reducer)).fork();
+                hi = h;
+            }
+            result = segs[lo].reduceValues(reducer);
+            CountedCompleter<?> c;
+            for (c = firstComplete(); c != null; c = c.nextComplete()) {
+                @SuppressWarnings("unchecked") ReduceValuesTask<V>
+                    t = (ReduceValuesTask<V>)c,
+                    s = t.rights;
+                while (s != null) {
+                    V tr, sr;
+                    if ((sr = s.result) != null)
+                        t.result = (((tr = t.result) == null) ? sr :
+                                    reducer.apply(tr, sr));
+                    s = t.rights = s.nextRight;
+                }
+            }
+        }
+    }
+}
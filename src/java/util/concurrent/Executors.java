@@ -234,6 +234,78 @@ public class Executors {
                                       threadFactory);
     }
 
+    /**
+     * Creates a thread pool operating off a shared unbounded queue,
+     * that adjusts the number of threads it keeps between the given
+     * bounds according to the throughput it measures, as described in
+     * {@link AdaptiveThreadPoolExecutor}.  Threads in excess of the
+     * current target that have not been used for sixty seconds are
+     * terminated and removed from the pool.
+     *
+     * @param minThreads the minimum number of threads in the pool
+     * @param maxThreads the maximum number of threads in the pool
+     * @return the newly created thread pool
+     * @throws IllegalArgumentException if {@code minThreads < 0},
+     *         {@code maxThreads <= 0} or {@code maxThreads < minThreads}
+     * @since 1.8
+     */
+    public static ExecutorService newAdaptiveThreadPool(int minThreads,
+                                                        int maxThreads) {
+        return new AdaptiveThreadPoolExecutor(minThreads, maxThreads,
+                                              60L, TimeUnit.SECONDS,
+                                              new LinkedBlockingQueue<Runnable>());
+    }
+
+    /**
+     * Creates a thread pool operating off a shared unbounded queue,
+     * that adjusts the number of threads it keeps between the given
+     * bounds according to the throughput it measures, and uses the
+     * provided ThreadFactory to create new threads when needed.
+     *
+     * @param minThreads the minimum number of threads in the pool
+     * @param maxThreads the maximum number of threads in the pool
+     * @param threadFactory the factory to use when creating new threads
+     * @return the newly created thread pool
+     * @throws NullPointerException if threadFactory is null
+     * @throws IllegalArgumentException if {@code minThreads < 0},
+     *         {@code maxThreads <= 0} or {@code maxThreads < minThreads}
+     * @see #newAdaptiveThreadPool(int, int)
+     * @since 1.8
+     */
+    public static ExecutorService newAdaptiveThreadPool(int minThreads,
+                                                        int maxThreads,
+                                                        ThreadFactory threadFactory) {
+        return new AdaptiveThreadPoolExecutor(minThreads, maxThreads,
+                                              60L, TimeUnit.SECONDS,
+                                              new LinkedBlockingQueue<Runnable>(),
+                                              threadFactory);
+    }
+
+    /**
+     * Creates an Executor that starts a new Thread for each task,
+     * using the provided ThreadFactory.  The number of threads is
+     * bounded only by the number of tasks submitted and not yet
+     * completed, so this executor suits tasks that spend most of
+     * their time blocked, such as those serving one request each, as
+     * an alternative to sizing a pool for them.  The resources used
+     * by each thread may be limited by a factory creating threads
+     * with a small {@linkplain Thread#Thread(ThreadGroup, Runnable,
+     * String, long) stack size}.
+     *
+     * <p>Invoking {@link ExecutorService#shutdownNow shutdownNow}
+     * interrupts the threads executing tasks, and returns an empty
+     * list, as no tasks are ever queued.  The executor terminates when
+     * it is shut down and all of its threads have finished.
+     *
+     * @param threadFactory the factory to use when creating new threads
+     * @return the newly created executor
+     * @throws NullPointerException if threadFactory is null
+     * @since 1.8
+     */
+    public static ExecutorService newThreadPerTaskExecutor(ThreadFactory threadFactory) {
+        return new ThreadPerTaskExecutor(threadFactory);
+    }
+
     /**
      * Creates a single-threaded executor that can schedule commands
      * to run after a given delay, or to execute periodically.
@@ -658,6 +730,93 @@ public class Executors {
         }
     }
 
+    /**
+     * An ExecutorService starting a new Thread for each task.  The
+     * live threads are kept in a set, so shutdownNow can interrupt
+     * them; each thread removes itself when its task completes, and
+     * the last one to do so after shutdown terminates the executor.
+     * Threads are added to the set before rechecking the run state,
+     * and removed before checking it, so no thread is missed by
+     * shutdownNow or termination.
+     */
+    static final class ThreadPerTaskExecutor extends AbstractExecutorService {
+        private static final int RUNNING    = 0;
+        private static final int SHUTDOWN   = 1;
+        private static final int TERMINATED = 2;
+
+        private final ThreadFactory factory;
+        private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch terminated = new CountDownLatch(1);
+        private final AtomicInteger state = new AtomicInteger();
+
+        ThreadPerTaskExecutor(ThreadFactory factory) {
+            if (factory == null)
+                throw new NullPointerException();
+            this.factory = factory;
+        }
+
+        public void execute(Runnable command) {
+            if (command == null)
+                throw new NullPointerException();
+            if (state.get() != RUNNING)
+                throw new RejectedExecutionException("Executor is shut down");
+            Thread t = factory.newThread(() -> {
+                    try {
+                        command.run();
+                    } finally {
+                        threads.remove(Thread.currentThread());
+                        tryTerminate();
+                    }
+                });
+            if (t == null)
+                throw new RejectedExecutionException("Thread not created");
+            threads.add(t);
+            if (state.get() != RUNNING) {
+                threads.remove(t);
+                tryTerminate();
+                throw new RejectedExecutionException("Executor is shut down");
+            }
+            try {
+                t.start();
+            } catch (Throwable ex) {
+                threads.remove(t);
+                tryTerminate();
+                throw new RejectedExecutionException(ex);
+            }
+        }
+
+        private void tryTerminate() {
+            if (threads.isEmpty() &&
+                state.compareAndSet(SHUTDOWN, TERMINATED))
+                terminated.countDown();
+        }
+
+        public void shutdown() {
+            state.compareAndSet(RUNNING, SHUTDOWN);
+            tryTerminate();
+        }
+
+        public List<Runnable> shutdownNow() {
+            shutdown();
+            for (Thread t : threads)
+                t.interrupt();
+            return Collections.emptyList();
+        }
+
+        public boolean isShutdown() {
+            return state.get() != RUNNING;
+        }
+
+        public boolean isTerminated() {
+            return state.get() == TERMINATED;
+        }
+
+        public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+            return terminated.await(timeout, unit);
+        }
+    }
+
     /**
      * A wrapper class that exposes only the ExecutorService methods
      * of an ExecutorService implementation.
@@ -2884,6 +2884,64 @@ public class ForkJoinPool extends AbstractExecutorService {
         return count;
     }
 
+    /**
+     * Returns a management interface view of this pool, which reports
+     * the values of its monitoring methods, and the number of tasks in
+     * each of its work queues.
+     *
+     * @return a {@link ForkJoinPoolMXBean} of this pool
+     * @since 1.8
+     */
+    public ForkJoinPoolMXBean getMXBean() {
+        return new PoolMXBean();
+    }
+
+    /**
+     * Returns the sizes of the work queues with indices of the given
+     * parity: odd for worker queues and even for submission queues.
+     */
+    final int[] queueDepths(int parity) {
+        WorkQueue[] ws; WorkQueue w;
+        if ((ws = workQueues) == null)
+            return new int[0];
+        int[] depths = new int[(ws.length + 1) >>> 1];
+        int n = 0;
+        for (int i = parity; i < ws.length; i += 2) {
+            if ((w = ws[i]) != null)
+                depths[n++] = w.queueSize();
+        }
+        return Arrays.copyOf(depths, n);
+    }
+
+    final class PoolMXBean implements ForkJoinPoolMXBean {
+        public int getParallelism() {
+            return ForkJoinPool.this.getParallelism();
+        }
+        public int getPoolSize() {
+            return ForkJoinPool.this.getPoolSize();
+        }
+        public int getActiveThreadCount() {
+            return ForkJoinPool.this.getActiveThreadCount();
+        }
+        public int getRunningThreadCount() {
+            return ForkJoinPool.this.getRunningThreadCount();
+        }
+        public long getStealCount() {
+            return ForkJoinPool.this.getStealCount();
+        }
+        public long getQueuedTaskCount() {
+            return ForkJoinPool.this.getQueuedTaskCount();
+        }
+        public int getQueuedSubmissionCount() {
+            return ForkJoinPool.this.getQueuedSubmissionCount();
+        }
+        public int[] getWorkerQueueDepths()     { return queueDepths(1); }
+        public int[] getSubmissionQueueDepths() { return queueDepths(0); }
+        public boolean isQuiescent() {
+            return ForkJoinPool.this.isQuiescent();
+        }
+    }
+
     /**
      * Returns a string identifying this pool, as well as its state,
      * including indications of run state, parallelism level, and
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+/**
+ * The management interface of a {@link ForkJoinPool}.  An instance is
+ * obtained from {@link ForkJoinPool#getMXBean} and may be registered
+ * with a platform {@code MBeanServer} under a name of the
+ * application's choosing, for example:
+ *
+ * <pre> {@code
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(
+ *     ForkJoinPool.commonPool().getMXBean(),
+ *     new ObjectName("com.example:type=ForkJoinPool,name=common"));}</pre>
+ *
+ * <p>All values are estimates obtained without locking by traversing
+ * the work queues of the pool, as by the corresponding methods of
+ * {@code ForkJoinPool}.
+ *
+ * @see ForkJoinPool
+ * @since 1.8
+ */
+public interface ForkJoinPoolMXBean {
+
+    /**
+     * Returns the targeted parallelism level of the pool.
+     *
+     * @return the targeted parallelism level
+     * @see ForkJoinPool#getParallelism
+     */
+    int getParallelism();
+
+    /**
+     * Returns the number of worker threads that have started but not
+     * yet terminated.
+     *
+     * @return the number of worker threads
+     * @see ForkJoinPool#getPoolSize
+     */
+    int getPoolSize();
+
+    /**
+     * Returns an estimate of the number of threads that are currently
+     * stealing or executing tasks.
+     *
+     * @return the number of active threads
+     * @see ForkJoinPool#getActiveThreadCount
+     */
+    int getActiveThreadCount();
+
+    /**
+     * Returns an estimate of the number of worker threads that are not
+     * blocked waiting to join tasks or for other managed
+     * synchronization.
+     *
+     * @return the number of running threads
+     * @see ForkJoinPool#getRunningThreadCount
+     */
+    int getRunningThreadCount();
+
+    /**
+     * Returns an estimate of the total number of tasks stolen from one
+     * thread's work queue by another.
+     *
+     * @return the number of steals
+     * @see ForkJoinPool#getStealCount
+     */
+    long getStealCount();
+
+    /**
+     * Returns an estimate of the total number of tasks currently held
+     * in queues by worker threads.
+     *
+     * @return the number of queued tasks
+     * @see ForkJoinPool#getQueuedTaskCount
+     */
+    long getQueuedTaskCount();
+
+    /**
+     * Returns an estimate of the number of tasks submitted to the pool
+     * that have not yet begun executing.
+     *
+     * @return the number of queued submissions
+     * @see ForkJoinPool#getQueuedSubmissionCount
+     */
+    int getQueuedSubmissionCount();
+
+    /**
+     * Returns an estimate of the number of tasks held in each queue
+     * owned by a worker thread, in no particular order.
+     *
+     * @return the worker queue depths
+     */
+    int[] getWorkerQueueDepths();
+
+    /**
+     * Returns an estimate of the number of tasks held in each queue of
+     * external submissions, in no particular order.
+     *
+     * @return the submission queue depths
+     */
+    int[] getSubmissionQueueDepths();
+
+    /**
+     * Returns {@code true} if all worker threads are currently idle.
+     *
+     * @return {@code true} if all threads are currently idle
+     * @see ForkJoinPool#isQuiescent
+     */
+    boolean isQuiescent();
+}
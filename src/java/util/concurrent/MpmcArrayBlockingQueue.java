@@ -0,0 +1,856 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded {@linkplain BlockingQueue blocking queue} backed by an
+ * array, in which producers and consumers do not lock.  This queue
+ * orders elements FIFO (first-in-first-out).  The <em>head</em> of the
+ * queue is that element that has been on the queue the longest time.
+ * The <em>tail</em> of the queue is that element that has been on the
+ * queue the shortest time.
+ *
+ * <p>Unlike {@link ArrayBlockingQueue}, whose producers and consumers
+ * contend for a single lock, and {@link LinkedBlockingQueue}, which
+ * allocates a node per element, each insertion and removal claims a
+ * position at one end of the queue with a single atomic update, and
+ * then waits, if need be, only for the one slot at that position.
+ * This makes this class a suitable {@code workQueue} for a {@link
+ * ThreadPoolExecutor} under heavy contention.  Threads that cannot
+ * insert or remove an element spin briefly and then park until
+ * signalled.
+ *
+ * <p>The bulk operations {@link #drainTo(Collection, int) drainTo} and
+ * {@link #offerAll offerAll} claim all the positions they need at once.
+ *
+ * <p>Interior removals, by {@link #remove(Object) remove(Object)} or
+ * through iterators, are supported but slow: they scan the queue, and
+ * the slot of the removed element is reused only once the element
+ * would have reached the head of the queue.  Iterators are <a
+ * href="package-summary.html#Weakly"><i>weakly consistent</i></a>.
+ * This queue does not permit {@code null} elements.
+ *
+ * <p>This class and its iterator implement all of the
+ * <em>optional</em> methods of the {@link Collection} and {@link
+ * Iterator} interfaces.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @since 1.8
+ * @param <E> the type of elements held in this collection
+ */
+public class MpmcArrayBlockingQueue<E> extends AbstractQueue<E>
+        implements BlockingQueue<E> {
+
+    /*
+     * This is a variant of D. Vyukov's bounded MPMC queue.  Each slot
+     * of the circular items array has a sequence number.  Positions
+     * (tail for producers, head for consumers) increase forever, and
+     * the slot for position p is p mod capacity.  Initially the
+     * sequence of slot i is 2 * i.  A producer at position p waits
+     * for the sequence of its slot to become 2 * p (i.e. the slot was
+     * emptied by the consumer of p - capacity), claims p by CAS of
+     * tail, stores its element, then publishes sequence 2 * p + 1.  A
+     * consumer at position p waits for sequence 2 * p + 1, claims p
+     * by CAS of head, takes the element, then publishes sequence
+     * 2 * (p + capacity).  (Vyukov's original uses p, p + 1 and
+     * p + capacity, which are ambiguous for a capacity of one.)
+     * If the sequence at the tail (head) is behind, the queue is full
+     * (empty).  Bulk operations instead claim a range of positions
+     * with one CAS, bounded using the other end's position, and then
+     * wait slot by slot for the (transient) completion of the
+     * operations of the other side on those slots.
+     *
+     * The head and tail positions, which are the only points of
+     * contention, are padded to reside on different cache lines.
+     *
+     * Interior removal atomically swaps the element of a published
+     * slot with null, so consumers take elements by an atomic swap as
+     * well.  A consumer finding null releases the slot and retries.
+     * The count of such removed elements is kept to maintain size,
+     * but may transiently be behind, so sizes are clamped.
+     *
+     * Waiting threads, after spinning, push a WaitNode onto a Treiber
+     * stack (notEmpty for consumers, notFull for producers), recheck
+     * the queue, and park.  Each producer (consumer) that publishes a
+     * slot pops a live node from the notEmpty (notFull) stack, if any,
+     * and unparks its thread, claiming the node by nulling its thread
+     * field.  Publication is a volatile write that must be ordered
+     * before the read of the stack head, and pushes are CASes ordered
+     * before the recheck, so no wake-up can be lost.  A waiter that
+     * gives up (on timeout or interrupt) after its node was claimed
+     * passes the signal on.  Nodes of waiters that gave up are skipped
+     * by signallers and pruned by pushers when at the top of stack.
+     */
+
+    /** The number of times to spin before parking */
+    static final int SPINS =
+        (Runtime.getRuntime().availableProcessors() > 1) ? 1 << 7 : 0;
+
+    /** The queued items */
+    final Object[] items;
+
+    /** The sequence numbers of slots */
+    final long[] sequences;
+
+    /** The capacity */
+    final int capacity;
+
+    /** capacity - 1 if capacity is a power of two, else -1 */
+    final int mask;
+
+    /** The next position to insert at */
+    @sun.misc.Contended private volatile long tail;
+
+    /** The next position to remove from */
+    @sun.misc.Contended private volatile long head;
+
+    /** The number of elements removed but not yet reached by head */
+    private volatile long removedCount;
+
+    /** Top of the stack of threads waiting to remove */
+    private volatile WaitNode notEmpty;
+
+    /** Top of the stack of threads waiting to insert */
+    private volatile WaitNode notFull;
+
+    /**
+     * Node of the stacks of waiting threads.
+     */
+    static final class WaitNode {
+        volatile Thread thread;
+        WaitNode next;
+        WaitNode() { thread = Thread.currentThread(); }
+    }
+
+    /**
+     * Creates an {@code MpmcArrayBlockingQueue} with the given (fixed)
+     * capacity.
+     *
+     * @param capacity the capacity of this queue
+     * @throws IllegalArgumentException if {@code capacity < 1}
+     */
+    public MpmcArrayBlockingQueue(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException();
+        this.items = new Object[capacity];
+        long[] seqs = new long[capacity];
+        for (int i = 0; i < capacity; ++i)
+            seqs[i] = (long)i << 1;
+        this.sequences = seqs;
+        this.capacity = capacity;
+        this.mask = ((capacity & (capacity - 1)) == 0) ? capacity - 1 : -1;
+    }
+
+    /**
+     * Creates an {@code MpmcArrayBlockingQueue} with the given (fixed)
+     * capacity, initially containing the elements of the given
+     * collection, added in traversal order of the collection's iterator.
+     *
+     * @param capacity the capacity of this queue
+     * @param c the collection of elements to initially contain
+     * @throws IllegalArgumentException if {@code capacity} is less than
+     *         {@code c.size()}, or less than 1.
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null
+     */
+    public MpmcArrayBlockingQueue(int capacity, Collection<? extends E> c) {
+        this(capacity);
+        if (offerAll(c) != c.size())
+            throw new IllegalArgumentException();
+    }
+
+    // Slot access
+
+    private int index(long pos) {
+        int m = mask;
+        return (m >= 0) ? (int)pos & m : (int)(pos % capacity);
+    }
+
+    private static long seqOffset(int i) {
+        return ((long)i << LSHIFT) + LBASE;
+    }
+
+    private static long itemOffset(int i) {
+        return ((long)i << ASHIFT) + ABASE;
+    }
+
+    /**
+     * Inserts at the tail if possible, without signalling.
+     */
+    private boolean tryOffer(Object e) {
+        final long[] seqs = sequences;
+        for (long t = tail;;) {
+            int i = index(t);
+            long so = seqOffset(i);
+            long d = U.getLongVolatile(seqs, so) - (t << 1);
+            if (d == 0L) {
+                if (U.compareAndSwapLong(this, TAIL, t, t + 1L)) {
+                    U.putObject(items, itemOffset(i), e);
+                    U.putLongVolatile(seqs, so, (t << 1) + 1L);
+                    return true;
+                }
+            }
+            else if (d < 0L)
+                return false;
+            t = tail;
+        }
+    }
+
+    /**
+     * Removes at the head if possible, without signalling.
+     */
+    @SuppressWarnings("unchecked")
+    private E tryPoll() {
+        final long[] seqs = sequences;
+        for (long h = head;;) {
+            int i = index(h);
+            long so = seqOffset(i);
+            long d = U.getLongVolatile(seqs, so) - ((h << 1) + 1L);
+            if (d == 0L) {
+                if (U.compareAndSwapLong(this, HEAD, h, h + 1L)) {
+                    Object x = U.getAndSetObject(items, itemOffset(i), null);
+                    U.putLongVolatile(seqs, so, (h + capacity) << 1);
+                    if (x != null)
+                        return (E)x;
+                    U.getAndAddLong(this, REMOVEDCOUNT, -1L);
+                    if (notFull != null)
+                        signal(NOTFULL);
+                }
+            }
+            else if (d < 0L)
+                return null;
+            h = head;
+        }
+    }
+
+    // Waiting and signalling
+
+    /**
+     * Pushes node onto the stack at the given offset, first pruning
+     * dead nodes at its top.
+     */
+    private void push(long offset, WaitNode node) {
+        for (WaitNode h, p;;) {
+            for (p = h = (WaitNode)U.getObjectVolatile(this, offset);
+                 p != null && p.thread == null; p = p.next)
+                ;
+            node.next = p;
+            if (U.compareAndSwapObject(this, offset, h, node))
+                return;
+        }
+    }
+
+    /**
+     * Unparks a thread waiting on the stack at the given offset, if any.
+     */
+    private void signal(long offset) {
+        for (WaitNode h; (h = (WaitNode)U.getObjectVolatile(this, offset))
+                 != null; ) {
+            if (U.compareAndSwapObject(this, offset, h, h.next)) {
+                Thread w = h.thread;
+                if (w != null && U.compareAndSwapObject(h, THREAD, w, null)) {
+                    LockSupport.unpark(w);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Unparks up to n threads waiting on the stack at the given offset.
+     */
+    private void signal(long offset, int n) {
+        while (n-- > 0 && U.getObjectVolatile(this, offset) != null)
+            signal(offset);
+    }
+
+    /**
+     * Gives up waiting on the node, if any, passing on the signal if
+     * the node was already claimed.
+     */
+    private void cancelWait(WaitNode node, long offset) {
+        if (node != null) {
+            Thread w = node.thread;
+            if (w == null || !U.compareAndSwapObject(node, THREAD, w, null))
+                signal(offset);
+        }
+    }
+
+    /**
+     * Removes an element, waiting if necessary.
+     *
+     * @return the element, or null if timed out
+     */
+    private E awaitTake(boolean timed, long nanos)
+        throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        WaitNode node = null;
+        for (int spins = SPINS;;) {
+            E x = tryPoll();
+            if (x != null) {
+                if (node != null)
+                    U.compareAndSwapObject(node, THREAD, node.thread, null);
+                if (notFull != null)
+                    signal(NOTFULL);
+                return x;
+            }
+            if (timed && (nanos = deadline - System.nanoTime()) <= 0L) {
+                cancelWait(node, NOTEMPTY);
+                return null;
+            }
+            if (spins > 0)
+                --spins;
+            else if (node == null)
+                push(NOTEMPTY, node = new WaitNode());
+            else if (node.thread == null)
+                node = null;            // signalled; recheck
+            else {
+                if (timed)
+                    LockSupport.parkNanos(this, nanos);
+                else
+                    LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    cancelWait(node, NOTEMPTY);
+                    throw new InterruptedException();
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts an element, waiting if necessary.
+     *
+     * @return false if timed out
+     */
+    private boolean awaitPut(E e, boolean timed, long nanos)
+        throws InterruptedException {
+        if (e == null)
+            throw new NullPointerException();
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        WaitNode node = null;
+        for (int spins = SPINS;;) {
+            if (tryOffer(e)) {
+                if (node != null)
+                    U.compareAndSwapObject(node, THREAD, node.thread, null);
+                if (notEmpty != null)
+                    signal(NOTEMPTY);
+                return true;
+            }
+            if (timed && (nanos = deadline - System.nanoTime()) <= 0L) {
+                cancelWait(node, NOTFULL);
+                return false;
+            }
+            if (spins > 0)
+                --spins;
+            else if (node == null)
+                push(NOTFULL, node = new WaitNode());
+            else if (node.thread == null)
+                node = null;            // signalled; recheck
+            else {
+                if (timed)
+                    LockSupport.parkNanos(this, nanos);
+                else
+                    LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    cancelWait(node, NOTFULL);
+                    throw new InterruptedException();
+                }
+            }
+        }
+    }
+
+    // BlockingQueue methods
+
+    /**
+     * Inserts the specified element at the tail of this queue if it is
+     * possible to do so immediately without exceeding the queue's capacity,
+     * returning {@code true} upon success and throwing an
+     * {@code IllegalStateException} if this queue is full.
+     *
+     * @param e the element to add
+     * @return {@code true} (as specified by {@link Collection#add})
+     * @throws IllegalStateException if this queue is full
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean add(E e) {
+        return super.add(e);
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue if it is
+     * possible to do so immediately without exceeding the queue's capacity,
+     * returning {@code true} upon success and {@code false} if this queue
+     * is full.  This method is generally preferable to method {@link #add},
+     * which can fail to insert an element only by throwing an exception.
+     *
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null)
+            throw new NullPointerException();
+        if (!tryOffer(e))
+            return false;
+        if (notEmpty != null)
+            signal(NOTEMPTY);
+        return true;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting
+     * for space to become available if the queue is full.
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public void put(E e) throws InterruptedException {
+        awaitPut(e, false, 0L);
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting
+     * up to the specified wait time for space to become available if
+     * the queue is full.
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit)
+        throws InterruptedException {
+        return awaitPut(e, true, unit.toNanos(timeout));
+    }
+
+    public E poll() {
+        E x = tryPoll();
+        if (x != null && notFull != null)
+            signal(NOTFULL);
+        return x;
+    }
+
+    public E take() throws InterruptedException {
+        return awaitTake(false, 0L);
+    }
+
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return awaitTake(true, unit.toNanos(timeout));
+    }
+
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        final long[] seqs = sequences;
+        for (long p = head, t = tail; p < t; ++p) {
+            int i = index(p);
+            long s = U.getLongVolatile(seqs, seqOffset(i));
+            if (s == (p << 1) + 1L) {
+                Object x = U.getObjectVolatile(items, itemOffset(i));
+                if (x != null)
+                    return (E)x;
+            }
+            else if (s < (p << 1) + 1L) // not yet published
+                break;
+        }
+        return null;
+    }
+
+    /**
+     * Inserts as many as possible of the elements of the given
+     * collection at the tail of this queue, without waiting, in
+     * traversal order of the collection's iterator.  Space for the
+     * elements is reserved at once, so the elements inserted are
+     * contiguous in this queue if no other thread inserts more than
+     * the remaining capacity concurrently.
+     *
+     * @param c the elements to insert
+     * @return the number of elements inserted, which are the first
+     *         ones of the collection
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null
+     * @throws IllegalArgumentException if the collection is this queue
+     */
+    public int offerAll(Collection<? extends E> c) {
+        if (c == this)
+            throw new IllegalArgumentException();
+        Object[] a = c.toArray();
+        for (Object x : a)
+            if (x == null)
+                throw new NullPointerException();
+        final long[] seqs = sequences;
+        final Object[] items = this.items;
+        int n = a.length, added = 0;
+        while (added < n) {
+            long h = head, t = tail;    // read head first to bound free space
+            long free = capacity - (t - h);
+            if (free <= 0L) {
+                if (U.getLongVolatile(seqs, seqOffset(index(t))) < (t << 1))
+                    break;              // full
+                continue;               // stale head
+            }
+            int k = (int)Math.min(free, (long)(n - added));
+            if (!U.compareAndSwapLong(this, TAIL, t, t + k))
+                continue;
+            for (int j = 0; j < k; ++j) {
+                long p = t + j;
+                int i = index(p);
+                long so = seqOffset(i);
+                awaitSequence(so, p << 1);
+                U.putObject(items, itemOffset(i), a[added + j]);
+                U.putOrderedLong(seqs, so, (p << 1) + 1L);
+            }
+            U.fullFence();
+            signal(NOTEMPTY, k);
+            added += k;
+        }
+        return added;
+    }
+
+    /**
+     * Spins until a concurrent operation on the slot at the given
+     * sequence offset, which must already have claimed its position,
+     * publishes the given sequence number.
+     */
+    private void awaitSequence(long so, long seq) {
+        for (int spins = 0; U.getLongVolatile(sequences, so) != seq; ) {
+            if (++spins > SPINS)
+                Thread.yield();
+        }
+    }
+
+    /**
+     * Returns the number of elements in this queue.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        long n;
+        for (long h = head;;) {
+            long t = tail, r = removedCount;
+            if (h == (h = head)) {
+                n = t - h - r;
+                break;
+            }
+        }
+        return (n <= 0L) ? 0 : (n >= capacity) ? capacity : (int)n;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the number of additional elements that this queue can ideally
+     * (in the absence of memory or resource constraints) accept without
+     * blocking.  This is always equal to the initial capacity of this queue
+     * less the current {@code size} of this queue.
+     *
+     * <p>Note that you <em>cannot</em> always tell if an attempt to insert
+     * an element will succeed by inspecting {@code remainingCapacity}
+     * because it may be the case that another thread is about to
+     * insert or remove an element.
+     */
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * Removes a single instance of the specified element from this queue,
+     * if it is present.  More formally, removes an element {@code e} such
+     * that {@code o.equals(e)}, if this queue contains one or more such
+     * elements.
+     * Returns {@code true} if this queue contained the specified element
+     * (or equivalently, if this queue changed as a result of the call).
+     *
+     * <p>Removal of interior elements takes time linear in the size of
+     * the queue, and does not make room for new elements until those
+     * preceding the removed element are removed.
+     *
+     * @param o element to be removed from this queue, if present
+     * @return {@code true} if this queue changed as a result of the call
+     */
+    public boolean remove(Object o) {
+        return o != null && removeItem(o, false);
+    }
+
+    /**
+     * Removes the first element, starting from the head, that is equal
+     * to, or if identity is true, the same as, the given object.
+     */
+    private boolean removeItem(Object o, boolean identity) {
+        final long[] seqs = sequences;
+        final Object[] items = this.items;
+        for (long p = head, t = tail; p < t; ++p) {
+            int i = index(p);
+            long s = U.getLongVolatile(seqs, seqOffset(i));
+            if (s == (p << 1) + 1L) {
+                long io = itemOffset(i);
+                Object x = U.getObjectVolatile(items, io);
+                if (x != null && (identity ? x == o : o.equals(x)) &&
+                    U.compareAndSwapObject(items, io, x, null)) {
+                    U.getAndAddLong(this, REMOVEDCOUNT, 1L);
+                    return true;
+                }
+            }
+            else if (s < (p << 1) + 1L)
+                break;
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code true} if this queue contains the specified element.
+     * More formally, returns {@code true} if and only if this queue contains
+     * at least one element {@code e} such that {@code o.equals(e)}.
+     *
+     * @param o object to be checked for containment in this queue
+     * @return {@code true} if this queue contains the specified element
+     */
+    public boolean contains(Object o) {
+        if (o != null) {
+            for (Object x : snapshot())
+                if (o.equals(x))
+                    return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the elements between head and tail at the time of the
+     * scan, in order.
+     */
+    private ArrayList<Object> snapshot() {
+        final long[] seqs = sequences;
+        final Object[] items = this.items;
+        ArrayList<Object> list = new ArrayList<Object>();
+        for (long p = head, t = tail; p < t; ++p) {
+            int i = index(p);
+            long s = U.getLongVolatile(seqs, seqOffset(i));
+            if (s == (p << 1) + 1L) {
+                Object x = U.getObjectVolatile(items, itemOffset(i));
+                if (x != null)
+                    list.add(x);
+            }
+            else if (s < (p << 1) + 1L)
+                break;
+        }
+        return list;
+    }
+
+    /**
+     * Returns an array containing all of the elements in this queue, in
+     * proper sequence.
+     *
+     * <p>The returned array will be "safe" in that no references to it are
+     * maintained by this queue.  (In other words, this method must allocate
+     * a new array).  The caller is thus free to modify the returned array.
+     *
+     * <p>This method acts as bridge between array-based and collection-based
+     * APIs.
+     *
+     * @return an array containing all of the elements in this queue
+     */
+    public Object[] toArray() {
+        return snapshot().toArray();
+    }
+
+    /**
+     * Returns an array containing all of the elements in this queue, in
+     * proper sequence; the runtime type of the returned array is that of
+     * the specified array.  If the queue fits in the specified array, it
+     * is returned therein.  Otherwise, a new array is allocated with the
+     * runtime type of the specified array and the size of this queue.
+     *
+     * @param a the array into which the elements of the queue are to
+     *          be stored, if it is big enough; otherwise, a new array of the
+     *          same runtime type is allocated for this purpose
+     * @return an array containing all of the elements in this queue
+     * @throws ArrayStoreException if the runtime type of the specified array
+     *         is not a supertype of the runtime type of every element in
+     *         this queue
+     * @throws NullPointerException if the specified array is null
+     */
+    public <T> T[] toArray(T[] a) {
+        return snapshot().toArray(a);
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Removes at most the given number of available elements from this
+     * queue and adds them to the given collection.  Positions for all
+     * the elements are claimed at once, and the elements are added to
+     * the collection only after being removed from this queue.
+     *
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+        long h, t;
+        int k;
+        do {
+            h = head;
+            t = tail;
+            if ((k = (int)Math.min((long)maxElements, t - h)) <= 0)
+                return 0;
+        } while (!U.compareAndSwapLong(this, HEAD, h, h + k));
+        final long[] seqs = sequences;
+        final Object[] items = this.items;
+        Object[] a = new Object[k];
+        int n = 0, removed = 0;
+        for (int j = 0; j < k; ++j) {
+            long p = h + j;
+            int i = index(p);
+            long so = seqOffset(i);
+            awaitSequence(so, (p << 1) + 1L);
+            Object x = U.getAndSetObject(items, itemOffset(i), null);
+            U.putOrderedLong(seqs, so, (p + capacity) << 1);
+            if (x != null)
+                a[n++] = x;
+            else
+                ++removed;
+        }
+        U.fullFence();
+        if (removed != 0)
+            U.getAndAddLong(this, REMOVEDCOUNT, -removed);
+        signal(NOTFULL, k);
+        for (int j = 0; j < n; ++j)
+            c.add((E)a[j]);
+        return n;
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in proper sequence.
+     * The elements will be returned in order from first (head) to last (tail).
+     *
+     * <p>The returned iterator is
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>:
+     * it traverses the elements present when it was constructed.
+     *
+     * @return an iterator over the elements in this queue in proper sequence
+     */
+    public Iterator<E> iterator() {
+        return new Itr(snapshot().toArray());
+    }
+
+    /**
+     * Iterator over a snapshot of the elements.
+     */
+    private class Itr implements Iterator<E> {
+        private final Object[] array;
+        private int cursor;
+        private Object lastRet;
+
+        Itr(Object[] array) {
+            this.array = array;
+        }
+
+        public boolean hasNext() {
+            return cursor < array.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= array.length)
+                throw new NoSuchElementException();
+            return (E)(lastRet = array[cursor++]);
+        }
+
+        public void remove() {
+            Object x = lastRet;
+            if (x == null)
+                throw new IllegalStateException();
+            lastRet = null;
+            removeItem(x, true);
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long TAIL;
+    private static final long HEAD;
+    private static final long REMOVEDCOUNT;
+    private static final long NOTEMPTY;
+    private static final long NOTFULL;
+    private static final long THREAD;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    private static final long LBASE;
+    private static final int LSHIFT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = MpmcArrayBlockingQueue.class;
+            TAIL = U.objectFieldOffset(k.getDeclaredField("tail"));
+            HEAD = U.objectFieldOffset(k.getDeclaredField("head"));
+            REMOVEDCOUNT = U.objectFieldOffset
+                (k.getDeclaredField("removedCount"));
+            NOTEMPTY = U.objectFieldOffset(k.getDeclaredField("notEmpty"));
+            NOTFULL = U.objectFieldOffset(k.getDeclaredField("notFull"));
+            THREAD = U.objectFieldOffset
+                (WaitNode.class.getDeclaredField("thread"));
+            ABASE = U.arrayBaseOffset(Object[].class);
+            int scale = U.arrayIndexScale(Object[].class);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+            LBASE = U.arrayBaseOffset(long[].class);
+            scale = U.arrayIndexScale(long[].class);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            LSHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A bounded {@linkplain Queue queue} backed by an array, for use by any
+ * number of producer threads and a single consumer thread.  This queue
+ * orders elements FIFO (first-in-first-out) with respect to the order
+ * in which producers claim positions.  Its capacity is the power of
+ * two at least the one given at construction.
+ *
+ * <p><b>Ownership.</b> Any thread may insert elements, by {@link
+ * #offer}, {@link #add}, {@link #addAll} or {@link #fill}.  At any
+ * time, at most one thread may remove or examine elements, by {@link
+ * #poll}, {@link #remove()}, {@link #peek}, {@link #element}, {@link
+ * #clear} or {@link #drain}.  The consumer may change over time only
+ * if the change is separated by a
+ * <a href="package-summary.html#MemoryVisibility"><i>happens-before</i></a>
+ * relation, such as a handoff through a volatile field.  Violating
+ * this rule corrupts the queue.  The remaining methods, including
+ * {@link #size} and iteration, may be used by any thread.
+ *
+ * <p>Producers claim positions with a single compare-and-set each,
+ * while the consumer uses no atomic read-modify-write instructions:
+ * elements and positions are published with ordered stores, as by
+ * {@link java.util.concurrent.atomic.AtomicReference#lazySet lazySet}.
+ * A producer may be preempted between claiming a position and storing
+ * its element, in which case the consumer waits for the element
+ * rather than report an empty queue.  The producer and consumer
+ * positions are padded to reside on different cache lines.
+ *
+ * <p>The {@link #drain drain} and {@link #fill fill} methods transfer
+ * batches of elements to a {@link Consumer} and from a {@link
+ * Supplier}; {@code fill} claims all of its positions at once.
+ * Iterators are <i>weakly consistent</i> and do not support removal,
+ * and so neither do {@link #remove(Object)}, {@link #removeAll} and
+ * {@link #retainAll}.  This queue does not permit {@code null}
+ * elements.
+ *
+ * <p>Memory consistency effects: As with other concurrent
+ * collections, actions in a thread prior to placing an object into a
+ * {@code MpscArrayQueue}
+ * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
+ * actions subsequent to the access or removal of that element from
+ * the {@code MpscArrayQueue} in another thread.
+ *
+ * @since 1.8
+ * @param <E> the type of elements held in this collection
+ * @see SpscArrayQueue
+ * @see MpscLinkedQueue
+ */
+public class MpscArrayQueue<E> extends AbstractQueue<E> {
+
+    /*
+     * Producers claim positions by CAS of producerIndex, bounded by
+     * consumerIndex + capacity, then store their element in the slot
+     * for the position.  To avoid reading consumerIndex, which is
+     * written by the consumer, on every insertion, producers keep
+     * that bound in producerLimit, refreshing it only when reached.
+     * A slot is empty if and only if it holds null.  The consumer
+     * takes the element at consumerIndex, nulls the slot, then
+     * advances consumerIndex, in that order, so that a producer can
+     * only claim a position whose slot has been emptied.  If the
+     * slot at consumerIndex is empty but producerIndex is ahead, the
+     * producer of that position is between its claim and its store,
+     * and the consumer spins for it.
+     *
+     * If the supplier used by fill throws or returns null after
+     * positions were claimed, the remaining claimed slots are filled
+     * with SKIP, which the consumer discards.
+     */
+
+    /** The largest possible power of two capacity */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /** Filler for positions claimed by a failed fill */
+    static final Object SKIP = new Object();
+
+    /** The elements, or null for empty slots */
+    final Object[] buffer;
+
+    /** buffer.length - 1 */
+    final int mask;
+
+    /** The position of the next insertion */
+    @sun.misc.Contended("producer") private volatile long producerIndex;
+
+    /** Cached bound on producerIndex */
+    @sun.misc.Contended("producer") private volatile long producerLimit;
+
+    /** The position of the next removal */
+    @sun.misc.Contended("consumer") private volatile long consumerIndex;
+
+    /**
+     * Creates an {@code MpscArrayQueue} with at least the given
+     * capacity.
+     *
+     * @param capacity the minimum capacity of this queue
+     * @throws IllegalArgumentException if {@code capacity < 1} or
+     *         {@code capacity > 2^30}
+     */
+    public MpscArrayQueue(int capacity) {
+        if (capacity <= 0 || capacity > MAXIMUM_CAPACITY)
+            throw new IllegalArgumentException();
+        int n = (capacity < 2) ? 2 :
+            1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+        this.buffer = new Object[n];
+        this.mask = n - 1;
+        this.producerLimit = n;
+    }
+
+    /**
+     * Returns the capacity of this queue.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return buffer.length;
+    }
+
+    private long offset(long pos) {
+        return ((long)((int)pos & mask) << ASHIFT) + ABASE;
+    }
+
+    /**
+     * Returns the number of positions, at most n, available to
+     * producers starting at p, refreshing producerLimit if needed.
+     */
+    private long available(long p, long n) {
+        long limit = producerLimit;
+        if (p + n > limit) {
+            long c = consumerIndex;
+            if ((limit = c + buffer.length) > producerLimit)
+                U.putOrderedLong(this, PRODUCERLIMIT, limit);
+        }
+        return Math.min(limit - p, n);
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue if it is
+     * possible to do so immediately without exceeding the queue's
+     * capacity, returning {@code true} upon success and {@code false}
+     * if this queue is full.
+     *
+     * @param e the element to add
+     * @return {@code true} if the element was added to this queue, else
+     *         {@code false}
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null)
+            throw new NullPointerException();
+        long p;
+        do {
+            p = producerIndex;
+            if (p >= producerLimit && available(p, 1L) <= 0L)
+                return false;
+        } while (!U.compareAndSwapLong(this, PRODUCERINDEX, p, p + 1L));
+        U.putOrderedObject(buffer, offset(p), e);
+        return true;
+    }
+
+    /**
+     * Returns the element at the consumer position, waiting for it if
+     * claimed but not yet stored, or null if empty.
+     */
+    private Object awaitHead(long c, long o) {
+        Object e = U.getObjectVolatile(buffer, o);
+        if (e == null && c != producerIndex) {
+            do {
+                e = U.getObjectVolatile(buffer, o);
+            } while (e == null);
+        }
+        return e;
+    }
+
+    /**
+     * Retrieves and removes the head of this queue, or returns
+     * {@code null} if this queue is empty.  Must be invoked only by
+     * the consumer.
+     *
+     * @return the head of this queue, or {@code null} if this queue
+     *         is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        final Object[] buffer = this.buffer;
+        for (long c = consumerIndex;;) {
+            long o = offset(c);
+            Object e = awaitHead(c, o);
+            if (e == null)
+                return null;
+            U.putOrderedObject(buffer, o, null);
+            U.putOrderedLong(this, CONSUMERINDEX, ++c);
+            if (e != SKIP)
+                return (E)e;
+        }
+    }
+
+    /**
+     * Retrieves, but does not remove, the head of this queue, or
+     * returns {@code null} if this queue is empty.  Must be invoked
+     * only by the consumer.
+     *
+     * @return the head of this queue, or {@code null} if this queue
+     *         is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        final Object[] buffer = this.buffer;
+        for (long c = consumerIndex;;) {
+            long o = offset(c);
+            Object e = awaitHead(c, o);
+            if (e != SKIP)
+                return (E)e;
+            U.putOrderedObject(buffer, o, null);
+            U.putOrderedLong(this, CONSUMERINDEX, ++c);
+        }
+    }
+
+    /**
+     * Removes up to the given number of elements from the head of this
+     * queue, passing each to the given action.  Must be invoked only
+     * by the consumer.  If the action throws an exception, the element
+     * passed to it has already been removed, and the exception is
+     * relayed to the caller.
+     *
+     * @param action the action to perform on each element
+     * @param limit the maximum number of elements to remove
+     * @return the number of elements removed
+     * @throws NullPointerException if the specified action is null
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<? super E> action, int limit) {
+        if (action == null)
+            throw new NullPointerException();
+        final Object[] buffer = this.buffer;
+        long c = consumerIndex;
+        int n = 0;
+        while (n < limit) {
+            long o = offset(c);
+            Object e = awaitHead(c, o);
+            if (e == null)
+                break;
+            U.putOrderedObject(buffer, o, null);
+            U.putOrderedLong(this, CONSUMERINDEX, ++c);
+            if (e != SKIP) {
+                ++n;
+                action.accept((E)e);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Inserts up to the given number of elements obtained from the
+     * given supplier at the tail of this queue, as many as there is
+     * room for.  Positions for all the elements are claimed at once,
+     * so the elements are contiguous in this queue.
+     *
+     * @param s the supplier of elements
+     * @param limit the maximum number of elements to insert
+     * @return the number of elements inserted
+     * @throws NullPointerException if the specified supplier is null,
+     *         or returns null
+     */
+    public int fill(Supplier<? extends E> s, int limit) {
+        if (s == null)
+            throw new NullPointerException();
+        if (limit <= 0)
+            return 0;
+        long p, k;
+        do {
+            p = producerIndex;
+            if ((k = available(p, limit)) <= 0L)
+                return 0;
+        } while (!U.compareAndSwapLong(this, PRODUCERINDEX, p, p + k));
+        final Object[] buffer = this.buffer;
+        int n = 0;
+        try {
+            for (; n < k; ++n) {
+                E e = s.get();
+                if (e == null)
+                    throw new NullPointerException();
+                U.putOrderedObject(buffer, offset(p + n), e);
+            }
+        } finally {
+            for (int i = n; i < k; ++i)
+                U.putOrderedObject(buffer, offset(p + i), SKIP);
+        }
+        return n;
+    }
+
+    /**
+     * Returns the number of elements in this queue.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        for (long c = consumerIndex;;) {
+            long p = producerIndex;
+            if (c == (c = consumerIndex)) {
+                long n = p - c;
+                return (n <= 0L) ? 0 : (n >= buffer.length) ? buffer.length
+                    : (int)n;
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if this queue contains no elements.
+     *
+     * @return {@code true} if this queue contains no elements
+     */
+    public boolean isEmpty() {
+        return consumerIndex == producerIndex;
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in proper
+     * sequence.  The elements will be returned in order from first
+     * (head) to last (tail).
+     *
+     * <p>The returned iterator is
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>,
+     * and does not support {@code remove}.
+     *
+     * @return an iterator over the elements in this queue in proper sequence
+     */
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private class Itr implements Iterator<E> {
+        private long cursor, end;
+        private Object nextItem;
+
+        Itr() {
+            cursor = consumerIndex;
+            end = producerIndex;
+            advance();
+        }
+
+        private void advance() {
+            Object e = null;
+            while (cursor < end &&
+                   ((e = U.getObjectVolatile(buffer, offset(cursor++)))
+                    == null || e == SKIP))
+                e = null;
+            nextItem = e;
+        }
+
+        public boolean hasNext() {
+            return nextItem != null;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            Object e = nextItem;
+            if (e == null)
+                throw new NoSuchElementException();
+            advance();
+            return (E)e;
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long PRODUCERINDEX;
+    private static final long PRODUCERLIMIT;
+    private static final long CONSUMERINDEX;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = MpscArrayQueue.class;
+            PRODUCERINDEX = U.objectFieldOffset
+                (k.getDeclaredField("producerIndex"));
+            PRODUCERLIMIT = U.objectFieldOffset
+                (k.getDeclaredField("producerLimit"));
+            CONSUMERINDEX = U.objectFieldOffset
+                (k.getDeclaredField("consumerIndex"));
+            ABASE = U.arrayBaseOffset(Object[].class);
+            int scale = U.arrayIndexScale(Object[].class);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
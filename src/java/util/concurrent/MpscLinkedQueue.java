@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * An unbounded {@linkplain Queue queue} based on linked nodes, for use
+ * by any number of producer threads and a single consumer thread.
+ * This queue orders elements FIFO (first-in-first-out) with respect to
+ * the order in which producers append them.
+ *
+ * <p><b>Ownership.</b> Any thread may insert elements, by {@link
+ * #offer}, {@link #add}, {@link #addAll} or {@link #fill}.  At any
+ * time, at most one thread may remove or examine elements, by {@link
+ * #poll}, {@link #remove()}, {@link #peek}, {@link #element}, {@link
+ * #clear} or {@link #drain}.  The consumer may change over time only
+ * if the change is separated by a
+ * <a href="package-summary.html#MemoryVisibility"><i>happens-before</i></a>
+ * relation, such as a handoff through a volatile field.  Violating
+ * this rule corrupts the queue.  The remaining methods, including
+ * {@link #size} and iteration, may be used by any thread.
+ *
+ * <p>Unlike {@link ConcurrentLinkedQueue}, insertion never retries:
+ * each producer appends with a single atomic exchange, and the
+ * consumer uses no atomic read-modify-write instructions, publishing
+ * its progress with ordered stores, as by {@link
+ * java.util.concurrent.atomic.AtomicReference#lazySet lazySet}.  A
+ * producer may be preempted between its exchange and linking its node,
+ * in which case the consumer waits for the link rather than report an
+ * empty queue.
+ *
+ * <p>The {@link #drain drain} and {@link #fill fill} methods transfer
+ * batches of elements to a {@link Consumer} and from a {@link
+ * Supplier}; {@code fill} appends all of its elements at once.
+ * Iterators are <i>weakly consistent</i> and do not support removal,
+ * and so neither do {@link #remove(Object)}, {@link #removeAll} and
+ * {@link #retainAll}.  Beware that, unlike in most collections, the
+ * {@code size} method is <em>NOT</em> a constant-time operation.  This
+ * queue does not permit {@code null} elements.
+ *
+ * <p>Memory consistency effects: As with other concurrent
+ * collections, actions in a thread prior to placing an object into a
+ * {@code MpscLinkedQueue}
+ * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
+ * actions subsequent to the access or removal of that element from
+ * the {@code MpscLinkedQueue} in another thread.
+ *
+ * @since 1.8
+ * @param <E> the type of elements held in this collection
+ * @see SpscArrayQueue
+ * @see MpscArrayQueue
+ */
+public class MpscLinkedQueue<E> extends AbstractQueue<E> {
+
+    /*
+     * This is D. Vyukov's intrusive MPSC node-based queue.  head is a
+     * dummy node whose item has been consumed (or the initial one),
+     * and tail is the last node appended.  A producer exchanges tail
+     * with its node, then links the previous tail to it.  The
+     * consumer takes the item of head.next, which becomes the new
+     * head.  If head.next is null but head is not tail, a producer is
+     * between its exchange and its link, so the consumer spins.  As in
+     * ConcurrentLinkedQueue, consumed nodes are linked to themselves,
+     * which lets iterators detect that they fell off the list, and
+     * avoids retention of garbage through chains of consumed nodes.
+     */
+
+    static final class Node<E> {
+        volatile E item;
+        volatile Node<E> next;
+
+        Node(E item) {
+            U.putObject(this, ITEM, item);
+        }
+
+        // Unsafe mechanics
+        private static final sun.misc.Unsafe U;
+        private static final long ITEM;
+        private static final long NEXT;
+        static {
+            try {
+                U = sun.misc.Unsafe.getUnsafe();
+                Class<?> k = Node.class;
+                ITEM = U.objectFieldOffset(k.getDeclaredField("item"));
+                NEXT = U.objectFieldOffset(k.getDeclaredField("next"));
+            } catch (Exception e) {
+                throw new Error(e);
+            }
+        }
+    }
+
+    /** The last node appended */
+    @sun.misc.Contended private volatile Node<E> tail;
+
+    /** The dummy node before the first element */
+    @sun.misc.Contended private volatile Node<E> head;
+
+    /**
+     * Creates an empty {@code MpscLinkedQueue}.
+     */
+    public MpscLinkedQueue() {
+        head = tail = new Node<E>(null);
+    }
+
+    /**
+     * Links first to last at the end of the queue.
+     */
+    @SuppressWarnings("unchecked")
+    private void append(Node<E> first, Node<E> last) {
+        Node<E> prev = (Node<E>)U.getAndSetObject(this, TAIL, last);
+        U.putOrderedObject(prev, Node.NEXT, first);
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue.
+     * As the queue is unbounded, this method will never return
+     * {@code false}.
+     *
+     * @return {@code true} (as specified by {@link Queue#offer})
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null)
+            throw new NullPointerException();
+        Node<E> node = new Node<E>(e);
+        append(node, node);
+        return true;
+    }
+
+    /**
+     * Returns the successor of the given head, waiting for it if its
+     * producer has not linked it yet, or null if the queue is empty.
+     */
+    private Node<E> awaitNext(Node<E> h) {
+        Node<E> n = h.next;
+        if (n == null && h != tail) {
+            do {
+                n = h.next;
+            } while (n == null);
+        }
+        return n;
+    }
+
+    /**
+     * Makes n, the successor of head h, the new head.
+     */
+    private void advanceHead(Node<E> h, Node<E> n) {
+        U.putOrderedObject(n, Node.ITEM, null);
+        U.putOrderedObject(this, HEAD, n);
+        U.putOrderedObject(h, Node.NEXT, h);
+    }
+
+    /**
+     * Retrieves and removes the head of this queue, or returns
+     * {@code null} if this queue is empty.  Must be invoked only by
+     * the consumer.
+     *
+     * @return the head of this queue, or {@code null} if this queue
+     *         is empty
+     */
+    public E poll() {
+        Node<E> h = head, n = awaitNext(h);
+        if (n == null)
+            return null;
+        E item = n.item;
+        advanceHead(h, n);
+        return item;
+    }
+
+    /**
+     * Retrieves, but does not remove, the head of this queue, or
+     * returns {@code null} if this queue is empty.  Must be invoked
+     * only by the consumer.
+     *
+     * @return the head of this queue, or {@code null} if this queue
+     *         is empty
+     */
+    public E peek() {
+        Node<E> n = awaitNext(head);
+        return (n == null) ? null : n.item;
+    }
+
+    /**
+     * Removes up to the given number of elements from the head of this
+     * queue, passing each to the given action.  Must be invoked only
+     * by the consumer.  If the action throws an exception, the element
+     * passed to it has already been removed, and the exception is
+     * relayed to the caller.
+     *
+     * @param action the action to perform on each element
+     * @param limit the maximum number of elements to remove
+     * @return the number of elements removed
+     * @throws NullPointerException if the specified action is null
+     */
+    public int drain(Consumer<? super E> action, int limit) {
+        if (action == null)
+            throw new NullPointerException();
+        Node<E> h = head, n;
+        int count = 0;
+        for (; count < limit && (n = awaitNext(h)) != null; ++count) {
+            E item = n.item;
+            advanceHead(h, n);
+            h = n;
+            action.accept(item);
+        }
+        return count;
+    }
+
+    /**
+     * Inserts the given number of elements obtained from the given
+     * supplier at the tail of this queue.  The elements are linked
+     * together before being appended at once, so they are contiguous
+     * in this queue.  If the supplier throws an exception, or returns
+     * null, no elements are inserted.
+     *
+     * @param s the supplier of elements
+     * @param limit the number of elements to insert
+     * @return the number of elements inserted
+     * @throws NullPointerException if the specified supplier is null,
+     *         or returns null
+     */
+    public int fill(Supplier<? extends E> s, int limit) {
+        if (s == null)
+            throw new NullPointerException();
+        if (limit <= 0)
+            return 0;
+        Node<E> first = null, last = null;
+        for (int i = 0; i < limit; ++i) {
+            E e = s.get();
+            if (e == null)
+                throw new NullPointerException();
+            Node<E> node = new Node<E>(e);
+            if (last == null)
+                first = node;
+            else
+                U.putObject(last, Node.NEXT, node);
+            last = node;
+        }
+        append(first, last);
+        return limit;
+    }
+
+    /**
+     * Returns {@code true} if this queue contains no elements.
+     *
+     * @return {@code true} if this queue contains no elements
+     */
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * Returns the number of elements in this queue.  If this queue
+     * contains more than {@code Integer.MAX_VALUE} elements, returns
+     * {@code Integer.MAX_VALUE}.
+     *
+     * <p>Beware that, unlike in most collections, this method is
+     * <em>NOT</em> a constant-time operation. Because of the
+     * asynchronous nature of these queues, determining the current
+     * number of elements requires an O(n) traversal.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        int count = 0;
+        for (Node<E> p = first(); p != null; p = succ(p)) {
+            if (p.item != null) {
+                // Collection.size() spec says to max out
+                if (++count == Integer.MAX_VALUE)
+                    break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the first node holding an element, or null if none.
+     */
+    private Node<E> first() {
+        return head.next;
+    }
+
+    /**
+     * Returns the successor of p, or the first node if p was consumed.
+     */
+    private Node<E> succ(Node<E> p) {
+        Node<E> next = p.next;
+        return (p == next) ? first() : next;
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in proper
+     * sequence.  The elements will be returned in order from first
+     * (head) to last (tail).
+     *
+     * <p>The returned iterator is
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>,
+     * and does not support {@code remove}.
+     *
+     * @return an iterator over the elements in this queue in proper sequence
+     */
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private class Itr implements Iterator<E> {
+        /** Node holding nextItem */
+        private Node<E> nextNode;
+
+        /** Next item to return, or null if none */
+        private E nextItem;
+
+        Itr() {
+            advance(first());
+        }
+
+        private void advance(Node<E> p) {
+            E item = null;
+            while (p != null && (item = p.item) == null)
+                p = succ(p);
+            nextNode = p;
+            nextItem = item;
+        }
+
+        public boolean hasNext() {
+            return nextItem != null;
+        }
+
+        public E next() {
+            E item = nextItem;
+            if (item == null)
+                throw new NoSuchElementException();
+            advance(succ(nextNode));
+            return item;
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long HEAD;
+    private static final long TAIL;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = MpscLinkedQueue.class;
+            HEAD = U.objectFieldOffset(k.getDeclaredField("head"));
+            TAIL = U.objectFieldOffset(k.getDeclaredField("tail"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
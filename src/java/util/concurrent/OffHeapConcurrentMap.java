@@ -0,0 +1,1117 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A {@link ConcurrentMap} whose keys and values are held outside the
+ * garbage-collected heap, serialized into direct or memory-mapped
+ * {@link ByteBuffer}s.  Such a map can hold many gigabytes of data without
+ * adding to the heap that the garbage collector must trace or copy, at
+ * the cost of encoding every key and value on the way in and decoding it
+ * on the way out.  Keys and values are converted to and from bytes by a
+ * pair of {@link Codec}s supplied at construction; {@link #longCodec},
+ * {@link #stringCodec} and {@link #byteArrayCodec} provide codecs for
+ * common types.
+ *
+ * <p>The map is divided into segments, each occupying a single buffer
+ * that holds an open-addressing index followed by an append-only region
+ * of records.  Replaced and removed records become garbage that is
+ * reclaimed when the segment next runs out of space, by copying its live
+ * records into a fresh, possibly larger, buffer.  Each segment is guarded
+ * by a {@link StampedLock}: any number of readers may access a segment
+ * concurrently, and writers exclude readers of that segment only.
+ *
+ * <p>Maps created with a constructor use direct buffers, which are
+ * released when the map becomes unreachable.  Maps created by
+ * {@link #open} keep each segment in a file of the given directory,
+ * mapped with {@link FileChannel#map}; reopening the same directory with
+ * compatible codecs recovers the mappings, so the table survives
+ * restarts.  Changes to a file-backed map are written to the page cache
+ * as they are made; {@link #force} forces them to the storage device.
+ * Hashing is computed over the encoded bytes of each key, so a key's
+ * location does not depend on its {@code hashCode}.
+ *
+ * <p>Keys are compared by their encoded form, so a codec must encode
+ * equal keys to equal byte sequences.  Values are compared by
+ * {@code equals} after decoding.  Like {@link ConcurrentHashMap}, this
+ * class does not allow {@code null} keys or values.  Iterators of the
+ * collection views are weakly consistent: each segment is read in one
+ * step when the iterator reaches it.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ * @see ConcurrentHashMap
+ * @since 1.8
+ */
+public class OffHeapConcurrentMap<K,V> extends AbstractMap<K,V>
+    implements ConcurrentMap<K,V> {
+
+    /**
+     * Converts objects to and from their serialized form in a buffer.
+     * Implementations must be stateless or thread-safe, as they are
+     * invoked concurrently.
+     *
+     * @param <T> the type of object encoded
+     */
+    public interface Codec<T> {
+        /**
+         * Returns the number of bytes {@link #encode} writes for the
+         * given object.
+         *
+         * @param t the object
+         * @return the encoded size in bytes
+         */
+        int encodedSize(T t);
+
+        /**
+         * Writes exactly {@code encodedSize(t)} bytes representing the
+         * given object at the current position of the given buffer.
+         *
+         * @param t the object
+         * @param dst the destination buffer
+         */
+        void encode(T t, ByteBuffer dst);
+
+        /**
+         * Reads an object from the given buffer, whose remaining bytes
+         * are exactly those written by {@link #encode}.
+         *
+         * @param src the source buffer
+         * @return the decoded object
+         */
+        T decode(ByteBuffer src);
+    }
+
+    /* ---------------- Segment layout -------------- */
+
+    /*
+     * A segment buffer is laid out as:
+     *
+     *   header  : HEADER_SIZE bytes, fields at the offsets below
+     *   index   : slots * SLOT_SIZE bytes, each slot an int hash followed
+     *             by an int record offset (EMPTY or DELETED if unused)
+     *   records : each an int key length, an int value length, then the
+     *             key bytes and value bytes
+     *
+     * All header fields are ints, so that a segment never exceeds the
+     * 2GB limit of a ByteBuffer.
+     */
+
+    static final int MAGIC          = 0x4f484d31; // "OHM1"
+    static final int H_MAGIC        = 0;
+    static final int H_SLOTS        = 4;
+    static final int H_SIZE         = 8;
+    static final int H_END          = 12;  // end of record region
+    static final int H_GARBAGE      = 16;  // bytes of dead records
+    static final int H_DELETED      = 20;  // number of DELETED slots
+    static final int HEADER_SIZE    = 32;
+    static final int SLOT_SIZE      = 8;
+    static final int RECORD_HEADER  = 8;
+
+    static final int EMPTY          = 0;
+    static final int DELETED        = -1;
+
+    /** The smallest number of index slots of a segment */
+    static final int MIN_SLOTS = 64;
+
+    /** The largest capacity of a segment buffer */
+    static final int MAX_SEGMENT_BYTES = Integer.MAX_VALUE - 8;
+
+    /** The default number of bytes initially reserved for all segments */
+    static final long DEFAULT_CAPACITY_BYTES = 1L << 24;
+
+    /** The default number of segments */
+    static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    static final String SEGMENT_FILE_PREFIX = "segment-";
+    static final String SEGMENT_FILE_SUFFIX = ".dat";
+
+    /*
+     * The directory of a file-backed map also holds a manifest recording
+     * the number of segments, since keys are routed to segments by the
+     * high bits of their hashes, so that a map reopened with a different
+     * number of segments would look up existing keys in the wrong ones.
+     * The manifest is two ints: MANIFEST_MAGIC and the segment count.
+     */
+    static final String MANIFEST_FILE   = "manifest";
+    static final int MANIFEST_MAGIC     = 0x4f484d4d; // "OHMM"
+    static final int MANIFEST_SIZE      = 8;
+
+    /* ---------------- Fields -------------- */
+
+    final Codec<K> keyCodec;
+    final Codec<V> valueCodec;
+    final Segment[] segments;
+    final int segmentShift;
+
+    /* ---------------- Hashing -------------- */
+
+    /**
+     * Returns a 64-bit hash of the remaining bytes of the given buffer:
+     * FNV-1a followed by the MurmurHash3 finalizer.  Depends only on the
+     * bytes, so is stable across runs.
+     */
+    static long hashBytes(ByteBuffer b) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = b.position(), n = b.limit(); i < n; ++i) {
+            h ^= b.get(i) & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    final Segment segmentFor(long h) {
+        Segment[] segs = segments;
+        return segs[(segs.length == 1) ? 0 : (int)(h >>> segmentShift)];
+    }
+
+    /**
+     * Encodes the given object into a new heap buffer, flipped for
+     * reading.
+     */
+    static <T> ByteBuffer encode(Codec<T> codec, T t) {
+        int n = codec.encodedSize(t);
+        ByteBuffer b = ByteBuffer.allocate(n);
+        codec.encode(t, b);
+        if (b.position() != n)
+            throw new IllegalStateException("Codec wrote " + b.position() +
+                                            " bytes, expected " + n);
+        b.flip();
+        return b;
+    }
+
+    /**
+     * Returns a view of the given region of the given buffer.
+     */
+    static ByteBuffer region(ByteBuffer buf, int off, int len) {
+        ByteBuffer b = buf.duplicate();
+        b.limit(off + len).position(off);
+        return b.slice();
+    }
+
+    /* ---------------- Segments -------------- */
+
+    /**
+     * One segment of the map.  All accesses to the buffer use absolute
+     * indexing or duplicates, so readers holding the read lock do not
+     * interfere with one another.
+     */
+    @SuppressWarnings("serial")
+    static final class Segment extends StampedLock {
+        final Path file;            // backing file, or null if direct
+        final int minDataBytes;     // record space reserved on rebuild
+        ByteBuffer buf;
+
+        Segment(Path file, int minDataBytes) {
+            this.file = file;
+            this.minDataBytes = minDataBytes;
+        }
+
+        int slots()            { return buf.getInt(H_SLOTS); }
+        int size()             { return buf.getInt(H_SIZE); }
+        int dataStart()        { return HEADER_SIZE + slots() * SLOT_SIZE; }
+        static int slotPos(int i) { return HEADER_SIZE + i * SLOT_SIZE; }
+
+        /**
+         * Initializes an empty segment in the given buffer.
+         */
+        static void format(ByteBuffer b, int slots) {
+            b.putInt(H_MAGIC, MAGIC);
+            b.putInt(H_SLOTS, slots);
+            b.putInt(H_SIZE, 0);
+            b.putInt(H_END, HEADER_SIZE + slots * SLOT_SIZE);
+            b.putInt(H_GARBAGE, 0);
+            b.putInt(H_DELETED, 0);
+        }
+
+        /**
+         * Allocates a buffer of the given capacity; for a file-backed
+         * segment, maps a fresh temporary file that {@link #install}
+         * later moves into place.
+         */
+        ByteBuffer allocate(int capacity) throws IOException {
+            if (file == null)
+                return ByteBuffer.allocateDirect(capacity);
+            Path tmp = tempFile();
+            try (FileChannel ch = FileChannel.open(
+                     tmp, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return ch.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            }
+        }
+
+        Path tempFile() {
+            return file.resolveSibling(file.getFileName() + ".tmp");
+        }
+
+        /**
+         * Makes the given fully built buffer the current one.
+         */
+        void install(ByteBuffer b) throws IOException {
+            if (file != null) {
+                ((MappedByteBuffer)b).force();
+                Files.move(tempFile(), file,
+                           StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            }
+            buf = b;
+        }
+
+        /**
+         * Opens or creates the segment's buffer.
+         */
+        void init(int slots, int capacity) throws IOException {
+            if (file != null && Files.exists(file)) {
+                try (FileChannel ch = FileChannel.open(
+                         file, StandardOpenOption.READ,
+                         StandardOpenOption.WRITE)) {
+                    long n = ch.size();
+                    if (n < HEADER_SIZE || n > MAX_SEGMENT_BYTES)
+                        throw new IOException("Corrupt segment file " + file);
+                    ByteBuffer b = ch.map(FileChannel.MapMode.READ_WRITE, 0, n);
+                    if (b.getInt(H_MAGIC) != MAGIC ||
+                        b.getInt(H_END) > n)
+                        throw new IOException("Corrupt segment file " + file);
+                    buf = b;
+                    return;
+                }
+            }
+            ByteBuffer b = allocate(capacity);
+            format(b, slots);
+            install(b);
+        }
+
+        /**
+         * Returns the slot index of the record whose key equals the given
+         * bytes, or the complement of the first unused slot (empty or
+         * deleted) on its probe sequence if absent.
+         */
+        int find(ByteBuffer key, int hash) {
+            ByteBuffer b = buf;
+            int slots = b.getInt(H_SLOTS), mask = slots - 1;
+            int klen = key.remaining(), firstFree = -1;
+            for (int n = 0, i = hash & mask; n < slots; ++n, i = (i + 1) & mask) {
+                int p = slotPos(i), off = b.getInt(p + 4);
+                if (off == EMPTY)
+                    return ~((firstFree >= 0) ? firstFree : i);
+                if (off == DELETED) {
+                    if (firstFree < 0)
+                        firstFree = i;
+                }
+                else if (b.getInt(p) == hash && b.getInt(off) == klen &&
+                         region(b, off + RECORD_HEADER, klen).equals(key))
+                    return i;
+            }
+            return ~firstFree;
+        }
+
+        /** Requires read lock.  Returns the value region or null. */
+        ByteBuffer valueAt(int i) {
+            ByteBuffer b = buf;
+            int off = b.getInt(slotPos(i) + 4);
+            int klen = b.getInt(off), vlen = b.getInt(off + 4);
+            return region(b, off + RECORD_HEADER + klen, vlen);
+        }
+
+        /** Requires read lock. */
+        int recordLength(int i) {
+            ByteBuffer b = buf;
+            int off = b.getInt(slotPos(i) + 4);
+            return RECORD_HEADER + b.getInt(off) + b.getInt(off + 4);
+        }
+
+        /**
+         * Requires write lock.  Stores the given key and value, replacing
+         * the record at slot i if i >= 0, else inserting at slot ~i.
+         */
+        void store(int i, ByteBuffer key, int hash, ByteBuffer value) {
+            int klen = key.remaining(), vlen = value.remaining();
+            int len = RECORD_HEADER + klen + vlen;
+            if (i < 0 && !hasSlotFor(buf) || !hasRoom(buf, len)) {
+                rebuild(len, i < 0);
+                i = find(key, hash);
+            }
+            ByteBuffer b = buf;
+            int end = b.getInt(H_END);
+            b.putInt(end, klen);
+            b.putInt(end + 4, vlen);
+            ByteBuffer d = b.duplicate();
+            d.position(end + RECORD_HEADER);
+            d.put(key.duplicate());
+            d.put(value.duplicate());
+            b.putInt(H_END, end + len);
+            int p;
+            if (i >= 0) {
+                p = slotPos(i);
+                b.putInt(H_GARBAGE, b.getInt(H_GARBAGE) + recordLength(i));
+            }
+            else {
+                p = slotPos(~i);
+                if (b.getInt(p + 4) == DELETED)
+                    b.putInt(H_DELETED, b.getInt(H_DELETED) - 1);
+                b.putInt(H_SIZE, b.getInt(H_SIZE) + 1);
+            }
+            b.putInt(p, hash);
+            b.putInt(p + 4, end);
+        }
+
+        /** Requires write lock.  Removes the record at slot i. */
+        void delete(int i) {
+            ByteBuffer b = buf;
+            int p = slotPos(i);
+            b.putInt(H_GARBAGE, b.getInt(H_GARBAGE) + recordLength(i));
+            b.putInt(p + 4, DELETED);
+            b.putInt(H_DELETED, b.getInt(H_DELETED) + 1);
+            b.putInt(H_SIZE, b.getInt(H_SIZE) - 1);
+        }
+
+        /** Requires write lock. */
+        void clear() {
+            format(buf, buf.getInt(H_SLOTS));
+            for (int i = 0, n = buf.getInt(H_SLOTS); i < n; ++i)
+                buf.putInt(slotPos(i) + 4, EMPTY);
+        }
+
+        /** Keeps occupied plus deleted slots at most half the index. */
+        static boolean hasSlotFor(ByteBuffer b) {
+            return (b.getInt(H_SIZE) + b.getInt(H_DELETED) + 1) * 2 <=
+                b.getInt(H_SLOTS);
+        }
+
+        static boolean hasRoom(ByteBuffer b, int len) {
+            return (long)b.getInt(H_END) + len <= b.capacity();
+        }
+
+        /**
+         * Requires write lock.  Copies live records into a new buffer with
+         * room for at least one more record of the given length, dropping
+         * garbage and deleted slots, and growing the index and record
+         * region as needed.
+         */
+        void rebuild(int len, boolean inserting) {
+            ByteBuffer old = buf;
+            int size = old.getInt(H_SIZE), oldSlots = old.getInt(H_SLOTS);
+            long live = (long)old.getInt(H_END) -
+                (HEADER_SIZE + (long)oldSlots * SLOT_SIZE) -
+                old.getInt(H_GARBAGE);
+            int slots = oldSlots;
+            while ((size + (inserting ? 1L : 0L)) * 4 > slots &&
+                   slots < (1 << 28))
+                slots <<= 1;
+            long data = Math.max((live + len) * 2, (long)minDataBytes);
+            long cap = HEADER_SIZE + (long)slots * SLOT_SIZE + data;
+            if (cap > MAX_SEGMENT_BYTES) {
+                cap = MAX_SEGMENT_BYTES;
+                if (cap - HEADER_SIZE - (long)slots * SLOT_SIZE < live + len)
+                    throw new IllegalStateException("Segment capacity exceeded");
+            }
+            ByteBuffer b;
+            try {
+                b = allocate((int)cap);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            format(b, slots);
+            int mask = slots - 1, end = b.getInt(H_END);
+            ByteBuffer d = b.duplicate();
+            for (int j = 0; j < oldSlots; ++j) {
+                int p = slotPos(j), off = old.getInt(p + 4);
+                if (off == EMPTY || off == DELETED)
+                    continue;
+                int h = old.getInt(p);
+                int rl = RECORD_HEADER + old.getInt(off) + old.getInt(off + 4);
+                d.position(end);
+                d.put(region(old, off, rl));
+                int i = h & mask;
+                while (b.getInt(slotPos(i) + 4) != EMPTY)
+                    i = (i + 1) & mask;
+                b.putInt(slotPos(i), h);
+                b.putInt(slotPos(i) + 4, end);
+                end += rl;
+            }
+            b.putInt(H_END, end);
+            b.putInt(H_SIZE, size);
+            try {
+                install(b);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        /**
+         * Requires read lock.  Decodes all mappings of this segment.
+         */
+        <K,V> void collect(Codec<K> kc, Codec<V> vc,
+                           List<Map.Entry<K,V>> list) {
+            ByteBuffer b = buf;
+            for (int j = 0, n = b.getInt(H_SLOTS); j < n; ++j) {
+                int off = b.getInt(slotPos(j) + 4);
+                if (off == EMPTY || off == DELETED)
+                    continue;
+                int klen = b.getInt(off), vlen = b.getInt(off + 4);
+                K k = kc.decode(region(b, off + RECORD_HEADER, klen));
+                V v = vc.decode(region(b, off + RECORD_HEADER + klen, vlen));
+                list.add(new AbstractMap.SimpleImmutableEntry<K,V>(k, v));
+            }
+        }
+    }
+
+    /* ---------------- Construction -------------- */
+
+    /**
+     * Creates a new, empty map backed by direct buffers, with the default
+     * initial capacity (16MB) and number of segments (16).
+     *
+     * @param keyCodec the codec for keys
+     * @param valueCodec the codec for values
+     * @throws NullPointerException if either codec is null
+     */
+    public OffHeapConcurrentMap(Codec<K> keyCodec, Codec<V> valueCodec) {
+        this(keyCodec, valueCodec, DEFAULT_CAPACITY_BYTES,
+             DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates a new, empty map backed by direct buffers.
+     *
+     * @param keyCodec the codec for keys
+     * @param valueCodec the codec for values
+     * @param initialCapacityBytes the number of bytes initially reserved
+     *        for records, spread over all segments
+     * @param concurrencyLevel the estimated number of concurrently
+     *        updating threads, used as a hint for the number of segments
+     * @throws NullPointerException if either codec is null
+     * @throws IllegalArgumentException if the initial capacity is
+     *         negative or the concurrency level is nonpositive
+     */
+    public OffHeapConcurrentMap(Codec<K> keyCodec, Codec<V> valueCodec,
+                                long initialCapacityBytes,
+                                int concurrencyLevel) {
+        this(keyCodec, valueCodec, initialCapacityBytes, concurrencyLevel,
+             null);
+    }
+
+    private OffHeapConcurrentMap(Codec<K> keyCodec, Codec<V> valueCodec,
+                                 long initialCapacityBytes,
+                                 int concurrencyLevel, Path dir) {
+        if (keyCodec == null || valueCodec == null)
+            throw new NullPointerException();
+        if (initialCapacityBytes < 0 || concurrencyLevel <= 0)
+            throw new IllegalArgumentException();
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        int nsegs = segmentCount(concurrencyLevel);
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(nsegs);
+        int data = (int)Math.min(initialCapacityBytes / nsegs,
+                                 MAX_SEGMENT_BYTES / 2);
+        data = Math.max(data, 4096);
+        int slots = MIN_SLOTS;
+        while (slots < (data >>> 4) && slots < (1 << 24))
+            slots <<= 1;
+        int cap = (int)Math.min((long)MAX_SEGMENT_BYTES,
+                                HEADER_SIZE + (long)slots * SLOT_SIZE + data);
+        Segment[] segs = new Segment[nsegs];
+        try {
+            for (int i = 0; i < nsegs; ++i) {
+                Path f = (dir == null) ? null :
+                    dir.resolve(SEGMENT_FILE_PREFIX + i + SEGMENT_FILE_SUFFIX);
+                (segs[i] = new Segment(f, data)).init(slots, cap);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        this.segments = segs;
+    }
+
+    /**
+     * Returns the number of segments for the given concurrency level: the
+     * least power of two at least as large, up to 4096.
+     */
+    static int segmentCount(int concurrencyLevel) {
+        int nsegs = 1;
+        while (nsegs < concurrencyLevel && nsegs < (1 << 12))
+            nsegs <<= 1;
+        return nsegs;
+    }
+
+    /**
+     * Opens a map whose segments are stored in memory-mapped files of the
+     * given directory, creating the directory and files if they do not
+     * exist.  If the directory holds the segments of a map previously
+     * opened with the same concurrency level, its mappings are recovered.
+     * The number of segments is recorded in a manifest file of the
+     * directory, and checked against the concurrency level on reopening.
+     *
+     * @param directory the directory holding the segment files
+     * @param keyCodec the codec for keys
+     * @param valueCodec the codec for values
+     * @param initialCapacityBytes the number of bytes initially reserved
+     *        for records of new segments, spread over all segments
+     * @param concurrencyLevel the estimated number of concurrently
+     *        updating threads, used as a hint for the number of segments
+     * @param <K> the type of keys maintained by the map
+     * @param <V> the type of mapped values
+     * @return the map
+     * @throws IOException if the directory cannot be created, or a
+     *         segment file cannot be read or is corrupt
+     * @throws IllegalStateException if the directory holds a different
+     *         number of segments than the concurrency level calls for,
+     *         in which case the directory is left unchanged
+     */
+    public static <K,V> OffHeapConcurrentMap<K,V> open(
+        Path directory, Codec<K> keyCodec, Codec<V> valueCodec,
+        long initialCapacityBytes, int concurrencyLevel) throws IOException {
+        if (keyCodec == null || valueCodec == null)
+            throw new NullPointerException();
+        if (initialCapacityBytes < 0 || concurrencyLevel <= 0)
+            throw new IllegalArgumentException();
+        Files.createDirectories(directory);
+        int nsegs = segmentCount(concurrencyLevel);
+        Path manifest = directory.resolve(MANIFEST_FILE);
+        boolean hasManifest = Files.exists(manifest);
+        int stored = hasManifest ?
+            readManifest(manifest) : existingSegments(directory);
+        if (stored != 0 && stored != nsegs)
+            throw new IllegalStateException(
+                "Directory holds " + stored + " segments, but concurrency" +
+                " level " + concurrencyLevel + " calls for " + nsegs +
+                ": " + directory);
+        try {
+            OffHeapConcurrentMap<K,V> m = new OffHeapConcurrentMap<K,V>
+                (keyCodec, valueCodec, initialCapacityBytes,
+                 concurrencyLevel, directory);
+            if (!hasManifest)
+                writeManifest(manifest, nsegs);
+            return m;
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Returns the segment count recorded in the given manifest.
+     */
+    static int readManifest(Path manifest) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(manifest));
+        int n;
+        if (b.remaining() != MANIFEST_SIZE ||
+            b.getInt(0) != MANIFEST_MAGIC ||
+            (n = b.getInt(4)) <= 0 || (n & (n - 1)) != 0)
+            throw new IOException("Corrupt manifest: " + manifest);
+        return n;
+    }
+
+    /**
+     * Atomically writes a manifest recording the given segment count.
+     */
+    static void writeManifest(Path manifest, int nsegs) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(MANIFEST_SIZE);
+        b.putInt(0, MANIFEST_MAGIC).putInt(4, nsegs);
+        Path tmp = manifest.resolveSibling(manifest.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(
+                 tmp, StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING,
+                 StandardOpenOption.WRITE)) {
+            while (b.hasRemaining())
+                ch.write(b);
+            ch.force(true);
+        }
+        Files.move(tmp, manifest, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the number of consecutively numbered segment files in a
+     * directory without a manifest, as written before manifests were
+     * recorded, or zero if there are none.
+     */
+    static int existingSegments(Path directory) {
+        int n = 0;
+        while (Files.exists(directory.resolve(SEGMENT_FILE_PREFIX + n +
+                                              SEGMENT_FILE_SUFFIX)))
+            ++n;
+        return n;
+    }
+
+    /* ---------------- Map operations -------------- */
+
+    @SuppressWarnings("unchecked")
+    private ByteBuffer encodeKey(Object key) {
+        if (key == null)
+            throw new NullPointerException();
+        return encode(keyCodec, (K)key);
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map, or
+     * {@link Integer#MAX_VALUE} if that is larger.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        long n = 0L;
+        for (Segment s : segments) {
+            long stamp = s.readLock();
+            try {
+                n += s.size();
+            } finally {
+                s.unlockRead(stamp);
+            }
+        }
+        return (n > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)n;
+    }
+
+    /**
+     * Returns {@code true} if this map contains no key-value mappings.
+     *
+     * @return {@code true} if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns {@code true} if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key possible key
+     * @return {@code true} if this map contains a mapping for the key
+     * @throws NullPointerException if the specified key is null
+     * @throws ClassCastException if the key is not accepted by the key codec
+     */
+    public boolean containsKey(Object key) {
+        ByteBuffer k = encodeKey(key);
+        long h = hashBytes(k);
+        Segment s = segmentFor(h);
+        long stamp = s.readLock();
+        try {
+            return s.find(k, (int)h) >= 0;
+        } finally {
+            s.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code null} if this map contains no mapping for the key.  The value
+     * is decoded afresh on each call.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value, or {@code null} if absent
+     * @throws NullPointerException if the specified key is null
+     * @throws ClassCastException if the key is not accepted by the key codec
+     */
+    public V get(Object key) {
+        ByteBuffer k = encodeKey(key);
+        long h = hashBytes(k);
+        Segment s = segmentFor(h);
+        long stamp = s.readLock();
+        try {
+            int i = s.find(k, (int)h);
+            return (i < 0) ? null : valueCodec.decode(s.valueAt(i));
+        } finally {
+            s.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Shared implementation of put, putIfAbsent and replace.
+     *
+     * @param mode 0 to always store, 1 to store only if absent, 2 to
+     *        store only if present
+     */
+    private V doPut(K key, V value, int mode) {
+        if (value == null)
+            throw new NullPointerException();
+        ByteBuffer k = encodeKey(key), v = encode(valueCodec, value);
+        long h = hashBytes(k);
+        Segment s = segmentFor(h);
+        long stamp = s.writeLock();
+        try {
+            int i = s.find(k, (int)h);
+            V old = (i < 0) ? null : valueCodec.decode(s.valueAt(i));
+            if ((mode == 1 && i >= 0) || (mode == 2 && i < 0))
+                return old;
+            s.store(i, k, (int)h, v);
+            return old;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Maps the specified key to the specified value in this map.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}
+     * @throws NullPointerException if the specified key or value is null
+     * @throws IllegalStateException if a segment cannot grow to hold the
+     *         mapping
+     */
+    public V put(K key, V value) {
+        return doPut(key, value, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no mapping for the key
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V putIfAbsent(K key, V value) {
+        return doPut(key, value, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no mapping for the key
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V replace(K key, V value) {
+        return doPut(key, value, 2);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if any of the arguments are null
+     */
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (oldValue == null || newValue == null)
+            throw new NullPointerException();
+        ByteBuffer k = encodeKey(key), v = encode(valueCodec, newValue);
+        long h = hashBytes(k);
+        Segment s = segmentFor(h);
+        long stamp = s.writeLock();
+        try {
+            int i = s.find(k, (int)h);
+            if (i < 0 || !oldValue.equals(valueCodec.decode(s.valueAt(i))))
+                return false;
+            s.store(i, k, (int)h, v);
+            return true;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the mapping for a key from this map if it is present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}
+     * @throws NullPointerException if the specified key is null
+     */
+    public V remove(Object key) {
+        ByteBuffer k = encodeKey(key);
+        long h = hashBytes(k);
+        Segment s = segmentFor(h);
+        long stamp = s.writeLock();
+        try {
+            int i = s.find(k, (int)h);
+            if (i < 0)
+                return null;
+            V old = valueCodec.decode(s.valueAt(i));
+            s.delete(i);
+            return old;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean remove(Object key, Object value) {
+        if (value == null)
+            return false;
+        ByteBuffer k = encodeKey(key);
+        long h = hashBytes(k);
+        Segment s = segmentFor(h);
+        long stamp = s.writeLock();
+        try {
+            int i = s.find(k, (int)h);
+            if (i < 0 || !value.equals(valueCodec.decode(s.valueAt(i))))
+                return false;
+            s.delete(i);
+            return true;
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes all of the mappings from this map.  Segment buffers keep
+     * their current capacity.
+     */
+    public void clear() {
+        for (Segment s : segments) {
+            long stamp = s.writeLock();
+            try {
+                s.clear();
+            } finally {
+                s.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Forces any changes made to a file-backed map to be written to the
+     * storage device containing its files.  Has no effect for maps backed
+     * by direct buffers.
+     */
+    public void force() {
+        for (Segment s : segments) {
+            long stamp = s.readLock();
+            try {
+                if (s.buf instanceof MappedByteBuffer)
+                    ((MappedByteBuffer)s.buf).force();
+            } finally {
+                s.unlockRead(stamp);
+            }
+        }
+    }
+
+    /* ---------------- Views -------------- */
+
+    private transient Set<Map.Entry<K,V>> entrySet;
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this map.
+     * The set is backed by the map, and its iterator is weakly consistent.
+     * The entries it returns are snapshots; {@code setValue} writes
+     * through to the map.
+     *
+     * @return the set view
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        Set<Map.Entry<K,V>> es;
+        return (es = entrySet) != null ? es : (entrySet = new EntrySet());
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return new EntryIterator();
+        }
+        public int size() {
+            return OffHeapConcurrentMap.this.size();
+        }
+        public void clear() {
+            OffHeapConcurrentMap.this.clear();
+        }
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            Object k, v, r;
+            return ((k = e.getKey()) != null &&
+                    (v = e.getValue()) != null &&
+                    (r = get(k)) != null && v.equals(r));
+        }
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            Object k, v;
+            return ((k = e.getKey()) != null &&
+                    (v = e.getValue()) != null &&
+                    OffHeapConcurrentMap.this.remove(k, v));
+        }
+    }
+
+    /**
+     * Iterator decoding one segment at a time under its read lock.
+     */
+    final class EntryIterator implements Iterator<Map.Entry<K,V>> {
+        final List<Map.Entry<K,V>> batch = new ArrayList<>();
+        int segmentIndex;
+        int batchIndex;
+        Map.Entry<K,V> lastReturned;
+
+        public boolean hasNext() {
+            while (batchIndex >= batch.size()) {
+                if (segmentIndex >= segments.length)
+                    return false;
+                batch.clear();
+                batchIndex = 0;
+                Segment s = segments[segmentIndex++];
+                long stamp = s.readLock();
+                try {
+                    s.collect(keyCodec, valueCodec, batch);
+                } finally {
+                    s.unlockRead(stamp);
+                }
+            }
+            return true;
+        }
+
+        public Map.Entry<K,V> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Map.Entry<K,V> e = batch.get(batchIndex++);
+            lastReturned = e;
+            return new WriteThroughEntry(e.getKey(), e.getValue());
+        }
+
+        public void remove() {
+            Map.Entry<K,V> e = lastReturned;
+            if (e == null)
+                throw new IllegalStateException();
+            lastReturned = null;
+            OffHeapConcurrentMap.this.remove(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Exported entry whose setValue writes through to the map.
+     */
+    @SuppressWarnings("serial")
+    final class WriteThroughEntry extends AbstractMap.SimpleEntry<K,V> {
+        WriteThroughEntry(K k, V v) {
+            super(k, v);
+        }
+        public V setValue(V value) {
+            if (value == null) throw new NullPointerException();
+            V v = super.setValue(value);
+            put(getKey(), value);
+            return v;
+        }
+    }
+
+    /* ---------------- Codecs -------------- */
+
+    /**
+     * Returns a codec encoding {@code Long}s in eight bytes.
+     *
+     * @return a codec for {@code Long}
+     */
+    public static Codec<Long> longCodec() {
+        return LongCodec.INSTANCE;
+    }
+
+    /**
+     * Returns a codec encoding {@code String}s in UTF-8.
+     *
+     * @return a codec for {@code String}
+     */
+    public static Codec<String> stringCodec() {
+        return StringCodec.INSTANCE;
+    }
+
+    /**
+     * Returns a codec copying byte arrays verbatim.  Note that keys encoded
+     * with this codec compare by content, unlike arrays used as keys of
+     * heap-based maps.
+     *
+     * @return a codec for {@code byte[]}
+     */
+    public static Codec<byte[]> byteArrayCodec() {
+        return ByteArrayCodec.INSTANCE;
+    }
+
+    static final class LongCodec implements Codec<Long> {
+        static final LongCodec INSTANCE = new LongCodec();
+        public int encodedSize(Long t) { return 8; }
+        public void encode(Long t, ByteBuffer dst) { dst.putLong(t); }
+        public Long decode(ByteBuffer src) { return src.getLong(); }
+    }
+
+    static final class StringCodec implements Codec<String> {
+        static final StringCodec INSTANCE = new StringCodec();
+        public int encodedSize(String t) {
+            int n = 0;
+            for (int i = 0, len = t.length(); i < len; ++i) {
+                char c = t.charAt(i);
+                if (c < 0x80)
+                    n += 1;
+                else if (c < 0x800)
+                    n += 2;
+                else if (Character.isHighSurrogate(c) && i + 1 < len &&
+                         Character.isLowSurrogate(t.charAt(i + 1))) {
+                    n += 4;
+                    ++i;
+                }
+                else if (Character.isSurrogate(c))
+                    n += 1; // unpaired, replaced by '?'
+                else
+                    n += 3;
+            }
+            return n;
+        }
+        public void encode(String t, ByteBuffer dst) {
+            dst.put(t.getBytes(StandardCharsets.UTF_8));
+        }
+        public String decode(ByteBuffer src) {
+            byte[] b = new byte[src.remaining()];
+            src.get(b);
+            return new String(b, StandardCharsets.UTF_8);
+        }
+    }
+
+    static final class ByteArrayCodec implements Codec<byte[]> {
+        static final ByteArrayCodec INSTANCE = new ByteArrayCodec();
+        public int encodedSize(byte[] t) { return t.length; }
+        public void encode(byte[] t, ByteBuffer dst) { dst.put(t); }
+        public byte[] decode(ByteBuffer src) {
+            byte[] b = new byte[src.remaining()];
+            src.get(b);
+            return b;
+        }
+    }
+}
@@ -36,6 +36,7 @@
 package java.util.concurrent;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.*;
@@ -287,6 +288,9 @@ public class ScheduledThreadPoolExecutor
          */
         public void run() {
             boolean periodic = isPeriodic();
+            Stats s = stats;
+            if (s != null)
+                ((ScheduledStats)s).taskDue(now() - time);
             if (!canRunInCurrentRunState(periodic))
                 cancel(false);
             else if (!periodic)
@@ -322,6 +326,9 @@ public class ScheduledThreadPoolExecutor
      * @param task the task
      */
     private void delayedExecute(RunnableScheduledFuture<?> task) {
+        Stats s = stats;
+        if (s != null)
+            s.submitted.increment();
         if (isShutdown())
             reject(task);
         else {
@@ -801,6 +808,48 @@ public class ScheduledThreadPoolExecutor
         return super.getQueue();
     }
 
+    /**
+     * Returns the management interface of this executor, which in
+     * addition to the statistics described in {@link
+     * ThreadPoolExecutor#getMXBean}, reports the lateness of scheduled
+     * task executions.  Recording of these statistics begins upon the
+     * first invocation of this method.
+     *
+     * @return the {@link ScheduledThreadPoolExecutorMXBean} of this
+     *         executor
+     * @since 1.8
+     */
+    public ScheduledThreadPoolExecutorMXBean getMXBean() {
+        return (ScheduledStats)stats();
+    }
+
+    @Override Stats newStats() {
+        return new ScheduledStats();
+    }
+
+    /**
+     * Statistics including the lateness of ScheduledFutureTasks,
+     * recorded upon each run.
+     */
+    final class ScheduledStats extends Stats
+        implements ScheduledThreadPoolExecutorMXBean {
+        final LongAdder lateness = new LongAdder();
+        final TimeHistogram latenesses = new TimeHistogram();
+
+        final void taskDue(long late) {
+            lateness.add(late);
+            latenesses.record(late);
+        }
+
+        public long getTotalLateness()      { return lateness.sum(); }
+        public long[] getLatenessHistogram() { return latenesses.toArray(); }
+        public void resetStatistics() {
+            super.resetStatistics();
+            lateness.reset();
+            latenesses.reset();
+        }
+    }
+
     /**
      * Specialized delay queue. To mesh with TPE declarations, this
      * class must be declared as a BlockingQueue<Runnable> even though
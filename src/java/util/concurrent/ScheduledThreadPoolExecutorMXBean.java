@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+/**
+ * The management interface of a {@link ScheduledThreadPoolExecutor},
+ * obtained from {@link ScheduledThreadPoolExecutor#getMXBean}.  In
+ * addition to the statistics of a {@link ThreadPoolExecutorMXBean},
+ * it reports the <em>lateness</em> of scheduled tasks, that is, the
+ * time between the moment a task becomes eligible to run and the
+ * moment it starts running, for each execution of a periodic task.
+ * Tasks are submitted to a {@code ScheduledThreadPoolExecutor} for
+ * delayed execution, so queue wait times are not recorded.
+ *
+ * @see ScheduledThreadPoolExecutor
+ * @since 1.8
+ */
+public interface ScheduledThreadPoolExecutorMXBean
+    extends ThreadPoolExecutorMXBean {
+
+    /**
+     * Returns the total lateness of scheduled task executions.
+     *
+     * @return the total lateness
+     */
+    long getTotalLateness();
+
+    /**
+     * Returns the histogram of the lateness of scheduled task
+     * executions, in the form described in {@link
+     * ThreadPoolExecutorMXBean}.
+     *
+     * @return the lateness histogram
+     */
+    long[] getLatenessHistogram();
+}
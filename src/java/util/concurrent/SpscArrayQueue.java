@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A bounded {@linkplain Queue queue} backed by an array, for use by a
+ * single producer thread and a single consumer thread.  This queue
+ * orders elements FIFO (first-in-first-out).  Its capacity is the
+ * power of two at least the one given at construction.
+ *
+ * <p><b>Ownership.</b> At any time, at most one thread may insert
+ * elements, by {@link #offer}, {@link #add}, {@link #addAll} or
+ * {@link #fill}, and at most one thread may remove or examine
+ * elements, by {@link #poll}, {@link #remove()}, {@link #peek}, {@link
+ * #element}, {@link #clear} or {@link #drain}.  The producer or the
+ * consumer may change over time only if the change is separated by a
+ * <a href="package-summary.html#MemoryVisibility"><i>happens-before</i></a>
+ * relation, such as a handoff through a volatile field.  Violating
+ * these rules corrupts the queue.  The remaining methods, including
+ * {@link #size} and iteration, may be used by any thread.
+ *
+ * <p>In exchange, no operation uses atomic read-modify-write
+ * instructions: elements are published with ordered stores, as by
+ * {@link java.util.concurrent.atomic.AtomicReference#lazySet lazySet},
+ * so insertions may become visible to the consumer after a short
+ * delay.  The producer and consumer positions are padded to reside on
+ * different cache lines.
+ *
+ * <p>The {@link #drain drain} and {@link #fill fill} methods transfer
+ * batches of elements to a {@link Consumer} and from a {@link
+ * Supplier}.  Iterators are <i>weakly consistent</i> and do not
+ * support removal, and so neither do {@link #remove(Object)}, {@link
+ * #removeAll} and {@link #retainAll}.  This queue does not permit
+ * {@code null} elements.
+ *
+ * <p>Memory consistency effects: As with other concurrent
+ * collections, actions in a thread prior to placing an object into a
+ * {@code SpscArrayQueue}
+ * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
+ * actions subsequent to the access or removal of that element from
+ * the {@code SpscArrayQueue} in another thread.
+ *
+ * @since 1.8
+ * @param <E> the type of elements held in this collection
+ * @see MpscArrayQueue
+ * @see MpscLinkedQueue
+ */
+public class SpscArrayQueue<E> extends AbstractQueue<E> {
+
+    /*
+     * This is a variant of the FastFlow queue (Aldinucci et al.): a
+     * slot is empty if and only if it holds null, so the producer
+     * and consumer test and set only the slots at their own
+     * positions, and never need to read the position of the other
+     * side.  The positions are maintained for the sake of size().
+     * To avoid reading a slot likely being written by the consumer
+     * on every insertion, the producer looks ahead up to
+     * lookAheadStep slots: as the consumer empties slots in order, if
+     * the slot that many positions ahead is empty, then so are all
+     * slots up to it, which the producer records in producerLimit.
+     */
+
+    /** The maximum number of slots the producer looks ahead */
+    static final int MAX_LOOK_AHEAD_STEP = 4096;
+
+    /** The largest possible power of two capacity */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /** The elements, or null for empty slots */
+    final Object[] buffer;
+
+    /** buffer.length - 1 */
+    final int mask;
+
+    /** The number of slots the producer looks ahead */
+    final int lookAheadStep;
+
+    /** The position of the next insertion */
+    @sun.misc.Contended("producer") private volatile long producerIndex;
+
+    /** The producer's bound on the free slots */
+    @sun.misc.Contended("producer") private long producerLimit;
+
+    /** The position of the next removal */
+    @sun.misc.Contended("consumer") private volatile long consumerIndex;
+
+    /**
+     * Creates an {@code SpscArrayQueue} with at least the given
+     * capacity.
+     *
+     * @param capacity the minimum capacity of this queue
+     * @throws IllegalArgumentException if {@code capacity < 1} or
+     *         {@code capacity > 2^30}
+     */
+    public SpscArrayQueue(int capacity) {
+        if (capacity <= 0 || capacity > MAXIMUM_CAPACITY)
+            throw new IllegalArgumentException();
+        int n = (capacity < 2) ? 2 :
+            1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+        this.buffer = new Object[n];
+        this.mask = n - 1;
+        this.lookAheadStep = Math.min(n >>> 2, MAX_LOOK_AHEAD_STEP);
+    }
+
+    /**
+     * Returns the capacity of this queue.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return buffer.length;
+    }
+
+    private long offset(long pos) {
+        return ((long)((int)pos & mask) << ASHIFT) + ABASE;
+    }
+
+    /**
+     * Returns true if the slot at the given producer position is
+     * empty, updating producerLimit.
+     */
+    private boolean hasRoom(long p) {
+        int step = lookAheadStep;
+        if (step > 0 && U.getObjectVolatile(buffer, offset(p + step)) == null) {
+            producerLimit = p + step;
+            return true;
+        }
+        return U.getObjectVolatile(buffer, offset(p)) == null;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue if it is
+     * possible to do so immediately without exceeding the queue's
+     * capacity, returning {@code true} upon success and {@code false}
+     * if this queue is full.  Must be invoked only by the producer.
+     *
+     * @param e the element to add
+     * @return {@code true} if the element was added to this queue, else
+     *         {@code false}
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null)
+            throw new NullPointerException();
+        long p = producerIndex;
+        if (p >= producerLimit && !hasRoom(p))
+            return false;
+        U.putOrderedObject(buffer, offset(p), e);
+        U.putOrderedLong(this, PRODUCERINDEX, p + 1L);
+        return true;
+    }
+
+    /**
+     * Retrieves and removes the head of this queue, or returns
+     * {@code null} if this queue is empty.  Must be invoked only by
+     * the consumer.
+     *
+     * @return the head of this queue, or {@code null} if this queue
+     *         is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long c = consumerIndex, o = offset(c);
+        Object e = U.getObjectVolatile(buffer, o);
+        if (e == null)
+            return null;
+        U.putOrderedObject(buffer, o, null);
+        U.putOrderedLong(this, CONSUMERINDEX, c + 1L);
+        return (E)e;
+    }
+
+    /**
+     * Retrieves, but does not remove, the head of this queue, or
+     * returns {@code null} if this queue is empty.  Must be invoked
+     * only by the consumer.
+     *
+     * @return the head of this queue, or {@code null} if this queue
+     *         is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        return (E)U.getObjectVolatile(buffer, offset(consumerIndex));
+    }
+
+    /**
+     * Removes up to the given number of elements from the head of this
+     * queue, passing each to the given action.  Must be invoked only
+     * by the consumer.  If the action throws an exception, the element
+     * passed to it has already been removed, and the exception is
+     * relayed to the caller.
+     *
+     * @param action the action to perform on each element
+     * @param limit the maximum number of elements to remove
+     * @return the number of elements removed
+     * @throws NullPointerException if the specified action is null
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<? super E> action, int limit) {
+        if (action == null)
+            throw new NullPointerException();
+        final Object[] buffer = this.buffer;
+        long c = consumerIndex;
+        int n = 0;
+        for (; n < limit; ++n) {
+            long o = offset(c);
+            Object e = U.getObjectVolatile(buffer, o);
+            if (e == null)
+                break;
+            U.putOrderedObject(buffer, o, null);
+            U.putOrderedLong(this, CONSUMERINDEX, ++c);
+            action.accept((E)e);
+        }
+        return n;
+    }
+
+    /**
+     * Inserts up to the given number of elements obtained from the
+     * given supplier at the tail of this queue, stopping when this
+     * queue is full.  The supplier is invoked only when there is room
+     * for the element it returns.  Must be invoked only by the
+     * producer.
+     *
+     * @param s the supplier of elements
+     * @param limit the maximum number of elements to insert
+     * @return the number of elements inserted
+     * @throws NullPointerException if the specified supplier is null,
+     *         or returns null
+     */
+    public int fill(Supplier<? extends E> s, int limit) {
+        if (s == null)
+            throw new NullPointerException();
+        final Object[] buffer = this.buffer;
+        long p = producerIndex;
+        int n = 0;
+        for (; n < limit; ++n) {
+            if (p >= producerLimit && !hasRoom(p))
+                break;
+            E e = s.get();
+            if (e == null)
+                throw new NullPointerException();
+            U.putOrderedObject(buffer, offset(p), e);
+            U.putOrderedLong(this, PRODUCERINDEX, ++p);
+        }
+        return n;
+    }
+
+    /**
+     * Returns the number of elements in this queue.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        for (long c = consumerIndex;;) {
+            long p = producerIndex;
+            if (c == (c = consumerIndex)) {
+                long n = p - c;
+                return (n <= 0L) ? 0 : (n >= buffer.length) ? buffer.length
+                    : (int)n;
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if this queue contains no elements.
+     *
+     * @return {@code true} if this queue contains no elements
+     */
+    public boolean isEmpty() {
+        return consumerIndex == producerIndex;
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in proper
+     * sequence.  The elements will be returned in order from first
+     * (head) to last (tail).
+     *
+     * <p>The returned iterator is
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>,
+     * and does not support {@code remove}.
+     *
+     * @return an iterator over the elements in this queue in proper sequence
+     */
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private class Itr implements Iterator<E> {
+        private long cursor, end;
+        private Object nextItem;
+
+        Itr() {
+            cursor = consumerIndex;
+            end = producerIndex;
+            advance();
+        }
+
+        private void advance() {
+            Object e = null;
+            while (cursor < end &&
+                   (e = U.getObjectVolatile(buffer, offset(cursor++))) == null)
+                ;
+            nextItem = e;
+        }
+
+        public boolean hasNext() {
+            return nextItem != null;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            Object e = nextItem;
+            if (e == null)
+                throw new NoSuchElementException();
+            advance();
+            return (E)e;
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long PRODUCERINDEX;
+    private static final long CONSUMERINDEX;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = SpscArrayQueue.class;
+            PRODUCERINDEX = U.objectFieldOffset
+                (k.getDeclaredField("producerIndex"));
+            CONSUMERINDEX = U.objectFieldOffset
+                (k.getDeclaredField("consumerIndex"));
+            ABASE = U.arrayBaseOffset(Object[].class);
+            int scale = U.arrayIndexScale(Object[].class);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
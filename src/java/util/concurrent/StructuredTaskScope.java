@@ -0,0 +1,937 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A scope in which a task is split into concurrent subtasks whose
+ * lifetimes are confined to the scope.  The thread that creates a
+ * {@code StructuredTaskScope}, its <em>owner</em>, {@linkplain #fork
+ * forks} subtasks, which are run by an {@link Executor}, by default
+ * the {@linkplain ForkJoinPool#commonPool() common pool}, then
+ * {@linkplain #join joins} them, and finally {@linkplain #close
+ * closes} the scope, which does not return until all of the subtasks
+ * have finished.  So no subtask outlives the block of code that
+ * forked it, as in:
+ *
+ * <pre> {@code
+ * Response handle() throws ExecutionException, InterruptedException {
+ *   try (StructuredTaskScope.ShutdownOnFailure scope =
+ *          new StructuredTaskScope.ShutdownOnFailure()) {
+ *     Subtask<String> user = scope.fork(() -> findUser());
+ *     Subtask<Integer> order = scope.fork(() -> fetchOrder());
+ *     scope.join().throwIfFailed();
+ *     return new Response(user.get(), order.get());
+ *   }
+ * }}</pre>
+ *
+ * <p><b>Shutdown.</b> A scope may be {@linkplain #shutdown shut
+ * down}, by its owner or by a subtask, typically because a result
+ * has been obtained or can no longer be.  Upon shutdown, subtasks
+ * that have not started are not run, running subtasks are
+ * {@linkplain Thread#interrupt interrupted}, and the owner, if
+ * joining, returns from {@code join}.  Subtasks should therefore
+ * respond to interruption by returning promptly, so that cancelled
+ * work stops consuming processing time.  Subtasks completing after
+ * shutdown have no effect.  The nested classes {@link
+ * ShutdownOnFailure} and {@link ShutdownOnSuccess} implement the two
+ * most common policies.  Other policies may be defined by subclasses
+ * overriding {@link #handleComplete}, which is invoked upon the
+ * completion of each subtask that completes before shutdown.
+ *
+ * <p><b>Deadlines.</b> Method {@link #join(long, TimeUnit)} joins
+ * with a timeout, upon which the scope is shut down.
+ *
+ * <p><b>Blocking.</b> When the owner is itself running in a {@link
+ * ForkJoinPool}, {@code join} and {@code close} block through {@link
+ * ForkJoinPool#managedBlock}, so that the pool may activate a spare
+ * thread to keep running the subtasks, which are typically queued in
+ * the same pool.
+ *
+ * <p>Methods {@code join} and {@code close} may be invoked only by
+ * the owner, and {@code fork} only by the owner or by subtasks of the
+ * scope; other invocations throw {@link IllegalStateException}.
+ *
+ * <p>Memory consistency effects: Actions in the owner prior to
+ * forking a subtask
+ * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
+ * any actions taken by that subtask, which in turn
+ * <i>happen-before</i> the subtask result is retrieved via {@link
+ * Subtask#get}, and actions following a successful return from
+ * {@code join} or {@code close}.
+ *
+ * @since 1.8
+ * @param <T> the result type of tasks executed in the scope
+ */
+public class StructuredTaskScope<T> implements AutoCloseable {
+
+    /*
+     * Overview:
+     *
+     * The scope counts its unfinished subtasks in field pending, and
+     * keeps them in set live for the sake of shutdown.  Each subtask
+     * has a FutureTask-like status, moved from NEW to RUNNING by the
+     * thread that runs it, or to CANCELLED by a shutdown, whichever
+     * comes first; exactly the thread making this move later calls
+     * done(), which decrements pending, and if it reaches zero,
+     * unparks the owner.  A shutdown moves RUNNING subtasks to
+     * INTERRUPTING, interrupts their runner, and sets INTERRUPTED;
+     * the runner waits out INTERRUPTING before clearing the
+     * interrupt, so that no cancellation interrupt leaks into
+     * unrelated tasks later run by the same pool thread.  A runner
+     * records itself before rechecking the scope's state, and a
+     * shutdown sets the state before scanning the subtasks, so each
+     * running subtask is either interrupted or sees the shutdown.
+     *
+     * The owner waits in a ManagedBlocker parking until pending is
+     * zero, the scope is shut down (unless closing), or a deadline
+     * passes.
+     */
+
+    /**
+     * A subtask forked with {@link StructuredTaskScope#fork}.
+     *
+     * @param <T> the result type of the subtask
+     * @since 1.8
+     */
+    public interface Subtask<T> extends Supplier<T> {
+
+        /**
+         * The states of a subtask.
+         *
+         * @since 1.8
+         */
+        enum State {
+            /**
+             * The subtask has not completed, or completed after the
+             * scope was shut down, or was forked after the scope was
+             * shut down.
+             */
+            UNAVAILABLE,
+            /** The subtask completed with a result. */
+            SUCCESS,
+            /** The subtask failed with an exception. */
+            FAILED
+        }
+
+        /**
+         * Returns the task run by this subtask.
+         *
+         * @return the task
+         */
+        Callable<? extends T> task();
+
+        /**
+         * Returns the state of this subtask.
+         *
+         * @return the state
+         */
+        State state();
+
+        /**
+         * Returns the result of this subtask.
+         *
+         * @return the result
+         * @throws IllegalStateException if the state is not {@code
+         *         SUCCESS}
+         */
+        T get();
+
+        /**
+         * Returns the exception thrown by this subtask.
+         *
+         * @return the exception
+         * @throws IllegalStateException if the state is not {@code
+         *         FAILED}
+         */
+        Throwable exception();
+    }
+
+    // Scope states
+    private static final int OPEN     = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int CLOSED   = 2;
+
+    /** The executor running subtasks */
+    private final Executor executor;
+
+    /** The thread that created this scope */
+    private final Thread owner;
+
+    /** The scope state */
+    private volatile int state;
+
+    /** The number of forked subtasks that have not finished */
+    private volatile int pending;
+
+    /** Subtasks not yet finished, cancelled upon shutdown */
+    private final Set<SubtaskImpl<?>> live = ConcurrentHashMap.newKeySet();
+
+    /** True if subtasks were forked by the owner since its last join */
+    private boolean needJoin;
+
+    /**
+     * Creates a structured task scope, owned by the current thread,
+     * that runs subtasks in the {@linkplain ForkJoinPool#commonPool()
+     * common pool}.
+     */
+    public StructuredTaskScope() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a structured task scope, owned by the current thread,
+     * that runs subtasks in the given executor.
+     *
+     * @param executor the executor to run subtasks
+     * @throws NullPointerException if executor is null
+     */
+    public StructuredTaskScope(Executor executor) {
+        if (executor == null)
+            throw new NullPointerException();
+        this.executor = executor;
+        this.owner = Thread.currentThread();
+    }
+
+    /**
+     * Throws IllegalStateException if the current thread is not the
+     * owner.
+     */
+    private void ensureOwner() {
+        if (Thread.currentThread() != owner)
+            throw new IllegalStateException("Not owner");
+    }
+
+    /**
+     * Throws IllegalStateException if the current thread is not the
+     * owner, or if the owner has forked subtasks since it last
+     * joined.  Used by policy methods retrieving the outcome.
+     *
+     * @throws IllegalStateException if the current thread is not the
+     *         owner, or has not joined after forking
+     */
+    protected final void ensureOwnerAndJoined() {
+        ensureOwner();
+        if (needJoin)
+            throw new IllegalStateException("Owner did not join after forking");
+    }
+
+    /**
+     * Invoked by a subtask that completes, successfully or not,
+     * before the scope is shut down.  The default implementation does
+     * nothing.  Policies overriding this method must be thread-safe,
+     * as it may be invoked by several subtasks at the same time.
+     *
+     * @param subtask the completed subtask, in state {@code SUCCESS}
+     *        or {@code FAILED}
+     */
+    protected void handleComplete(Subtask<? extends T> subtask) {
+    }
+
+    /**
+     * Starts a subtask running the given task in the executor of this
+     * scope, and returns it.  If this scope is shut down, the subtask
+     * is not run, and its state remains {@code UNAVAILABLE}.
+     *
+     * @param task the task to run
+     * @param <U> the result type
+     * @return the subtask
+     * @throws NullPointerException if task is null
+     * @throws IllegalStateException if this scope is closed, or the
+     *         current thread is neither the owner nor running a
+     *         subtask of this scope
+     * @throws RejectedExecutionException if the executor rejects the
+     *         subtask
+     */
+    public <U extends T> Subtask<U> fork(Callable<? extends U> task) {
+        if (task == null)
+            throw new NullPointerException();
+        Thread t = Thread.currentThread();
+        if (t == owner) {
+            if (state == CLOSED)
+                throw new IllegalStateException("Scope is closed");
+            needJoin = true;
+        }
+        else if (!isRunningSubtask(t))
+            throw new IllegalStateException("Not owner or subtask");
+        SubtaskImpl<U> s = new SubtaskImpl<U>(this, task);
+        if (state == OPEN) {
+            U.getAndAddInt(this, PENDING, 1);
+            live.add(s);
+            if (state != OPEN)
+                s.cancel();
+            else {
+                try {
+                    executor.execute(s);
+                } catch (RuntimeException | Error ex) {
+                    if (s.cancel())
+                        throw ex;
+                }
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Returns true if the given thread is running a subtask of this
+     * scope.
+     */
+    private boolean isRunningSubtask(Thread t) {
+        for (SubtaskImpl<?> s : live) {
+            if (s.runner == t)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Waits for all subtasks to finish, or this scope to be shut
+     * down.
+     *
+     * @return this scope
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the current thread is not the
+     *         owner, or this scope is closed
+     */
+    public StructuredTaskScope<T> join() throws InterruptedException {
+        try {
+            return join(false, 0L);
+        } catch (TimeoutException cannotHappen) {
+            throw new Error(cannotHappen);
+        }
+    }
+
+    /**
+     * Waits, for at most the given time, for all subtasks to finish
+     * or this scope to be shut down.  If the time elapses first, this
+     * scope is shut down, and {@code TimeoutException} is thrown.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout argument
+     * @return this scope
+     * @throws InterruptedException if interrupted while waiting
+     * @throws TimeoutException if the timeout elapsed
+     * @throws IllegalStateException if the current thread is not the
+     *         owner, or this scope is closed
+     * @throws NullPointerException if unit is null
+     */
+    public StructuredTaskScope<T> join(long timeout, TimeUnit unit)
+        throws InterruptedException, TimeoutException {
+        return join(true, unit.toNanos(timeout));
+    }
+
+    private StructuredTaskScope<T> join(boolean timed, long nanos)
+        throws InterruptedException, TimeoutException {
+        ensureOwner();
+        if (state == CLOSED)
+            throw new IllegalStateException("Scope is closed");
+        needJoin = false;
+        Joiner j = new Joiner(this, false, timed, nanos);
+        while (!j.isReleasable()) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            ForkJoinPool.managedBlock(j);
+        }
+        if (j.timedOut && pending != 0 && state == OPEN) {
+            shutdown();
+            throw new TimeoutException();
+        }
+        return this;
+    }
+
+    /**
+     * Shuts down this scope: subtasks not yet started are not run,
+     * running subtasks are interrupted, and the owner, if waiting in
+     * {@code join}, returns.  This method has no effect if this scope
+     * is already shut down or closed.
+     *
+     * @throws IllegalStateException if the current thread is neither
+     *         the owner nor running a subtask of this scope
+     */
+    public void shutdown() {
+        Thread t = Thread.currentThread();
+        if (t != owner && !isRunningSubtask(t))
+            throw new IllegalStateException("Not owner or subtask");
+        implShutdown();
+    }
+
+    private void implShutdown() {
+        if (U.compareAndSwapInt(this, STATE, OPEN, SHUTDOWN)) {
+            for (SubtaskImpl<?> s : live)
+                s.cancel();
+            LockSupport.unpark(owner);
+        }
+    }
+
+    /**
+     * Returns {@code true} if this scope is shut down or closed.
+     *
+     * @return {@code true} if this scope is shut down or closed
+     */
+    public boolean isShutdown() {
+        return state != OPEN;
+    }
+
+    /**
+     * Closes this scope: shuts it down, then waits for all subtasks
+     * to finish.  If interrupted while waiting, continues to wait,
+     * and then re-asserts the interrupt status.  This method has no
+     * effect if this scope is already closed.
+     *
+     * @throws IllegalStateException if the current thread is not the
+     *         owner
+     */
+    public void close() {
+        ensureOwner();
+        if (state == CLOSED)
+            return;
+        implShutdown();
+        Joiner j = new Joiner(this, true, false, 0L);
+        boolean interrupted = false;
+        while (!j.isReleasable()) {
+            try {
+                ForkJoinPool.managedBlock(j);
+            } catch (InterruptedException ie) {
+                interrupted = true;
+            }
+            if (Thread.interrupted())
+                interrupted = true;
+        }
+        state = CLOSED;
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Returns a string identifying this scope, as well as its state.
+     *
+     * @return a string identifying this scope, as well as its state
+     */
+    public String toString() {
+        int s = state;
+        return super.toString() +
+            ((s == OPEN) ? "[Open, " + pending + " pending subtasks]" :
+             (s == SHUTDOWN) ? "[Shutdown]" : "[Closed]");
+    }
+
+    /**
+     * Called by the thread that moved s to a final state.
+     */
+    final void done(SubtaskImpl<?> s) {
+        live.remove(s);
+        if (U.getAndAddInt(this, PENDING, -1) == 1)
+            LockSupport.unpark(owner);
+    }
+
+    /**
+     * Blocker for the owner, waiting for pending to reach zero, or,
+     * unless closing, for shutdown or the deadline.
+     */
+    static final class Joiner implements ForkJoinPool.ManagedBlocker {
+        final StructuredTaskScope<?> scope;
+        final boolean closing;
+        final boolean timed;
+        final long deadline;
+        long nanos;
+        boolean timedOut;
+
+        Joiner(StructuredTaskScope<?> scope, boolean closing,
+               boolean timed, long nanos) {
+            this.scope = scope;
+            this.closing = closing;
+            this.timed = timed;
+            this.nanos = nanos;
+            this.deadline = timed ? System.nanoTime() + nanos : 0L;
+        }
+
+        public boolean isReleasable() {
+            if (scope.pending == 0 || (!closing && scope.state != OPEN))
+                return true;
+            if (timed && (nanos = deadline - System.nanoTime()) <= 0L)
+                return timedOut = true;
+            return false;
+        }
+
+        public boolean block() {
+            if (isReleasable())
+                return true;
+            else if (!timed)
+                LockSupport.park(this);
+            else
+                LockSupport.parkNanos(this, nanos);
+            return isReleasable() || Thread.currentThread().isInterrupted();
+        }
+    }
+
+    /**
+     * The implementation of Subtask, run in the executor.
+     */
+    static final class SubtaskImpl<V> implements Subtask<V>, Runnable {
+        /*
+         * Possible status transitions:
+         * NEW -> RUNNING -> SUCCESS
+         * NEW -> RUNNING -> FAILED
+         * NEW -> RUNNING -> INTERRUPTING -> INTERRUPTED
+         * NEW -> CANCELLED
+         * Only SUCCESS and FAILED make the result available.
+         */
+        static final int NEW          = 0;
+        static final int RUNNING      = 1;
+        static final int SUCCESS      = 2;
+        static final int FAILED       = 3;
+        static final int CANCELLED    = 4;
+        static final int INTERRUPTING = 5;
+        static final int INTERRUPTED  = 6;
+
+        final StructuredTaskScope<? super V> scope;
+        final Callable<? extends V> task;
+        volatile int status;
+        /** The thread running the task, while RUNNING */
+        volatile Thread runner;
+        /** The result or exception, set before SUCCESS or FAILED */
+        Object outcome;
+
+        SubtaskImpl(StructuredTaskScope<? super V> scope,
+                    Callable<? extends V> task) {
+            this.scope = scope;
+            this.task = task;
+        }
+
+        public void run() {
+            if (status != NEW ||
+                !U.compareAndSwapInt(this, STATUS, NEW, RUNNING))
+                return;
+            final StructuredTaskScope<? super V> scope = this.scope;
+            Thread t = Thread.currentThread();
+            runner = t;
+            try {
+                if (scope.state == OPEN) {
+                    Object x; boolean failed;
+                    try {
+                        x = task.call();
+                        failed = false;
+                    } catch (Throwable ex) {
+                        x = ex;
+                        failed = true;
+                    }
+                    outcome = x; // published by status CAS
+                    if (scope.state == OPEN &&
+                        U.compareAndSwapInt(this, STATUS, RUNNING,
+                                            failed ? FAILED : SUCCESS))
+                        scope.handleComplete(this);
+                }
+            } finally {
+                runner = null;
+                int s = status;
+                if (s == RUNNING &&
+                    !U.compareAndSwapInt(this, STATUS, RUNNING, CANCELLED))
+                    s = status;
+                if (s >= INTERRUPTING) {
+                    while (status == INTERRUPTING)
+                        Thread.yield(); // wait out pending interrupt
+                    // Clear the cancellation interrupt, so that it
+                    // does not affect the next task run by t.
+                    Thread.interrupted();
+                }
+                scope.done(this);
+            }
+        }
+
+        /**
+         * Cancels this subtask if not yet finished, interrupting it if
+         * running.
+         *
+         * @return true if this call prevented the subtask from
+         * running, in which case it has called done
+         */
+        final boolean cancel() {
+            for (int s;;) {
+                if ((s = status) == NEW) {
+                    if (U.compareAndSwapInt(this, STATUS, NEW, CANCELLED)) {
+                        scope.done(this);
+                        return true;
+                    }
+                }
+                else if (s == RUNNING) {
+                    if (U.compareAndSwapInt(this, STATUS, RUNNING,
+                                            INTERRUPTING)) {
+                        try {
+                            Thread t = runner;
+                            if (t != null)
+                                t.interrupt();
+                        } finally {
+                            status = INTERRUPTED;
+                        }
+                        return false;
+                    }
+                }
+                else
+                    return false;
+            }
+        }
+
+        public Callable<? extends V> task() {
+            return task;
+        }
+
+        public State state() {
+            int s = status;
+            return (s == SUCCESS) ? State.SUCCESS :
+                (s == FAILED) ? State.FAILED : State.UNAVAILABLE;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V get() {
+            if (status != SUCCESS)
+                throw new IllegalStateException("Result is unavailable");
+            return (V)outcome;
+        }
+
+        public Throwable exception() {
+            if (status != FAILED)
+                throw new IllegalStateException("Subtask did not fail");
+            return (Throwable)outcome;
+        }
+
+        public String toString() {
+            State s = state();
+            return super.toString() +
+                ((s == State.SUCCESS) ? "[Completed successfully]" :
+                 (s == State.FAILED) ? "[Failed: " + outcome + "]" :
+                 "[Unavailable]");
+        }
+
+        // Unsafe mechanics
+        private static final sun.misc.Unsafe U;
+        private static final long STATUS;
+        static {
+            try {
+                U = sun.misc.Unsafe.getUnsafe();
+                Class<?> k = SubtaskImpl.class;
+                STATUS = U.objectFieldOffset
+                    (k.getDeclaredField("status"));
+            } catch (Exception e) {
+                throw new Error(e);
+            }
+        }
+    }
+
+    /**
+     * A {@code StructuredTaskScope} that shuts down when a subtask
+     * fails, capturing the exception of the first subtask to fail.
+     * Once joined, {@link #throwIfFailed()} relays this exception.
+     *
+     * @since 1.8
+     */
+    public static final class ShutdownOnFailure
+        extends StructuredTaskScope<Object> {
+        private final AtomicReference<Throwable> firstException =
+            new AtomicReference<Throwable>();
+
+        /**
+         * Creates a scope, owned by the current thread, that runs
+         * subtasks in the {@linkplain ForkJoinPool#commonPool()
+         * common pool}.
+         */
+        public ShutdownOnFailure() {
+        }
+
+        /**
+         * Creates a scope, owned by the current thread, that runs
+         * subtasks in the given executor.
+         *
+         * @param executor the executor to run subtasks
+         * @throws NullPointerException if executor is null
+         */
+        public ShutdownOnFailure(Executor executor) {
+            super(executor);
+        }
+
+        /**
+         * Shuts down this scope if the subtask failed and is the
+         * first to do so.
+         *
+         * @param subtask the completed subtask
+         */
+        @Override
+        protected void handleComplete(Subtask<?> subtask) {
+            if (subtask.state() == Subtask.State.FAILED &&
+                firstException.compareAndSet(null, subtask.exception()))
+                shutdown();
+        }
+
+        /**
+         * Waits for all subtasks to finish, or a subtask to fail.
+         *
+         * @return this scope
+         * @throws InterruptedException if interrupted while waiting
+         * @throws IllegalStateException if the current thread is not
+         *         the owner, or this scope is closed
+         */
+        @Override
+        public ShutdownOnFailure join() throws InterruptedException {
+            super.join();
+            return this;
+        }
+
+        /**
+         * Waits, for at most the given time, for all subtasks to
+         * finish, or a subtask to fail.  If the time elapses first,
+         * this scope is shut down, and {@code TimeoutException} is
+         * thrown.
+         *
+         * @param timeout the maximum time to wait
+         * @param unit the time unit of the timeout argument
+         * @return this scope
+         * @throws InterruptedException if interrupted while waiting
+         * @throws TimeoutException if the timeout elapsed
+         * @throws IllegalStateException if the current thread is not
+         *         the owner, or this scope is closed
+         * @throws NullPointerException if unit is null
+         */
+        @Override
+        public ShutdownOnFailure join(long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+            super.join(timeout, unit);
+            return this;
+        }
+
+        /**
+         * Returns the exception of the first subtask that failed, if
+         * any.
+         *
+         * @return the exception, or an empty optional if no subtask
+         *         failed
+         * @throws IllegalStateException if the current thread is not
+         *         the owner, or has not joined after forking
+         */
+        public Optional<Throwable> exception() {
+            ensureOwnerAndJoined();
+            return Optional.ofNullable(firstException.get());
+        }
+
+        /**
+         * Throws an {@code ExecutionException} with the exception of
+         * the first subtask that failed as its cause, if any.
+         *
+         * @throws ExecutionException if a subtask failed
+         * @throws IllegalStateException if the current thread is not
+         *         the owner, or has not joined after forking
+         */
+        public void throwIfFailed() throws ExecutionException {
+            throwIfFailed(ExecutionException::new);
+        }
+
+        /**
+         * Throws the exception produced by the given function from
+         * the exception of the first subtask that failed, if any.
+         *
+         * @param esf the function producing the exception to throw
+         * @param <X> the type of the exception thrown
+         * @throws X if a subtask failed
+         * @throws NullPointerException if esf is null, or returns null
+         * @throws IllegalStateException if the current thread is not
+         *         the owner, or has not joined after forking
+         */
+        public <X extends Throwable> void throwIfFailed
+            (Function<Throwable, ? extends X> esf) throws X {
+            ensureOwnerAndJoined();
+            if (esf == null)
+                throw new NullPointerException();
+            Throwable ex = firstException.get();
+            if (ex != null) {
+                X x = esf.apply(ex);
+                if (x == null)
+                    throw new NullPointerException();
+                throw x;
+            }
+        }
+    }
+
+    /**
+     * A {@code StructuredTaskScope} that shuts down when a subtask
+     * completes successfully, capturing the result of the first
+     * subtask to do so.  Once joined, {@link #result()} returns this
+     * result, or if no subtask succeeded, relays the exception of the
+     * first subtask that failed.
+     *
+     * @param <T> the result type
+     * @since 1.8
+     */
+    public static final class ShutdownOnSuccess<T>
+        extends StructuredTaskScope<T> {
+        private static final Object NULL_RESULT = new Object();
+
+        private final AtomicReference<Object> firstResult =
+            new AtomicReference<Object>();
+        private final AtomicReference<Throwable> firstException =
+            new AtomicReference<Throwable>();
+
+        /**
+         * Creates a scope, owned by the current thread, that runs
+         * subtasks in the {@linkplain ForkJoinPool#commonPool()
+         * common pool}.
+         */
+        public ShutdownOnSuccess() {
+        }
+
+        /**
+         * Creates a scope, owned by the current thread, that runs
+         * subtasks in the given executor.
+         *
+         * @param executor the executor to run subtasks
+         * @throws NullPointerException if executor is null
+         */
+        public ShutdownOnSuccess(Executor executor) {
+            super(executor);
+        }
+
+        /**
+         * Shuts down this scope if the subtask succeeded and is the
+         * first to do so, otherwise records the exception of the
+         * first subtask to fail.
+         *
+         * @param subtask the completed subtask
+         */
+        @Override
+        protected void handleComplete(Subtask<? extends T> subtask) {
+            if (subtask.state() == Subtask.State.SUCCESS) {
+                T r = subtask.get();
+                if (firstResult.compareAndSet(null, (r == null) ?
+                                              NULL_RESULT : r))
+                    shutdown();
+            }
+            else if (subtask.state() == Subtask.State.FAILED)
+                firstException.compareAndSet(null, subtask.exception());
+        }
+
+        /**
+         * Waits for a subtask to succeed, or all subtasks to finish.
+         *
+         * @return this scope
+         * @throws InterruptedException if interrupted while waiting
+         * @throws IllegalStateException if the current thread is not
+         *         the owner, or this scope is closed
+         */
+        @Override
+        public ShutdownOnSuccess<T> join() throws InterruptedException {
+            super.join();
+            return this;
+        }
+
+        /**
+         * Waits, for at most the given time, for a subtask to
+         * succeed, or all subtasks to finish.  If the time elapses
+         * first, this scope is shut down, and {@code
+         * TimeoutException} is thrown.
+         *
+         * @param timeout the maximum time to wait
+         * @param unit the time unit of the timeout argument
+         * @return this scope
+         * @throws InterruptedException if interrupted while waiting
+         * @throws TimeoutException if the timeout elapsed
+         * @throws IllegalStateException if the current thread is not
+         *         the owner, or this scope is closed
+         * @throws NullPointerException if unit is null
+         */
+        @Override
+        public ShutdownOnSuccess<T> join(long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+            super.join(timeout, unit);
+            return this;
+        }
+
+        /**
+         * Returns the result of the first subtask that succeeded.
+         *
+         * @return the result
+         * @throws ExecutionException if no subtask succeeded, and a
+         *         subtask failed
+         * @throws IllegalStateException if no subtask completed, or
+         *         the current thread is not the owner, or has not
+         *         joined after forking
+         */
+        public T result() throws ExecutionException {
+            return result(ExecutionException::new);
+        }
+
+        /**
+         * Returns the result of the first subtask that succeeded, or
+         * if none did, throws the exception produced by the given
+         * function from the exception of the first subtask that
+         * failed.
+         *
+         * @param esf the function producing the exception to throw
+         * @param <X> the type of the exception thrown
+         * @return the result
+         * @throws X if no subtask succeeded, and a subtask failed
+         * @throws NullPointerException if esf is null, or returns null
+         * @throws IllegalStateException if no subtask completed, or
+         *         the current thread is not the owner, or has not
+         *         joined after forking
+         */
+        @SuppressWarnings("unchecked")
+        public <X extends Throwable> T result
+            (Function<Throwable, ? extends X> esf) throws X {
+            ensureOwnerAndJoined();
+            if (esf == null)
+                throw new NullPointerException();
+            Object r = firstResult.get();
+            if (r != null)
+                return (r == NULL_RESULT) ? null : (T)r;
+            Throwable ex = firstException.get();
+            if (ex == null)
+                throw new IllegalStateException("No completed subtasks");
+            X x = esf.apply(ex);
+            if (x == null)
+                throw new NullPointerException();
+            throw x;
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long STATE;
+    private static final long PENDING;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = StructuredTaskScope.class;
+            STATE = U.objectFieldOffset
+                (k.getDeclaredField("state"));
+            PENDING = U.objectFieldOffset
+                (k.getDeclaredField("pending"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -38,6 +38,7 @@ import java.util.concurrent.locks.AbstractQueuedSynchronizer;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.*;
 
 /**
@@ -196,6 +197,26 @@ import java.util.*;
  *
  * </dd>
  *
+ * <dt><a name="WorkStealing">Work stealing</a></dt>
+ *
+ * <dd>When tasks themselves submit many small tasks, all worker
+ * threads contend on the work queue.  A pool constructed in
+ * work-stealing mode (see {@link #isWorkStealing}) instead holds
+ * tasks submitted by its own worker threads in a bounded local queue
+ * per thread, in the manner of {@link ForkJoinPool} in asynchronous
+ * mode: each worker takes tasks from its own local queue first, and
+ * idle workers steal tasks from the local queues of others before
+ * waiting on the work queue.  Tasks submitted by other threads,
+ * tasks that do not fit in the local queue, and tasks submitted while
+ * no worker is idle and fewer than maximumPoolSize threads are
+ * running, are queued as usual, so pool sizing, rejection and hook
+ * methods behave as described here.
+ * Tasks held in local queues are not included in {@link #getQueue},
+ * but are included in statistics, and in the list returned by {@link
+ * #shutdownNow}.  If a worker thread terminates abruptly, its
+ * remaining local tasks are transferred to the work queue, and
+ * rejected if the work queue does not accept them. </dd>
+ *
  * <dt>Rejected tasks</dt>
  *
  * <dd>New tasks submitted in method {@link #execute(Runnable)} will be
@@ -481,6 +502,75 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      */
     private long completedTaskCount;
 
+    /*
+     * In work-stealing mode, each worker owns a LocalQueue, a FIFO
+     * variant of ForkJoinPool.WorkQueue: only the owner pushes, and
+     * any thread may poll.  Calls to execute() from a worker thread
+     * (found via localWorker) push the task onto the worker's own
+     * queue instead of offering it to workQueue, which avoids
+     * contention on workQueue when tasks submit further tasks.  The
+     * usual sizing steps still apply: execute() first starts a core
+     * thread if fewer are running, and falls back to workQueue (and
+     * so possibly to adding a non-core thread or rejection) if the
+     * local queue is full.  It also falls back if no worker is idle
+     * and the pool is below maximumPoolSize: nobody could then steal
+     * the task, and a submitter that waits for it (as with a
+     * SynchronousQueue pool whose tasks fork and join subtasks)
+     * would deadlock where a plain pool would add a thread.
+     *
+     * Workers look for tasks in their own queue, then workQueue,
+     * then the queues of other workers, starting at a random one.
+     * Only then does a worker block on workQueue, after announcing
+     * itself idle (by setting Worker.idle and incrementing idleCount)
+     * and rescanning.  A push that sees a nonzero idleCount wakes an
+     * idle worker the same way interruptIdleWorkers does, by
+     * interrupting it while holding its lock, so the interrupt cannot
+     * hit a running task.  Because both sides write before reading,
+     * either the pusher sees the idle worker or the idle worker sees
+     * the pushed task.  The Worker.idle flag is cleared under the
+     * worker's lock, either by the waker or by the worker itself upon
+     * return, so that each idle period is counted down exactly once.
+     *
+     * A worker's queue can only be nonempty while the worker runs: it
+     * polls its own queue before checking for shutdown, and nobody
+     * else pushes to it.  So the termination checks on workQueue
+     * alone remain valid, except when a worker dies abruptly, in which
+     * case its remaining tasks are moved to workQueue before its exit
+     * is processed, or when the pool stops, in which case shutdownNow
+     * drains all local queues (see releaseLocalQueue).
+     */
+
+    /**
+     * True if workers keep local queues of the tasks they submit.
+     */
+    private final boolean workStealing;
+
+    /**
+     * The worker run by the current thread, or null if not in
+     * work-stealing mode.
+     */
+    private final ThreadLocal<Worker> localWorker;
+
+    /**
+     * Snapshot of the workers set used for stealing and waking idle
+     * workers, or null if not in work-stealing mode.  Replaced only
+     * under mainLock.
+     */
+    private volatile Worker[] workerArray;
+
+    /**
+     * Number of workers blocked waiting for tasks in work-stealing
+     * mode, that have not yet been woken.
+     */
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * Statistics reported by getMXBean, or null until first requested.
+     * Written only under mainLock.  Package-private for use by
+     * ScheduledThreadPoolExecutor.
+     */
+    volatile Stats stats;
+
     /*
      * All user control parameters are declared as volatiles so that
      * ongoing actions are based on freshest values, but without need
@@ -601,6 +691,10 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         Runnable firstTask;
         /** Per-thread task counter */
         volatile long completedTasks;
+        /** Queue of tasks submitted by this worker, or null if none */
+        final LocalQueue localQueue;
+        /** True while waiting for tasks; changed only under lock */
+        volatile boolean idle;
 
         /**
          * Creates with given first task and thread from ThreadFactory.
@@ -609,6 +703,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         Worker(Runnable firstTask) {
             setState(-1); // inhibit interrupts until runWorker
             this.firstTask = firstTask;
+            this.localQueue = workStealing ? new LocalQueue() : null;
             this.thread = getThreadFactory().newThread(this);
         }
 
@@ -656,6 +751,192 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         }
     }
 
+    /**
+     * Queue of tasks submitted by a worker in work-stealing mode.
+     * This is a FIFO form of ForkJoinPool.WorkQueue: the owner pushes
+     * at top, and all threads, including the owner, take tasks at
+     * base by CASing their slots to null.  Unlike WorkQueue, capacity
+     * is bounded (so that the pool as a whole stays bounded if
+     * workQueue is), in which case push fails and the task goes
+     * through workQueue instead.  Removal of arbitrary tasks replaces
+     * them with REMOVED, which pollers skip, since a null slot before
+     * top means that a poll or push is in progress.
+     */
+    static final class LocalQueue {
+        /** Initial capacity of the array, a power of two */
+        static final int INITIAL_QUEUE_CAPACITY = 1 << 5;
+
+        /** Maximum capacity of the array, a power of two */
+        static final int MAXIMUM_QUEUE_CAPACITY = 1 << 13;
+
+        /** Placeholder for tasks removed other than by poll */
+        static final Runnable REMOVED = new Runnable() {
+                public void run() { }
+            };
+
+        volatile int base;         // index of next slot for poll
+        volatile int top;          // index of next slot for push
+        Runnable[] array;          // the elements (initially unallocated)
+
+        /**
+         * Pushes a task.  Call only by owner.
+         *
+         * @return false if the queue is at maximum capacity
+         */
+        final boolean push(Runnable task) {
+            Runnable[] a = array;
+            int s = top;
+            if ((a == null || s - base >= a.length) &&
+                (a = growArray()) == null)
+                return false;
+            long j = ((long)((a.length - 1) & s) << ASHIFT) + ABASE;
+            U.putOrderedObject(a, j, task);
+            top = s + 1;
+            return true;
+        }
+
+        /**
+         * Initializes or doubles the capacity of the array.  Call only
+         * by owner.
+         *
+         * @return the new array, or null if at maximum capacity
+         */
+        private Runnable[] growArray() {
+            Runnable[] oldA = array;
+            int size = (oldA != null) ? oldA.length << 1 :
+                INITIAL_QUEUE_CAPACITY;
+            if (size > MAXIMUM_QUEUE_CAPACITY)
+                return null;
+            int oldMask, t, b;
+            Runnable[] a = array = new Runnable[size];
+            if (oldA != null && (oldMask = oldA.length - 1) >= 0 &&
+                (t = top) - (b = base) > 0) {
+                int mask = size - 1;
+                do {
+                    Object x;
+                    long oldj = ((long)(b & oldMask) << ASHIFT) + ABASE;
+                    long j    = ((long)(b &    mask) << ASHIFT) + ABASE;
+                    x = U.getObjectVolatile(oldA, oldj);
+                    if (x != null &&
+                        U.compareAndSwapObject(oldA, oldj, x, null))
+                        U.putObjectVolatile(a, j, x);
+                } while (++b != t);
+            }
+            return a;
+        }
+
+        /**
+         * Takes next task, if one exists, in FIFO order.
+         */
+        final Runnable poll() {
+            Runnable[] a; int b;
+            while ((b = base) - top < 0 && (a = array) != null) {
+                long j = ((long)((a.length - 1) & b) << ASHIFT) + ABASE;
+                Object t = U.getObjectVolatile(a, j);
+                if (base == b) {
+                    if (t != null) {
+                        if (U.compareAndSwapObject(a, j, t, null)) {
+                            base = b + 1;
+                            if (t != REMOVED)
+                                return (Runnable)t;
+                        }
+                    }
+                    else if (b + 1 == top) // now empty
+                        break;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Pops the given task only if it is at the current top.  Call
+         * only by owner.
+         */
+        final boolean tryUnpush(Runnable task) {
+            Runnable[] a; int s;
+            if ((a = array) != null && (s = top) != base &&
+                U.compareAndSwapObject
+                (a, ((long)((a.length - 1) & --s) << ASHIFT) + ABASE,
+                 task, null)) {
+                top = s;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Replaces the given task with REMOVED, if present.
+         */
+        final boolean remove(Object task) {
+            Runnable[] a;
+            if (task != null && (a = array) != null) {
+                int m = a.length - 1;
+                for (int b = base, s = top; b - s < 0; ++b) {
+                    long j = ((long)(m & b) << ASHIFT) + ABASE;
+                    if (U.getObjectVolatile(a, j) == task &&
+                        U.compareAndSwapObject(a, j, task, REMOVED))
+                        return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Replaces all cancelled Futures with REMOVED.
+         */
+        final void purge() {
+            Runnable[] a;
+            if ((a = array) != null) {
+                int m = a.length - 1;
+                for (int b = base, s = top; b - s < 0; ++b) {
+                    long j = ((long)(m & b) << ASHIFT) + ABASE;
+                    Object x = U.getObjectVolatile(a, j);
+                    if (x instanceof Future<?> &&
+                        ((Future<?>)x).isCancelled())
+                        U.compareAndSwapObject(a, j, x, REMOVED);
+                }
+            }
+        }
+
+        /**
+         * Removes all tasks, adding them to the given list.
+         */
+        final void drainTo(List<Runnable> list) {
+            for (Runnable r; (r = poll()) != null; )
+                list.add(r);
+        }
+
+        /**
+         * Returns an estimate of the number of tasks in the queue.
+         */
+        final int size() {
+            int n = top - base;
+            return (n < 0) ? 0 : n;
+        }
+
+        final boolean isEmpty() {
+            return top - base <= 0;
+        }
+
+        // Unsafe mechanics
+        private static final sun.misc.Unsafe U;
+        private static final long ABASE;
+        private static final int ASHIFT;
+        static {
+            try {
+                U = sun.misc.Unsafe.getUnsafe();
+                Class<?> ak = Runnable[].class;
+                ABASE = U.arrayBaseOffset(ak);
+                int scale = U.arrayIndexScale(ak);
+                if ((scale & (scale - 1)) != 0)
+                    throw new Error("data type scale not a power of two");
+                ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+            } catch (Exception e) {
+                throw new Error(e);
+            }
+        }
+    }
+
     /*
      * Methods for setting control state
      */
@@ -820,6 +1101,9 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      * Package-protected for use by ScheduledThreadPoolExecutor.
      */
     final void reject(Runnable command) {
+        Stats s = stats;
+        if (s != null)
+            s.taskRejected();
         handler.rejectedExecution(command, this);
     }
 
@@ -846,7 +1130,9 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      * Drains the task queue into a new list, normally using
      * drainTo. But if the queue is a DelayQueue or any other kind of
      * queue for which poll or drainTo may fail to remove some
-     * elements, it deletes them one by one.
+     * elements, it deletes them one by one.  In work-stealing mode,
+     * also drains the local queues of workers.  Call only while
+     * holding mainLock.
      */
     private List<Runnable> drainQueue() {
         BlockingQueue<Runnable> q = workQueue;
@@ -858,6 +1144,10 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                     taskList.add(r);
             }
         }
+        if (workStealing) {
+            for (Worker w : workers)
+                w.localQueue.drainTo(taskList);
+        }
         return taskList;
     }
 
@@ -938,6 +1228,10 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                         if (t.isAlive()) // precheck that t is startable
                             throw new IllegalThreadStateException();
                         workers.add(w);
+                        if (workStealing)
+                            updateWorkerArray();
+                        if (stats != null)
+                            stats.workerStarted();
                         int s = workers.size();
                         if (s > largestPoolSize)
                             largestPoolSize = s;
@@ -958,6 +1252,17 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         return workerStarted;
     }
 
+    /**
+     * Performs bookkeeping for a worker removed from the workers set.
+     * Call only while holding mainLock.
+     */
+    private void workerRemoved() {
+        if (workStealing)
+            updateWorkerArray();
+        if (stats != null)
+            stats.workerExited();
+    }
+
     /**
      * Rolls back the worker thread creation.
      * - removes worker from workers, if present
@@ -969,8 +1274,8 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         final ReentrantLock mainLock = this.mainLock;
         mainLock.lock();
         try {
-            if (w != null)
-                workers.remove(w);
+            if (w != null && workers.remove(w))
+                workerRemoved();
             decrementWorkerCount();
             tryTerminate();
         } finally {
@@ -999,7 +1304,8 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         mainLock.lock();
         try {
             completedTaskCount += w.completedTasks;
-            workers.remove(w);
+            if (workers.remove(w))
+                workerRemoved();
         } finally {
             mainLock.unlock();
         }
@@ -1033,15 +1339,27 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      *    both before and after the timed wait, and if the queue is
      *    non-empty, this worker is not the last thread in the pool.
      *
+     * In work-stealing mode, local tasks are also taken as described
+     * above, and idle workers block only after failing to steal.
+     *
+     * @param w the worker
      * @return task, or null if the worker must exit, in which case
      *         workerCount is decremented
      */
-    private Runnable getTask() {
+    private Runnable getTask(Worker w) {
         boolean timedOut = false; // Did the last poll() time out?
+        final LocalQueue q = w.localQueue;
 
         for (;;) {
             int c = ctl.get();
             int rs = runStateOf(c);
+            Runnable r;
+
+            // Unless stopped, run local tasks before checking workQueue
+            if (q != null && rs < STOP &&
+                ((r = q.poll()) != null ||
+                 (rs == SHUTDOWN && (r = stealTask(w)) != null)))
+                return r;
 
             // Check if queue empty only if necessary.
             if (rs >= SHUTDOWN && (rs >= STOP || workQueue.isEmpty())) {
@@ -1062,9 +1380,13 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             }
 
             try {
-                Runnable r = timed ?
-                    workQueue.poll(keepAliveTime, TimeUnit.NANOSECONDS) :
-                    workQueue.take();
+                if (q == null)
+                    r = timed ?
+                        workQueue.poll(keepAliveTime, TimeUnit.NANOSECONDS) :
+                        workQueue.take();
+                else if ((r = workQueue.poll()) == null &&
+                         (r = stealTask(w)) == null)
+                    r = awaitTask(w, timed);
                 if (r != null)
                     return r;
                 timedOut = true;
@@ -1121,10 +1443,12 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         Thread wt = Thread.currentThread();
         Runnable task = w.firstTask;
         w.firstTask = null;
+        if (w.localQueue != null)
+            localWorker.set(w);
         w.unlock(); // allow interrupts
         boolean completedAbruptly = true;
         try {
-            while (task != null || (task = getTask()) != null) {
+            while (task != null || (task = getTask(w)) != null) {
                 w.lock();
                 // If pool is stopping, ensure thread is interrupted;
                 // if not, ensure thread is not interrupted.  This
@@ -1138,6 +1462,8 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                 try {
                     beforeExecute(wt, task);
                     Throwable thrown = null;
+                    Stats s = stats;
+                    long startTime = (s == null) ? 0L : s.taskStarted(task);
                     try {
                         task.run();
                     } catch (RuntimeException x) {
@@ -1147,6 +1473,8 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                     } catch (Throwable x) {
                         thrown = x; throw new Error(x);
                     } finally {
+                        if (s != null)
+                            s.taskFinished(startTime, thrown);
                         afterExecute(task, thrown);
                     }
                 } finally {
@@ -1157,8 +1485,184 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             }
             completedAbruptly = false;
         } finally {
-            processWorkerExit(w, completedAbruptly);
+            try {
+                if (w.localQueue != null)
+                    releaseLocalQueue(w);
+            } finally {
+                processWorkerExit(w, completedAbruptly);
+            }
+        }
+    }
+
+    /*
+     * Methods for work-stealing mode
+     */
+
+    /**
+     * Replaces workerArray with a snapshot of the workers set.  Call
+     * only while holding mainLock.
+     */
+    private void updateWorkerArray() {
+        workerArray = workers.toArray(new Worker[workers.size()]);
+    }
+
+    /**
+     * Pushes the given task onto the local queue of the current
+     * thread, if it is a worker of this pool and its queue is not
+     * full, waking an idle worker to steal it if there is one.  The
+     * task is pushed only if there is an idle worker, or the pool is
+     * already at maximumPoolSize; otherwise the submitting worker may
+     * block waiting for the task (for example in Future.get), which
+     * then could run only after that worker finishes, so the task
+     * instead takes the normal path of execute, which may start a new
+     * thread for it.
+     *
+     * @param command the task
+     * @return true if the task was accepted, possibly by rejecting it
+     *         if the pool shut down concurrently
+     */
+    private boolean pushLocalTask(Runnable command) {
+        Worker w = localWorker.get();
+        if (w == null ||
+            (idleCount.get() == 0 &&
+             workerCountOf(ctl.get()) < maximumPoolSize) ||
+            !w.localQueue.push(command))
+            return false;
+        if (! isRunning(ctl.get()) && w.localQueue.tryUnpush(command))
+            reject(command);
+        else if (idleCount.get() > 0)
+            signalIdleWorker();
+        return true;
+    }
+
+    /**
+     * Tries to steal a task from the local queue of a worker other
+     * than the given one, scanning all workers starting at a random
+     * index.  If the victim has more tasks, also wakes an idle
+     * worker, so that wakeups propagate while tasks remain.
+     *
+     * @param w the worker looking for a task
+     * @return a task, or null if none found
+     */
+    private Runnable stealTask(Worker w) {
+        Worker[] ws = workerArray;
+        int n = ws.length;
+        if (n > 1) {
+            int origin = ThreadLocalRandom.current().nextInt(n);
+            for (int k = 0; k < n; ++k) {
+                Worker v = ws[(origin + k) % n];
+                Runnable r;
+                if (v != w && (r = v.localQueue.poll()) != null) {
+                    if (!v.localQueue.isEmpty() && idleCount.get() > 0)
+                        signalIdleWorker();
+                    return r;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Wakes up a worker blocked in awaitTask, if there is one other
+     * than the current thread.
+     */
+    private void signalIdleWorker() {
+        Thread me = Thread.currentThread();
+        for (Worker w : workerArray) {
+            Thread t = w.thread;
+            if (w.idle && t != me && w.tryLock()) {
+                try {
+                    if (w.idle) {
+                        w.idle = false;
+                        idleCount.decrementAndGet();
+                        t.interrupt();
+                        return;
+                    }
+                } catch (SecurityException ignore) {
+                    return;
+                } finally {
+                    w.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Announces the given worker idle and, unless a task is found on
+     * rescanning the local queues of other workers, performs a
+     * blocking or timed wait for a task on workQueue.  An interrupt
+     * by signalIdleWorker causes a retry within getTask.
+     *
+     * @param w the current worker
+     * @param timed whether to wait at most keepAliveTime
+     * @return task, or null if timed out
+     */
+    private Runnable awaitTask(Worker w, boolean timed)
+        throws InterruptedException {
+        w.idle = true;
+        idleCount.incrementAndGet();
+        try {
+            Runnable r = stealTask(w);
+            if (r != null)
+                return r;
+            return timed ?
+                workQueue.poll(keepAliveTime, TimeUnit.NANOSECONDS) :
+                workQueue.take();
+        } finally {
+            w.lock();
+            if (w.idle) {
+                w.idle = false;
+                idleCount.decrementAndGet();
+            }
+            w.unlock();
+        }
+    }
+
+    /**
+     * Performs cleanup of the local queue of an exiting worker, which
+     * is nonempty only if the worker completed abruptly or the pool
+     * stopped.  Remaining tasks are moved to workQueue, and rejected
+     * if it does not accept them, with the same recheck as in
+     * execute.  If the pool is stopped, they are instead left for
+     * shutdownNow, which drains them while holding mainLock, and so
+     * before this worker can be removed from the workers set.
+     *
+     * @param w the worker
+     */
+    private void releaseLocalQueue(Worker w) {
+        localWorker.remove();
+        for (Runnable r; isRunningOrShutdown(true) &&
+                 (r = w.localQueue.poll()) != null; ) {
+            if (! workQueue.offer(r) ||
+                (! isRunningOrShutdown(true) && workQueue.remove(r)))
+                reject(r);
+        }
+    }
+
+    /**
+     * Removes the given task from the local queue of any worker.
+     *
+     * @return true if the task was removed
+     */
+    private boolean removeLocalTask(Runnable task) {
+        for (Worker w : workerArray) {
+            if (w.localQueue.remove(task))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of tasks in the local queues of workers.
+     * Call only while holding mainLock.
+     */
+    private int localQueueSize() {
+        int n = 0;
+        if (workStealing) {
+            for (Worker w : workers)
+                n += w.localQueue.size();
         }
+        return n;
     }
 
     // Public constructors and methods
@@ -1300,6 +1804,52 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                               BlockingQueue<Runnable> workQueue,
                               ThreadFactory threadFactory,
                               RejectedExecutionHandler handler) {
+        this(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue,
+             threadFactory, handler, false);
+    }
+
+    /**
+     * Creates a new {@code ThreadPoolExecutor} with the given initial
+     * parameters, optionally in work-stealing mode.  In this mode,
+     * tasks submitted by worker threads are held in per-thread local
+     * queues from which idle workers steal, rather than in the given
+     * {@code workQueue}.
+     *
+     * @param corePoolSize the number of threads to keep in the pool, even
+     *        if they are idle, unless {@code allowCoreThreadTimeOut} is set
+     * @param maximumPoolSize the maximum number of threads to allow in the
+     *        pool
+     * @param keepAliveTime when the number of threads is greater than
+     *        the core, this is the maximum time that excess idle threads
+     *        will wait for new tasks before terminating.
+     * @param unit the time unit for the {@code keepAliveTime} argument
+     * @param workQueue the queue to use for holding tasks before they are
+     *        executed.  This queue will hold only the {@code Runnable}
+     *        tasks submitted by the {@code execute} method.
+     * @param threadFactory the factory to use when the executor
+     *        creates a new thread
+     * @param handler the handler to use when execution is blocked
+     *        because the thread bounds and queue capacities are reached
+     * @param workStealing if {@code true}, tasks submitted by worker
+     *        threads are queued locally as described in the <a
+     *        href="#WorkStealing">class documentation</a>
+     * @throws IllegalArgumentException if one of the following holds:<br>
+     *         {@code corePoolSize < 0}<br>
+     *         {@code keepAliveTime < 0}<br>
+     *         {@code maximumPoolSize <= 0}<br>
+     *         {@code maximumPoolSize < corePoolSize}
+     * @throws NullPointerException if {@code workQueue}
+     *         or {@code threadFactory} or {@code handler} is null
+     * @since 1.8
+     */
+    public ThreadPoolExecutor(int corePoolSize,
+                              int maximumPoolSize,
+                              long keepAliveTime,
+                              TimeUnit unit,
+                              BlockingQueue<Runnable> workQueue,
+                              ThreadFactory threadFactory,
+                              RejectedExecutionHandler handler,
+                              boolean workStealing) {
         if (corePoolSize < 0 ||
             maximumPoolSize <= 0 ||
             maximumPoolSize < corePoolSize ||
@@ -1313,6 +1863,13 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         this.keepAliveTime = unit.toNanos(keepAliveTime);
         this.threadFactory = threadFactory;
         this.handler = handler;
+        this.workStealing = workStealing;
+        if (workStealing) {
+            this.localWorker = new ThreadLocal<Worker>();
+            this.workerArray = new Worker[0];
+        }
+        else
+            this.localWorker = null;
     }
 
     /**
@@ -1351,13 +1908,23 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
          * 3. If we cannot queue task, then we try to add a new
          * thread.  If it fails, we know we are shut down or saturated
          * and so reject the task.
+         *
+         * In work-stealing mode, a task submitted by a worker thread
+         * is queued in step 2 onto the worker's local queue if it has
+         * room and either some worker is idle or the pool is at
+         * maximumPoolSize, with a similar recheck (see pushLocalTask).
          */
+        Stats s = stats;
+        if (s != null)
+            s.taskSubmitted(command);
         int c = ctl.get();
         if (workerCountOf(c) < corePoolSize) {
             if (addWorker(command, true))
                 return;
             c = ctl.get();
         }
+        if (isRunning(c) && workStealing && pushLocalTask(command))
+            return;
         if (isRunning(c) && workQueue.offer(command)) {
             int recheck = ctl.get();
             if (! isRunning(recheck) && remove(command))
@@ -1722,7 +2289,9 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      * Returns the task queue used by this executor. Access to the
      * task queue is intended primarily for debugging and monitoring.
      * This queue may be in active use.  Retrieving the task queue
-     * does not prevent queued tasks from executing.
+     * does not prevent queued tasks from executing.  In work-stealing
+     * mode, the returned queue does not include tasks held in the
+     * local queues of worker threads.
      *
      * @return the task queue
      */
@@ -1747,13 +2316,15 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      * @return {@code true} if the task was removed
      */
     public boolean remove(Runnable task) {
-        boolean removed = workQueue.remove(task);
+        boolean removed = workQueue.remove(task) ||
+            (workStealing && removeLocalTask(task));
         tryTerminate(); // In case SHUTDOWN and now empty
         return removed;
     }
 
     /**
-     * Tries to remove from the work queue all {@link Future}
+     * Tries to remove from the work queue (and in work-stealing mode,
+     * the local queues of worker threads) all {@link Future}
      * tasks that have been cancelled. This method can be useful as a
      * storage reclamation operation, that has no other impact on
      * functionality. Cancelled tasks are never executed, but may
@@ -1779,10 +2350,25 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                 if (r instanceof Future<?> && ((Future<?>)r).isCancelled())
                     q.remove(r);
         }
+        if (workStealing) {
+            for (Worker w : workerArray)
+                w.localQueue.purge();
+        }
 
         tryTerminate(); // In case SHUTDOWN and now empty
     }
 
+    /**
+     * Returns {@code true} if this executor is in work-stealing mode,
+     * in which tasks submitted by worker threads are queued locally.
+     *
+     * @return {@code true} if in work-stealing mode
+     * @since 1.8
+     */
+    public boolean isWorkStealing() {
+        return workStealing;
+    }
+
     /* Statistics */
 
     /**
@@ -1823,6 +2409,31 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         }
     }
 
+    /**
+     * Returns the number of threads executing tasks that are blocked
+     * or waiting, as reported by {@link Thread#getState}.  Used by
+     * AdaptiveThreadPoolExecutor.
+     */
+    final int getBlockedCount() {
+        final ReentrantLock mainLock = this.mainLock;
+        mainLock.lock();
+        try {
+            int n = 0;
+            for (Worker w : workers) {
+                if (w.isLocked()) {
+                    Thread.State s = w.thread.getState();
+                    if (s == Thread.State.BLOCKED ||
+                        s == Thread.State.WAITING ||
+                        s == Thread.State.TIMED_WAITING)
+                        ++n;
+                }
+            }
+            return n;
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
     /**
      * Returns the largest number of threads that have ever
      * simultaneously been in the pool.
@@ -1857,7 +2468,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                 if (w.isLocked())
                     ++n;
             }
-            return n + workQueue.size();
+            return n + workQueue.size() + localQueueSize();
         } finally {
             mainLock.unlock();
         }
@@ -1894,7 +2505,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      */
     public String toString() {
         long ncompleted;
-        int nworkers, nactive;
+        int nworkers, nactive, nlocal;
         final ReentrantLock mainLock = this.mainLock;
         mainLock.lock();
         try {
@@ -1906,6 +2517,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                 if (w.isLocked())
                     ++nactive;
             }
+            nlocal = localQueueSize();
         } finally {
             mainLock.unlock();
         }
@@ -1917,11 +2529,280 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             "[" + rs +
             ", pool size = " + nworkers +
             ", active threads = " + nactive +
-            ", queued tasks = " + workQueue.size() +
+            ", queued tasks = " + (workQueue.size() + nlocal) +
             ", completed tasks = " + ncompleted +
             "]";
     }
 
+    /**
+     * Returns the management interface of this executor, which
+     * reports statistics maintained without locking, such as task
+     * queue wait and run times.  Recording of these statistics begins
+     * upon the first invocation of this method, and adds a few timing
+     * and counting operations to the submission and execution of each
+     * task.  Queue wait times are recorded for the tasks created by
+     * {@link #newTaskFor(Callable) newTaskFor}, that is, those
+     * submitted using {@code submit}, {@code invokeAny} or {@code
+     * invokeAll}, each of which carries its own submission time.
+     * Other tasks passed to {@link #execute} are not timed while
+     * queued, so that no state is kept for tasks outside the queue.
+     *
+     * @return the {@link ThreadPoolExecutorMXBean} of this executor
+     * @since 1.8
+     */
+    public ThreadPoolExecutorMXBean getMXBean() {
+        return stats();
+    }
+
+    /**
+     * Returns stats, creating it if necessary.
+     */
+    final Stats stats() {
+        Stats s;
+        if ((s = stats) == null) {
+            final ReentrantLock mainLock = this.mainLock;
+            mainLock.lock();
+            try {
+                if ((s = stats) == null)
+                    stats = s = newStats();
+            } finally {
+                mainLock.unlock();
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Creates the statistics of this executor.  Overridden by
+     * ScheduledThreadPoolExecutor.  Call only while holding mainLock.
+     */
+    Stats newStats() {
+        return new Stats();
+    }
+
+    /**
+     * Counts of durations by powers of two of nanoseconds, as
+     * described in ThreadPoolExecutorMXBean.
+     */
+    static final class TimeHistogram {
+        private final LongAdder[] counts = new LongAdder[64];
+
+        TimeHistogram() {
+            for (int i = 0; i < counts.length; ++i)
+                counts[i] = new LongAdder();
+        }
+
+        void record(long nanos) {
+            counts[(nanos <= 0L) ? 0 :
+                   64 - Long.numberOfLeadingZeros(nanos)].increment();
+        }
+
+        long[] toArray() {
+            long[] a = new long[counts.length];
+            for (int i = 0; i < a.length; ++i)
+                a[i] = counts[i].sum();
+            return a;
+        }
+
+        void reset() {
+            for (LongAdder c : counts)
+                c.reset();
+        }
+    }
+
+    /**
+     * A FutureTask recording the time at which it was last passed to
+     * execute while statistics are enabled, or zero if never.  The
+     * time is written before the task is queued and read by the
+     * worker that takes it, so the queue orders the accesses.
+     */
+    static final class TimedFutureTask<V> extends FutureTask<V> {
+        long submitTime;
+        TimedFutureTask(Callable<V> callable) { super(callable); }
+        TimedFutureTask(Runnable runnable, V result) {
+            super(runnable, result);
+        }
+    }
+
+    /**
+     * Returns a {@code RunnableFuture} for the given runnable and
+     * default value, which records its submission time for the
+     * {@linkplain #getMXBean management interface}.
+     *
+     * @param runnable the runnable task being wrapped
+     * @param value the default value for the returned future
+     * @param <T> the type of the given value
+     * @return a {@code RunnableFuture} which, when run, will run the
+     * underlying runnable and which, as a {@code Future}, will yield
+     * the given value as its result and provide for cancellation of
+     * the underlying task
+     * @since 1.8
+     */
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new TimedFutureTask<T>(runnable, value);
+    }
+
+    /**
+     * Returns a {@code RunnableFuture} for the given callable task,
+     * which records its submission time for the {@linkplain
+     * #getMXBean management interface}.
+     *
+     * @param callable the callable task being wrapped
+     * @param <T> the type of the callable's result
+     * @return a {@code RunnableFuture} which, when run, will call the
+     * underlying callable and which, as a {@code Future}, will yield
+     * the callable's result as its result and provide for
+     * cancellation of the underlying task
+     * @since 1.8
+     */
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new TimedFutureTask<T>(callable);
+    }
+
+    /**
+     * Statistics of this executor, recorded with LongAdders.  Queue
+     * wait times are measured only for TimedFutureTasks, from the
+     * submission time each carries, so nothing is retained for tasks
+     * leaving the queue by other paths.  Utilization is the ratio of runTime to the
+     * integral of the number of workers over time, which is
+     * workerTime plus liveWorkers times the current time, as each
+     * worker subtracts its start time from workerTime and adds its
+     * exit time.
+     */
+    class Stats implements ThreadPoolExecutorMXBean {
+        final LongAdder submitted = new LongAdder();
+        final LongAdder completed = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder active = new LongAdder();
+        final LongAdder queueWaitTime = new LongAdder();
+        final LongAdder runTime = new LongAdder();
+        final LongAdder workerTime = new LongAdder();
+        final TimeHistogram queueWaitTimes = new TimeHistogram();
+        final TimeHistogram runTimes = new TimeHistogram();
+        /** Number of workers in the workers set; written under mainLock */
+        volatile int liveWorkers;
+
+        /** Constructor; call only while holding mainLock */
+        Stats() {
+            int n = liveWorkers = workers.size();
+            workerTime.add(-System.nanoTime() * n);
+        }
+
+        // Recording methods
+
+        final void taskSubmitted(Runnable task) {
+            submitted.increment();
+            if (task instanceof TimedFutureTask)
+                ((TimedFutureTask<?>)task).submitTime = System.nanoTime();
+        }
+
+        final void taskRejected() {
+            rejected.increment();
+        }
+
+        /**
+         * Records the start of a task, returning the current time.
+         */
+        final long taskStarted(Runnable task) {
+            long now = System.nanoTime();
+            active.increment();
+            TimedFutureTask<?> t; long submitTime;
+            if (task instanceof TimedFutureTask &&
+                (submitTime = (t = (TimedFutureTask<?>)task).submitTime) != 0L) {
+                t.submitTime = 0L;
+                long wait = now - submitTime;
+                queueWaitTime.add(wait);
+                queueWaitTimes.record(wait);
+            }
+            return now;
+        }
+
+        final void taskFinished(long startTime, Throwable thrown) {
+            long time = System.nanoTime() - startTime;
+            active.decrement();
+            runTime.add(time);
+            runTimes.record(time);
+            completed.increment();
+            if (thrown != null)
+                failed.increment();
+        }
+
+        /** Call only while holding mainLock */
+        final void workerStarted() {
+            workerTime.add(-System.nanoTime());
+            ++liveWorkers;
+        }
+
+        /** Call only while holding mainLock */
+        final void workerExited() {
+            workerTime.add(System.nanoTime());
+            --liveWorkers;
+        }
+
+        // ThreadPoolExecutorMXBean methods
+
+        public int getPoolSize() {
+            return workerCountOf(ctl.get());
+        }
+        public int getCorePoolSize() {
+            return ThreadPoolExecutor.this.getCorePoolSize();
+        }
+        public int getMaximumPoolSize() {
+            return ThreadPoolExecutor.this.getMaximumPoolSize();
+        }
+        public int getActiveCount() {
+            long n = active.sum();
+            return (n <= 0L) ? 0 : (int)n;
+        }
+        public int getQueueSize() {
+            int n = workQueue.size();
+            Worker[] ws;
+            if ((ws = workerArray) != null) {
+                for (Worker w : ws)
+                    n += w.localQueue.size();
+            }
+            return n;
+        }
+        public int getQueueRemainingCapacity() {
+            return workQueue.remainingCapacity();
+        }
+        public long getSubmittedTaskCount()   { return submitted.sum(); }
+        public long getCompletedTaskCount()   { return completed.sum(); }
+        public long getFailedTaskCount()      { return failed.sum(); }
+        public long getRejectedTaskCount()    { return rejected.sum(); }
+        public long getTotalQueueWaitTime()   { return queueWaitTime.sum(); }
+        public long[] getQueueWaitTimeHistogram() {
+            return queueWaitTimes.toArray();
+        }
+        public long getTotalRunTime()         { return runTime.sum(); }
+        public long[] getRunTimeHistogram()   { return runTimes.toArray(); }
+        public double getUtilization() {
+            long total = workerTime.sum() +
+                System.nanoTime() * liveWorkers;
+            double u = (total <= 0L) ? 0.0 : (double)runTime.sum() / total;
+            return (u > 1.0) ? 1.0 : u;
+        }
+        public void resetStatistics() {
+            final ReentrantLock mainLock = ThreadPoolExecutor.this.mainLock;
+            mainLock.lock();
+            try {
+                workerTime.reset();
+                workerTime.add(-System.nanoTime() * liveWorkers);
+            } finally {
+                mainLock.unlock();
+            }
+            submitted.reset();
+            completed.reset();
+            failed.reset();
+            rejected.reset();
+            queueWaitTime.reset();
+            runTime.reset();
+            queueWaitTimes.reset();
+            runTimes.reset();
+        }
+    }
+
     /* Extension hooks */
 
     /**
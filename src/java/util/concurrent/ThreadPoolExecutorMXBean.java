@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+/**
+ * The management interface of a {@link ThreadPoolExecutor}.  An
+ * instance is obtained from {@link ThreadPoolExecutor#getMXBean} and
+ * may be registered with a platform {@code MBeanServer} under a name
+ * of the application's choosing, for example:
+ *
+ * <pre> {@code
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(
+ *     executor.getMXBean(),
+ *     new ObjectName("com.example:type=ThreadPoolExecutor,name=workers"));}</pre>
+ *
+ * <p>Unlike the statistics methods of {@code ThreadPoolExecutor}, none
+ * of these methods acquire the executor's main lock.  Counts and times
+ * are cumulative since the first invocation of {@code getMXBean} or
+ * the last reset of statistics, and are maintained without locking,
+ * so a set of values read together is not necessarily an atomic
+ * snapshot.  Times are in nanoseconds.
+ *
+ * <p>Histograms are returned as arrays of 64 counts, in which element
+ * {@code 0} counts times of zero, and element {@code i > 0} counts
+ * times {@code t} with 2<sup>i-1</sup> &lt;= {@code t} &lt;
+ * 2<sup>i</sup> nanoseconds.
+ *
+ * @see ThreadPoolExecutor
+ * @since 1.8
+ */
+public interface ThreadPoolExecutorMXBean {
+
+    /**
+     * Returns the number of worker threads that have been started and
+     * not permitted to stop.
+     *
+     * @return the number of threads
+     */
+    int getPoolSize();
+
+    /**
+     * Returns the core number of threads.
+     *
+     * @return the core number of threads
+     */
+    int getCorePoolSize();
+
+    /**
+     * Returns the maximum allowed number of threads.
+     *
+     * @return the maximum allowed number of threads
+     */
+    int getMaximumPoolSize();
+
+    /**
+     * Returns the number of threads currently executing tasks.
+     *
+     * @return the number of threads
+     */
+    int getActiveCount();
+
+    /**
+     * Returns the approximate number of tasks waiting to be executed.
+     *
+     * @return the number of queued tasks
+     */
+    int getQueueSize();
+
+    /**
+     * Returns the number of additional tasks the work queue can
+     * ideally accept without blocking, or {@code Integer.MAX_VALUE} if
+     * there is no intrinsic limit.
+     *
+     * @return the remaining capacity
+     */
+    int getQueueRemainingCapacity();
+
+    /**
+     * Returns the number of tasks submitted for execution, including
+     * those that were rejected.
+     *
+     * @return the submitted task count
+     */
+    long getSubmittedTaskCount();
+
+    /**
+     * Returns the number of tasks that completed execution, normally or
+     * abruptly.
+     *
+     * @return the completed task count
+     */
+    long getCompletedTaskCount();
+
+    /**
+     * Returns the number of tasks that completed execution by throwing
+     * an exception.  Tasks such as {@link FutureTask} that capture
+     * exceptions are not counted.
+     *
+     * @return the failed task count
+     */
+    long getFailedTaskCount();
+
+    /**
+     * Returns the number of tasks handed to the
+     * {@link RejectedExecutionHandler}.
+     *
+     * @return the rejected task count
+     */
+    long getRejectedTaskCount();
+
+    /**
+     * Returns the total time that tasks waited between their
+     * submission and the start of their execution.
+     *
+     * @return the total queue wait time
+     */
+    long getTotalQueueWaitTime();
+
+    /**
+     * Returns the histogram of the times that tasks waited between
+     * their submission and the start of their execution.
+     *
+     * @return the queue wait time histogram
+     */
+    long[] getQueueWaitTimeHistogram();
+
+    /**
+     * Returns the total execution time of completed tasks.
+     *
+     * @return the total run time
+     */
+    long getTotalRunTime();
+
+    /**
+     * Returns the histogram of the execution times of completed tasks.
+     *
+     * @return the run time histogram
+     */
+    long[] getRunTimeHistogram();
+
+    /**
+     * Returns the fraction of the lifetime of worker threads spent
+     * executing completed tasks, between {@code 0.0} and {@code 1.0}.
+     *
+     * @return the utilization
+     */
+    double getUtilization();
+
+    /**
+     * Resets all counts, times and histograms to zero.
+     */
+    void resetStatistics();
+}
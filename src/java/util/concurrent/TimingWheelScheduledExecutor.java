@@ -0,0 +1,887 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link ScheduledExecutorService} that keeps delayed tasks in a
+ * hierarchical hashed timing wheel, and runs them, when they become
+ * enabled, in a given {@link Executor}.  Scheduling and cancelling a
+ * task take constant time, and neither blocks: tasks are handed to a
+ * single timer thread through a lock-free queue.  This makes this class
+ * preferable to {@link ScheduledThreadPoolExecutor}, whose delay queue
+ * is a binary heap guarded by a lock, when large numbers of tasks, such
+ * as request timeouts, are scheduled and mostly cancelled before they
+ * become enabled.
+ *
+ * <p>Time is divided into <em>ticks</em> of a duration given at
+ * construction.  Delayed tasks are enabled at the end of the tick in
+ * which their delay elapses, so they never run before their delay, but
+ * may run up to one tick, plus the time needed to dispatch them, after
+ * it.  Tasks enabled in the same tick are dispatched in no particular
+ * order.  While any tasks are pending, the timer thread wakes up once
+ * per tick, so very short ticks trade processor time for precision.
+ *
+ * <p>Enabled tasks are passed to the executor from the timer thread,
+ * so the executor should not block in {@code execute}.  If it rejects
+ * a task by throwing a {@link RejectedExecutionException}, the future
+ * of the task completes with that exception.  Like {@link
+ * ScheduledThreadPoolExecutor}, periodic tasks are suppressed if any
+ * execution throws an exception, and zero and negative delays are
+ * treated as requests for immediate execution.
+ *
+ * <p>After {@link #shutdown}, no further tasks are accepted, periodic
+ * tasks are cancelled, and already scheduled one-shot tasks still run
+ * when their delays elapse.  This executor terminates when its timer
+ * thread has dispatched or discarded all tasks; termination does not
+ * wait for the dispatched tasks to complete, nor shut down the given
+ * executor.
+ *
+ * @since 1.8
+ */
+public class TimingWheelScheduledExecutor extends AbstractExecutorService
+    implements ScheduledExecutorService {
+
+    /*
+     * Overview:
+     *
+     * Time is measured in ticks since the executor was created.  The
+     * timer thread owns a wheel of LEVELS levels of SLOTS slots each,
+     * where each slot heads a doubly linked list of tasks.  A task
+     * due at tick d, when the last processed tick is now (< d), lives
+     * at the level L of the highest group of WHEEL_BITS bits in which
+     * d and now differ, in the slot indexed by that group of bits of
+     * d.  When the timer reaches a tick t whose low WHEEL_BITS * L
+     * bits are all zero, the slot of level L indexed by the next bits
+     * of t holds exactly the tasks due in [t, t + SLOTS^L), which are
+     * then cascaded to lower levels, highest level first.  Finally
+     * the level 0 slot of t holds the tasks due at t, which are
+     * dispatched.  So each task is moved at most LEVELS times and
+     * otherwise is inserted, unlinked and dispatched in constant
+     * time, with no per-tick cost beyond visiting a few slots.
+     *
+     * Other threads never touch the wheel.  New tasks (including
+     * periodic ones to be rescheduled) are pushed onto a Treiber
+     * stack, the head of which is swapped out by the timer thread at
+     * each wake-up, which suffices as tasks due in the same tick are
+     * unordered.  A push onto an empty stack unparks the timer.
+     * Cancelled tasks are pushed onto a second stack and unlinked by
+     * the timer thread, so that they are not retained until their
+     * deadline.  When the timer thread is done, it installs the
+     * TERMINATED sentinel as the head of the submission stack, so
+     * that no task can be pushed after the final check.
+     *
+     * When no task is pending, the timer parks until a submission,
+     * and skips the idle ticks.  Otherwise it parks until the end of
+     * the current tick; if it falls behind, it processes all elapsed
+     * ticks on wake-up.
+     */
+
+    /** The number of bits of tick indices resolved by each level */
+    private static final int WHEEL_BITS = 6;
+
+    /** The number of slots per level */
+    private static final int SLOTS = 1 << WHEEL_BITS;
+
+    /** The number of levels, sufficient to cover all long ticks */
+    private static final int LEVELS = (64 + WHEEL_BITS - 1) / WHEEL_BITS;
+
+    /** The default tick duration, in nanoseconds */
+    private static final long DEFAULT_TICK_NANOS = MILLISECONDS.toNanos(1L);
+
+    // Run states
+    private static final int RUNNING    = 0;
+    private static final int SHUTDOWN   = 1;
+    private static final int STOP       = 2;
+
+    /**
+     * Sequence number to break scheduling ties, and in turn to
+     * guarantee FIFO order among tied entries.
+     */
+    private static final AtomicLong sequencer = new AtomicLong();
+
+    /** The executor enabled tasks are passed to */
+    private final Executor executor;
+
+    /** The tick duration, in nanoseconds */
+    private final long tickNanos;
+
+    /** The nanoTime origin of ticks */
+    private final long origin;
+
+    /** The timer thread */
+    private final Thread timer;
+
+    /** Signalled on termination */
+    private final CountDownLatch termination = new CountDownLatch(1);
+
+    /** Sentinel head of the submission stack once terminated */
+    private final ScheduledTask<?> TERMINATED =
+        new ScheduledTask<Void>(() -> null, 0L, 0L);
+
+    /** Head of the stack of submitted tasks */
+    private volatile ScheduledTask<?> submissions;
+
+    /** Head of the stack of cancelled tasks */
+    private volatile ScheduledTask<?> cancellations;
+
+    /** One of RUNNING, SHUTDOWN or STOP */
+    private volatile int runState;
+
+    /** Tasks not yet run, set by the timer thread upon STOP */
+    private volatile List<Runnable> unrun;
+
+    // Timer thread state
+
+    /** Heads of the slot lists, indexed by level * SLOTS + slot */
+    private final ScheduledTask<?>[] wheel =
+        new ScheduledTask<?>[LEVELS * SLOTS];
+
+    /** The number of tasks in the wheel */
+    private int pending;
+
+    /** The last processed tick */
+    private long now;
+
+    /**
+     * Creates a new {@code TimingWheelScheduledExecutor} with a tick of
+     * one millisecond that runs tasks in the {@linkplain
+     * ForkJoinPool#commonPool() common pool}.
+     */
+    public TimingWheelScheduledExecutor() {
+        this(DEFAULT_TICK_NANOS, NANOSECONDS, ForkJoinPool.commonPool(),
+             Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Creates a new {@code TimingWheelScheduledExecutor} that runs tasks
+     * in the given executor.
+     *
+     * @param tickDuration the duration of a tick
+     * @param unit the time unit of the tickDuration argument
+     * @param executor the executor to run tasks in
+     * @throws IllegalArgumentException if {@code tickDuration <= 0}
+     * @throws NullPointerException if {@code unit} or {@code executor}
+     *         is null
+     */
+    public TimingWheelScheduledExecutor(long tickDuration, TimeUnit unit,
+                                        Executor executor) {
+        this(tickDuration, unit, executor, Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Creates a new {@code TimingWheelScheduledExecutor} that runs tasks
+     * in the given executor.
+     *
+     * @param tickDuration the duration of a tick
+     * @param unit the time unit of the tickDuration argument
+     * @param executor the executor to run tasks in
+     * @param threadFactory the factory to use to create the timer thread
+     * @throws IllegalArgumentException if {@code tickDuration <= 0}
+     * @throws NullPointerException if {@code unit}, {@code executor}
+     *         or {@code threadFactory} is null, or if the factory
+     *         fails to create a thread
+     */
+    public TimingWheelScheduledExecutor(long tickDuration, TimeUnit unit,
+                                        Executor executor,
+                                        ThreadFactory threadFactory) {
+        if (unit == null || executor == null || threadFactory == null)
+            throw new NullPointerException();
+        if (tickDuration <= 0L)
+            throw new IllegalArgumentException();
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.executor = executor;
+        this.origin = System.nanoTime();
+        Thread t = threadFactory.newThread(this::runTimer);
+        if (t == null)
+            throw new NullPointerException();
+        this.timer = t;
+        t.start();
+    }
+
+    /**
+     * Returns the tick duration in the given time unit.
+     *
+     * @param unit the desired time unit
+     * @return the tick duration
+     */
+    public long getTickDuration(TimeUnit unit) {
+        return unit.convert(tickNanos, NANOSECONDS);
+    }
+
+    /**
+     * Returns the executor in which this executor runs tasks.
+     *
+     * @return the executor
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    private class ScheduledTask<V>
+            extends FutureTask<V> implements RunnableScheduledFuture<V> {
+
+        /** Sequence number to break ties FIFO */
+        private final long sequenceNumber;
+
+        /** The time the task is enabled to execute in nanoTime units */
+        private long time;
+
+        /**
+         * Period in nanoseconds for repeating tasks.  A positive
+         * value indicates fixed-rate execution.  A negative value
+         * indicates fixed-delay execution.  A value of 0 indicates a
+         * non-repeating task.
+         */
+        private final long period;
+
+        /** Index of the wheel slot holding this task, or -1 if none */
+        int slot = -1;
+
+        /** Links in the slot list */
+        ScheduledTask<?> prev, next;
+
+        /** Link in the submission stack */
+        ScheduledTask<?> nextSubmitted;
+
+        /** Link in the cancellation stack */
+        ScheduledTask<?> nextCancelled;
+
+        /**
+         * Creates a one-shot action with given nanoTime-based trigger time.
+         */
+        ScheduledTask(Runnable r, V result, long ns) {
+            super(r, result);
+            this.time = ns;
+            this.period = 0;
+            this.sequenceNumber = sequencer.getAndIncrement();
+        }
+
+        /**
+         * Creates a periodic action with given nano time and period.
+         */
+        ScheduledTask(Runnable r, V result, long ns, long period) {
+            super(r, result);
+            this.time = ns;
+            this.period = period;
+            this.sequenceNumber = sequencer.getAndIncrement();
+        }
+
+        /**
+         * Creates a one-shot action with given nanoTime-based trigger
+         * time, or, if period is nonzero, a periodic one.
+         */
+        ScheduledTask(Callable<V> callable, long ns, long period) {
+            super(callable);
+            this.time = ns;
+            this.period = period;
+            this.sequenceNumber = sequencer.getAndIncrement();
+        }
+
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - System.nanoTime(), NANOSECONDS);
+        }
+
+        public int compareTo(Delayed other) {
+            if (other == this) // compare zero if same object
+                return 0;
+            if (other instanceof ScheduledTask) {
+                ScheduledTask<?> x = (ScheduledTask<?>)other;
+                long diff = time - x.time;
+                if (diff < 0)
+                    return -1;
+                else if (diff > 0)
+                    return 1;
+                else if (sequenceNumber < x.sequenceNumber)
+                    return -1;
+                else
+                    return 1;
+            }
+            long diff = getDelay(NANOSECONDS) - other.getDelay(NANOSECONDS);
+            return (diff < 0) ? -1 : (diff > 0) ? 1 : 0;
+        }
+
+        /**
+         * Returns {@code true} if this is a periodic (not a one-shot) action.
+         *
+         * @return {@code true} if periodic
+         */
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        /**
+         * Returns the tick at the end of which this task is enabled.
+         */
+        final long deadline() {
+            long d = time - origin;
+            return (d <= 0L) ? 0L : (d - 1L) / tickNanos + 1L;
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled)
+                pushCancelled(this);
+            return cancelled;
+        }
+
+        /**
+         * Completes this task with the given exception.
+         */
+        final void reject(Throwable ex) {
+            setException(ex);
+        }
+
+        /**
+         * Overrides FutureTask version so as to reset/requeue if periodic.
+         */
+        public void run() {
+            if (!isPeriodic())
+                super.run();
+            else if (super.runAndReset()) {
+                long p = period;
+                if (p > 0)
+                    time += p;
+                else
+                    time = triggerTime(-p);
+                if (runState != RUNNING || !push(this))
+                    cancel(false);
+            }
+        }
+    }
+
+    /* ---------------- Submission -------------- */
+
+    /**
+     * Returns the trigger time of a delayed action.
+     */
+    private static long triggerTime(long delay) {
+        return System.nanoTime() +
+            ((delay < (Long.MAX_VALUE >> 1)) ? delay : (Long.MAX_VALUE >> 1));
+    }
+
+    /**
+     * Returns the trigger time of a delayed action.
+     */
+    private static long triggerTime(long delay, TimeUnit unit) {
+        return triggerTime(unit.toNanos((delay < 0) ? 0 : delay));
+    }
+
+    /**
+     * Pushes the task onto the submission stack, unparking the timer
+     * if the stack was empty.  Returns false if terminated.
+     */
+    private boolean push(ScheduledTask<?> task) {
+        for (ScheduledTask<?> h;;) {
+            if ((h = submissions) == TERMINATED)
+                return false;
+            task.nextSubmitted = h;
+            if (U.compareAndSwapObject(this, SUBMISSIONS, h, task)) {
+                if (h == null)
+                    LockSupport.unpark(timer);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Pushes the cancelled task onto the cancellation stack.
+     */
+    private void pushCancelled(ScheduledTask<?> task) {
+        for (ScheduledTask<?> h;;) {
+            task.nextCancelled = h = cancellations;
+            if (U.compareAndSwapObject(this, CANCELLATIONS, h, task))
+                return;
+        }
+    }
+
+    /**
+     * Schedules the task, rejecting it if shut down.
+     */
+    private <V> ScheduledFuture<V> delayedExecute(ScheduledTask<V> task) {
+        if (runState != RUNNING || !push(task))
+            throw new RejectedExecutionException();
+        return task;
+    }
+
+    /**
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException       {@inheritDoc}
+     */
+    public ScheduledFuture<?> schedule(Runnable command,
+                                       long delay,
+                                       TimeUnit unit) {
+        if (command == null || unit == null)
+            throw new NullPointerException();
+        return delayedExecute(new ScheduledTask<Void>
+                              (command, null, triggerTime(delay, unit)));
+    }
+
+    /**
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException       {@inheritDoc}
+     */
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable,
+                                           long delay,
+                                           TimeUnit unit) {
+        if (callable == null || unit == null)
+            throw new NullPointerException();
+        return delayedExecute(new ScheduledTask<V>
+                              (callable, triggerTime(delay, unit), 0L));
+    }
+
+    /**
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException       {@inheritDoc}
+     * @throws IllegalArgumentException   {@inheritDoc}
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command,
+                                                  long initialDelay,
+                                                  long period,
+                                                  TimeUnit unit) {
+        if (command == null || unit == null)
+            throw new NullPointerException();
+        if (period <= 0)
+            throw new IllegalArgumentException();
+        return delayedExecute(new ScheduledTask<Void>
+                              (command, null, triggerTime(initialDelay, unit),
+                               unit.toNanos(period)));
+    }
+
+    /**
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException       {@inheritDoc}
+     * @throws IllegalArgumentException   {@inheritDoc}
+     */
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command,
+                                                     long initialDelay,
+                                                     long delay,
+                                                     TimeUnit unit) {
+        if (command == null || unit == null)
+            throw new NullPointerException();
+        if (delay <= 0)
+            throw new IllegalArgumentException();
+        return delayedExecute(new ScheduledTask<Void>
+                              (command, null, triggerTime(initialDelay, unit),
+                               unit.toNanos(-delay)));
+    }
+
+    /**
+     * Executes {@code command} with zero required delay.
+     * This has effect equivalent to
+     * {@link #schedule(Runnable,long,TimeUnit) schedule(command, 0, anyUnit)}.
+     *
+     * @param command the task to execute
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public void execute(Runnable command) {
+        schedule(command, 0, NANOSECONDS);
+    }
+
+    // Override AbstractExecutorService methods
+
+    /**
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException       {@inheritDoc}
+     */
+    public Future<?> submit(Runnable task) {
+        return schedule(task, 0, NANOSECONDS);
+    }
+
+    /**
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException       {@inheritDoc}
+     */
+    public <T> Future<T> submit(Runnable task, T result) {
+        return schedule(Executors.callable(task, result), 0, NANOSECONDS);
+    }
+
+    /**
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException       {@inheritDoc}
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return schedule(task, 0, NANOSECONDS);
+    }
+
+    /* ---------------- Lifecycle -------------- */
+
+    /**
+     * Initiates an orderly shutdown in which previously submitted
+     * one-shot tasks are run when their delays elapse, periodic tasks
+     * are cancelled, and no new tasks are accepted.  Invocation has no
+     * additional effect if already shut down.
+     *
+     * <p>This method does not wait for previously submitted tasks to
+     * complete execution.  Use {@link #awaitTermination awaitTermination}
+     * to do that.
+     *
+     * @throws SecurityException {@inheritDoc}
+     */
+    public void shutdown() {
+        advanceRunState(SHUTDOWN);
+    }
+
+    /**
+     * Attempts to stop all actively scheduled tasks, halts the
+     * dispatching of waiting tasks, and returns a list of the tasks
+     * that were awaiting dispatch.  These tasks are discarded (but not
+     * cancelled) upon return from this method.
+     *
+     * <p>This method waits for the timer thread to collect the waiting
+     * tasks, but not for tasks already passed to the executor to
+     * terminate.  If invoked by the timer thread itself, as may happen
+     * if the executor runs tasks in the calling thread, this method
+     * returns an empty list, and the waiting tasks are discarded
+     * asynchronously.
+     *
+     * <p>There are no guarantees beyond best-effort attempts to stop
+     * processing actively executing tasks.  This implementation
+     * does not interrupt running tasks.
+     *
+     * @return list of tasks that never commenced execution.
+     *         Each element of this list is a {@link ScheduledFuture}.
+     * @throws SecurityException {@inheritDoc}
+     */
+    public List<Runnable> shutdownNow() {
+        advanceRunState(STOP);
+        if (Thread.currentThread() == timer)
+            return Collections.emptyList();
+        boolean interrupted = false;
+        for (;;) {
+            try {
+                termination.await();
+                break;
+            } catch (InterruptedException ie) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        List<Runnable> tasks = unrun;
+        return (tasks == null) ? new ArrayList<Runnable>() : tasks;
+    }
+
+    public boolean isShutdown() {
+        return runState != RUNNING;
+    }
+
+    public boolean isTerminated() {
+        return termination.getCount() == 0L;
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+        throws InterruptedException {
+        return termination.await(timeout, unit);
+    }
+
+    /**
+     * Transitions runState to the given target, or leaves it alone
+     * if already at least the given target, and wakes up the timer.
+     */
+    private void advanceRunState(int targetState) {
+        for (int c;;) {
+            if ((c = runState) >= targetState)
+                return;
+            if (U.compareAndSwapInt(this, RUNSTATE, c, targetState))
+                break;
+        }
+        LockSupport.unpark(timer);
+    }
+
+    /* ---------------- Timer -------------- */
+
+    /**
+     * Main loop of the timer thread.
+     */
+    private void runTimer() {
+        int shutdownSeen = RUNNING;
+        try {
+            for (;;) {
+                ScheduledTask<?> s = (ScheduledTask<?>)
+                    U.getAndSetObject(this, SUBMISSIONS, null);
+                ScheduledTask<?> c = (ScheduledTask<?>)
+                    U.getAndSetObject(this, CANCELLATIONS, null);
+                int rs = runState;
+                if (rs == STOP) {
+                    stop(s);
+                    break;
+                }
+                if (rs == SHUTDOWN && shutdownSeen == RUNNING) {
+                    shutdownSeen = SHUTDOWN;
+                    cancelPeriodic();
+                }
+                long target = (System.nanoTime() - origin) / tickNanos;
+                if (pending == 0 && now < target)
+                    now = target; // nothing falls due on skipped ticks
+                for (ScheduledTask<?> t; (t = s) != null; ) {
+                    s = t.nextSubmitted;
+                    t.nextSubmitted = null;
+                    if (t.isDone())
+                        continue;
+                    if (rs != RUNNING && t.isPeriodic())
+                        t.cancel(false);
+                    else
+                        insert(t);
+                }
+                for (ScheduledTask<?> t; (t = c) != null; ) {
+                    c = t.nextCancelled;
+                    t.nextCancelled = null;
+                    if (t.slot >= 0)
+                        unlink(t);
+                }
+                if (pending == 0) {
+                    if (rs != RUNNING &&
+                        submissions == null &&
+                        U.compareAndSwapObject(this, SUBMISSIONS,
+                                               null, TERMINATED))
+                        break;
+                }
+                else {
+                    advanceTo(target);
+                    if (pending == 0 && rs != RUNNING)
+                        continue;
+                }
+                if (submissions == null && runState == rs) {
+                    if (pending == 0)
+                        LockSupport.park(this);
+                    else
+                        LockSupport.parkNanos
+                            (this, origin + nextTick() * tickNanos -
+                             System.nanoTime());
+                }
+            }
+        } finally {
+            submissions = TERMINATED;
+            termination.countDown();
+        }
+    }
+
+    /**
+     * Places the task in the wheel, or dispatches it if already due.
+     */
+    private void insert(ScheduledTask<?> t) {
+        long d = t.deadline(), n = now;
+        if (d <= n)
+            dispatch(t);
+        else {
+            int level = (63 - Long.numberOfLeadingZeros(d ^ n)) / WHEEL_BITS;
+            int i = (level << WHEEL_BITS) +
+                ((int)(d >>> (level * WHEEL_BITS)) & (SLOTS - 1));
+            ScheduledTask<?>[] w = wheel;
+            ScheduledTask<?> h = w[i];
+            t.slot = i;
+            t.prev = null;
+            if ((t.next = h) != null)
+                h.prev = t;
+            w[i] = t;
+            ++pending;
+        }
+    }
+
+    /**
+     * Removes the task from its slot.
+     */
+    private void unlink(ScheduledTask<?> t) {
+        ScheduledTask<?> p = t.prev, q = t.next;
+        if (p == null)
+            wheel[t.slot] = q;
+        else
+            p.next = q;
+        if (q != null)
+            q.prev = p;
+        t.slot = -1;
+        t.prev = t.next = null;
+        --pending;
+    }
+
+    /**
+     * Removes and returns the list of tasks in the given slot.
+     */
+    private ScheduledTask<?> take(int i) {
+        ScheduledTask<?> h = wheel[i];
+        if (h != null) {
+            wheel[i] = null;
+            for (ScheduledTask<?> t = h; t != null; t = t.next) {
+                t.slot = -1;
+                --pending;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Advances now to the given tick, processing only the ticks at
+     * which a slot is nonempty, so that the cost does not grow with
+     * the time elapsed since the last tick processed.
+     */
+    private void advanceTo(long target) {
+        for (long next; now < target; ) {
+            if ((next = nextTick()) > target) {
+                now = target;
+                break;
+            }
+            now = next - 1L;
+            advance();
+        }
+    }
+
+    /**
+     * Returns the next tick at which advance processes a nonempty
+     * slot, or Long.MAX_VALUE if none.  A task at level L lies in a
+     * slot after that of now at level L, and is processed before any
+     * task at a higher level, so the first nonempty slot found
+     * scanning upwards from level 0 is the next one processed.
+     */
+    private long nextTick() {
+        if (pending == 0)
+            return Long.MAX_VALUE;
+        ScheduledTask<?>[] w = wheel;
+        long n = now;
+        for (int level = 0; level < LEVELS; ++level) {
+            int shift = level * WHEEL_BITS, above = shift + WHEEL_BITS;
+            int cur = (int)(n >>> shift) & (SLOTS - 1);
+            for (int j = cur + 1; j < SLOTS; ++j) {
+                if (w[(level << WHEEL_BITS) + j] != null) {
+                    long base = (above >= 64) ? 0L : (n >>> above) << above;
+                    return base | ((long)j << shift);
+                }
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Processes the next tick: cascades the slots of higher levels
+     * starting at the tick, and dispatches the tasks due at the tick.
+     */
+    private void advance() {
+        long n = ++now;
+        int top = 0;
+        while (top < LEVELS - 1 &&
+               (n & ((1L << ((top + 1) * WHEEL_BITS)) - 1L)) == 0L)
+            ++top;
+        for (int level = top; level >= 0; --level) {
+            int i = (level << WHEEL_BITS) +
+                ((int)(n >>> (level * WHEEL_BITS)) & (SLOTS - 1));
+            for (ScheduledTask<?> t = take(i), q; t != null; t = q) {
+                q = t.next;
+                t.prev = t.next = null;
+                if (level == 0)
+                    dispatch(t);
+                else
+                    insert(t);
+            }
+        }
+    }
+
+    /**
+     * Passes the task to the executor unless cancelled.
+     */
+    private void dispatch(ScheduledTask<?> t) {
+        if (!t.isDone()) {
+            try {
+                executor.execute(t);
+            } catch (RuntimeException ex) {
+                t.reject(ex);
+            }
+        }
+    }
+
+    /**
+     * Cancels and unlinks all periodic tasks in the wheel.
+     */
+    private void cancelPeriodic() {
+        ScheduledTask<?>[] w = wheel;
+        for (int i = 0; i < w.length; ++i) {
+            for (ScheduledTask<?> t = w[i], q; t != null; t = q) {
+                q = t.next;
+                if (t.isPeriodic()) {
+                    t.cancel(false);
+                    unlink(t);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects all waiting tasks, including the given submissions,
+     * into unrun.
+     */
+    private void stop(ScheduledTask<?> s) {
+        ArrayList<Runnable> tasks = new ArrayList<Runnable>();
+        for (;;) {
+            for (ScheduledTask<?> t; (t = s) != null; ) {
+                s = t.nextSubmitted;
+                t.nextSubmitted = null;
+                if (!t.isDone())
+                    tasks.add(t);
+            }
+            if (U.compareAndSwapObject(this, SUBMISSIONS, null, TERMINATED))
+                break;
+            s = (ScheduledTask<?>)U.getAndSetObject(this, SUBMISSIONS, null);
+        }
+        ScheduledTask<?>[] w = wheel;
+        for (int i = 0; i < w.length; ++i) {
+            for (ScheduledTask<?> t = take(i), q; t != null; t = q) {
+                q = t.next;
+                t.prev = t.next = null;
+                if (!t.isDone())
+                    tasks.add(t);
+            }
+        }
+        cancellations = null;
+        unrun = tasks;
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long SUBMISSIONS;
+    private static final long CANCELLATIONS;
+    private static final long RUNSTATE;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = TimingWheelScheduledExecutor.class;
+            SUBMISSIONS = U.objectFieldOffset
+                (k.getDeclaredField("submissions"));
+            CANCELLATIONS = U.objectFieldOffset
+                (k.getDeclaredField("cancellations"));
+            RUNSTATE = U.objectFieldOffset
+                (k.getDeclaredField("runState"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -0,0 +1,544 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent.atomic;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A histogram of non-negative {@code long} values, such as latencies,
+ * that may be recorded concurrently by many threads.  As with {@link
+ * LongAdder}, when recordings (method {@link #record}) are contended
+ * across threads, the counts are spread over a growing set of
+ * <em>stripes</em>, so that threads rarely update the same memory;
+ * recording performs no allocation other than when adding stripes,
+ * whose number is bounded by the number of processors.
+ *
+ * <p>Values are counted in log-linear buckets, in the manner of the
+ * HdrHistogram of G. Tene: values are distinguished to the given
+ * number of significant decimal digits, so that each bucket spans a
+ * range of values within a constant fraction of its lower bound.  For
+ * example, a histogram tracking values up to one minute in
+ * nanoseconds with two significant digits reports percentiles to
+ * within 1%, in about 30 kilobytes per stripe.  Values greater than the
+ * highest trackable value given at construction are recorded as that
+ * value.
+ *
+ * <p>The distribution is read by taking a {@link Snapshot}, either of
+ * all values recorded so far ({@link #snapshot}), or of those
+ * recorded since the last such call ({@link #snapshotThenReset}),
+ * which takes the count of each bucket and resets it atomically, so
+ * that each concurrent recording appears in exactly one interval.
+ * Snapshots are immutable, answer queries such as {@link
+ * Snapshot#getValueAtPercentile}, and can be {@linkplain
+ * Snapshot#merge merged}, for example to combine the histograms of
+ * several services.  A snapshot is <em>not</em> an atomic view of the
+ * histogram: recordings concurrent with its construction may be
+ * incorporated in some buckets but not others.
+ *
+ * <p>Sample usage, reporting the latency of requests every minute:
+ *
+ * <pre> {@code
+ * LongHistogram latencies =
+ *   new LongHistogram(TimeUnit.MINUTES.toNanos(1), 2);
+ *
+ * void handle(Request r) {
+ *   long start = System.nanoTime();
+ *   process(r);
+ *   latencies.record(System.nanoTime() - start);
+ * }
+ *
+ * void report() { // called every minute
+ *   LongHistogram.Snapshot s = latencies.snapshotThenReset();
+ *   log("p50 = " + s.getValueAtPercentile(50.0) +
+ *       ", p99 = " + s.getValueAtPercentile(99.0));
+ * }}</pre>
+ *
+ * @since 1.8
+ */
+public class LongHistogram {
+
+    /*
+     * Bucketing: with p = subBucketBits, the first 2^p buckets count
+     * the values below 2^p exactly.  Beyond, each doubling of the
+     * magnitude of values is divided into 2^(p-1) buckets: a value v
+     * with highest one bit at position m > p - 1 is counted in the
+     * bucket of index shift * 2^(p-1) + (v >>> shift), where shift =
+     * m - p + 1, so the 2^p top bits of v select the bucket.
+     *
+     * Striping follows Striped64, except that the stripes are arrays
+     * of counts: the base array is used until a CAS on it fails, upon
+     * which a table of stripes (whose first element is the base
+     * array) is created, and doubled upon further contention until
+     * reaching the number of processors.  New stripes are allocated
+     * eagerly under a spinlock when the table is created or expanded.
+     * Upon a failed CAS, the thread probe is advanced so as to select
+     * another stripe for later recordings, and the count is added
+     * unconditionally, so recording never loops.  The counts of a
+     * stripe are padded at both ends, so that adjacent stripes do not
+     * share cache lines.
+     */
+
+    /** Number of CPUS, to place bound on the number of stripes */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /** Number of longs padding each end of a stripe */
+    private static final int PAD = 16;
+
+    /** The highest value distinguished from larger ones */
+    final long highestTrackableValue;
+
+    /** The number of significant decimal digits */
+    final int significantDigits;
+
+    /** log2 of the number of buckets of values below 2^subBucketBits */
+    final int subBucketBits;
+
+    /** The number of buckets */
+    final int bucketCount;
+
+    /** The first stripe, used alone in the absence of contention */
+    private final long[] base;
+
+    /** Table of stripes, whose size is a power of two, or null */
+    private volatile long[][] stripes;
+
+    /** Spinlock (locked via CAS) used when creating stripes */
+    private volatile int stripesBusy;
+
+    /**
+     * Creates a new, empty histogram tracking values from zero to the
+     * given value, to the given precision.
+     *
+     * @param highestTrackableValue the highest value to be
+     *        distinguished from larger ones
+     * @param significantDigits the number of significant decimal
+     *        digits to which values are distinguished, from 0 to 5
+     * @throws IllegalArgumentException if {@code highestTrackableValue}
+     *         is less than one, or {@code significantDigits} is not
+     *         between 0 and 5
+     */
+    public LongHistogram(long highestTrackableValue, int significantDigits) {
+        if (highestTrackableValue < 1L ||
+            significantDigits < 0 || significantDigits > 5)
+            throw new IllegalArgumentException();
+        long largest = 2L;
+        for (int i = 0; i < significantDigits; ++i)
+            largest *= 10L;
+        this.highestTrackableValue = highestTrackableValue;
+        this.significantDigits = significantDigits;
+        this.subBucketBits = 64 - Long.numberOfLeadingZeros(largest - 1L);
+        this.bucketCount = bucketIndex(subBucketBits, highestTrackableValue) + 1;
+        this.base = newStripe();
+    }
+
+    /**
+     * Returns the index of the bucket counting the given value.
+     */
+    static int bucketIndex(int subBucketBits, long value) {
+        int shift = 64 - Long.numberOfLeadingZeros(value) - subBucketBits;
+        return (shift <= 0) ? (int)value :
+            (shift << (subBucketBits - 1)) + (int)(value >>> shift);
+    }
+
+    /**
+     * Returns the lowest value counted in the bucket of the given
+     * index.
+     */
+    static long lowestEquivalentValue(int subBucketBits, int index) {
+        int shift = (index >>> (subBucketBits - 1)) - 1;
+        return (shift <= 0) ? (long)index :
+            (long)(index - (shift << (subBucketBits - 1))) << shift;
+    }
+
+    /**
+     * Returns the highest value counted in the bucket of the given
+     * index.
+     */
+    static long highestEquivalentValue(int subBucketBits, int index) {
+        int shift = (index >>> (subBucketBits - 1)) - 1;
+        return (shift <= 0) ? (long)index :
+            lowestEquivalentValue(subBucketBits, index) + (1L << shift) - 1L;
+    }
+
+    private long[] newStripe() {
+        return new long[bucketCount + 2 * PAD];
+    }
+
+    private static long offset(int index) {
+        return ((long)(index + PAD) << ASHIFT) + ABASE;
+    }
+
+    /**
+     * Records the given value.
+     *
+     * @param value the value
+     * @throws IllegalArgumentException if {@code value} is negative
+     */
+    public void record(long value) {
+        record(value, 1L);
+    }
+
+    /**
+     * Records the given number of occurrences of the given value.
+     *
+     * @param value the value
+     * @param count the number of occurrences
+     * @throws IllegalArgumentException if {@code value} or {@code
+     *         count} is negative
+     */
+    public void record(long value, long count) {
+        if (value < 0L || count < 0L)
+            throw new IllegalArgumentException();
+        long o = offset(bucketIndex(subBucketBits,
+                                    Math.min(value, highestTrackableValue)));
+        long[][] as; long[] a; long v;
+        if ((as = stripes) == null)
+            a = base;
+        else
+            a = as[Striped64.getProbe() & (as.length - 1)];
+        if (!U.compareAndSwapLong(a, o, v = U.getLongVolatile(a, o), v + count))
+            contendedRecord(o, count);
+    }
+
+    /**
+     * Handles recordings upon a failed CAS, expanding the table of
+     * stripes if possible.
+     */
+    private void contendedRecord(long o, long count) {
+        int h;
+        if ((h = Striped64.getProbe()) == 0) {
+            ThreadLocalRandom.current(); // force initialization
+            h = Striped64.getProbe();
+        }
+        long[][] as = stripes;
+        int n = (as == null) ? 1 : as.length;
+        if (n < NCPU && stripesBusy == 0 &&
+            U.compareAndSwapInt(this, STRIPESBUSY, 0, 1)) {
+            try {
+                if (stripes == as) {    // Expand table unless stale
+                    long[][] rs = new long[n << 1][];
+                    if (as == null)
+                        rs[0] = base;
+                    else
+                        System.arraycopy(as, 0, rs, 0, n);
+                    for (int i = n; i < rs.length; ++i)
+                        rs[i] = newStripe();
+                    stripes = rs;
+                }
+            } finally {
+                stripesBusy = 0;
+            }
+        }
+        h = Striped64.advanceProbe(h);
+        long[] a = ((as = stripes) == null) ? base : as[h & (as.length - 1)];
+        U.getAndAddLong(a, o, count);
+    }
+
+    /**
+     * Returns the highest value distinguished from larger ones.
+     *
+     * @return the highest trackable value
+     */
+    public long getHighestTrackableValue() {
+        return highestTrackableValue;
+    }
+
+    /**
+     * Returns the number of significant decimal digits to which values
+     * are distinguished.
+     *
+     * @return the number of significant decimal digits
+     */
+    public int getSignificantDigits() {
+        return significantDigits;
+    }
+
+    /**
+     * Returns the stripes, possibly just the base one.
+     */
+    private long[][] currentStripes() {
+        long[][] as = stripes;
+        return (as == null) ? new long[][] { base } : as;
+    }
+
+    /**
+     * Returns a snapshot of the values recorded so far.
+     *
+     * @return a snapshot of the values recorded so far
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[bucketCount];
+        for (long[] a : currentStripes()) {
+            for (int i = 0; i < counts.length; ++i)
+                counts[i] += U.getLongVolatile(a, offset(i));
+        }
+        return new Snapshot(this, counts);
+    }
+
+    /**
+     * Returns a snapshot of the values recorded since the last
+     * invocation of this method (or since construction or the last
+     * invocation of {@link #reset}), and resets the counts.  The count
+     * of each bucket is taken and reset atomically, so each recording
+     * concurrent with this method is either included in the returned
+     * snapshot or retained for the next one.
+     *
+     * @return a snapshot of the values recorded during the interval
+     */
+    public Snapshot snapshotThenReset() {
+        long[] counts = new long[bucketCount];
+        for (long[] a : currentStripes()) {
+            for (int i = 0; i < counts.length; ++i) {
+                long o = offset(i);
+                if (U.getLongVolatile(a, o) != 0L)
+                    counts[i] += U.getAndSetLong(a, o, 0L);
+            }
+        }
+        return new Snapshot(this, counts);
+    }
+
+    /**
+     * Discards all recorded values.  Recordings concurrent with this
+     * method may or may not be discarded.
+     */
+    public void reset() {
+        for (long[] a : currentStripes()) {
+            for (int i = 0; i < bucketCount; ++i)
+                U.putLongVolatile(a, offset(i), 0L);
+        }
+    }
+
+    /**
+     * Returns the String representation of a {@link #snapshot}.
+     *
+     * @return the String representation of a snapshot
+     */
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * An immutable distribution of values, obtained from a {@link
+     * LongHistogram}, or by merging other snapshots.  Values reported
+     * by the methods of this class are those of the bucket boundaries,
+     * so they are accurate only to the precision of the histogram.
+     */
+    public static final class Snapshot {
+        private final long highestTrackableValue;
+        private final int significantDigits;
+        private final int subBucketBits;
+        private final long[] counts;
+        private final long totalCount;
+
+        Snapshot(LongHistogram h, long[] counts) {
+            this(h.highestTrackableValue, h.significantDigits,
+                 h.subBucketBits, counts);
+        }
+
+        private Snapshot(long highestTrackableValue, int significantDigits,
+                         int subBucketBits, long[] counts) {
+            long total = 0L;
+            for (long c : counts)
+                total += c;
+            this.highestTrackableValue = highestTrackableValue;
+            this.significantDigits = significantDigits;
+            this.subBucketBits = subBucketBits;
+            this.counts = counts;
+            this.totalCount = total;
+        }
+
+        /**
+         * Returns the number of recorded values.
+         *
+         * @return the number of recorded values
+         */
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * Returns the number of recorded values equivalent to the given
+         * value, that is, counted in the same bucket.
+         *
+         * @param value the value
+         * @return the number of recorded values equivalent to the value
+         * @throws IllegalArgumentException if {@code value} is negative
+         */
+        public long getCountAtValue(long value) {
+            if (value < 0L)
+                throw new IllegalArgumentException();
+            return counts[bucketIndex(subBucketBits,
+                                      Math.min(value, highestTrackableValue))];
+        }
+
+        /**
+         * Returns the lowest recorded value, or zero if none.
+         *
+         * @return the lowest recorded value, or zero if none
+         */
+        public long getMin() {
+            for (int i = 0; i < counts.length; ++i) {
+                if (counts[i] != 0L)
+                    return lowestEquivalentValue(subBucketBits, i);
+            }
+            return 0L;
+        }
+
+        /**
+         * Returns the highest recorded value, or zero if none.
+         *
+         * @return the highest recorded value, or zero if none
+         */
+        public long getMax() {
+            for (int i = counts.length - 1; i >= 0; --i) {
+                if (counts[i] != 0L)
+                    return highestValue(i);
+            }
+            return 0L;
+        }
+
+        /**
+         * Returns the arithmetic mean of the recorded values, or zero
+         * if none.
+         *
+         * @return the mean of the recorded values, or zero if none
+         */
+        public double getMean() {
+            if (totalCount == 0L)
+                return 0.0;
+            double sum = 0.0;
+            for (int i = 0; i < counts.length; ++i) {
+                long c;
+                if ((c = counts[i]) != 0L) {
+                    long lo = lowestEquivalentValue(subBucketBits, i);
+                    sum += (double)c * (lo + ((highestValue(i) - lo) >>> 1));
+                }
+            }
+            return sum / totalCount;
+        }
+
+        /**
+         * Returns the value at the given percentile: the lowest value
+         * such that the given percentage of the recorded values are at
+         * most that value, or zero if there are no recorded values.
+         *
+         * @param percentile the percentile, from 0.0 to 100.0
+         * @return the value at the given percentile
+         * @throws IllegalArgumentException if {@code percentile} is not
+         *         between 0.0 and 100.0
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (!(percentile >= 0.0 && percentile <= 100.0))
+                throw new IllegalArgumentException();
+            if (totalCount == 0L)
+                return 0L;
+            long target = Math.max
+                (1L, (long)Math.ceil(percentile / 100.0 * totalCount));
+            long seen = 0L;
+            for (int i = 0; i < counts.length; ++i) {
+                if ((seen += counts[i]) >= target)
+                    return highestValue(i);
+            }
+            return getMax();
+        }
+
+        /**
+         * Returns a snapshot of the values recorded in both this
+         * snapshot and the given one.  The snapshots must be of
+         * histograms of the same precision; the result tracks values
+         * up to the higher of their highest trackable values.
+         *
+         * @param other the other snapshot
+         * @return the merged snapshot
+         * @throws IllegalArgumentException if the snapshots differ in
+         *         precision
+         */
+        public Snapshot merge(Snapshot other) {
+            if (other.subBucketBits != subBucketBits)
+                throw new IllegalArgumentException();
+            Snapshot a = this, b = other;
+            if (a.counts.length < b.counts.length) {
+                a = other;
+                b = this;
+            }
+            long[] cs = Arrays.copyOf(a.counts, a.counts.length);
+            for (int i = 0; i < b.counts.length; ++i)
+                cs[i] += b.counts[i];
+            return new Snapshot(Math.max(highestTrackableValue,
+                                         other.highestTrackableValue),
+                                Math.max(significantDigits,
+                                         other.significantDigits),
+                                subBucketBits, cs);
+        }
+
+        /**
+         * Returns the highest value counted in the bucket, bounded by
+         * the highest trackable value.
+         */
+        private long highestValue(int index) {
+            return Math.min(highestEquivalentValue(subBucketBits, index),
+                            highestTrackableValue);
+        }
+
+        /**
+         * Returns a string summarizing this snapshot, including its
+         * count, minimum, selected percentiles and maximum.
+         *
+         * @return a string summarizing this snapshot
+         */
+        public String toString() {
+            return "[count = " + totalCount +
+                ", min = " + getMin() +
+                ", p50 = " + getValueAtPercentile(50.0) +
+                ", p90 = " + getValueAtPercentile(90.0) +
+                ", p99 = " + getValueAtPercentile(99.0) +
+                ", p99.9 = " + getValueAtPercentile(99.9) +
+                ", max = " + getMax() + "]";
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long STRIPESBUSY;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = LongHistogram.class;
+            STRIPESBUSY = U.objectFieldOffset
+                (k.getDeclaredField("stripesBusy"));
+            ABASE = U.arrayBaseOffset(long[].class);
+            int scale = U.arrayIndexScale(long[].class);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -0,0 +1,640 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent.locks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ReadWriteLock} whose read lock scales with the number of
+ * reading threads.  Unlike {@link ReentrantReadWriteLock}, which
+ * counts readers in a single synchronization word updated by every
+ * acquisition and release, this lock counts readers in a set of
+ * <em>reader indicators</em>, one per processor in the manner of
+ * {@link java.util.concurrent.atomic.LongAdder}, each on its own cache
+ * line, that threads spread over under contention.  So threads
+ * acquiring the read lock when it is not write-locked only update a
+ * location rarely shared with other threads.  In exchange, acquiring
+ * the write lock must scan all reader indicators, and each lock
+ * occupies space proportional to the number of processors, so this
+ * class suits read-mostly data accessed by many threads.
+ *
+ * <p><b>Writer preference.</b> Writers are mutually excluded by an
+ * internal {@link ReentrantLock}.  A writer holding it announces
+ * itself before waiting for current readers to release the read
+ * lock; threads attempting to acquire the read lock from then on
+ * wait until the write lock is released, so a stream of readers
+ * cannot starve writers.
+ *
+ * <p><b>Fairness.</b> If constructed as fair, the internal lock is
+ * fair, and threads acquiring the read lock also wait behind any
+ * threads already waiting for the write lock.  Otherwise readers are
+ * admitted whenever the lock is not write-locked.
+ *
+ * <p><b>Optimistic reading.</b> Methods {@link #tryOptimisticRead}
+ * and {@link #validate} follow the conventions of {@link StampedLock}:
+ * the stamp returned by {@code tryOptimisticRead} is non-zero if the
+ * lock is not write-locked, and remains valid until the write lock is
+ * next acquired, which {@code validate} detects.  Fields read in
+ * between must be read into local variables and used only after
+ * successful validation.
+ *
+ * <p><b>Reentrancy.</b> The write lock is reentrant, and a thread
+ * holding the write lock may also acquire the read lock, so as to
+ * downgrade from writing to reading by then releasing the write lock.
+ * The read lock is not reentrant: as with {@code StampedLock}, a
+ * thread that holds the read lock and attempts to acquire it again,
+ * or to acquire the write lock, may deadlock with a waiting writer.
+ * Neither lock supports {@link Condition}s.  As with {@code
+ * ReentrantReadWriteLock}, each lock must be released by the thread
+ * that acquired it; releasing a lock that the current thread does not
+ * hold throws {@link IllegalMonitorStateException}.
+ *
+ * <p>Sample usage, for a class caching a map of entries:
+ *
+ * <pre> {@code
+ * class Registry {
+ *   private final StripedReadWriteLock lock = new StripedReadWriteLock();
+ *   private final Map<String, Entry> map = new HashMap<>();
+ *
+ *   Entry get(String key) {
+ *     Lock r = lock.readLock();
+ *     r.lock();
+ *     try { return map.get(key); }
+ *     finally { r.unlock(); }
+ *   }
+ *
+ *   void put(String key, Entry e) {
+ *     Lock w = lock.writeLock();
+ *     w.lock();
+ *     try { map.put(key, e); }
+ *     finally { w.unlock(); }
+ *   }
+ * }}</pre>
+ *
+ * @since 1.8
+ * @see ReentrantReadWriteLock
+ * @see StampedLock
+ */
+public class StripedReadWriteLock implements ReadWriteLock {
+
+    /*
+     * Overview:
+     *
+     * The reader count is the sum of the values of the cells, which
+     * are allocated at construction, as many as the power of two at
+     * least the number of processors.  A reader increments the cell
+     * selected by its ThreadLocalRandom probe, moving to another cell
+     * (as in Striped64) when a CAS fails; it may decrement a
+     * different cell upon release, as only the sum matters.
+     *
+     * Field version is odd while the write lock is held, and is
+     * incremented upon each acquisition and release of the write
+     * lock, so it also serves as the stamp of optimistic reads.  It
+     * is written only by the holder of the internal lock wlock.  A
+     * reader increments a cell, then reads version; a writer
+     * increments version, then sums the cells.  As both are volatile
+     * accesses, either the writer sees the increment of the reader,
+     * or the reader sees the odd version.  In the latter case the
+     * reader backs off by decrementing the same cell it incremented
+     * (so that no scan can see the decrement but not the increment,
+     * which would undercount), and waits by acquiring and releasing
+     * wlock, incrementing a cell while holding it, when no writer
+     * can be active.
+     *
+     * A writer waiting for readers to drain records itself in field
+     * writer, and parks; readers decrementing a cell while version
+     * is odd unpark it.
+     *
+     * Because the sum is all that matters, a release without a
+     * matching acquisition would leave a reader count that never
+     * drains, blocking all writers, and cannot be detected from the
+     * cells: a scan racing with a reader that acquires on one cell
+     * and releases on another may transiently undercount.  So each
+     * thread's read holds are also counted in a ThreadLocal, checked
+     * before decrementing a cell.  The counter is retained when it
+     * drops to zero, rather than removed as in
+     * ReentrantReadWriteLock, so that reading does not allocate;
+     * entries of a lock that becomes unreachable are expunged with
+     * its ThreadLocal.
+     */
+
+    /** Number of processors, for sizing cells and spin control */
+    private static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /** Number of times a writer spins waiting for readers before parking */
+    private static final int SPINS = (NCPU > 1) ? 1 << 6 : 0;
+
+    /**
+     * Padded reader indicator, as in Striped64.
+     */
+    @sun.misc.Contended static final class Cell {
+        volatile long value;
+        final boolean cas(long cmp, long val) {
+            return U.compareAndSwapLong(this, VALUE, cmp, val);
+        }
+
+        // Unsafe mechanics
+        private static final sun.misc.Unsafe U;
+        private static final long VALUE;
+        static {
+            try {
+                U = sun.misc.Unsafe.getUnsafe();
+                Class<?> k = Cell.class;
+                VALUE = U.objectFieldOffset
+                    (k.getDeclaredField("value"));
+            } catch (Exception e) {
+                throw new Error(e);
+            }
+        }
+    }
+
+    /**
+     * A counter for per-thread read hold counts.
+     */
+    static final class HoldCounter {
+        int count;
+    }
+
+    /**
+     * ThreadLocal subclass, as in ReentrantReadWriteLock.
+     */
+    static final class ThreadLocalHoldCounter
+        extends ThreadLocal<HoldCounter> {
+        public HoldCounter initialValue() {
+            return new HoldCounter();
+        }
+    }
+
+    /** The reader indicators; length is a power of two */
+    private final Cell[] cells;
+
+    /** Mutual exclusion among writers, and queue of waiting readers */
+    private final ReentrantLock wlock;
+
+    /** The number of read locks held by the current thread */
+    private final ThreadLocalHoldCounter readHolds =
+        new ThreadLocalHoldCounter();
+
+    /** Odd while write-locked; see above */
+    private volatile long version = ORIGIN;
+
+    /** The writer waiting for readers to drain, if any */
+    private volatile Thread writer;
+
+    /** Initial value of version, avoiding zero stamps */
+    private static final long ORIGIN = 2L;
+
+    // views
+    private final ReadLockView readLockView;
+    private final WriteLockView writeLockView;
+
+    /**
+     * Creates a new {@code StripedReadWriteLock} with nonfair
+     * ordering.
+     */
+    public StripedReadWriteLock() {
+        this(false);
+    }
+
+    /**
+     * Creates a new {@code StripedReadWriteLock} with the given
+     * fairness policy.
+     *
+     * @param fair {@code true} if this lock should use a fair ordering
+     *        policy
+     */
+    public StripedReadWriteLock(boolean fair) {
+        int n = 1;
+        while (n < NCPU)
+            n <<= 1;
+        Cell[] cs = new Cell[n];
+        for (int i = 0; i < n; ++i)
+            cs[i] = new Cell();
+        this.cells = cs;
+        this.wlock = new ReentrantLock(fair);
+        this.readLockView = new ReadLockView();
+        this.writeLockView = new WriteLockView();
+    }
+
+    public Lock readLock()  { return readLockView; }
+    public Lock writeLock() { return writeLockView; }
+
+    // Reader indicators
+
+    /**
+     * Adds x to a cell, rehashing upon contention, and returns it.
+     */
+    private Cell add(long x) {
+        final Cell[] cs = cells;
+        final int m = cs.length - 1;
+        int h;
+        if ((h = getProbe()) == 0) {
+            ThreadLocalRandom.current(); // force initialization
+            h = getProbe();
+        }
+        for (;;) {
+            Cell c = cs[h & m];
+            long v = c.value;
+            if (c.cas(v, v + x))
+                return c;
+            h = advanceProbe(h);
+        }
+    }
+
+    /**
+     * Returns the sum of the cells.
+     */
+    private long readerCount() {
+        long sum = 0L;
+        for (Cell c : cells)
+            sum += c.value;
+        return sum;
+    }
+
+    /**
+     * Unparks the writer, if waiting for readers.
+     */
+    private void signalWriter() {
+        Thread w;
+        if ((version & 1L) != 0L && (w = writer) != null)
+            LockSupport.unpark(w);
+    }
+
+    // Read lock
+
+    /**
+     * Acquires the read lock if not write-locked (and, if fair, no
+     * thread is queued for the write lock), else returns false.
+     */
+    private boolean tryFastRead() {
+        if (wlock.isFair() && wlock.hasQueuedThreads())
+            return false;
+        Cell c = add(1L);
+        if ((version & 1L) == 0L)
+            return true;
+        U.getAndAddLong(c, Cell.VALUE, -1L); // back off
+        signalWriter();
+        return false;
+    }
+
+    /**
+     * Acquires the read lock.
+     *
+     * @param mode 0 for uninterruptible, 1 for interruptible, 2 for
+     * timed, 3 for non-blocking
+     * @return true if acquired
+     */
+    private boolean acquireRead(int mode, long nanos)
+        throws InterruptedException {
+        final HoldCounter rh = readHolds.get();
+        if (tryFastRead()) {
+            ++rh.count;
+            return true;
+        }
+        final ReentrantLock lock = this.wlock;
+        if (lock.isHeldByCurrentThread()) { // downgrading
+            add(1L);
+            ++rh.count;
+            return true;
+        }
+        switch (mode) {
+        case 0: lock.lock(); break;
+        case 1: lock.lockInterruptibly(); break;
+        case 2: if (!lock.tryLock(nanos, TimeUnit.NANOSECONDS))
+                    return false;
+                break;
+        default: if (!lock.tryLock())
+                     return false;
+                 break;
+        }
+        try {
+            add(1L);
+        } finally {
+            lock.unlock();
+        }
+        ++rh.count;
+        return true;
+    }
+
+    private void releaseRead() {
+        final HoldCounter rh = readHolds.get();
+        if (rh.count <= 0)
+            throw new IllegalMonitorStateException();
+        --rh.count;
+        add(-1L);
+        signalWriter();
+    }
+
+    // Write lock
+
+    /**
+     * Acquires the write lock.
+     *
+     * @param mode as in acquireRead
+     * @return true if acquired
+     */
+    private boolean acquireWrite(int mode, long nanos)
+        throws InterruptedException {
+        final ReentrantLock lock = this.wlock;
+        final long deadline = (mode == 2) ? System.nanoTime() + nanos : 0L;
+        switch (mode) {
+        case 0: lock.lock(); break;
+        case 1: lock.lockInterruptibly(); break;
+        case 2: if (!lock.tryLock(nanos, TimeUnit.NANOSECONDS))
+                    return false;
+                break;
+        default: if (!lock.tryLock())
+                     return false;
+                 break;
+        }
+        if (lock.getHoldCount() > 1)
+            return true;
+        Thread t = Thread.currentThread();
+        writer = t;
+        long v = version;
+        version = v + 1L;
+        boolean interrupted = false;
+        for (int spins = SPINS; readerCount() != 0L; ) {
+            if (spins > 0)
+                --spins;
+            else if (mode == 0) {
+                LockSupport.park(this);
+                if (Thread.interrupted())
+                    interrupted = true;
+            }
+            else if (mode == 3 || (interrupted = Thread.interrupted()) ||
+                     (mode == 2 && (nanos = deadline - System.nanoTime()) <= 0L)) {
+                writer = null;
+                version = v + 2L;
+                lock.unlock();
+                if (interrupted)
+                    throw new InterruptedException();
+                return false;
+            }
+            else if (mode == 2)
+                LockSupport.parkNanos(this, nanos);
+            else
+                LockSupport.park(this);
+        }
+        writer = null;
+        if (interrupted)
+            t.interrupt();
+        return true;
+    }
+
+    private void releaseWrite() {
+        final ReentrantLock lock = this.wlock;
+        if (!lock.isHeldByCurrentThread())
+            throw new IllegalMonitorStateException();
+        if (lock.getHoldCount() == 1)
+            version = version + 1L;
+        lock.unlock();
+    }
+
+    // Optimistic reads
+
+    /**
+     * Returns a stamp that can later be validated, or zero if
+     * write-locked.
+     *
+     * @return a stamp, or zero if write-locked
+     */
+    public long tryOptimisticRead() {
+        long v;
+        return (((v = version) & 1L) == 0L) ? v : 0L;
+    }
+
+    /**
+     * Returns true if the write lock has not been acquired since
+     * issuance of the given stamp.  Always returns false if the stamp
+     * is zero.
+     *
+     * @param stamp a stamp
+     * @return {@code true} if the write lock has not been acquired
+     * since issuance of the given stamp; else false
+     */
+    public boolean validate(long stamp) {
+        U.loadFence();
+        return stamp != 0L && version == stamp;
+    }
+
+    // status monitoring methods
+
+    /**
+     * Returns {@code true} if this lock has fairness set true.
+     *
+     * @return {@code true} if this lock has fairness set true
+     */
+    public final boolean isFair() {
+        return wlock.isFair();
+    }
+
+    /**
+     * Returns {@code true} if the lock is currently held exclusively.
+     * This method is designed for use in monitoring system state, not
+     * for synchronization control.
+     *
+     * @return {@code true} if the lock is currently held exclusively
+     */
+    public boolean isWriteLocked() {
+        return (version & 1L) != 0L;
+    }
+
+    /**
+     * Queries if the write lock is held by the current thread.
+     *
+     * @return {@code true} if the current thread holds the write lock
+     */
+    public boolean isWriteLockedByCurrentThread() {
+        return wlock.isHeldByCurrentThread() && (version & 1L) != 0L;
+    }
+
+    /**
+     * Queries the number of reentrant write holds on this lock by the
+     * current thread.
+     *
+     * @return the number of holds on the write lock by the current
+     *         thread, or zero if the write lock is not held by the
+     *         current thread
+     */
+    public int getWriteHoldCount() {
+        return isWriteLockedByCurrentThread() ? wlock.getHoldCount() : 0;
+    }
+
+    /**
+     * Queries the number of read locks held for this lock.  The value
+     * is an estimate, as it is computed without blocking readers.
+     * This method is designed for use in monitoring system state, not
+     * for synchronization control.
+     *
+     * @return the number of read locks held
+     */
+    public int getReadLockCount() {
+        long n = readerCount();
+        return (n <= 0L) ? 0 : (n >= Integer.MAX_VALUE) ? Integer.MAX_VALUE
+            : (int)n;
+    }
+
+    /**
+     * Queries whether any threads are waiting to acquire the write
+     * lock, or the read lock while write-locked.  This method is
+     * designed for use in monitoring system state, not for
+     * synchronization control.
+     *
+     * @return {@code true} if there may be other threads waiting to
+     *         acquire the lock
+     */
+    public final boolean hasQueuedThreads() {
+        return wlock.hasQueuedThreads() || writer != null;
+    }
+
+    /**
+     * Returns an estimate of the number of threads waiting to acquire
+     * the write lock, or the read lock while write-locked.  This
+     * method is designed for use in monitoring system state, not for
+     * synchronization control.
+     *
+     * @return the estimated number of threads waiting for this lock
+     */
+    public final int getQueueLength() {
+        return wlock.getQueueLength() + ((writer != null) ? 1 : 0);
+    }
+
+    /**
+     * Returns a string identifying this lock, as well as its lock
+     * state.  The state, in brackets, includes the String {@code
+     * "Write locks ="} followed by the number of reentrantly held
+     * write locks, and the String {@code "Read locks ="} followed by
+     * the estimated number of held read locks.
+     *
+     * @return a string identifying this lock, as well as its lock state
+     */
+    public String toString() {
+        int w = isWriteLocked() ? Math.max(1, wlock.getHoldCount()) : 0;
+        return super.toString() +
+            "[Write locks = " + w + ", Read locks = " + getReadLockCount() + "]";
+    }
+
+    // views
+
+    final class ReadLockView implements Lock {
+        public void lock() {
+            try {
+                acquireRead(0, 0L);
+            } catch (InterruptedException cannotHappen) {
+                throw new Error(cannotHappen);
+            }
+        }
+        public void lockInterruptibly() throws InterruptedException {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            acquireRead(1, 0L);
+        }
+        public boolean tryLock() {
+            try {
+                return acquireRead(3, 0L);
+            } catch (InterruptedException cannotHappen) {
+                throw new Error(cannotHappen);
+            }
+        }
+        public boolean tryLock(long time, TimeUnit unit)
+            throws InterruptedException {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            return acquireRead(2, unit.toNanos(time));
+        }
+        public void unlock() { releaseRead(); }
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    final class WriteLockView implements Lock {
+        public void lock() {
+            try {
+                acquireWrite(0, 0L);
+            } catch (InterruptedException cannotHappen) {
+                throw new Error(cannotHappen);
+            }
+        }
+        public void lockInterruptibly() throws InterruptedException {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            acquireWrite(1, 0L);
+        }
+        public boolean tryLock() {
+            try {
+                return acquireWrite(3, 0L);
+            } catch (InterruptedException cannotHappen) {
+                throw new Error(cannotHappen);
+            }
+        }
+        public boolean tryLock(long time, TimeUnit unit)
+            throws InterruptedException {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            return acquireWrite(2, unit.toNanos(time));
+        }
+        public void unlock() { releaseWrite(); }
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Returns the probe value for the current thread, as in Striped64.
+     */
+    static final int getProbe() {
+        return U.getInt(Thread.currentThread(), PROBE);
+    }
+
+    /**
+     * Pseudo-randomly advances and records the given probe value for
+     * the given thread, as in Striped64.
+     */
+    static final int advanceProbe(int probe) {
+        probe ^= probe << 13;   // xorshift
+        probe ^= probe >>> 17;
+        probe ^= probe << 5;
+        U.putInt(Thread.currentThread(), PROBE, probe);
+        return probe;
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long PROBE;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> tk = Thread.class;
+            PROBE = U.objectFieldOffset
+                (tk.getDeclaredField("threadLocalRandomProbe"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
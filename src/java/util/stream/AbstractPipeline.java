@@ -24,6 +24,7 @@
  */
 package java.util.stream;
 
+import java.util.ArrayList;
 import java.util.Objects;
 import java.util.Spliterator;
 import java.util.function.IntFunction;
@@ -148,6 +149,12 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
      */
     private boolean parallel;
 
+    /**
+     * The fused run of stages ending with this stage, or null until first
+     * needed, when fusion is enabled.
+     */
+    private FusedOps.Run fusedRun;
+
     /**
      * Constructor for the head of a stream pipeline.
      *
@@ -544,12 +551,61 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
     final <P_IN> Sink<P_IN> wrapSink(Sink<E_OUT> sink) {
         Objects.requireNonNull(sink);
 
+        if (FusedOps.ENABLED)
+            return wrapSinkFused(sink);
         for ( @SuppressWarnings("rawtypes") AbstractPipeline p=AbstractPipeline.this; p.depth > 0; p=p.previousStage) {
             sink = p.opWrapSink(p.previousStage.combinedFlags, sink);
         }
         return (Sink<P_IN>) sink;
     }
 
+    /**
+     * Like {@link #wrapSink}, but wrapping each run of stages that can be
+     * fused in a single sink.
+     */
+    @SuppressWarnings({"rawtypes","unchecked"})
+    private <P_IN> Sink<P_IN> wrapSinkFused(Sink<E_OUT> sink) {
+        Sink s = sink;
+        AbstractPipeline p = AbstractPipeline.this;
+        while (p.depth > 0) {
+            FusedOps.Run run = p.fusedRun();
+            if (run == FusedOps.Run.NONE) {
+                s = p.opWrapSink(p.previousStage.combinedFlags, s);
+                p = p.previousStage;
+            }
+            else {
+                s = run.wrap(s);
+                for (int i = run.length; i > 0; i--)
+                    p = p.previousStage;
+            }
+        }
+        return (Sink<P_IN>) s;
+    }
+
+    /**
+     * Returns the fused run of stages ending with this stage, or
+     * {@code Run.NONE} if fewer than two stages would be fused.  The run
+     * depends only on this and preceding stages, so is computed once and
+     * cached; races only compute equivalent runs.
+     */
+    @SuppressWarnings("rawtypes")
+    private FusedOps.Run fusedRun() {
+        FusedOps.Run run = fusedRun;
+        if (run == null) {
+            ArrayList<FusedOps.Step> steps = new ArrayList<>();
+            for (AbstractPipeline p=AbstractPipeline.this;
+                 p.depth > 0 && steps.size() < FusedOps.MAX_STEPS;
+                 p=p.previousStage) {
+                FusedOps.Step step = p.opFusibleStep();
+                if (step == null)
+                    break;
+                steps.add(step);
+            }
+            fusedRun = run = FusedOps.makeRun(steps);
+        }
+        return run;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     final <P_IN> Spliterator<E_OUT> wrapSpliterator(Spliterator<P_IN> sourceSpliterator) {
@@ -688,6 +744,21 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
      */
     abstract Sink<E_IN> opWrapSink(int flags, Sink<E_OUT> sink);
 
+    /**
+     * Returns a description of this operation, if it is a stateless
+     * operation that may be fused with adjacent ones into a single
+     * {@code Sink}, as described in {@link FusedOps}.  The sinks of fused
+     * operations are not obtained from {@link #opWrapSink}.
+     *
+     * @implSpec The default implementation returns {@code null}.
+     *
+     * @return the step performing this operation, or {@code null} if this
+     *         operation cannot be fused
+     */
+    FusedOps.Step opFusibleStep() {
+        return null;
+    }
+
     /**
      * Performs a parallel evaluation of the operation using the specified
      * {@code PipelineHelper} which describes the upstream intermediate
@@ -46,11 +46,15 @@ import java.util.Set;
 import java.util.StringJoiner;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongConsumer;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.function.ToDoubleFunction;
@@ -115,6 +119,8 @@ public final class Collectors {
     static final Set<Collector.Characteristics> CH_UNORDERED_ID
             = Collections.unmodifiableSet(EnumSet.of(Collector.Characteristics.UNORDERED,
                                                      Collector.Characteristics.IDENTITY_FINISH));
+    static final Set<Collector.Characteristics> CH_UNORDERED_NOID
+            = Collections.unmodifiableSet(EnumSet.of(Collector.Characteristics.UNORDERED));
     static final Set<Collector.Characteristics> CH_NOID = Collections.emptySet();
 
     private Collectors() { }
@@ -1061,14 +1067,18 @@ public final class Collectors {
         if (downstream.characteristics().contains(Collector.Characteristics.CONCURRENT)) {
             accumulator = (m, t) -> {
                 K key = Objects.requireNonNull(classifier.apply(t), "element cannot be mapped to a null key");
-                A resultContainer = m.computeIfAbsent(key, k -> downstreamSupplier.get());
+                A resultContainer = m.get(key);
+                if (resultContainer == null)
+                    resultContainer = m.computeIfAbsent(key, k -> downstreamSupplier.get());
                 downstreamAccumulator.accept(resultContainer, t);
             };
         }
         else {
             accumulator = (m, t) -> {
                 K key = Objects.requireNonNull(classifier.apply(t), "element cannot be mapped to a null key");
-                A resultContainer = m.computeIfAbsent(key, k -> downstreamSupplier.get());
+                A resultContainer = m.get(key);
+                if (resultContainer == null)
+                    resultContainer = m.computeIfAbsent(key, k -> downstreamSupplier.get());
                 synchronized (resultContainer) {
                     downstreamAccumulator.accept(resultContainer, t);
                 }
@@ -1091,6 +1101,193 @@ public final class Collectors {
         }
     }
 
+    /**
+     * Returns a concurrent {@code Collector} counting the input elements of
+     * each key computed by a classification function, into a
+     * {@code ConcurrentMap} whose values are {@link LongAdder}s.
+     *
+     * <p>This is a {@link Collector.Characteristics#CONCURRENT concurrent} and
+     * {@link Collector.Characteristics#UNORDERED unordered} Collector.
+     *
+     * @implSpec
+     * This produces a result equivalent to:
+     * <pre>{@code
+     *     groupingByConcurrentSummingLong(classifier, t -> 1L)
+     * }</pre>
+     *
+     * @apiNote
+     * Unlike {@code groupingByConcurrent(classifier, counting())}, which
+     * synchronizes on, and allocates a boxed {@code Long} for, each
+     * accumulated element, the counts of this collector are updated without
+     * locking or allocation once a key is present, and threads updating the
+     * count of the same key spread their updates over the cells of its
+     * adder.
+     *
+     * @param <T> the type of the input elements
+     * @param <K> the type of the keys
+     * @param classifier a classifier function mapping input elements to keys
+     * @return a concurrent, unordered {@code Collector} counting the elements
+     *         of each key
+     *
+     * @see #groupingByConcurrent(Function, Collector)
+     * @see #groupingByCounting(Function)
+     */
+    public static <T, K>
+    Collector<T, ?, ConcurrentMap<K, LongAdder>>
+    groupingByConcurrentCounting(Function<? super T, ? extends K> classifier) {
+        return groupingByConcurrentSummingLong(classifier, t -> 1L);
+    }
+
+    /**
+     * Returns a concurrent {@code Collector} summing a long-valued function
+     * applied to the input elements of each key computed by a classification
+     * function, into a {@code ConcurrentMap} whose values are
+     * {@link LongAdder}s.
+     *
+     * <p>This is a {@link Collector.Characteristics#CONCURRENT concurrent} and
+     * {@link Collector.Characteristics#UNORDERED unordered} Collector.
+     *
+     * @param <T> the type of the input elements
+     * @param <K> the type of the keys
+     * @param classifier a classifier function mapping input elements to keys
+     * @param mapper a function extracting the property to be summed
+     * @return a concurrent, unordered {@code Collector} summing a derived
+     *         property of the elements of each key
+     *
+     * @see #groupingByConcurrentCounting(Function)
+     * @see #groupingBySummingLong(Function, ToLongFunction)
+     */
+    public static <T, K>
+    Collector<T, ?, ConcurrentMap<K, LongAdder>>
+    groupingByConcurrentSummingLong(Function<? super T, ? extends K> classifier,
+                                    ToLongFunction<? super T> mapper) {
+        Objects.requireNonNull(classifier);
+        Objects.requireNonNull(mapper);
+        BiConsumer<ConcurrentMap<K, LongAdder>, T> accumulator = (m, t) -> {
+            K key = Objects.requireNonNull(classifier.apply(t), "element cannot be mapped to a null key");
+            LongAdder adder = m.get(key);
+            if (adder == null)
+                adder = m.computeIfAbsent(key, k -> new LongAdder());
+            adder.add(mapper.applyAsLong(t));
+        };
+        return new CollectorImpl<>(ConcurrentHashMap::new, accumulator,
+                                   Collectors.<K, LongAdder, ConcurrentMap<K, LongAdder>>mapMerger(
+                                           (a, b) -> { a.add(b.sum()); return a; }),
+                                   CH_CONCURRENT_ID);
+    }
+
+    /**
+     * Returns a concurrent {@code Collector} summing a double-valued function
+     * applied to the input elements of each key computed by a classification
+     * function, into a {@code ConcurrentMap} whose values are
+     * {@link DoubleAdder}s.
+     *
+     * <p>This is a {@link Collector.Characteristics#CONCURRENT concurrent} and
+     * {@link Collector.Characteristics#UNORDERED unordered} Collector.
+     *
+     * <p>The sums can vary depending upon the order in which values are
+     * added, as described in {@link DoubleAdder}.
+     *
+     * @param <T> the type of the input elements
+     * @param <K> the type of the keys
+     * @param classifier a classifier function mapping input elements to keys
+     * @param mapper a function extracting the property to be summed
+     * @return a concurrent, unordered {@code Collector} summing a derived
+     *         property of the elements of each key
+     *
+     * @see #groupingByConcurrentSummingLong(Function, ToLongFunction)
+     */
+    public static <T, K>
+    Collector<T, ?, ConcurrentMap<K, DoubleAdder>>
+    groupingByConcurrentSummingDouble(Function<? super T, ? extends K> classifier,
+                                      ToDoubleFunction<? super T> mapper) {
+        Objects.requireNonNull(classifier);
+        Objects.requireNonNull(mapper);
+        BiConsumer<ConcurrentMap<K, DoubleAdder>, T> accumulator = (m, t) -> {
+            K key = Objects.requireNonNull(classifier.apply(t), "element cannot be mapped to a null key");
+            DoubleAdder adder = m.get(key);
+            if (adder == null)
+                adder = m.computeIfAbsent(key, k -> new DoubleAdder());
+            adder.add(mapper.applyAsDouble(t));
+        };
+        return new CollectorImpl<>(ConcurrentHashMap::new, accumulator,
+                                   Collectors.<K, DoubleAdder, ConcurrentMap<K, DoubleAdder>>mapMerger(
+                                           (a, b) -> { a.add(b.sum()); return a; }),
+                                   CH_CONCURRENT_ID);
+    }
+
+    /**
+     * Returns a {@code Collector} counting the input elements of each key
+     * computed by a classification function, into a {@code Map}.
+     *
+     * <p>This is an {@link Collector.Characteristics#UNORDERED unordered}
+     * Collector.  There are no guarantees on the type, mutability,
+     * serializability, or thread-safety of the {@code Map} returned.
+     *
+     * @implSpec
+     * This produces a result equivalent to:
+     * <pre>{@code
+     *     groupingBySummingLong(classifier, t -> 1L)
+     * }</pre>
+     *
+     * @param <T> the type of the input elements
+     * @param <K> the type of the keys
+     * @param classifier a classifier function mapping input elements to keys
+     * @return an unordered {@code Collector} counting the elements of each key
+     *
+     * @see #groupingBySummingLong(Function, ToLongFunction)
+     * @see #groupingByConcurrentCounting(Function)
+     */
+    public static <T, K>
+    Collector<T, ?, Map<K, Long>> groupingByCounting(Function<? super T, ? extends K> classifier) {
+        return groupingBySummingLong(classifier, t -> 1L);
+    }
+
+    /**
+     * Returns a {@code Collector} summing a long-valued function applied to
+     * the input elements of each key computed by a classification function,
+     * into a {@code Map}.
+     *
+     * <p>This is an {@link Collector.Characteristics#UNORDERED unordered}
+     * Collector.  There are no guarantees on the type, mutability,
+     * serializability, or thread-safety of the {@code Map} returned.
+     *
+     * @implNote
+     * Rather than maintaining a {@code Map} of boxed sums per accumulation,
+     * and merging them at each level of a parallel reduction, as does
+     * {@code groupingBy(classifier, summingLong(mapper))}, each accumulation
+     * sums into its own open-addressing tables of primitive sums, partitioned
+     * by the hash codes of keys.  Combining accumulations merely links their
+     * tables, and the finisher then merges the tables of each partition,
+     * with the partitions merged in parallel if the reduction was, so that
+     * each table is merged exactly once, without contention.
+     *
+     * @param <T> the type of the input elements
+     * @param <K> the type of the keys
+     * @param classifier a classifier function mapping input elements to keys
+     * @param mapper a function extracting the property to be summed
+     * @return an unordered {@code Collector} summing a derived property of the
+     *         elements of each key
+     *
+     * @see #groupingByCounting(Function)
+     * @see #groupingByConcurrentSummingLong(Function, ToLongFunction)
+     */
+    public static <T, K>
+    Collector<T, ?, Map<K, Long>> groupingBySummingLong(Function<? super T, ? extends K> classifier,
+                                                        ToLongFunction<? super T> mapper) {
+        Objects.requireNonNull(classifier);
+        Objects.requireNonNull(mapper);
+        int partitionBits = LongAggregation.partitionBits();
+        return new CollectorImpl<T, LongAggregation, Map<K, Long>>(
+                () -> new LongAggregation(partitionBits),
+                (a, t) -> a.add(Objects.requireNonNull(classifier.apply(t),
+                                                       "element cannot be mapped to a null key"),
+                                mapper.applyAsLong(t)),
+                LongAggregation::combine,
+                LongAggregation::toMap,
+                CH_UNORDERED_NOID);
+    }
+
     /**
      * Returns a {@code Collector} which partitions the input elements according
      * to a {@code Predicate}, and organizes them into a
@@ -1534,6 +1731,376 @@ public final class Collectors {
                 (l, r) -> { l.combine(r); return l; }, CH_ID);
     }
 
+    /**
+     * Returns a {@code Collector} that produces the sums of a long-valued
+     * function applied to each {@code size} consecutive input elements, in
+     * encounter order: the result holds, at index {@code i}, the sum over the
+     * elements at positions {@code i} to {@code i + size - 1}.  If fewer than
+     * {@code size} elements are present, the result is empty.
+     *
+     * <p>Each element is accumulated in constant time, holding only the
+     * values of the last {@code size} elements besides the results.
+     *
+     * @param <T> the type of the input elements
+     * @param size the number of elements in each window
+     * @param mapper a function extracting the property to be summed
+     * @return a {@code Collector} that produces the moving sums of a derived
+     *         property
+     * @throws IllegalArgumentException if {@code size} is not positive
+     * @see Stream#sliding(int, int)
+     */
+    public static <T> Collector<T, ?, long[]>
+    movingSum(int size, ToLongFunction<? super T> mapper) {
+        return movingWindow(size, mapper, MovingWindow.SUM, MovingWindow::toArray);
+    }
+
+    /**
+     * Returns a {@code Collector} that produces the arithmetic means of a
+     * long-valued function applied to each {@code size} consecutive input
+     * elements, in encounter order.  If fewer than {@code size} elements are
+     * present, the result is empty.
+     *
+     * @param <T> the type of the input elements
+     * @param size the number of elements in each window
+     * @param mapper a function extracting the property to be averaged
+     * @return a {@code Collector} that produces the moving averages of a
+     *         derived property
+     * @throws IllegalArgumentException if {@code size} is not positive
+     * @see #movingSum(int, ToLongFunction)
+     */
+    public static <T> Collector<T, ?, double[]>
+    movingAverage(int size, ToLongFunction<? super T> mapper) {
+        return movingWindow(size, mapper, MovingWindow.SUM, MovingWindow::toAverages);
+    }
+
+    /**
+     * Returns a {@code Collector} that produces the minima of a long-valued
+     * function applied to each {@code size} consecutive input elements, in
+     * encounter order.  If fewer than {@code size} elements are present, the
+     * result is empty.
+     *
+     * <p>Each element is accumulated in amortized constant time.
+     *
+     * @param <T> the type of the input elements
+     * @param size the number of elements in each window
+     * @param mapper a function extracting the property to be compared
+     * @return a {@code Collector} that produces the moving minima of a
+     *         derived property
+     * @throws IllegalArgumentException if {@code size} is not positive
+     * @see #movingSum(int, ToLongFunction)
+     */
+    public static <T> Collector<T, ?, long[]>
+    movingMin(int size, ToLongFunction<? super T> mapper) {
+        return movingWindow(size, mapper, MovingWindow.MIN, MovingWindow::toArray);
+    }
+
+    /**
+     * Returns a {@code Collector} that produces the maxima of a long-valued
+     * function applied to each {@code size} consecutive input elements, in
+     * encounter order.  If fewer than {@code size} elements are present, the
+     * result is empty.
+     *
+     * <p>Each element is accumulated in amortized constant time.
+     *
+     * @param <T> the type of the input elements
+     * @param size the number of elements in each window
+     * @param mapper a function extracting the property to be compared
+     * @return a {@code Collector} that produces the moving maxima of a
+     *         derived property
+     * @throws IllegalArgumentException if {@code size} is not positive
+     * @see #movingSum(int, ToLongFunction)
+     */
+    public static <T> Collector<T, ?, long[]>
+    movingMax(int size, ToLongFunction<? super T> mapper) {
+        return movingWindow(size, mapper, MovingWindow.MAX, MovingWindow::toArray);
+    }
+
+    private static <T, R> Collector<T, ?, R>
+    movingWindow(int size, ToLongFunction<? super T> mapper, int kind,
+                 Function<MovingWindow, R> finisher) {
+        if (size <= 0)
+            throw new IllegalArgumentException(Integer.toString(size));
+        Objects.requireNonNull(mapper);
+        return new CollectorImpl<>(
+                () -> new MovingWindow(size, kind),
+                (w, t) -> w.push(mapper.applyAsLong(t), true),
+                MovingWindow::combine,
+                finisher, CH_NOID);
+    }
+
+    /**
+     * Implementation class used by the moving-window collectors, holding
+     * the aggregates of the complete windows of the values accumulated so
+     * far, and the state needed to compute those of further windows: the
+     * last {@code size} values, their sum, and, for minima and maxima, a
+     * queue of the positions of the values that may become the extremum of a
+     * later window, whose values are increasing (for minima) or decreasing
+     * (for maxima), so that the head of the queue is the extremum of the
+     * current window.  To combine with a later container, the first
+     * {@code size - 1} values are also retained.
+     */
+    private static final class MovingWindow {
+        static final int SUM = 0, MIN = 1, MAX = 2;
+
+        final int size;
+        final int kind;
+        final long[] head;     // the first size - 1 values
+        final long[] ring;     // the last values, by position modulo size
+        final long[] queue;    // positions of candidate extrema, circular
+        int queueStart, queueLength;
+        int filled;            // number of values in ring
+        long count;            // position of the next value
+        long sum;              // sum of values in ring
+        final SpinedBuffer.OfLong out = new SpinedBuffer.OfLong();
+
+        MovingWindow(int size, int kind) {
+            this.size = size;
+            this.kind = kind;
+            this.head = new long[size - 1];
+            this.ring = new long[size];
+            this.queue = (kind == SUM) ? null : new long[size];
+        }
+
+        private long valueAt(long position) {
+            return ring[(int) (position % size)];
+        }
+
+        /**
+         * Accumulates the given value, recording the aggregate of the window
+         * it completes if output is true.
+         */
+        void push(long v, boolean output) {
+            long c = count;
+            if (c < head.length)
+                head[(int) c] = v;
+            int slot = (int) (c % size);
+            if (kind == SUM) {
+                if (filled == size)
+                    sum -= ring[slot];
+                sum += v;
+            }
+            else {
+                long[] q = queue;
+                if (queueLength > 0 && q[queueStart] <= c - size) {
+                    queueStart = (queueStart + 1) % size;
+                    queueLength--;
+                }
+                while (queueLength > 0) {
+                    long last = valueAt(q[(queueStart + queueLength - 1) % size]);
+                    if ((kind == MIN) ? last < v : last > v)
+                        break;
+                    queueLength--;
+                }
+                q[(queueStart + queueLength++) % size] = c;
+            }
+            ring[slot] = v;
+            if (filled < size)
+                filled++;
+            count = c + 1;
+            if (output && filled == size)
+                out.accept((kind == SUM) ? sum : valueAt(queue[queueStart]));
+        }
+
+        /**
+         * Appends the values accumulated by the given later container.
+         */
+        MovingWindow combine(MovingWindow r) {
+            int n = (int) Math.min(r.count, head.length);
+            // Windows spanning both containers
+            for (int i = 0; i < n; i++)
+                push(r.head[i], true);
+            if (r.count > n) {
+                // Windows within r, then the state of r, rebased
+                r.out.forEach((LongConsumer) out::accept);
+                long total = count + (r.count - n);
+                filled = 0;
+                sum = 0;
+                queueLength = 0;
+                count = total - n;
+                for (long p = r.count - n; p < r.count; p++)
+                    push(r.valueAt(p), false);
+            }
+            return this;
+        }
+
+        long[] toArray() {
+            return out.asPrimitiveArray();
+        }
+
+        double[] toAverages() {
+            long[] sums = out.asPrimitiveArray();
+            double[] averages = new double[sums.length];
+            for (int i = 0; i < sums.length; i++)
+                averages[i] = (double) sums[i] / size;
+            return averages;
+        }
+    }
+
+    /**
+     * Implementation class used by groupingBySummingLong: the sums of the
+     * values accumulated for each key, in open-addressing tables, one per
+     * partition of keys by hash code, plus the containers combined with this
+     * one, whose tables are merged by the finisher.
+     */
+    private static final class LongAggregation {
+        /** Upper bound on partitions, so that tables stay reasonably large */
+        static final int MAX_PARTITION_BITS = 6;
+
+        final int partitionBits;
+        final LongTable[] parts;
+        ArrayList<LongAggregation> combined; // lazily created
+
+        LongAggregation(int partitionBits) {
+            this.partitionBits = partitionBits;
+            this.parts = new LongTable[1 << partitionBits];
+        }
+
+        /**
+         * Returns the number of hash bits selecting partitions, so that there
+         * are about twice as many partitions as the parallelism of the common
+         * pool, to balance their merging.
+         */
+        static int partitionBits() {
+            int p = ForkJoinPool.getCommonPoolParallelism();
+            int bits = (p <= 1) ? 0 : 33 - Integer.numberOfLeadingZeros(p - 1);
+            return Math.min(bits, MAX_PARTITION_BITS);
+        }
+
+        void add(Object key, long value) {
+            int h = key.hashCode() * 0x9e3779b9;
+            int i = (partitionBits == 0) ? 0 : h >>> (32 - partitionBits);
+            LongTable t = parts[i];
+            if (t == null)
+                parts[i] = t = new LongTable();
+            t.add(key, value);
+        }
+
+        LongAggregation combine(LongAggregation other) {
+            if (combined == null)
+                combined = new ArrayList<>();
+            combined.add(other);
+            if (other.combined != null) {
+                combined.addAll(other.combined);
+                other.combined = null;
+            }
+            return this;
+        }
+
+        /**
+         * Merges the tables of the given partition of all combined
+         * containers into the largest of them, and returns it, or null if
+         * empty.
+         */
+        LongTable merge(int partition) {
+            LongTable result = parts[partition];
+            if (combined != null) {
+                for (LongAggregation a : combined) {
+                    LongTable t = a.parts[partition];
+                    if (t == null)
+                        continue;
+                    if (result == null)
+                        result = t;
+                    else {
+                        if (t.size > result.size) {
+                            LongTable s = result;
+                            result = t;
+                            t = s;
+                        }
+                        result.addAll(t);
+                    }
+                }
+            }
+            return result;
+        }
+
+        @SuppressWarnings("unchecked")
+        <K> Map<K, Long> toMap() {
+            int n = parts.length;
+            LongTable[] merged = new LongTable[n];
+            if (combined == null || n == 1) {
+                for (int i = 0; i < n; i++)
+                    merged[i] = merge(i);
+            }
+            else {
+                IntStream.range(0, n).parallel().forEach(i -> merged[i] = merge(i));
+            }
+            int size = 0;
+            for (LongTable t : merged) {
+                if (t != null)
+                    size += t.size;
+            }
+            HashMap<K, Long> map = new HashMap<>(Math.max((int) (size / .75f) + 1, 16));
+            for (LongTable t : merged) {
+                if (t != null) {
+                    Object[] keys = t.keys;
+                    long[] values = t.values;
+                    for (int i = 0; i < keys.length; i++) {
+                        if (keys[i] != null)
+                            map.put((K) keys[i], values[i]);
+                    }
+                }
+            }
+            return map;
+        }
+    }
+
+    /**
+     * A table of long values keyed by non-null objects, using open
+     * addressing with linear probing.
+     */
+    private static final class LongTable {
+        Object[] keys = new Object[16];
+        long[] values = new long[16];
+        int size;
+
+        void add(Object key, long value) {
+            Object[] ks = keys;
+            int mask = ks.length - 1;
+            int h = key.hashCode();
+            int i = (h ^ (h >>> 16)) & mask;
+            for (Object k; (k = ks[i]) != null; i = (i + 1) & mask) {
+                if (k == key || k.equals(key)) {
+                    values[i] += value;
+                    return;
+                }
+            }
+            ks[i] = key;
+            values[i] = value;
+            if (++size > (mask >>> 1) + (mask >>> 2))
+                resize();
+        }
+
+        void addAll(LongTable other) {
+            Object[] ks = other.keys;
+            long[] vs = other.values;
+            for (int i = 0; i < ks.length; i++) {
+                if (ks[i] != null)
+                    add(ks[i], vs[i]);
+            }
+        }
+
+        private void resize() {
+            Object[] oldKeys = keys;
+            long[] oldValues = values;
+            int n = oldKeys.length << 1, mask = n - 1;
+            Object[] ks = new Object[n];
+            long[] vs = new long[n];
+            for (int j = 0; j < oldKeys.length; j++) {
+                Object k = oldKeys[j];
+                if (k != null) {
+                    int h = k.hashCode();
+                    int i = (h ^ (h >>> 16)) & mask;
+                    while (ks[i] != null)
+                        i = (i + 1) & mask;
+                    ks[i] = k;
+                    vs[i] = oldValues[j];
+                }
+            }
+            keys = ks;
+            values = vs;
+        }
+    }
+
     /**
      * Implementation class used by partitioningBy.
      */
@@ -25,13 +25,18 @@
 package java.util.stream;
 
 import java.util.HashSet;
+import java.util.IntObjectHashMap;
 import java.util.LinkedHashSet;
+import java.util.LongObjectHashMap;
 import java.util.Objects;
 import java.util.Set;
 import java.util.Spliterator;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
 import java.util.function.IntFunction;
+import java.util.function.LongConsumer;
 
 /**
  * Factory methods for transforming streams into duplicate-free streams, using
@@ -180,4 +185,339 @@ final class DistinctOps {
             }
         };
     }
+
+    /**
+     * Appends a "distinct" operation to the provided int stream, and returns
+     * the new stream.
+     *
+     * <p>Elements are tracked in open-addressing tables of primitive values,
+     * rather than in sets of boxed elements.
+     *
+     * @param upstream an int stream
+     * @return the new stream
+     */
+    static IntStream makeInt(AbstractPipeline<?, Integer, ?> upstream) {
+        return new IntPipeline.StatefulOp<Integer>(upstream, StreamShape.INT_VALUE,
+                                                   StreamOpFlag.IS_DISTINCT | StreamOpFlag.NOT_SIZED) {
+
+            <P_IN> Node<Integer> reduce(PipelineHelper<Integer> helper, Spliterator<P_IN> spliterator) {
+                // Only an ordered stream need retain the encounter order of
+                // the right operand when combining
+                boolean ordered = StreamOpFlag.ORDERED.isKnown(helper.getStreamAndOpFlags());
+                TerminalOp<Integer, DistinctInts> reduceOp
+                        = ReduceOps.<DistinctInts>makeInt(DistinctInts::new, DistinctInts::accept,
+                                                          (l, r) -> DistinctInts.combine(l, r, ordered));
+                return Nodes.node(reduceOp.evaluateParallel(helper, spliterator).elements.asPrimitiveArray());
+            }
+
+            @Override
+            <P_IN> Node<Integer> opEvaluateParallel(PipelineHelper<Integer> helper,
+                                                    Spliterator<P_IN> spliterator,
+                                                    IntFunction<Integer[]> generator) {
+                if (StreamOpFlag.DISTINCT.isKnown(helper.getStreamAndOpFlags())) {
+                    // No-op
+                    return helper.evaluate(spliterator, false, generator);
+                }
+                return reduce(helper, spliterator);
+            }
+
+            @Override
+            <P_IN> Spliterator<Integer> opEvaluateParallelLazy(PipelineHelper<Integer> helper,
+                                                               Spliterator<P_IN> spliterator) {
+                if (StreamOpFlag.DISTINCT.isKnown(helper.getStreamAndOpFlags())) {
+                    // No-op
+                    return helper.wrapSpliterator(spliterator);
+                }
+                else if (StreamOpFlag.ORDERED.isKnown(helper.getStreamAndOpFlags())) {
+                    // Not lazy, barrier required to preserve order
+                    return reduce(helper, spliterator).spliterator();
+                }
+                else {
+                    // Lazy
+                    return new StreamSpliterators.IntDistinctSpliterator(
+                            (Spliterator.OfInt) helper.wrapSpliterator(spliterator));
+                }
+            }
+
+            @Override
+            Sink<Integer> opWrapSink(int flags, Sink<Integer> sink) {
+                Objects.requireNonNull(sink);
+
+                if (StreamOpFlag.DISTINCT.isKnown(flags)) {
+                    return sink;
+                } else if (StreamOpFlag.SORTED.isKnown(flags)) {
+                    return new Sink.ChainedInt<Integer>(sink) {
+                        boolean seen;
+                        int lastSeen;
+
+                        @Override
+                        public void begin(long size) {
+                            seen = false;
+                            downstream.begin(-1);
+                        }
+
+                        @Override
+                        public void accept(int t) {
+                            if (!seen || t != lastSeen) {
+                                seen = true;
+                                downstream.accept(lastSeen = t);
+                            }
+                        }
+                    };
+                } else {
+                    return new Sink.ChainedInt<Integer>(sink) {
+                        IntObjectHashMap<Boolean> seen;
+
+                        @Override
+                        public void begin(long size) {
+                            seen = new IntObjectHashMap<>();
+                            downstream.begin(-1);
+                        }
+
+                        @Override
+                        public void end() {
+                            seen = null;
+                            downstream.end();
+                        }
+
+                        @Override
+                        public void accept(int t) {
+                            if (seen.putIfAbsent(t, Boolean.TRUE) == null)
+                                downstream.accept(t);
+                        }
+                    };
+                }
+            }
+        };
+    }
+
+    /**
+     * Appends a "distinct" operation to the provided long stream, and returns
+     * the new stream.
+     *
+     * <p>Elements are tracked in open-addressing tables of primitive values,
+     * rather than in sets of boxed elements.
+     *
+     * @param upstream a long stream
+     * @return the new stream
+     */
+    static LongStream makeLong(AbstractPipeline<?, Long, ?> upstream) {
+        return new LongPipeline.StatefulOp<Long>(upstream, StreamShape.LONG_VALUE,
+                                                 StreamOpFlag.IS_DISTINCT | StreamOpFlag.NOT_SIZED) {
+
+            <P_IN> Node<Long> reduce(PipelineHelper<Long> helper, Spliterator<P_IN> spliterator) {
+                // Only an ordered stream need retain the encounter order of
+                // the right operand when combining
+                boolean ordered = StreamOpFlag.ORDERED.isKnown(helper.getStreamAndOpFlags());
+                TerminalOp<Long, DistinctLongs> reduceOp
+                        = ReduceOps.<DistinctLongs>makeLong(DistinctLongs::new, DistinctLongs::accept,
+                                                            (l, r) -> DistinctLongs.combine(l, r, ordered));
+                return Nodes.node(reduceOp.evaluateParallel(helper, spliterator).elements.asPrimitiveArray());
+            }
+
+            @Override
+            <P_IN> Node<Long> opEvaluateParallel(PipelineHelper<Long> helper,
+                                                 Spliterator<P_IN> spliterator,
+                                                 IntFunction<Long[]> generator) {
+                if (StreamOpFlag.DISTINCT.isKnown(helper.getStreamAndOpFlags())) {
+                    // No-op
+                    return helper.evaluate(spliterator, false, generator);
+                }
+                return reduce(helper, spliterator);
+            }
+
+            @Override
+            <P_IN> Spliterator<Long> opEvaluateParallelLazy(PipelineHelper<Long> helper,
+                                                            Spliterator<P_IN> spliterator) {
+                if (StreamOpFlag.DISTINCT.isKnown(helper.getStreamAndOpFlags())) {
+                    // No-op
+                    return helper.wrapSpliterator(spliterator);
+                }
+                else if (StreamOpFlag.ORDERED.isKnown(helper.getStreamAndOpFlags())) {
+                    // Not lazy, barrier required to preserve order
+                    return reduce(helper, spliterator).spliterator();
+                }
+                else {
+                    // Lazy
+                    return new StreamSpliterators.LongDistinctSpliterator(
+                            (Spliterator.OfLong) helper.wrapSpliterator(spliterator));
+                }
+            }
+
+            @Override
+            Sink<Long> opWrapSink(int flags, Sink<Long> sink) {
+                Objects.requireNonNull(sink);
+
+                if (StreamOpFlag.DISTINCT.isKnown(flags)) {
+                    return sink;
+                } else if (StreamOpFlag.SORTED.isKnown(flags)) {
+                    return new Sink.ChainedLong<Long>(sink) {
+                        boolean seen;
+                        long lastSeen;
+
+                        @Override
+                        public void begin(long size) {
+                            seen = false;
+                            downstream.begin(-1);
+                        }
+
+                        @Override
+                        public void accept(long t) {
+                            if (!seen || t != lastSeen) {
+                                seen = true;
+                                downstream.accept(lastSeen = t);
+                            }
+                        }
+                    };
+                } else {
+                    return new Sink.ChainedLong<Long>(sink) {
+                        LongObjectHashMap<Boolean> seen;
+
+                        @Override
+                        public void begin(long size) {
+                            seen = new LongObjectHashMap<>();
+                            downstream.begin(-1);
+                        }
+
+                        @Override
+                        public void end() {
+                            seen = null;
+                            downstream.end();
+                        }
+
+                        @Override
+                        public void accept(long t) {
+                            if (seen.putIfAbsent(t, Boolean.TRUE) == null)
+                                downstream.accept(t);
+                        }
+                    };
+                }
+            }
+        };
+    }
+
+    /**
+     * The distinct elements of a portion of an int stream, in encounter
+     * order, for parallel evaluation.
+     */
+    static final class DistinctInts implements IntConsumer {
+        final IntObjectHashMap<Boolean> seen = new IntObjectHashMap<>();
+        final SpinedBuffer.OfInt elements = new SpinedBuffer.OfInt();
+
+        @Override
+        public void accept(int t) {
+            if (seen.putIfAbsent(t, Boolean.TRUE) == null)
+                elements.accept(t);
+        }
+
+        /**
+         * Adds the elements of the right container to the left one, or, if
+         * encounter order need not be preserved, those of the smaller
+         * container to the larger one, and returns the container added to.
+         */
+        static DistinctInts combine(DistinctInts left, DistinctInts right, boolean ordered) {
+            if (!ordered && right.seen.size() > left.seen.size()) {
+                DistinctInts t = left;
+                left = right;
+                right = t;
+            }
+            right.elements.forEach((IntConsumer) left);
+            return left;
+        }
+    }
+
+    /**
+     * The distinct elements of a portion of a long stream, in encounter
+     * order, for parallel evaluation.
+     */
+    static final class DistinctLongs implements LongConsumer {
+        final LongObjectHashMap<Boolean> seen = new LongObjectHashMap<>();
+        final SpinedBuffer.OfLong elements = new SpinedBuffer.OfLong();
+
+        @Override
+        public void accept(long t) {
+            if (seen.putIfAbsent(t, Boolean.TRUE) == null)
+                elements.accept(t);
+        }
+
+        static DistinctLongs combine(DistinctLongs left, DistinctLongs right, boolean ordered) {
+            if (!ordered && right.seen.size() > left.seen.size()) {
+                DistinctLongs t = left;
+                left = right;
+                right = t;
+            }
+            right.elements.forEach((LongConsumer) left);
+            return left;
+        }
+    }
+
+    /**
+     * Returns the number of stripes of a concurrent set: a power of two
+     * of about four times the parallelism of the common pool, at most 64.
+     */
+    static int stripeCount() {
+        int p = ForkJoinPool.getCommonPoolParallelism() << 2;
+        int n = 1;
+        while (n < p && n < 64)
+            n <<= 1;
+        return n;
+    }
+
+    /**
+     * A set of int values that may be updated concurrently, striped over
+     * {@link IntObjectHashMap}s, used as sets, each guarded by its own
+     * monitor.  Used by lazy
+     * evaluation of unordered parallel streams, whose splits share a set.
+     */
+    static final class ConcurrentIntSet {
+        private final IntObjectHashMap<Boolean>[] stripes;
+
+        ConcurrentIntSet() {
+            @SuppressWarnings("unchecked")
+            IntObjectHashMap<Boolean>[] ss = (IntObjectHashMap<Boolean>[]) new IntObjectHashMap<?>[stripeCount()];
+            for (int i = 0; i < ss.length; i++)
+                ss[i] = new IntObjectHashMap<>();
+            stripes = ss;
+        }
+
+        /**
+         * Adds the given value, returning true if it was not present.
+         */
+        boolean add(int v) {
+            // Selects stripes by other bits than IntObjectHashMap uses for slots
+            int h = v * 0x85ebca6b;
+            IntObjectHashMap<Boolean> s = stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+            synchronized (s) {
+                return s.putIfAbsent(v, Boolean.TRUE) == null;
+            }
+        }
+    }
+
+    /**
+     * A set of long values that may be updated concurrently, striped over
+     * {@link LongObjectHashMap}s, used as sets, each guarded by its own
+     * monitor.
+     */
+    static final class ConcurrentLongSet {
+        private final LongObjectHashMap<Boolean>[] stripes;
+
+        ConcurrentLongSet() {
+            @SuppressWarnings("unchecked")
+            LongObjectHashMap<Boolean>[] ss = (LongObjectHashMap<Boolean>[]) new LongObjectHashMap<?>[stripeCount()];
+            for (int i = 0; i < ss.length; i++)
+                ss[i] = new LongObjectHashMap<>();
+            stripes = ss;
+        }
+
+        /**
+         * Adds the given value, returning true if it was not present.
+         */
+        boolean add(long v) {
+            int h = (int) (v ^ (v >>> 32)) * 0x85ebca6b;
+            LongObjectHashMap<Boolean> s = stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+            synchronized (s) {
+                return s.putIfAbsent(v, Boolean.TRUE) == null;
+            }
+        }
+    }
 }
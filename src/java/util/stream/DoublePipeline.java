@@ -351,6 +351,18 @@ abstract class DoublePipeline<E_IN>
         }
     }
 
+    @Override
+    public final Stream<double[]> chunked(int size) {
+        WindowOps.checkWindow(size, size);
+        return WindowOps.makeDouble(this, size, size, true);
+    }
+
+    @Override
+    public final Stream<double[]> sliding(int size, int step) {
+        WindowOps.checkWindow(size, step);
+        return WindowOps.makeDouble(this, size, step, false);
+    }
+
     @Override
     public final DoubleStream sorted() {
         return SortedOps.makeDouble(this);
@@ -0,0 +1,474 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.stream;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Support for fusing runs of adjacent stateless intermediate operations
+ * into a single {@code Sink}.
+ *
+ * <p>Ordinarily {@link AbstractPipeline#wrapSink} wraps the terminal sink in
+ * one {@code Sink} per intermediate stage, so each element passes through one
+ * {@code accept()} call per stage, a call site that sees every kind of sink
+ * and is rarely inlined for longer pipelines.  When fusion is enabled, each
+ * maximal run of two or more stages that describe themselves as a
+ * {@link Step} (via {@link AbstractPipeline#opFusibleStep()}) is instead
+ * compiled into a single {@link MethodHandle}, composed from the functions of
+ * the run with {@link MethodHandles#filterArguments filterArguments} (for
+ * mapping steps), {@link MethodHandles#guardWithTest guardWithTest} (for
+ * filtering steps) and {@link MethodHandles#foldArguments foldArguments} (for
+ * peeking steps), and ending in the {@code accept()} method of the downstream
+ * sink.  A single sink invokes that handle, so the elements pass through one
+ * {@code accept()} call per run.  The handle takes the downstream sink and the
+ * functions of the run as arguments, so one handle serves every run with the
+ * same sequence of kinds of steps, and is compiled once for all of them;
+ * runs are split after {@link #MAX_STEPS} steps to bound the number of such
+ * sequences.
+ *
+ * <p>Fusion pays off when the {@code accept()} call sites of chained sinks
+ * see many kinds of sinks, as in applications running many different
+ * pipelines, where it removes all but one of those calls per run.  When a
+ * single pipeline dominates, those call sites are inlined anyway, and the
+ * indirection through the handle makes fused runs slightly slower, which is
+ * why fusion is not enabled by default.
+ *
+ * <p>The fusible operations are {@code filter}, {@code map} and {@code peek} on
+ * reference and {@code int} streams, and {@code mapToInt}, {@code mapToLong}
+ * and {@code mapToDouble} on reference streams.  Fusion is turned on or off
+ * based on whether the system property
+ * {@code org.openjdk.java.util.stream.fuse} is considered {@code true}
+ * according to {@link Boolean#getBoolean(String)}.
+ *
+ * @since 1.8
+ */
+final class FusedOps {
+
+    private static final String FUSE_PROPERTY = "org.openjdk.java.util.stream.fuse";
+
+    /** Should runs of stateless operations be fused? */
+    static final boolean ENABLED = AccessController.doPrivileged(
+            (PrivilegedAction<Boolean>) () -> Boolean.getBoolean(FUSE_PROPERTY));
+
+    // No instances
+    private FusedOps() { }
+
+    // Kinds of steps, by input shape
+
+    /** A {@code Predicate}, from reference to reference */
+    static final int FILTER = 0;
+    /** A {@code Function}, from reference to reference */
+    static final int MAP = 1;
+    /** A {@code Consumer}, from reference to reference */
+    static final int PEEK = 2;
+    /** A {@code ToIntFunction}, from reference to {@code int} */
+    static final int MAP_TO_INT = 3;
+    /** A {@code ToLongFunction}, from reference to {@code long} */
+    static final int MAP_TO_LONG = 4;
+    /** A {@code ToDoubleFunction}, from reference to {@code double} */
+    static final int MAP_TO_DOUBLE = 5;
+    /** An {@code IntPredicate}, from {@code int} to {@code int} */
+    static final int INT_FILTER = 6;
+    /** An {@code IntUnaryOperator}, from {@code int} to {@code int} */
+    static final int INT_MAP = 7;
+    /** An {@code IntConsumer}, from {@code int} to {@code int} */
+    static final int INT_PEEK = 8;
+
+    /**
+     * The description of a fusible stateless operation: its kind and its
+     * function.
+     */
+    static final class Step {
+        final int kind;
+        final Object function;
+
+        Step(int kind, Object function) {
+            this.kind = kind;
+            this.function = function;
+        }
+    }
+
+    /**
+     * The maximum number of steps fused in a single sink.  Longer runs are
+     * fused in several sinks.
+     */
+    static final int MAX_STEPS = 4;
+
+    /**
+     * A fused run of stages: the number of stages, their functions, and the
+     * handle performing them, of type {@code (Sink, Object, Object, Object,
+     * Object, T)void}, which takes the downstream sink, the functions, and an
+     * input of type {@code T}, the input type of the first stage.
+     */
+    static final class Run {
+        /** The run of stages that are not fused */
+        static final Run NONE = new Run(0, null, null, false, false);
+
+        final int length;
+        final Object[] functions; // of length MAX_STEPS, first to last
+        final MethodHandle push;
+        final boolean intInput;
+        final boolean filters;
+
+        Run(int length, Object[] functions, MethodHandle push,
+            boolean intInput, boolean filters) {
+            this.length = length;
+            this.functions = functions;
+            this.push = push;
+            this.intInput = intInput;
+            this.filters = filters;
+        }
+
+        /**
+         * Returns a sink performing this run, and passing the results to
+         * the given sink.
+         */
+        Sink<?> wrap(Sink<?> sink) {
+            return intInput
+                   ? new FusedIntSink(this, sink)
+                   : new FusedReferenceSink<>(this, sink);
+        }
+    }
+
+    /**
+     * The handles performing each sequence of kinds of steps, keyed by
+     * the kinds, first to last, as hexadecimal digits following a leading
+     * 1.  There are few sequences in practice, and sharing the handles
+     * among pipelines lets each be compiled once.
+     */
+    private static final ConcurrentHashMap<Integer, MethodHandle> handles =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Returns the fused run of the given steps, or {@link Run#NONE} if there
+     * are fewer than two.
+     *
+     * @param run at most {@code MAX_STEPS} steps, from the last to the first
+     * @return the run
+     */
+    static Run makeRun(List<Step> run) {
+        int n = run.size();
+        if (n < 2)
+            return Run.NONE;
+        Object[] functions = new Object[MAX_STEPS];
+        int key = 1;
+        boolean filters = false;
+        for (int i = 0; i < n; i++) {
+            Step t = run.get(n - 1 - i);
+            functions[i] = t.function;
+            key = (key << 4) | t.kind;
+            filters |= (t.kind == FILTER || t.kind == INT_FILTER);
+        }
+        MethodHandle h = handles.get(key);
+        if (h == null) {
+            h = Handles.sinkAccept(run.get(0).kind);
+            for (int i = 0; i < n; i++)
+                h = Handles.compose(run.get(i).kind, n - 1 - i, h);
+            MethodHandle prev = handles.putIfAbsent(key, h);
+            if (prev != null)
+                h = prev;
+        }
+        return new Run(n, functions, h, run.get(n - 1).kind >= INT_FILTER, filters);
+    }
+
+    /**
+     * Throws the given exception from the fused handle unchanged, as the
+     * unfused sinks would have.
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Throwable> void uncheckedThrow(Throwable t) throws T {
+        throw (T) t;
+    }
+
+    /**
+     * The method handles from which runs are composed, in a holder class so
+     * that they are looked up only if fusion is used.  Each handle of a
+     * partial run has parameters {@code (Sink, Object, Object, Object,
+     * Object, T)}: the downstream sink, one slot per function, and the
+     * element; each step reads its function from its own slot.
+     */
+    static final class Handles {
+        /** The index of the element parameter */
+        private static final int ELEMENT = MAX_STEPS + 1;
+
+        private static final MethodHandle PREDICATE_TEST;
+        private static final MethodHandle FUNCTION_APPLY;
+        private static final MethodHandle CONSUMER_ACCEPT;
+        private static final MethodHandle TO_INT_APPLY;
+        private static final MethodHandle TO_LONG_APPLY;
+        private static final MethodHandle TO_DOUBLE_APPLY;
+        private static final MethodHandle INT_PREDICATE_TEST;
+        private static final MethodHandle INT_UNARY_APPLY;
+        private static final MethodHandle INT_CONSUMER_ACCEPT;
+        private static final MethodHandle SINK_ACCEPT;
+        private static final MethodHandle SINK_ACCEPT_INT;
+        private static final MethodHandle SINK_ACCEPT_LONG;
+        private static final MethodHandle SINK_ACCEPT_DOUBLE;
+
+        static {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            MethodType obj = MethodType.methodType(Object.class, Object.class);
+            MethodType i = MethodType.methodType(int.class, int.class);
+            MethodType v = MethodType.methodType(void.class, Object.class);
+            try {
+                PREDICATE_TEST = function(l.findVirtual(Predicate.class, "test",
+                    obj.changeReturnType(boolean.class)));
+                FUNCTION_APPLY = function(l.findVirtual(Function.class, "apply", obj));
+                CONSUMER_ACCEPT = function(l.findVirtual(Consumer.class, "accept",
+                    obj.changeReturnType(void.class)));
+                TO_INT_APPLY = function(l.findVirtual(ToIntFunction.class, "applyAsInt",
+                    obj.changeReturnType(int.class)));
+                TO_LONG_APPLY = function(l.findVirtual(ToLongFunction.class, "applyAsLong",
+                    obj.changeReturnType(long.class)));
+                TO_DOUBLE_APPLY = function(l.findVirtual(ToDoubleFunction.class, "applyAsDouble",
+                    obj.changeReturnType(double.class)));
+                INT_PREDICATE_TEST = function(l.findVirtual(IntPredicate.class, "test",
+                    i.changeReturnType(boolean.class)));
+                INT_UNARY_APPLY = function(l.findVirtual(IntUnaryOperator.class, "applyAsInt", i));
+                INT_CONSUMER_ACCEPT = function(l.findVirtual(IntConsumer.class, "accept",
+                    i.changeReturnType(void.class)));
+                SINK_ACCEPT = sink(l.findVirtual(Sink.class, "accept", v));
+                SINK_ACCEPT_INT = sink(l.findVirtual(Sink.class, "accept",
+                    v.changeParameterType(0, int.class)));
+                SINK_ACCEPT_LONG = sink(l.findVirtual(Sink.class, "accept",
+                    v.changeParameterType(0, long.class)));
+                SINK_ACCEPT_DOUBLE = sink(l.findVirtual(Sink.class, "accept",
+                    v.changeParameterType(0, double.class)));
+            } catch (ReflectiveOperationException e) {
+                throw new Error(e);
+            }
+        }
+
+        /**
+         * Adapts a method of a functional interface to take its receiver
+         * as an {@code Object}.
+         */
+        private static MethodHandle function(MethodHandle h) {
+            return h.asType(h.type().changeParameterType(0, Object.class));
+        }
+
+        /**
+         * Adapts a method of {@code Sink} to ignore the function slots.
+         */
+        private static MethodHandle sink(MethodHandle h) {
+            return MethodHandles.dropArguments(h, 1, slots());
+        }
+
+        /** Returns the types of the function slots */
+        private static Class<?>[] slots() {
+            Class<?>[] a = new Class<?>[MAX_STEPS];
+            Arrays.fill(a, Object.class);
+            return a;
+        }
+
+        /**
+         * Returns the handle passing the output of the given kind of step
+         * to a sink.
+         */
+        static MethodHandle sinkAccept(int kind) {
+            switch (kind) {
+                case FILTER: case MAP: case PEEK:
+                    return SINK_ACCEPT;
+                case MAP_TO_INT: case INT_FILTER: case INT_MAP: case INT_PEEK:
+                    return SINK_ACCEPT_INT;
+                case MAP_TO_LONG:
+                    return SINK_ACCEPT_LONG;
+                case MAP_TO_DOUBLE:
+                    return SINK_ACCEPT_DOUBLE;
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+
+        /**
+         * Adapts a handle of type {@code (Object, T)R}, taking a function
+         * and an element, to take the arguments of a partial run, reading
+         * the function from the given slot.
+         */
+        private static MethodHandle spread(MethodHandle f, int slot, Class<?> element) {
+            MethodType t = MethodType.methodType(f.type().returnType(), Sink.class)
+                .appendParameterTypes(slots()).appendParameterTypes(element);
+            return MethodHandles.permuteArguments(f, t, 1 + slot, ELEMENT);
+        }
+
+        /**
+         * Returns the handle performing the given kind of step, reading its
+         * function from the given slot, then the given handle, which
+         * accepts the output of the step.
+         *
+         * @param kind the kind of step
+         * @param slot the slot of the function of the step
+         * @param next the handle of the rest of the run, whose element
+         *        parameter has the output type {@code R} of the step
+         * @return the handle whose element parameter has the input type
+         *         {@code T} of the step
+         */
+        static MethodHandle compose(int kind, int slot, MethodHandle next) {
+            switch (kind) {
+                case FILTER:
+                    return MethodHandles.guardWithTest(
+                        spread(PREDICATE_TEST, slot, Object.class), next,
+                        discard(next.type()));
+                case INT_FILTER:
+                    return MethodHandles.guardWithTest(
+                        spread(INT_PREDICATE_TEST, slot, int.class), next,
+                        discard(next.type()));
+                case PEEK:
+                    return MethodHandles.foldArguments(next,
+                        spread(CONSUMER_ACCEPT, slot, Object.class));
+                case INT_PEEK:
+                    return MethodHandles.foldArguments(next,
+                        spread(INT_CONSUMER_ACCEPT, slot, int.class));
+                case MAP:
+                    return map(next, FUNCTION_APPLY, slot, Object.class);
+                case MAP_TO_INT:
+                    return map(next, TO_INT_APPLY, slot, Object.class);
+                case MAP_TO_LONG:
+                    return map(next, TO_LONG_APPLY, slot, Object.class);
+                case MAP_TO_DOUBLE:
+                    return map(next, TO_DOUBLE_APPLY, slot, Object.class);
+                case INT_MAP:
+                    return map(next, INT_UNARY_APPLY, slot, int.class);
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+
+        /**
+         * Returns a handle of the given type doing nothing, invoked for the
+         * elements a filtering step rejects.
+         */
+        private static MethodHandle discard(MethodType t) {
+            MethodHandle nop = MethodHandles.constant(Object.class, null)
+                .asType(MethodType.methodType(void.class));
+            return MethodHandles.dropArguments(nop, 0, t.parameterList());
+        }
+
+        /**
+         * Returns the handle applying the given mapping function, read from
+         * the given slot, to the element, then invoking the given handle
+         * with the result in place of the element.
+         */
+        private static MethodHandle map(MethodHandle next, MethodHandle f,
+                                        int slot, Class<?> element) {
+            // (Sink, slots..., function, element)void
+            MethodHandle h = MethodHandles.collectArguments(next, ELEMENT, f);
+            int[] reorder = new int[ELEMENT + 2];
+            for (int i = 0; i < ELEMENT; i++)
+                reorder[i] = i;
+            reorder[ELEMENT] = 1 + slot;
+            reorder[ELEMENT + 1] = ELEMENT;
+            MethodType t = next.type().changeParameterType(ELEMENT, element);
+            return MethodHandles.permuteArguments(h, t, reorder);
+        }
+    }
+
+    /**
+     * A sink performing a run of steps on references.
+     */
+    static final class FusedReferenceSink<T> extends Sink.ChainedReference<T, Object> {
+        private final MethodHandle push;
+        private final Object f0, f1, f2, f3;
+        private final boolean filters;
+
+        @SuppressWarnings("unchecked")
+        FusedReferenceSink(Run run, Sink<?> downstream) {
+            super((Sink<Object>) downstream);
+            Object[] fs = run.functions;
+            this.push = run.push;
+            this.f0 = fs[0];
+            this.f1 = fs[1];
+            this.f2 = fs[2];
+            this.f3 = fs[3];
+            this.filters = run.filters;
+        }
+
+        @Override
+        public void begin(long size) {
+            downstream.begin(filters ? -1 : size);
+        }
+
+        @Override
+        public void accept(T t) {
+            try {
+                push.invokeExact((Sink<?>) downstream, f0, f1, f2, f3, (Object) t);
+            } catch (Throwable ex) {
+                FusedOps.<RuntimeException>uncheckedThrow(ex);
+            }
+        }
+    }
+
+    /**
+     * A sink performing a run of steps on {@code int} values.
+     */
+    static final class FusedIntSink extends Sink.ChainedInt<Object> {
+        private final MethodHandle push;
+        private final Object f0, f1, f2, f3;
+        private final boolean filters;
+
+        @SuppressWarnings("unchecked")
+        FusedIntSink(Run run, Sink<?> downstream) {
+            super((Sink<Object>) downstream);
+            Object[] fs = run.functions;
+            this.push = run.push;
+            this.f0 = fs[0];
+            this.f1 = fs[1];
+            this.f2 = fs[2];
+            this.f3 = fs[3];
+            this.filters = run.filters;
+        }
+
+        @Override
+        public void begin(long size) {
+            downstream.begin(filters ? -1 : size);
+        }
+
+        @Override
+        public void accept(int t) {
+            try {
+                push.invokeExact((Sink<?>) downstream, f0, f1, f2, f3, t);
+            } catch (Throwable ex) {
+                FusedOps.<RuntimeException>uncheckedThrow(ex);
+            }
+        }
+    }
+}
@@ -234,6 +234,11 @@ abstract class IntPipeline<E_IN>
                     }
                 };
             }
+
+            @Override
+            FusedOps.Step opFusibleStep() {
+                return new FusedOps.Step(FusedOps.INT_MAP, mapper);
+            }
         };
     }
 
@@ -345,6 +350,11 @@ abstract class IntPipeline<E_IN>
                     }
                 };
             }
+
+            @Override
+            FusedOps.Step opFusibleStep() {
+                return new FusedOps.Step(FusedOps.INT_FILTER, predicate);
+            }
         };
     }
 
@@ -363,6 +373,11 @@ abstract class IntPipeline<E_IN>
                     }
                 };
             }
+
+            @Override
+            FusedOps.Step opFusibleStep() {
+                return new FusedOps.Step(FusedOps.INT_PEEK, action);
+            }
         };
     }
 
@@ -385,6 +400,18 @@ abstract class IntPipeline<E_IN>
             return SliceOps.makeInt(this, n, -1);
     }
 
+    @Override
+    public final Stream<int[]> chunked(int size) {
+        WindowOps.checkWindow(size, size);
+        return WindowOps.makeInt(this, size, size, true);
+    }
+
+    @Override
+    public final Stream<int[]> sliding(int size, int step) {
+        WindowOps.checkWindow(size, step);
+        return WindowOps.makeInt(this, size, step, false);
+    }
+
     @Override
     public final IntStream sorted() {
         return SortedOps.makeInt(this);
@@ -392,9 +419,7 @@ abstract class IntPipeline<E_IN>
 
     @Override
     public final IntStream distinct() {
-        // While functional and quick to implement, this approach is not very efficient.
-        // An efficient version requires an int-specific map/set implementation.
-        return boxed().distinct().mapToInt(i -> i);
+        return DistinctOps.makeInt(this);
     }
 
     // Terminal ops from IntStream
@@ -277,6 +277,66 @@ public interface LongStream extends BaseStream<Long, LongStream> {
      */
     LongStream skip(long n);
 
+    /**
+     * Returns a stream consisting of the elements of this stream grouped into
+     * arrays of consecutive elements of the given size, in encounter order.
+     * The last array holds the remaining elements, and may have fewer than
+     * {@code size} elements, but is never empty.  If this stream is empty,
+     * the returned stream is empty.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>.
+     *
+     * @implSpec
+     * The default implementation obtains the {@link #spliterator() spliterator}
+     * of this stream, and applies this operation to a new stream over that
+     * spliterator, as created by {@link StreamSupport#longStream(Spliterator.OfLong, boolean)}
+     * with the execution mode of this stream.  When the returned stream is
+     * closed, the close handlers for both the returned and this stream are
+     * invoked.
+     *
+     * @param size the number of elements in each array, other than the last
+     * @return the new stream
+     * @throws IllegalArgumentException if {@code size} is not positive
+     * @see Stream#chunked(int)
+     */
+    default Stream<long[]> chunked(int size) {
+        return StreamSupport.longStream(spliterator(), isParallel())
+                .chunked(size)
+                .onClose(this::close);
+    }
+
+    /**
+     * Returns a stream consisting of the arrays of {@code size} consecutive
+     * elements of this stream starting at every {@code step}-th element, in
+     * encounter order.  Only complete arrays are included, so if this stream
+     * has fewer than {@code size} elements, the returned stream is empty.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>.
+     *
+     * @implSpec
+     * The default implementation obtains the {@link #spliterator() spliterator}
+     * of this stream, and applies this operation to a new stream over that
+     * spliterator, as created by {@link StreamSupport#longStream(Spliterator.OfLong, boolean)}
+     * with the execution mode of this stream.  When the returned stream is
+     * closed, the close handlers for both the returned and this stream are
+     * invoked.
+     *
+     * @param size the number of elements in each array
+     * @param step the distance between the positions of the first elements
+     *        of consecutive arrays
+     * @return the new stream
+     * @throws IllegalArgumentException if {@code size} or {@code step} is not
+     *         positive
+     * @see Stream#sliding(int, int)
+     */
+    default Stream<long[]> sliding(int size, int step) {
+        return StreamSupport.longStream(spliterator(), isParallel())
+                .sliding(size, step)
+                .onClose(this::close);
+    }
+
     /**
      * Performs an action for each element of this stream.
      *
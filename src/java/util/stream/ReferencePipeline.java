@@ -26,6 +26,7 @@ package java.util.stream;
 
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Spliterator;
@@ -176,6 +177,11 @@ abstract class ReferencePipeline<P_IN, P_OUT>
                     }
                 };
             }
+
+            @Override
+            FusedOps.Step opFusibleStep() {
+                return new FusedOps.Step(FusedOps.FILTER, predicate);
+            }
         };
     }
 
@@ -194,6 +200,11 @@ abstract class ReferencePipeline<P_IN, P_OUT>
                     }
                 };
             }
+
+            @Override
+            FusedOps.Step opFusibleStep() {
+                return new FusedOps.Step(FusedOps.MAP, mapper);
+            }
         };
     }
 
@@ -211,6 +222,11 @@ abstract class ReferencePipeline<P_IN, P_OUT>
                     }
                 };
             }
+
+            @Override
+            FusedOps.Step opFusibleStep() {
+                return new FusedOps.Step(FusedOps.MAP_TO_INT, mapper);
+            }
         };
     }
 
@@ -228,6 +244,11 @@ abstract class ReferencePipeline<P_IN, P_OUT>
                     }
                 };
             }
+
+            @Override
+            FusedOps.Step opFusibleStep() {
+                return new FusedOps.Step(FusedOps.MAP_TO_LONG, mapper);
+            }
         };
     }
 
@@ -245,6 +266,11 @@ abstract class ReferencePipeline<P_IN, P_OUT>
                     }
                 };
             }
+
+            @Override
+            FusedOps.Step opFusibleStep() {
+                return new FusedOps.Step(FusedOps.MAP_TO_DOUBLE, mapper);
+            }
         };
     }
 
@@ -374,6 +400,11 @@ abstract class ReferencePipeline<P_IN, P_OUT>
                     }
                 };
             }
+
+            @Override
+            FusedOps.Step opFusibleStep() {
+                return new FusedOps.Step(FusedOps.PEEK, action);
+            }
         };
     }
 
@@ -411,6 +442,23 @@ abstract class ReferencePipeline<P_IN, P_OUT>
             return SliceOps.makeRef(this, n, -1);
     }
 
+    @Override
+    public final Stream<List<P_OUT>> chunked(int size) {
+        WindowOps.checkWindow(size, size);
+        return WindowOps.makeRef(this, size, size, true);
+    }
+
+    @Override
+    public final Stream<List<P_OUT>> sliding(int size, int step) {
+        WindowOps.checkWindow(size, step);
+        return WindowOps.makeRef(this, size, step, false);
+    }
+
+    @Override
+    public final Stream<List<P_OUT>> windowBy(Function<? super P_OUT, ?> classifier) {
+        return WindowOps.makeRefBy(this, classifier);
+    }
+
     // Terminal operations from Stream
 
     @Override
@@ -24,13 +24,30 @@
  */
 package java.util.stream;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.Spliterator;
 import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
 import java.util.function.IntFunction;
+import java.util.function.LongConsumer;
+
+import sun.misc.Cleaner;
 
 
 /**
@@ -42,6 +59,16 @@ final class SortedOps {
 
     private SortedOps() { }
 
+    private static final String SPILL_PROPERTY = "org.openjdk.java.util.stream.sortSpillThreshold";
+
+    /**
+     * The number of elements a sequential sort of an int or long stream
+     * buffers in memory before spilling them, as a sorted run, to a
+     * temporary file, or zero if sorts never spill.
+     */
+    static final long SPILL_THRESHOLD = AccessController.doPrivileged(
+            (PrivilegedAction<Long>) () -> Long.getLong(SPILL_PROPERTY, 0L));
+
     /**
      * Appends a "sorted" operation to the provided stream.
      *
@@ -170,11 +197,13 @@ final class SortedOps {
         }
 
         @Override
-        public Sink<Integer> opWrapSink(int flags, Sink sink) {
+        public Sink<Integer> opWrapSink(int flags, Sink<Integer> sink) {
             Objects.requireNonNull(sink);
 
             if (StreamOpFlag.SORTED.isKnown(flags))
                 return sink;
+            else if (SPILL_THRESHOLD > 0)
+                return new SpillingIntSortingSink(sink);
             else if (StreamOpFlag.SIZED.isKnown(flags))
                 return new SizedIntSortingSink(sink);
             else
@@ -214,6 +243,8 @@ final class SortedOps {
 
             if (StreamOpFlag.SORTED.isKnown(flags))
                 return sink;
+            else if (SPILL_THRESHOLD > 0)
+                return new SpillingLongSortingSink(sink);
             else if (StreamOpFlag.SIZED.isKnown(flags))
                 return new SizedLongSortingSink(sink);
             else
@@ -231,7 +262,7 @@ final class SortedOps {
                 Node.OfLong n = (Node.OfLong) helper.evaluate(spliterator, true, generator);
 
                 long[] content = n.asPrimitiveArray();
-                Arrays.parallelSort(content);
+                Arrays.parallelRadixSort(content);
 
                 return Nodes.node(content);
             }
@@ -599,6 +630,378 @@ final class SortedOps {
         }
     }
 
+    /**
+     * {@link Sink} for implementing sort on int streams, spilling sorted runs
+     * of elements to a temporary file when more than {@link #SPILL_THRESHOLD}
+     * elements are buffered.
+     */
+    private static final class SpillingIntSortingSink extends AbstractIntSortingSink {
+        private SpillingSorter.OfInt sorter;
+
+        SpillingIntSortingSink(Sink<? super Integer> sink) {
+            super(sink);
+        }
+
+        @Override
+        public void begin(long size) {
+            sorter = new SpillingSorter.OfInt(size);
+        }
+
+        @Override
+        public void end() {
+            SpillingSorter s = sorter;
+            sorter = null;
+            downstream.begin(s.count());
+            s.drain(t -> downstream.accept((int) t),
+                    cancellationWasRequested ? downstream : null);
+            downstream.end();
+        }
+
+        @Override
+        public void accept(int t) {
+            sorter.accept(t);
+        }
+    }
+
+    /**
+     * {@link Sink} for implementing sort on long streams, spilling sorted runs
+     * of elements to a temporary file when more than {@link #SPILL_THRESHOLD}
+     * elements are buffered.
+     */
+    private static final class SpillingLongSortingSink extends AbstractLongSortingSink {
+        private SpillingSorter.OfLong sorter;
+
+        SpillingLongSortingSink(Sink<? super Long> sink) {
+            super(sink);
+        }
+
+        @Override
+        public void begin(long size) {
+            sorter = new SpillingSorter.OfLong(size);
+        }
+
+        @Override
+        public void end() {
+            SpillingSorter s = sorter;
+            sorter = null;
+            downstream.begin(s.count());
+            s.drain(t -> downstream.accept(t), cancellationWasRequested ? downstream : null);
+            downstream.end();
+        }
+
+        @Override
+        public void accept(long t) {
+            sorter.accept(t);
+        }
+    }
+
+    /**
+     * Sorts primitive values, buffering at most {@link #SPILL_THRESHOLD} of
+     * them in memory.  When the buffer is full its contents are sorted and
+     * appended, as a run, to a temporary file.  The sorted values are then
+     * produced by a merge of the runs and the values remaining in the buffer.
+     *
+     * <p>The file is opened with {@link StandardOpenOption#DELETE_ON_CLOSE},
+     * which on some platforms removes it from its directory at once, and is
+     * closed once the values are drained.  If they never are, for example
+     * because the upstream pipeline throws, the file is closed, and so
+     * deleted, when the sorter becomes unreachable.
+     */
+    static abstract class SpillingSorter {
+        /** Size of the buffer used to write runs */
+        static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+        /** Bounds on the size of the buffer used to read each run */
+        static final int MIN_READ_BUFFER_SIZE = 1 << 12;
+        static final int MAX_READ_BUFFER_SIZE = 1 << 16;
+
+        final int elementSize;  // bytes per element in the file
+        final int limit;        // maximum number of buffered elements
+        int offset;             // number of buffered elements
+        long count;             // number of elements accepted
+        private FileChannel file;
+        private Cleaner cleaner;
+        private long[] runEnds; // file offsets of the ends of runs
+        private int runCount;
+
+        SpillingSorter(int elementSize) {
+            this.elementSize = elementSize;
+            this.limit = (int) Math.min(SPILL_THRESHOLD, Nodes.MAX_ARRAY_SIZE - 1);
+        }
+
+        /**
+         * Returns the initial length of the buffer for the given number of
+         * values, or a negative value if unknown.
+         */
+        final int initialCapacity(long size) {
+            return (int) Math.min(size < 0 ? 16 : Math.max(size, 1), limit);
+        }
+
+        /** Returns the length of the buffer */
+        abstract int capacity();
+
+        /** Replaces the buffer by a copy of the given length */
+        abstract void resize(int length);
+
+        /** Sorts the buffered elements */
+        abstract void sortBuffer();
+
+        /** Returns the buffered element at the given index */
+        abstract long element(int i);
+
+        /** Puts the buffered element at the given index into the given buffer */
+        abstract void put(ByteBuffer b, int i);
+
+        long count() {
+            return count;
+        }
+
+        /**
+         * Makes room in the buffer for another element, growing the buffer
+         * up to the limit, then spilling it.
+         */
+        final void ensureRoom() {
+            if (offset == capacity()) {
+                if (offset < limit)
+                    resize((int) Math.min(2L * offset, limit));
+                else
+                    spill();
+            }
+            count++;
+        }
+
+        private void spill() {
+            sortBuffer();
+            try {
+                FileChannel f = file;
+                if (f == null) {
+                    file = f = openFile();
+                    cleaner = Cleaner.create(this, new Closer(f));
+                    runEnds = new long[4];
+                }
+                ByteBuffer b = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+                long position = (runCount == 0) ? 0L : runEnds[runCount - 1];
+                for (int i = 0; i < offset; ) {
+                    b.clear();
+                    for (; i < offset && b.remaining() >= elementSize; i++)
+                        put(b, i);
+                    b.flip();
+                    while (b.hasRemaining())
+                        position += f.write(b, position);
+                }
+                if (runCount == runEnds.length)
+                    runEnds = Arrays.copyOf(runEnds, runCount << 1);
+                runEnds[runCount++] = position;
+            } catch (IOException e) {
+                release();
+                throw new UncheckedIOException(e);
+            }
+            offset = 0;
+        }
+
+        /**
+         * Creates and opens the temporary file, with the privileges of
+         * this class, as the threshold was read with them.
+         */
+        private static FileChannel openFile() throws IOException {
+            try {
+                return AccessController.doPrivileged(
+                    (PrivilegedExceptionAction<FileChannel>) () -> {
+                        Path p = Files.createTempFile("sort", ".run");
+                        try {
+                            return FileChannel.open(p, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.DELETE_ON_CLOSE);
+                        } catch (IOException | RuntimeException e) {
+                            Files.deleteIfExists(p);
+                            throw e;
+                        }
+                    });
+            } catch (PrivilegedActionException e) {
+                throw (IOException) e.getException();
+            }
+        }
+
+        /**
+         * Closes, and so deletes, the temporary file, if any.
+         */
+        private void release() {
+            Cleaner c = cleaner;
+            if (c != null) {
+                cleaner = null;
+                file = null;
+                c.clean();
+            }
+        }
+
+        /**
+         * Passes the sorted values to the given action, until the given sink,
+         * if non-null, requests cancellation, and then releases the file.
+         */
+        final void drain(LongConsumer action, Sink<?> cancellation) {
+            sortBuffer();
+            try {
+                if (runCount == 0) {
+                    for (int i = 0; i < offset && (cancellation == null || !cancellation.cancellationRequested()); i++)
+                        action.accept(element(i));
+                    return;
+                }
+
+                // Read buffers together take about as much space as the buffer
+                int readSize = (int) Math.max(MIN_READ_BUFFER_SIZE,
+                                              Math.min(MAX_READ_BUFFER_SIZE,
+                                                       (long) limit * elementSize / runCount));
+                readSize &= ~(Long.BYTES - 1);
+                PriorityQueue<Run> queue = new PriorityQueue<>(runCount + 1);
+                Run r = new Run(null, 0L, 0L);
+                if (r.advance())
+                    queue.add(r);
+                for (int i = 0; i < runCount; i++) {
+                    r = new Run(ByteBuffer.allocate(readSize),
+                                (i == 0) ? 0L : runEnds[i - 1], runEnds[i]);
+                    if (r.advance())
+                        queue.add(r);
+                }
+                while ((r = queue.poll()) != null &&
+                       (cancellation == null || !cancellation.cancellationRequested())) {
+                    action.accept(r.head);
+                    if (r.advance())
+                        queue.add(r);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                release();
+            }
+        }
+
+        /**
+         * A sorted run of values being merged: the buffered values if the
+         * read buffer is null, otherwise a region of the file.
+         */
+        final class Run implements Comparable<Run> {
+            private final ByteBuffer buf;
+            private long position;
+            private final long end;
+            private int index;
+            long head;
+
+            Run(ByteBuffer buf, long position, long end) {
+                this.buf = buf;
+                this.position = position;
+                this.end = end;
+                if (buf != null)
+                    buf.limit(0);
+            }
+
+            /**
+             * Moves to the next value of this run, returning false if there
+             * is none.
+             */
+            boolean advance() throws IOException {
+                if (buf == null) {
+                    if (index == offset)
+                        return false;
+                    head = element(index++);
+                    return true;
+                }
+                if (!buf.hasRemaining()) {
+                    if (position == end)
+                        return false;
+                    buf.clear();
+                    buf.limit((int) Math.min(buf.capacity(), end - position));
+                    while (buf.hasRemaining()) {
+                        if (file.read(buf, position + buf.position()) < 0)
+                            throw new EOFException();
+                    }
+                    position += buf.limit();
+                    buf.flip();
+                }
+                head = (elementSize == Integer.BYTES) ? buf.getInt() : buf.getLong();
+                return true;
+            }
+
+            @Override
+            public int compareTo(Run other) {
+                return Long.compare(head, other.head);
+            }
+        }
+
+        /**
+         * Closes the temporary file of a sorter; must not refer to it.
+         */
+        static final class Closer implements Runnable {
+            private final FileChannel file;
+
+            Closer(FileChannel file) {
+                this.file = file;
+            }
+
+            public void run() {
+                try {
+                    file.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+
+        /**
+         * Sorter of int values, buffered in an int array.
+         */
+        static final class OfInt extends SpillingSorter implements IntConsumer {
+            private int[] buffer;
+
+            /**
+             * @param size the number of values to be sorted, if known,
+             *        otherwise a negative value
+             */
+            OfInt(long size) {
+                super(Integer.BYTES);
+                buffer = new int[initialCapacity(size)];
+            }
+
+            @Override
+            public void accept(int t) {
+                ensureRoom();
+                buffer[offset++] = t;
+            }
+
+            int capacity()              { return buffer.length; }
+            void resize(int length)     { buffer = Arrays.copyOf(buffer, length); }
+            void sortBuffer()           { Arrays.sort(buffer, 0, offset); }
+            long element(int i)         { return buffer[i]; }
+            void put(ByteBuffer b, int i) { b.putInt(buffer[i]); }
+        }
+
+        /**
+         * Sorter of long values, buffered in a long array.
+         */
+        static final class OfLong extends SpillingSorter implements LongConsumer {
+            private long[] buffer;
+
+            /**
+             * @param size the number of values to be sorted, if known,
+             *        otherwise a negative value
+             */
+            OfLong(long size) {
+                super(Long.BYTES);
+                buffer = new long[initialCapacity(size)];
+            }
+
+            @Override
+            public void accept(long t) {
+                ensureRoom();
+                buffer[offset++] = t;
+            }
+
+            int capacity()              { return buffer.length; }
+            void resize(int length)     { buffer = Arrays.copyOf(buffer, length); }
+            void sortBuffer()           { Arrays.sort(buffer, 0, offset); }
+            long element(int i)         { return buffer[i]; }
+            void put(ByteBuffer b, int i) { b.putLong(buffer[i]); }
+        }
+    }
+
     /**
      * Abstract {@link Sink} for implementing sort on long streams.
      */
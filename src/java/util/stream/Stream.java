@@ -31,6 +31,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Spliterator;
@@ -478,6 +479,121 @@ public interface Stream<T> extends BaseStream<T, Stream<T>> {
      */
     Stream<T> skip(long n);
 
+    /**
+     * Returns a stream consisting of the elements of this stream grouped into
+     * consecutive lists of the given size, in encounter order.  The last list
+     * holds the remaining elements, and may have fewer than {@code size}
+     * elements, but is never empty.  If this stream is empty, the returned
+     * stream is empty.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>.
+     *
+     * @apiNote
+     * Sequential pipelines buffer at most one list at a time.  Ordered
+     * parallel pipelines collect the elements of this stream before forming
+     * the lists, which may then be formed in parallel.  The returned lists
+     * are fixed-size, as by {@link java.util.Arrays#asList}.
+     *
+     * @implSpec
+     * The default implementation obtains the {@link #spliterator() spliterator}
+     * of this stream, and applies this operation to a new stream over that
+     * spliterator, as created by {@link StreamSupport#stream(Spliterator, boolean)}
+     * with the execution mode of this stream.  When the returned stream is
+     * closed, the close handlers for both the returned and this stream are
+     * invoked.
+     *
+     * @param size the number of elements in each list, other than the last
+     * @return the new stream
+     * @throws IllegalArgumentException if {@code size} is not positive
+     */
+    default Stream<List<T>> chunked(int size) {
+        return StreamSupport.stream(spliterator(), isParallel())
+                .chunked(size)
+                .onClose(this::close);
+    }
+
+    /**
+     * Returns a stream consisting of the lists of {@code size} consecutive
+     * elements of this stream starting at every {@code step}-th element, in
+     * encounter order: the first list holds the elements at positions
+     * {@code 0} to {@code size - 1}, the next the elements at positions
+     * {@code step} to {@code step + size - 1}, and so on.  The lists overlap
+     * if {@code step < size}, and some elements are in no list if
+     * {@code step > size}.  Only complete lists are included, so if this
+     * stream has fewer than {@code size} elements, the returned stream is
+     * empty.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>.
+     *
+     * @apiNote
+     * Sequential pipelines buffer at most one list at a time.  Ordered
+     * parallel pipelines collect the elements of this stream before forming
+     * the lists, which may then be formed in parallel.  The returned lists
+     * are fixed-size, as by {@link java.util.Arrays#asList}.
+     *
+     * @implSpec
+     * The default implementation obtains the {@link #spliterator() spliterator}
+     * of this stream, and applies this operation to a new stream over that
+     * spliterator, as created by {@link StreamSupport#stream(Spliterator, boolean)}
+     * with the execution mode of this stream.  When the returned stream is
+     * closed, the close handlers for both the returned and this stream are
+     * invoked.
+     *
+     * @param size the number of elements in each list
+     * @param step the distance between the positions of the first elements
+     *        of consecutive lists
+     * @return the new stream
+     * @throws IllegalArgumentException if {@code size} or {@code step} is not
+     *         positive
+     */
+    default Stream<List<T>> sliding(int size, int step) {
+        return StreamSupport.stream(spliterator(), isParallel())
+                .sliding(size, step)
+                .onClose(this::close);
+    }
+
+    /**
+     * Returns a stream consisting of the elements of this stream grouped into
+     * lists of consecutive elements for which the given function returns
+     * equal keys, according to {@link Objects#equals}, in encounter order.
+     * Elements with equal keys that are not consecutive are in different
+     * lists.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>.
+     *
+     * @apiNote
+     * This method is useful to split sequences of events, for example
+     * grouping a time-ordered stream of readings by the minute:
+     * <pre>{@code
+     *     Stream<List<Reading>> minutes
+     *         = readings.windowBy(r -> r.getTimestamp() / 60_000);
+     * }</pre>
+     * Sequential pipelines buffer at most one list at a time.  Ordered
+     * parallel pipelines collect the elements of this stream, and compute
+     * their keys sequentially, before forming the lists.
+     *
+     * @implSpec
+     * The default implementation obtains the {@link #spliterator() spliterator}
+     * of this stream, and applies this operation to a new stream over that
+     * spliterator, as created by {@link StreamSupport#stream(Spliterator, boolean)}
+     * with the execution mode of this stream.  When the returned stream is
+     * closed, the close handlers for both the returned and this stream are
+     * invoked.
+     *
+     * @param classifier a <a href="package-summary.html#NonInterference">non-interfering</a>,
+     *                   <a href="package-summary.html#Statelessness">stateless</a>
+     *                   function computing the key of each element
+     * @return the new stream
+     */
+    default Stream<List<T>> windowBy(Function<? super T, ?> classifier) {
+        return StreamSupport.stream(spliterator(), isParallel())
+                .windowBy(classifier)
+                .onClose(this::close);
+    }
+
     /**
      * Performs an action for each element of this stream.
      *
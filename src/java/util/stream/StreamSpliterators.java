@@ -1309,6 +1309,144 @@ class StreamSpliterators {
         }
     }
 
+    /**
+     * A wrapping spliterator that only reports distinct int elements of the
+     * underlying spliterator, tracked in a set of primitive values shared by
+     * all splits.  Does not preserve size and encounter order.
+     */
+    static final class IntDistinctSpliterator implements Spliterator.OfInt, IntConsumer {
+
+        // The underlying spliterator
+        private final Spliterator.OfInt s;
+
+        // Set holding distinct elements
+        private final DistinctOps.ConcurrentIntSet seen;
+
+        // Temporary element, only used with tryAdvance
+        private int tmpSlot;
+
+        IntDistinctSpliterator(Spliterator.OfInt s) {
+            this(s, new DistinctOps.ConcurrentIntSet());
+        }
+
+        private IntDistinctSpliterator(Spliterator.OfInt s, DistinctOps.ConcurrentIntSet seen) {
+            this.s = s;
+            this.seen = seen;
+        }
+
+        @Override
+        public void accept(int t) {
+            this.tmpSlot = t;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            while (s.tryAdvance((IntConsumer) this)) {
+                if (seen.add(tmpSlot)) {
+                    action.accept(tmpSlot);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            s.forEachRemaining((int t) -> {
+                if (seen.add(t)) {
+                    action.accept(t);
+                }
+            });
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            Spliterator.OfInt split = s.trySplit();
+            return (split != null) ? new IntDistinctSpliterator(split, seen) : null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return s.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return (s.characteristics() & ~(Spliterator.SIZED | Spliterator.SUBSIZED |
+                                            Spliterator.SORTED | Spliterator.ORDERED))
+                   | Spliterator.DISTINCT;
+        }
+    }
+
+    /**
+     * A wrapping spliterator that only reports distinct long elements of the
+     * underlying spliterator, tracked in a set of primitive values shared by
+     * all splits.  Does not preserve size and encounter order.
+     */
+    static final class LongDistinctSpliterator implements Spliterator.OfLong, LongConsumer {
+
+        // The underlying spliterator
+        private final Spliterator.OfLong s;
+
+        // Set holding distinct elements
+        private final DistinctOps.ConcurrentLongSet seen;
+
+        // Temporary element, only used with tryAdvance
+        private long tmpSlot;
+
+        LongDistinctSpliterator(Spliterator.OfLong s) {
+            this(s, new DistinctOps.ConcurrentLongSet());
+        }
+
+        private LongDistinctSpliterator(Spliterator.OfLong s, DistinctOps.ConcurrentLongSet seen) {
+            this.s = s;
+            this.seen = seen;
+        }
+
+        @Override
+        public void accept(long t) {
+            this.tmpSlot = t;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            while (s.tryAdvance((LongConsumer) this)) {
+                if (seen.add(tmpSlot)) {
+                    action.accept(tmpSlot);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            s.forEachRemaining((long t) -> {
+                if (seen.add(t)) {
+                    action.accept(t);
+                }
+            });
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            Spliterator.OfLong split = s.trySplit();
+            return (split != null) ? new LongDistinctSpliterator(split, seen) : null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return s.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return (s.characteristics() & ~(Spliterator.SIZED | Spliterator.SUBSIZED |
+                                            Spliterator.SORTED | Spliterator.ORDERED))
+                   | Spliterator.DISTINCT;
+        }
+    }
+
     /**
      * A Spliterator that infinitely supplies elements in no particular order.
      *
@@ -0,0 +1,611 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.stream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Factory for instances of stateful intermediate operations that group
+ * consecutive elements of their input stream into windows: fixed-size,
+ * possibly overlapping windows ("chunked" and "sliding"), and windows of
+ * consecutive elements having equal keys ("windowBy").  Windows of reference
+ * streams are lists, and windows of primitive streams are arrays of the
+ * primitive type, so that their contents are not boxed.
+ *
+ * <p>Sequentially, windows are formed as elements are pushed, buffering at
+ * most one window, in a buffer that grows as elements arrive rather than
+ * being allocated at the window size, which may be far larger than the
+ * input.  In parallel, the input is first collected into an array,
+ * in encounter order, and windows are then described by a spliterator over
+ * window indexes, which splits evenly and computes each window from the array
+ * when traversed.
+ *
+ * @since 1.8
+ */
+final class WindowOps {
+
+    // No instances
+    private WindowOps() { }
+
+    /** The operation flags of windowing operations */
+    private static final int FLAGS = StreamOpFlag.NOT_SIZED |
+                                     StreamOpFlag.NOT_SORTED |
+                                     StreamOpFlag.NOT_DISTINCT;
+
+    /** The initial capacity of window buffers */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Returns the number of windows of the given size, starting at multiples
+     * of the given step, of a sequence of the given length.  If partial, the
+     * last window may be shorter, but must not be empty.
+     */
+    static long windowCount(long length, int size, int step, boolean partial) {
+        if (length < 0)
+            return -1;
+        else if (partial)
+            return (length + step - 1) / step;
+        else
+            return (length < size) ? 0 : (length - size) / step + 1;
+    }
+
+    /**
+     * Returns the capacity to which a full window buffer of the given
+     * length grows, for windows of the given size.
+     */
+    static int grow(int length, int size) {
+        return (int) Math.min(size, Math.max(INITIAL_CAPACITY,
+                                             length + (length >> 1) + 1L));
+    }
+
+    /**
+     * Checks the arguments of a windowing operation.
+     */
+    static void checkWindow(int size, int step) {
+        if (size <= 0)
+            throw new IllegalArgumentException(Integer.toString(size));
+        if (step <= 0)
+            throw new IllegalArgumentException(Integer.toString(step));
+    }
+
+    /**
+     * Appends a windowing operation to the provided stream.
+     *
+     * @param <T> the type of the input elements
+     * @param upstream a reference stream with element type T
+     * @param size the number of elements in each window
+     * @param step the distance between the first elements of consecutive
+     *        windows
+     * @param partial whether the last window may have fewer elements; only
+     *        valid if {@code step == size}
+     */
+    static <T> Stream<List<T>> makeRef(AbstractPipeline<?, T, ?> upstream,
+                                       int size, int step, boolean partial) {
+        return new ReferencePipeline.StatefulOp<T, List<T>>(upstream, StreamShape.REFERENCE, FLAGS) {
+            @Override
+            Sink<T> opWrapSink(int flags, Sink<List<T>> sink) {
+                return new Sink.ChainedReference<T, List<T>>(sink) {
+                    Object[] buffer = new Object[grow(0, size)];
+                    int length;
+                    long skip;
+
+                    @Override
+                    public void begin(long count) {
+                        length = 0;
+                        skip = 0;
+                        downstream.begin(windowCount(count, size, step, partial));
+                    }
+
+                    @Override
+                    public void end() {
+                        if (partial && length > 0)
+                            downstream.accept(window(Arrays.copyOf(buffer, length)));
+                        downstream.end();
+                    }
+
+                    @Override
+                    public void accept(T t) {
+                        if (skip > 0) {
+                            skip--;
+                            return;
+                        }
+                        if (length == buffer.length)
+                            buffer = Arrays.copyOf(buffer, grow(length, size));
+                        buffer[length++] = t;
+                        if (length == size) {
+                            downstream.accept(window(buffer.clone()));
+                            if (step < size) {
+                                System.arraycopy(buffer, step, buffer, 0, size - step);
+                                length = size - step;
+                            }
+                            else {
+                                Arrays.fill(buffer, null);
+                                length = 0;
+                                skip = step - size;
+                            }
+                        }
+                    }
+                };
+            }
+
+            @Override
+            <P_IN> Spliterator<List<T>> opEvaluateParallelLazy(PipelineHelper<List<T>> helper,
+                                                               Spliterator<P_IN> spliterator) {
+                Object[] array = flattenRef(helper, spliterator);
+                return new WindowSpliterator<>(array, array.length, size, step, partial, null, true);
+            }
+
+            @Override
+            <P_IN> Node<List<T>> opEvaluateParallel(PipelineHelper<List<T>> helper,
+                                                    Spliterator<P_IN> spliterator,
+                                                    IntFunction<List<T>[]> generator) {
+                return toNode(opEvaluateParallelLazy(helper, spliterator), generator);
+            }
+        };
+    }
+
+    /**
+     * Appends a "windowBy" operation to the provided stream.
+     *
+     * @param <T> the type of the input elements
+     * @param upstream a reference stream with element type T
+     * @param classifier the function computing the keys of elements
+     */
+    static <T> Stream<List<T>> makeRefBy(AbstractPipeline<?, T, ?> upstream,
+                                         Function<? super T, ?> classifier) {
+        Objects.requireNonNull(classifier);
+        return new ReferencePipeline.StatefulOp<T, List<T>>(upstream, StreamShape.REFERENCE, FLAGS) {
+            @Override
+            Sink<T> opWrapSink(int flags, Sink<List<T>> sink) {
+                return new Sink.ChainedReference<T, List<T>>(sink) {
+                    ArrayList<T> window;
+                    Object key;
+
+                    @Override
+                    public void begin(long count) {
+                        window = null;
+                        downstream.begin(-1);
+                    }
+
+                    @Override
+                    public void end() {
+                        if (window != null) {
+                            downstream.accept(window);
+                            window = null;
+                        }
+                        key = null;
+                        downstream.end();
+                    }
+
+                    @Override
+                    public void accept(T t) {
+                        Object k = classifier.apply(t);
+                        if (window != null && !Objects.equals(key, k)) {
+                            downstream.accept(window);
+                            window = null;
+                        }
+                        if (window == null) {
+                            window = new ArrayList<>();
+                            key = k;
+                        }
+                        window.add(t);
+                    }
+                };
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            <P_IN> Spliterator<List<T>> opEvaluateParallelLazy(PipelineHelper<List<T>> helper,
+                                                               Spliterator<P_IN> spliterator) {
+                Object[] array = flattenRef(helper, spliterator);
+                // Window boundaries depend on all preceding keys, so are
+                // found by a sequential pass over the flattened input
+                int n = array.length, windows = 0;
+                int[] starts = new int[n + 1];
+                Object key = null;
+                for (int i = 0; i < n; i++) {
+                    Object k = classifier.apply((T) array[i]);
+                    if (i == 0 || !Objects.equals(key, k))
+                        starts[windows++] = i;
+                    key = k;
+                }
+                starts[windows] = n;
+                return new WindowSpliterator<>(array, windows, 0, 0, false,
+                                               Arrays.copyOf(starts, windows + 1), true);
+            }
+
+            @Override
+            <P_IN> Node<List<T>> opEvaluateParallel(PipelineHelper<List<T>> helper,
+                                                    Spliterator<P_IN> spliterator,
+                                                    IntFunction<List<T>[]> generator) {
+                return toNode(opEvaluateParallelLazy(helper, spliterator), generator);
+            }
+        };
+    }
+
+    /**
+     * Appends a windowing operation to the provided stream.
+     *
+     * @param upstream a reference stream with element type Integer
+     * @param size the number of elements in each window
+     * @param step the distance between the first elements of consecutive
+     *        windows
+     * @param partial whether the last window may have fewer elements; only
+     *        valid if {@code step == size}
+     */
+    static Stream<int[]> makeInt(AbstractPipeline<?, Integer, ?> upstream,
+                                 int size, int step, boolean partial) {
+        return new ReferencePipeline.StatefulOp<Integer, int[]>(upstream, StreamShape.INT_VALUE, FLAGS) {
+            @Override
+            Sink<Integer> opWrapSink(int flags, Sink<int[]> sink) {
+                return new Sink.ChainedInt<int[]>(sink) {
+                    int[] buffer = new int[grow(0, size)];
+                    int length;
+                    long skip;
+
+                    @Override
+                    public void begin(long count) {
+                        length = 0;
+                        skip = 0;
+                        downstream.begin(windowCount(count, size, step, partial));
+                    }
+
+                    @Override
+                    public void end() {
+                        if (partial && length > 0)
+                            downstream.accept(Arrays.copyOf(buffer, length));
+                        downstream.end();
+                    }
+
+                    @Override
+                    public void accept(int t) {
+                        if (skip > 0) {
+                            skip--;
+                            return;
+                        }
+                        if (length == buffer.length)
+                            buffer = Arrays.copyOf(buffer, grow(length, size));
+                        buffer[length++] = t;
+                        if (length == size) {
+                            downstream.accept(buffer.clone());
+                            if (step < size) {
+                                System.arraycopy(buffer, step, buffer, 0, size - step);
+                                length = size - step;
+                            }
+                            else {
+                                length = 0;
+                                skip = step - size;
+                            }
+                        }
+                    }
+                };
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            <P_IN> Spliterator<int[]> opEvaluateParallelLazy(PipelineHelper<int[]> helper,
+                                                             Spliterator<P_IN> spliterator) {
+                PipelineHelper<Integer> h = (PipelineHelper<Integer>) (PipelineHelper<?>) helper;
+                int[] array = ((Node.OfInt) h.evaluate(spliterator, true, Integer[]::new)).asPrimitiveArray();
+                return new WindowSpliterator<>(array, array.length, size, step, partial, null, false);
+            }
+
+            @Override
+            <P_IN> Node<int[]> opEvaluateParallel(PipelineHelper<int[]> helper,
+                                                  Spliterator<P_IN> spliterator,
+                                                  IntFunction<int[][]> generator) {
+                return toNode(opEvaluateParallelLazy(helper, spliterator), generator);
+            }
+        };
+    }
+
+    /**
+     * Appends a windowing operation to the provided stream.
+     *
+     * @param upstream a reference stream with element type Long
+     * @param size the number of elements in each window
+     * @param step the distance between the first elements of consecutive
+     *        windows
+     * @param partial whether the last window may have fewer elements; only
+     *        valid if {@code step == size}
+     */
+    static Stream<long[]> makeLong(AbstractPipeline<?, Long, ?> upstream,
+                                   int size, int step, boolean partial) {
+        return new ReferencePipeline.StatefulOp<Long, long[]>(upstream, StreamShape.LONG_VALUE, FLAGS) {
+            @Override
+            Sink<Long> opWrapSink(int flags, Sink<long[]> sink) {
+                return new Sink.ChainedLong<long[]>(sink) {
+                    long[] buffer = new long[grow(0, size)];
+                    int length;
+                    long skip;
+
+                    @Override
+                    public void begin(long count) {
+                        length = 0;
+                        skip = 0;
+                        downstream.begin(windowCount(count, size, step, partial));
+                    }
+
+                    @Override
+                    public void end() {
+                        if (partial && length > 0)
+                            downstream.accept(Arrays.copyOf(buffer, length));
+                        downstream.end();
+                    }
+
+                    @Override
+                    public void accept(long t) {
+                        if (skip > 0) {
+                            skip--;
+                            return;
+                        }
+                        if (length == buffer.length)
+                            buffer = Arrays.copyOf(buffer, grow(length, size));
+                        buffer[length++] = t;
+                        if (length == size) {
+                            downstream.accept(buffer.clone());
+                            if (step < size) {
+                                System.arraycopy(buffer, step, buffer, 0, size - step);
+                                length = size - step;
+                            }
+                            else {
+                                length = 0;
+                                skip = step - size;
+                            }
+                        }
+                    }
+                };
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            <P_IN> Spliterator<long[]> opEvaluateParallelLazy(PipelineHelper<long[]> helper,
+                                                              Spliterator<P_IN> spliterator) {
+                PipelineHelper<Long> h = (PipelineHelper<Long>) (PipelineHelper<?>) helper;
+                long[] array = ((Node.OfLong) h.evaluate(spliterator, true, Long[]::new)).asPrimitiveArray();
+                return new WindowSpliterator<>(array, array.length, size, step, partial, null, false);
+            }
+
+            @Override
+            <P_IN> Node<long[]> opEvaluateParallel(PipelineHelper<long[]> helper,
+                                                   Spliterator<P_IN> spliterator,
+                                                   IntFunction<long[][]> generator) {
+                return toNode(opEvaluateParallelLazy(helper, spliterator), generator);
+            }
+        };
+    }
+
+    /**
+     * Appends a windowing operation to the provided stream.
+     *
+     * @param upstream a reference stream with element type Double
+     * @param size the number of elements in each window
+     * @param step the distance between the first elements of consecutive
+     *        windows
+     * @param partial whether the last window may have fewer elements; only
+     *        valid if {@code step == size}
+     */
+    static Stream<double[]> makeDouble(AbstractPipeline<?, Double, ?> upstream,
+                                       int size, int step, boolean partial) {
+        return new ReferencePipeline.StatefulOp<Double, double[]>(upstream, StreamShape.DOUBLE_VALUE, FLAGS) {
+            @Override
+            Sink<Double> opWrapSink(int flags, Sink<double[]> sink) {
+                return new Sink.ChainedDouble<double[]>(sink) {
+                    double[] buffer = new double[grow(0, size)];
+                    int length;
+                    long skip;
+
+                    @Override
+                    public void begin(long count) {
+                        length = 0;
+                        skip = 0;
+                        downstream.begin(windowCount(count, size, step, partial));
+                    }
+
+                    @Override
+                    public void end() {
+                        if (partial && length > 0)
+                            downstream.accept(Arrays.copyOf(buffer, length));
+                        downstream.end();
+                    }
+
+                    @Override
+                    public void accept(double t) {
+                        if (skip > 0) {
+                            skip--;
+                            return;
+                        }
+                        if (length == buffer.length)
+                            buffer = Arrays.copyOf(buffer, grow(length, size));
+                        buffer[length++] = t;
+                        if (length == size) {
+                            downstream.accept(buffer.clone());
+                            if (step < size) {
+                                System.arraycopy(buffer, step, buffer, 0, size - step);
+                                length = size - step;
+                            }
+                            else {
+                                length = 0;
+                                skip = step - size;
+                            }
+                        }
+                    }
+                };
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            <P_IN> Spliterator<double[]> opEvaluateParallelLazy(PipelineHelper<double[]> helper,
+                                                                Spliterator<P_IN> spliterator) {
+                PipelineHelper<Double> h = (PipelineHelper<Double>) (PipelineHelper<?>) helper;
+                double[] array = ((Node.OfDouble) h.evaluate(spliterator, true, Double[]::new)).asPrimitiveArray();
+                return new WindowSpliterator<>(array, array.length, size, step, partial, null, false);
+            }
+
+            @Override
+            <P_IN> Node<double[]> opEvaluateParallel(PipelineHelper<double[]> helper,
+                                                     Spliterator<P_IN> spliterator,
+                                                     IntFunction<double[][]> generator) {
+                return toNode(opEvaluateParallelLazy(helper, spliterator), generator);
+            }
+        };
+    }
+
+    /**
+     * Returns a list view of the given window.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> List<T> window(Object[] elements) {
+        return (List<T>) Arrays.asList(elements);
+    }
+
+    /**
+     * Collects the output of the upstream pipeline, in encounter order, into
+     * an array.  The helper describes the upstream pipeline, whose output type
+     * differs from that of the windowing operation.
+     */
+    @SuppressWarnings("unchecked")
+    private static <P_IN> Object[] flattenRef(PipelineHelper<?> helper,
+                                              Spliterator<P_IN> spliterator) {
+        PipelineHelper<Object> h = (PipelineHelper<Object>) helper;
+        return h.evaluate(spliterator, true, Object[]::new).asArray(Object[]::new);
+    }
+
+    /**
+     * Collects the windows described by the given spliterator into a node,
+     * computing them in parallel.
+     */
+    private static <E> Node<E> toNode(Spliterator<E> windows, IntFunction<E[]> generator) {
+        return Nodes.node(StreamSupport.stream(windows, true).toArray(generator));
+    }
+
+    /**
+     * A spliterator over the windows of an array, by window index.  Windows
+     * are either of the given size, starting at multiples of the given step,
+     * or, if starts is non-null, delimited by consecutive elements of starts.
+     */
+    static final class WindowSpliterator<E> implements Spliterator<E> {
+        private final Object array; // Object[] or primitive array
+        private final int length;   // of the array
+        private final int size;
+        private final int step;
+        private final int[] starts;
+        private final boolean boxed; // true if windows are lists
+        private int index;           // current window index
+        private final int fence;     // one past last window index
+
+        WindowSpliterator(Object array, int length, int size, int step,
+                          boolean partial, int[] starts, boolean boxed) {
+            this(array, length, size, step, starts, boxed, 0,
+                 (starts != null) ? starts.length - 1
+                                  : (int) windowCount(length, size, step, partial));
+        }
+
+        private WindowSpliterator(Object array, int length, int size, int step,
+                                  int[] starts, boolean boxed, int index, int fence) {
+            this.array = array;
+            this.length = length;
+            this.size = size;
+            this.step = step;
+            this.starts = starts;
+            this.boxed = boxed;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        /**
+         * Returns a copy of the window of the given index.
+         */
+        @SuppressWarnings("unchecked")
+        private E window(int i) {
+            int from, to;
+            if (starts != null) {
+                from = starts[i];
+                to = starts[i + 1];
+            }
+            else {
+                from = i * step;
+                to = Math.min(from + size, length);
+            }
+            Object w;
+            if (array instanceof int[])
+                w = Arrays.copyOfRange((int[]) array, from, to);
+            else if (array instanceof long[])
+                w = Arrays.copyOfRange((long[]) array, from, to);
+            else if (array instanceof double[])
+                w = Arrays.copyOfRange((double[]) array, from, to);
+            else
+                w = Arrays.copyOfRange((Object[]) array, from, to);
+            return boxed ? (E) WindowOps.window((Object[]) w) : (E) w;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            if (index < fence) {
+                action.accept(window(index++));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            int i = index, hi = fence;
+            index = hi;
+            for (; i < hi; i++)
+                action.accept(window(i));
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int lo = index, mid = (lo + fence) >>> 1;
+            return (lo >= mid)
+                   ? null
+                   : new WindowSpliterator<>(array, length, size, step, starts,
+                                             boxed, lo, index = mid);
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED |
+                   Spliterator.NONNULL | Spliterator.IMMUTABLE;
+        }
+    }
+}